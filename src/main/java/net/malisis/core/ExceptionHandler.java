@@ -42,6 +42,17 @@ public class ExceptionHandler implements SubscriberExceptionHandler
 	@Override
 	public void handleException(Throwable exception, SubscriberExceptionContext context)
 	{
-		MalisisCore.LOGGER.error("An error occured while processing event : " + context.getEvent().getClass().getSimpleName(), exception);
+		handleException(exception, context.getEvent());
+	}
+
+	/**
+	 * Handles an exception thrown while processing the <code>event</code>.
+	 *
+	 * @param exception the exception
+	 * @param event the event
+	 */
+	public void handleException(Throwable exception, Object event)
+	{
+		MalisisCore.LOGGER.error("An error occured while processing event : " + event.getClass().getSimpleName(), exception);
 	}
 }
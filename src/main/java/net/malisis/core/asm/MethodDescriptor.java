@@ -119,62 +119,59 @@ public class MethodDescriptor
 	{
 		private static TypeToken token = (TypeToken) new TypeToken().name("TypeToken");
 
-		private int size;
+		@Override
+		public boolean startsWith(char c)
+		{
+			return "ZBCSIJFDV[L".indexOf(c) != -1;
+		}
 
 		@Override
-		public boolean matches(String s, int index)
+		public int match(String s, int index, Parser<?> parser)
 		{
-			value = null;
-			size = 1;
+			if (index >= s.length())
+				return -1;
 			char c = s.charAt(index);
-			switch (c)
+			if (c != '[' && c != 'L')
+				return startsWith(c) ? 1 : -1;
+
+			int e = s.indexOf(';', index);
+			return e != -1 ? e - index + 1 : -1;
+		}
+
+		@Override
+		public Class<?> getValue(String s, int index, int size)
+		{
+			switch (s.charAt(index))
 			{
 				case 'Z':
-					value = boolean.class;
-					break;
+					return boolean.class;
 				case 'B':
-					value = byte.class;
-					break;
+					return byte.class;
 				case 'C':
-					value = char.class;
-					break;
+					return char.class;
 				case 'S':
-					value = short.class;
-					break;
+					return short.class;
 				case 'I':
-					value = int.class;
-					break;
+					return int.class;
 				case 'J':
-					value = long.class;
-					break;
+					return long.class;
 				case 'F':
-					value = float.class;
-					break;
+					return float.class;
 				case 'D':
-					value = double.class;
-					break;
+					return double.class;
 				case 'V':
-					value = void.class;
-					break;
-				case '[':
-				case 'L':
-					value = getClass(s, index);
-					break;
+					return void.class;
+				default:
+					return getClass(s, index, size);
 			}
-
-			return value != null;
 		}
 
-		private Class<?> getClass(String s, int index)
+		private Class<?> getClass(String s, int index, int size)
 		{
 			boolean isArray = s.charAt(index) == '[';
-			int e = s.indexOf(';', index);
-			if (e == -1)
-				return null;
 			try
 			{
-				String name = s.substring(isArray ? index : index + 1, isArray ? e + 1 : e).replace('/', '.');
-				size = name.length() + (isArray ? 0 : 2);
+				String name = s.substring(isArray ? index : index + 1, isArray ? index + size : index + size - 1).replace('/', '.');
 				return Class.forName(name);
 			}
 			catch (ClassNotFoundException e1)
@@ -183,12 +180,5 @@ public class MethodDescriptor
 				return null;
 			}
 		}
-
-		@Override
-		public int size()
-		{
-			return size;
-		}
-
 	}
 }
@@ -22,129 +22,313 @@
  * THE SOFTWARE.
  */
 
+
 package net.malisis.core.client.gui;
 
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
-
 import net.malisis.core.MalisisCore;
-import net.malisis.core.client.gui.render.GuiIcon;
+import net.malisis.core.client.gui.render.GuiTexture;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.StitcherException;
-import net.minecraft.client.renderer.texture.PngSizeInfo;
-import net.minecraft.client.renderer.texture.Stitcher;
-import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.client.renderer.texture.AbstractTexture;
 import net.minecraft.client.renderer.texture.TextureUtil;
 import net.minecraft.client.resources.IResource;
 import net.minecraft.client.resources.IResourceManager;
 import net.minecraft.util.ResourceLocation;
 
 /**
- * @author Ordinastie
+ * Texture atlas holding the {@link GuiTexture GuiTextures} used by the GUIs and the fonts, so that quads using different textures can be
+ * drawn in the same batch.<br>
+ * Textures are requested while drawing and packed at the beginning of the next frame. The atlas is registered in the
+ * {@link net.minecraft.client.renderer.texture.TextureManager TextureManager} and is rebuilt when the resources are reloaded.
  *
+ * @author Ordinastie
  */
-public class GuiAtlas
+public class GuiAtlas extends AbstractTexture
 {
-	Map<ResourceLocation, GuiIcon> registeredIcons = Maps.newHashMap();
-	private Set<ResourceLocation> loadedIcons = Sets.newHashSet();
-	private int glTextureId = -1;
+	/** Location of the atlas in the TextureManager. */
+	public static final ResourceLocation LOCATION = new ResourceLocation("malisiscore", "gui_atlas");
+	/** Maximum size of the atlas. */
+	private static final int MAX_SIZE = 2048;
+	/** Maximum size of a texture to be packed in the atlas. */
+	private static final int MAX_TEXTURE_SIZE = 1024;
+	/** Transparent space left between textures. */
+	private static final int PADDING = 1;
 
-	GuiIcon register(ResourceLocation resourceLocation)
+	/** Regions of the textures packed in the atlas. */
+	private Map<GuiTexture, Region> regions = new IdentityHashMap<>();
+	/** Textures waiting to be packed. */
+	private final Set<GuiTexture> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+	/** Textures that could not be packed. */
+	private final Set<GuiTexture> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+	/** Images loaded for the textures. */
+	private final Map<GuiTexture, BufferedImage> images = new IdentityHashMap<>();
+	/** {@link GuiTexture} representing the whole atlas. */
+	private GuiTexture texture;
+	/** Whether the atlas has been registered in the TextureManager. */
+	private boolean registered = false;
+	/** Whether a texture was removed and the atlas needs to be packed again. */
+	private boolean dirty = false;
+
+	/**
+	 * Gets the {@link GuiTexture} representing the whole atlas.
+	 *
+	 * @return the texture, or null if the atlas is empty
+	 */
+	public GuiTexture getTexture()
 	{
-		//if (registeredIcons.get(resourceLocation) != null)
-		return registeredIcons.get(resourceLocation);
+		return texture;
+	}
 
-		//GuiIcon icon = new GuiIcon(resourceLocation);
-		//registeredIcons.put(resourceLocation, icon);
-		//return icon;
+	/**
+	 * Gets the region of the atlas where the {@link GuiTexture} is packed.<br>
+	 * If the texture is not packed yet, it will be at the next {@link #update()}.
+	 *
+	 * @param texture the texture
+	 * @return the region, or null if the texture is not in the atlas
+	 */
+	public Region getRegion(GuiTexture texture)
+	{
+		Region region = regions.get(texture);
+		if (region == null && texture != null && texture != this.texture && !rejected.contains(texture))
+			pending.add(texture);
+		return region;
+	}
 
+	/**
+	 * Removes the {@link GuiTexture} from this {@link GuiAtlas}.
+	 *
+	 * @param texture the texture
+	 */
+	public void remove(GuiTexture texture)
+	{
+		pending.remove(texture);
+		rejected.remove(texture);
+		images.remove(texture);
+		if (regions.remove(texture) != null)
+			dirty = true;
 	}
 
-	public void loadTextureAtlas(IResourceManager resourceManager)
+	/**
+	 * Uploads again a part of a {@link GuiTexture} packed in this {@link GuiAtlas}, after its image was modified.<br>
+	 * Does nothing if the texture is not packed yet, as its current image will be used when it is.
+	 *
+	 * @param texture the texture
+	 * @param x the x position of the part in the texture
+	 * @param y the y position of the part in the texture
+	 * @param width the width of the part
+	 * @param height the height of the part
+	 */
+	public void refresh(GuiTexture texture, int x, int y, int width, int height)
 	{
-		int maxSize = Minecraft.getGLMaximumTextureSize();
-		Stitcher stitcher = new Stitcher(maxSize, maxSize, 0, 0);
-		loadedIcons.clear();
+		Region region = regions.get(texture);
+		BufferedImage img = images.get(texture);
+		if (region == null || img == null)
+			return;
+
+		TextureUtil.uploadTextureImageSub(getGlTextureId(), img.getSubimage(x, y, width, height), region.x + x, region.y + y, false, false);
+	}
 
-		for (Entry<ResourceLocation, GuiIcon> entry : registeredIcons.entrySet())
+	/**
+	 * Packs the textures requested since the last update.<br>
+	 * Should be called outside of a batch, as the regions of the textures already packed may change.
+	 */
+	public void update()
+	{
+		if (!registered)
 		{
-			ResourceLocation rl = entry.getKey();
-			GuiIcon icon = entry.getValue();
+			registered = true;
+			Minecraft.getMinecraft().getTextureManager().loadTexture(LOCATION, this);
+			return;
+		}
 
-			//Keep custom loading ?
-			//if (icon.hasCustomLoader(resourceManager, rl) && icon.load(resourceManager, rl, l -> registeredIcons.get(l)))
-			//	continue;
+		if (!pending.isEmpty() || dirty)
+			stitch(Minecraft.getMinecraft().getResourceManager());
+	}
 
-			try (IResource res = resourceManager.getResource(rl))
-			{
-				PngSizeInfo pngsizeinfo = PngSizeInfo.makeFromResource(resourceManager.getResource(rl));
-				//	icon.loadSprite(pngsizeinfo, res.getMetadata("animation") != null);
-			}
-			catch (RuntimeException | IOException e)
-			{
-				MalisisCore.log.error("Failed to load texture for gui atlas : {}", rl, e);
-			}
+	@Override
+	public void loadTexture(IResourceManager resourceManager) throws IOException
+	{
+		//resources reloaded, images may have changed
+		images.clear();
+		rejected.clear();
+		stitch(resourceManager);
+	}
 
-			//stitcher.addSprite(icon);
+	/**
+	 * Packs all the textures in the atlas and uploads it.
+	 *
+	 * @param resourceManager the resource manager
+	 */
+	private void stitch(IResourceManager resourceManager)
+	{
+		List<GuiTexture> textures = new ArrayList<>(regions.keySet());
+		textures.addAll(pending);
+		pending.clear();
+		dirty = false;
+		textures.removeIf(t -> loadImage(t, resourceManager) == null);
+		if (textures.isEmpty())
+		{
+			regions = new IdentityHashMap<>();
+			return;
 		}
 
-		try
+		//tallest first for better shelves
+		textures.sort((t1, t2) -> images.get(t2).getHeight() - images.get(t1).getHeight());
+
+		int maxSize = Math.min(MAX_SIZE, Minecraft.getGLMaximumTextureSize());
+		int size = 256;
+		Map<GuiTexture, int[]> slots = pack(textures, size);
+		while (slots.size() < textures.size() && size < maxSize)
 		{
-			stitcher.doStitch();
+			size *= 2;
+			slots = pack(textures, size);
 		}
-		catch (StitcherException e)
+
+		int[] pixels = new int[size * size];
+		Map<GuiTexture, Region> regions = new IdentityHashMap<>();
+		for (GuiTexture t : textures)
 		{
-			throw e;
+			int[] slot = slots.get(t);
+			if (slot == null)
+			{
+				MalisisCore.log.warn("No space left in the gui atlas for {}", t);
+				rejected.add(t);
+				images.remove(t);
+				continue;
+			}
+
+			BufferedImage img = images.get(t);
+			img.getRGB(0, 0, img.getWidth(), img.getHeight(), pixels, slot[1] * size + slot[0], size);
+			regions.put(t, new Region(slot[0], slot[1], img.getWidth(), img.getHeight(), size));
 		}
 
-		MalisisCore.log.info("Created: {}x{} atlas for GUIs", stitcher.getCurrentWidth(), stitcher.getCurrentHeight());
-		TextureUtil.allocateTextureImpl(this.getGlTextureId(), 0, stitcher.getCurrentWidth(), stitcher.getCurrentHeight());
-		//Map<ResourceLocation, TextureAtlasSprite> map = Maps.newHashMap(this.registeredIcons);
+		TextureUtil.allocateTexture(getGlTextureId(), size, size);
+		TextureUtil.uploadTexture(getGlTextureId(), pixels, size, size);
+		this.regions = regions;
+		this.texture = new GuiTexture(LOCATION, size, size);
 
-		for (TextureAtlasSprite icon : stitcher.getStichSlots())
+		MalisisCore.log.info("Created: {}x{} atlas for GUIs ({} textures)", size, size, regions.size());
+	}
+
+	/**
+	 * Places the textures on shelves in an atlas of the specified size.
+	 *
+	 * @param textures the textures, sorted by height
+	 * @param size the size of the atlas
+	 * @return the position of each texture that could be placed
+	 */
+	private Map<GuiTexture, int[]> pack(List<GuiTexture> textures, int size)
+	{
+		Map<GuiTexture, int[]> slots = new IdentityHashMap<>();
+		int x = 0, y = 0, shelfHeight = 0;
+		for (GuiTexture t : textures)
 		{
-			try
+			BufferedImage img = images.get(t);
+			int w = img.getWidth() + PADDING;
+			int h = img.getHeight() + PADDING;
+			if (x + w > size)
 			{
-				TextureUtil.uploadTextureMipmap(icon.getFrameTextureData(0),
-												icon.getIconWidth(),
-												icon.getIconHeight(),
-												icon.getOriginX(),
-												icon.getOriginY(),
-												false,
-												false);
-			}
-			catch (Exception e)
-			{
-				MalisisCore.log.error("Failed to upload icon to texture : {}.", icon.getIconName(), e);
+				x = 0;
+				y += shelfHeight;
+				shelfHeight = 0;
 			}
+			if (w > size || y + h > size)
+				continue;
 
-			//Keep animations ?
-			//			if (icon.hasAnimationMetadata())
-			//				this.listAnimatedSprites.add(icon);
+			slots.put(t, new int[] { x, y });
+			x += w;
+			shelfHeight = Math.max(shelfHeight, h);
 		}
+		return slots;
 	}
 
-	public int getGlTextureId()
+	/**
+	 * Loads the image of the {@link GuiTexture}.<br>
+	 * Textures that can't be loaded or are too big are rejected and will be drawn with their own texture.
+	 *
+	 * @param texture the texture
+	 * @param resourceManager the resource manager
+	 * @return the image
+	 */
+	private BufferedImage loadImage(GuiTexture texture, IResourceManager resourceManager)
 	{
-		if (this.glTextureId == -1)
+		BufferedImage img = images.get(texture);
+		if (img != null)
+			return img;
+
+		img = texture.getImage();
+		if (img == null)
+		{
+			try (IResource res = resourceManager.getResource(texture.getResourceLocation()))
+			{
+				img = TextureUtil.readBufferedImage(res.getInputStream());
+			}
+			catch (RuntimeException | IOException e)
+			{
+				MalisisCore.log.error("Failed to load texture for gui atlas : {}", texture, e);
+			}
+		}
+
+		if (img == null || img.getWidth() > MAX_TEXTURE_SIZE || img.getHeight() > MAX_TEXTURE_SIZE)
 		{
-			this.glTextureId = TextureUtil.glGenTextures();
+			rejected.add(texture);
+			return null;
 		}
 
-		return this.glTextureId;
+		images.put(texture, img);
+		return img;
 	}
 
-	public void deleteGlTexture()
+	/**
+	 * Region of the atlas occupied by a {@link GuiTexture}.
+	 */
+	public static class Region
 	{
-		if (this.glTextureId != -1)
+		private final int x;
+		private final int y;
+		private final float u;
+		private final float v;
+		private final float width;
+		private final float height;
+
+		private Region(int x, int y, int width, int height, int size)
+		{
+			this.x = x;
+			this.y = y;
+			this.u = (float) x / size;
+			this.v = (float) y / size;
+			this.width = (float) width / size;
+			this.height = (float) height / size;
+		}
+
+		/**
+		 * Converts a U coordinate of the original texture into the atlas.
+		 *
+		 * @param u the u
+		 * @return the u inside the atlas
+		 */
+		public float u(float u)
+		{
+			return this.u + u * width;
+		}
+
+		/**
+		 * Converts a V coordinate of the original texture into the atlas.
+		 *
+		 * @param v the v
+		 * @return the v inside the atlas
+		 */
+		public float v(float v)
 		{
-			TextureUtil.deleteTexture(this.glTextureId);
-			this.glTextureId = -1;
+			return this.v + v * height;
 		}
 	}
 }
@@ -116,6 +116,7 @@ public class DebugComponent extends UIComponent implements IPadded, IContentHold
 		debugMap.put("Focus", () -> String.valueOf(MalisisGui.getFocusedComponent()));
 		debugMap.put("Hover", () -> String.valueOf(MalisisGui.getHoveredComponent()));
 		debugMap.put("Dragged", () -> String.valueOf(MalisisGui.getDraggedComponent()));
+		debugMap.put("Draw calls", () -> getGui().getRenderer().getDrawCalls() + (getGui().getRenderer().isBatched() ? " (batched)" : ""));
 		if (getGui().inventoryContainer() != null)
 			debugMap.put("Picked", () -> ItemUtils.toString(getGui().inventoryContainer().getPickedItemStack()));
 		updateGuiText();
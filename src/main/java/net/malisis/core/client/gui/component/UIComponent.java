@@ -32,9 +32,6 @@ import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
 
-import com.google.common.eventbus.EventBus;
-
-import net.malisis.core.ExceptionHandler;
 import net.malisis.core.client.gui.MalisisGui;
 import net.malisis.core.client.gui.component.container.UIContainer;
 import net.malisis.core.client.gui.component.content.IContent;
@@ -63,6 +60,7 @@ import net.malisis.core.client.gui.event.component.StateChangeEvent.VisibleState
 import net.malisis.core.client.gui.render.GuiRenderer;
 import net.malisis.core.client.gui.render.IGuiRenderer;
 import net.malisis.core.util.MouseButton;
+import net.malisis.core.util.event.EventDispatcher;
 
 /**
  * {@link UIComponent} is the base of everything drawn onto a GUI.<br>
@@ -94,7 +92,7 @@ public abstract class UIComponent implements IContent, IGuiRenderer, IKeyListene
 	/** Alpha transparency of this {@link UIComponent}. */
 	protected int alpha = 255;
 	/** Event bus on which event listeners are registered. */
-	private EventBus bus;
+	private EventDispatcher bus;
 	/** The parent {@link UIComponent} of this <code>UIComponent</code>. */
 	protected UIComponent parent;
 	/** The name of this {@link UIComponent}. Can be used to retrieve this back from a container. */
@@ -122,7 +120,7 @@ public abstract class UIComponent implements IContent, IGuiRenderer, IKeyListene
 	 */
 	public UIComponent()
 	{
-		bus = new EventBus(ExceptionHandler.instance);
+		bus = new EventDispatcher();
 		bus.register(this);
 		controlComponents = new LinkedHashSet<>();
 	}
@@ -737,6 +735,16 @@ public abstract class UIComponent implements IContent, IGuiRenderer, IKeyListene
 		component.setParent(null);
 	}
 
+	/**
+	 * Checks whether this {@link UIComponent} has any {@link IControlComponent}.
+	 *
+	 * @return true, if it has control components
+	 */
+	public boolean hasControlComponents()
+	{
+		return !controlComponents.isEmpty();
+	}
+
 	/**
 	 * Removes all the {@link IControlComponent} from this {@link UIContainer}.
 	 */
@@ -0,0 +1,338 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.client.gui.component.container;
+
+import java.util.Arrays;
+
+import net.malisis.core.client.gui.MalisisGui;
+import net.malisis.core.client.gui.component.UIComponent;
+import net.malisis.core.client.gui.element.IOffset;
+import net.malisis.core.client.gui.element.position.Position;
+
+/**
+ * Uniform grid indexing the children of a {@link UIContainer} by their bounds, so that {@link UIContainer#getComponentAt(int, int)} only
+ * asks the children under the cursor.<br>
+ * Bounds are stored relative to the content of the container, so scrolling does not require a rebuild. The grid is rebuilt when the
+ * content of the container is updated, or when the bounds of the children changed since the last frame it was used.<br>
+ * Children with control components, and containers that don't clip their content, can be hit outside of their bounds and are always
+ * asked.
+ *
+ * @author Ordinastie
+ */
+public class ComponentGrid
+{
+	/** Containers with fewer children just ask all of them. */
+	private static final int MIN_COMPONENTS = 16;
+	/** Minimum size of a cell. */
+	private static final int MIN_CELL_SIZE = 8;
+
+	private final UIContainer container;
+	/** Whether the children changed. */
+	private boolean dirty = true;
+	/** Frame when the bounds were last checked. */
+	private int lastFrame = -1;
+
+	/** Children of the container, in order. */
+	private UIComponent[] components = new UIComponent[0];
+	/** Bounds of each child (x, y, X, Y), inclusive. */
+	private int[] bounds = new int[0];
+	/** Whether each child could be hit outside of its bounds. */
+	private boolean[] unbounded = new boolean[0];
+	/** Indexes of the children that are always asked. */
+	private int[] always = new int[0];
+	private int alwaysCount;
+
+	/** Whether the grid is built. */
+	private boolean indexed;
+	private int gridX;
+	private int gridY;
+	private int cellWidth;
+	private int cellHeight;
+	private int columns;
+	private int rows;
+	/** Start index in {@link #cellItems} for each cell, plus the end of the last one. */
+	private int[] cellStart = new int[1];
+	/** Indexes of the children in each cell, in order. */
+	private int[] cellItems = new int[0];
+
+	/**
+	 * Instantiates a new {@link ComponentGrid}.
+	 *
+	 * @param container the container
+	 */
+	public ComponentGrid(UIContainer container)
+	{
+		this.container = container;
+	}
+
+	/**
+	 * Marks the children as changed.
+	 */
+	public void invalidate()
+	{
+		dirty = true;
+	}
+
+	/**
+	 * Gets the component at the specified coordinates among the children of the container.<br>
+	 * The component with the highest z-index is returned, the last one if several have the same z-index.
+	 *
+	 * @param x the x
+	 * @param y the y
+	 * @param component the component to return if no child is found
+	 * @return the component
+	 */
+	public UIComponent getComponentAt(int x, int y, UIComponent component)
+	{
+		update();
+
+		if (!indexed)
+		{
+			for (UIComponent c : components)
+				component = pick(c, x, y, component);
+			return component;
+		}
+
+		int start = 0, end = 0;
+		int rx = x - originX() - gridX;
+		int ry = y - originY() - gridY;
+		if (columns > 0 && rx >= 0 && ry >= 0 && rx / cellWidth < columns && ry / cellHeight < rows)
+		{
+			int cell = ry / cellHeight * columns + rx / cellWidth;
+			start = cellStart[cell];
+			end = cellStart[cell + 1];
+		}
+
+		//merge the cell with the children always asked, keeping the order of the children
+		int a = 0;
+		while (start < end || a < alwaysCount)
+		{
+			int index;
+			if (a >= alwaysCount || (start < end && cellItems[start] < always[a]))
+				index = cellItems[start++];
+			else
+				index = always[a++];
+			component = pick(components[index], x, y, component);
+		}
+		return component;
+	}
+
+	private UIComponent pick(UIComponent child, int x, int y, UIComponent component)
+	{
+		UIComponent c = child.getComponentAt(x, y);
+		if (c != null && component != null && component.getZIndex() <= c.getZIndex())
+			return c;
+		return component;
+	}
+
+	/**
+	 * Gets the x coordinate of the content of the container on screen.
+	 *
+	 * @return the x
+	 */
+	private int originX()
+	{
+		int x = container.screenPosition().x();
+		if (container instanceof IOffset)
+			x += ((IOffset) container).offset().x();
+		return x;
+	}
+
+	/**
+	 * Gets the y coordinate of the content of the container on screen.
+	 *
+	 * @return the y
+	 */
+	private int originY()
+	{
+		int y = container.screenPosition().y();
+		if (container instanceof IOffset)
+			y += ((IOffset) container).offset().y();
+		return y;
+	}
+
+	/**
+	 * Updates the children and rebuilds the grid if needed.
+	 */
+	private void update()
+	{
+		if (!dirty && lastFrame == MalisisGui.counter && Position.CACHED)
+			return;
+		lastFrame = MalisisGui.counter;
+
+		boolean rebuild = dirty;
+		if (dirty)
+		{
+			components = container.content.components.toArray(new UIComponent[0]);
+			bounds = new int[components.length * 4];
+			unbounded = new boolean[components.length];
+			dirty = false;
+		}
+
+		if (components.length < MIN_COMPONENTS)
+		{
+			indexed = false;
+			return;
+		}
+
+		if (readBounds() || rebuild || !indexed)
+			build();
+	}
+
+	/**
+	 * Reads the current bounds of the children, and whether they can be hit outside of them.
+	 *
+	 * @return true, if anything changed
+	 */
+	private boolean readBounds()
+	{
+		int ox = originX();
+		int oy = originY();
+		boolean changed = false;
+		for (int i = 0; i < components.length; i++)
+		{
+			UIComponent c = components[i];
+			int x = c.screenPosition().x() - ox;
+			int y = c.screenPosition().y() - oy;
+			int X = x + c.size().width();
+			int Y = y + c.size().height();
+			int o = i * 4;
+			changed |= bounds[o] != x || bounds[o + 1] != y || bounds[o + 2] != X || bounds[o + 3] != Y;
+			bounds[o] = x;
+			bounds[o + 1] = y;
+			bounds[o + 2] = X;
+			bounds[o + 3] = Y;
+			boolean u = isUnbounded(c);
+			changed |= unbounded[i] != u;
+			unbounded[i] = u;
+		}
+		return changed;
+	}
+
+	/**
+	 * Checks whether the child can be hit outside of its bounds, either by its control components or by the content of a container that
+	 * doesn't clip it.
+	 *
+	 * @param component the component
+	 * @return true, if the child must always be asked
+	 */
+	private boolean isUnbounded(UIComponent component)
+	{
+		if (component.hasControlComponents())
+			return true;
+		return component instanceof UIContainer && !((UIContainer) component).shouldClipContent();
+	}
+
+	/**
+	 * Builds the grid from the current bounds.
+	 */
+	private void build()
+	{
+		if (always.length < components.length)
+			always = new int[components.length];
+		alwaysCount = 0;
+
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < components.length; i++)
+		{
+			if (unbounded[i])
+			{
+				always[alwaysCount++] = i;
+				continue;
+			}
+			minX = Math.min(minX, bounds[i * 4]);
+			minY = Math.min(minY, bounds[i * 4 + 1]);
+			maxX = Math.max(maxX, bounds[i * 4 + 2]);
+			maxY = Math.max(maxY, bounds[i * 4 + 3]);
+		}
+
+		indexed = true;
+		if (minX > maxX)
+		{
+			columns = 0;
+			rows = 0;
+			return;
+		}
+
+		int side = (int) Math.ceil(Math.sqrt(components.length));
+		gridX = minX;
+		gridY = minY;
+		cellWidth = Math.max(MIN_CELL_SIZE, (maxX - minX + side) / side);
+		cellHeight = Math.max(MIN_CELL_SIZE, (maxY - minY + side) / side);
+		columns = (maxX - minX) / cellWidth + 1;
+		rows = (maxY - minY) / cellHeight + 1;
+
+		//count the children in each cell
+		int cells = columns * rows;
+		if (cellStart.length < cells + 1)
+			cellStart = new int[cells + 1];
+		Arrays.fill(cellStart, 0, cells + 1, 0);
+		int total = 0;
+		for (int i = 0, a = 0; i < components.length; i++)
+		{
+			if (a < alwaysCount && always[a] == i)
+			{
+				a++;
+				continue;
+			}
+			for (int cy = cellY(bounds[i * 4 + 1]); cy <= cellY(bounds[i * 4 + 3]); cy++)
+				for (int cx = cellX(bounds[i * 4]); cx <= cellX(bounds[i * 4 + 2]); cx++)
+				{
+					cellStart[cy * columns + cx + 1]++;
+					total++;
+				}
+		}
+		for (int i = 1; i <= cells; i++)
+			cellStart[i] += cellStart[i - 1];
+
+		//fill the cells, children are added in order
+		if (cellItems.length < total)
+			cellItems = new int[total];
+		int[] fill = Arrays.copyOf(cellStart, cells);
+		for (int i = 0, a = 0; i < components.length; i++)
+		{
+			if (a < alwaysCount && always[a] == i)
+			{
+				a++;
+				continue;
+			}
+			for (int cy = cellY(bounds[i * 4 + 1]); cy <= cellY(bounds[i * 4 + 3]); cy++)
+				for (int cx = cellX(bounds[i * 4]); cx <= cellX(bounds[i * 4 + 2]); cx++)
+					cellItems[fill[cy * columns + cx]++] = i;
+		}
+	}
+
+	private int cellX(int x)
+	{
+		return Math.min(Math.max((x - gridX) / cellWidth, 0), columns - 1);
+	}
+
+	private int cellY(int y)
+	{
+		return Math.min(Math.max((y - gridY) / cellHeight, 0), rows - 1);
+	}
+}
@@ -62,6 +62,8 @@ import net.malisis.core.client.gui.render.shape.GuiShape;
 public class UIContainer extends UIComponent implements IClipable, IScrollable, ICloseable, IPadded
 {
 	protected ContainerContent content = new ContainerContent();
+	/** Index of the children for {@link #getComponentAt(int, int)}. */
+	protected final ComponentGrid grid = new ComponentGrid(this);
 
 	/** Padding used by this {@link UIContainer}.? */
 	protected Padding padding = Padding.NO_PADDING;
@@ -200,24 +202,7 @@ public class UIContainer extends UIComponent implements IClipable, IScrollable,
 		if (shouldClipContent() && !getClipArea().isInside(x, y))
 			return superComp;
 
-		Set<UIComponent> list = new LinkedHashSet<>();
-		for (UIComponent c : content.components)
-		{
-			UIComponent component = c.getComponentAt(x, y);
-			if (component != null)
-				list.add(component);
-		}
-
-		if (list.size() == 0)
-			return superComp;
-
-		UIComponent component = superComp;
-		for (UIComponent c : list)
-		{
-			if (component != null && (component.getZIndex() <= c.getZIndex()))
-				component = c;
-		}
-
+		UIComponent component = grid.getComponentAt(x, y, superComp);
 		return component != null && component.isEnabled() ? component : superComp;
 	}
 
@@ -226,6 +211,7 @@ public class UIContainer extends UIComponent implements IClipable, IScrollable,
 	 */
 	public void onContentUpdate()
 	{
+		grid.invalidate();
 		content.updateSize();
 		fireEvent(new ContentUpdateEvent<>(this));
 	}
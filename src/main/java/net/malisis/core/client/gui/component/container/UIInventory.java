@@ -28,10 +28,14 @@ import org.apache.commons.lang3.StringUtils;
 
 import net.malisis.core.client.gui.component.UISlot;
 import net.malisis.core.client.gui.component.decoration.UILabel;
+import net.malisis.core.client.gui.element.IClipable;
+import net.malisis.core.client.gui.element.IClipable.ClipArea;
 import net.malisis.core.client.gui.element.position.Position;
 import net.malisis.core.client.gui.element.size.Size;
+import net.malisis.core.client.gui.render.GuiRenderer;
 import net.malisis.core.inventory.MalisisInventory;
 import net.malisis.core.inventory.MalisisSlot;
+import net.malisis.core.inventory.message.InventoryViewportMessage;
 
 public class UIInventory extends UIContainer
 {
@@ -39,6 +43,12 @@ public class UIInventory extends UIContainer
 	protected MalisisInventory inventory;
 	protected int numCols;
 	protected boolean hasTitle;
+	/** Whether only the visible slots are synced from the server. */
+	protected boolean windowed;
+	/** First slot index last reported to the server. */
+	protected int viewportFirst = -1;
+	/** Last slot index last reported to the server. */
+	protected int viewportLast = -1;
 
 	public UIInventory(String title, MalisisInventory inventory, int numCols)
 	{
@@ -80,6 +90,75 @@ public class UIInventory extends UIContainer
 		return label;
 	}
 
+	/**
+	 * Sets whether this {@link UIInventory} should only receive the slots currently visible from the server.<br>
+	 * Only meant for scrolling inventories, and only if the {@link MalisisInventory} is not displayed elsewhere in the GUI.
+	 *
+	 * @param windowed whether only the visible slots are synced
+	 */
+	public void setWindowed(boolean windowed)
+	{
+		this.windowed = windowed;
+		if (!windowed && viewportFirst != -1)
+			InventoryViewportMessage.sendViewport(inventory.getInventoryId(), 0, Integer.MAX_VALUE);
+		viewportFirst = -1;
+		viewportLast = -1;
+	}
+
+	/**
+	 * Checks whether this {@link UIInventory} only receives the slots currently visible.
+	 *
+	 * @return true, if windowed
+	 */
+	public boolean isWindowed()
+	{
+		return windowed;
+	}
+
+	/**
+	 * Computes the range of slots currently visible and reports it to the server if it changed.<br>
+	 * The visible range is the part of this {@link UIInventory} inside the clip areas of its parents, so it follows the scroll offset of
+	 * the enclosing scrollable container.
+	 */
+	protected void updateViewport()
+	{
+		int titleHeight = hasTitle ? 11 : 0;
+		int top = 0;
+		int bottom = size().height() - titleHeight;
+
+		ClipArea area = IClipable.intersected(getParent());
+		if (area.fullClip())
+			bottom = top;
+		else if (!area.noClip())
+		{
+			int y = screenPosition().y() + titleHeight;
+			top = Math.max(top, area.y - y);
+			bottom = Math.min(bottom, area.Y - y);
+		}
+
+		int first = 0;
+		int last = -1;
+		if (bottom > top)
+		{
+			first = Math.min(inventory.getSize() - 1, top / 18 * numCols);
+			last = Math.min(inventory.getSize() - 1, ((bottom - 1) / 18 + 1) * numCols - 1);
+		}
+		if (first == viewportFirst && last == viewportLast)
+			return;
+
+		viewportFirst = first;
+		viewportLast = last;
+		InventoryViewportMessage.sendViewport(inventory.getInventoryId(), first, last);
+	}
+
+	@Override
+	public void render(GuiRenderer renderer)
+	{
+		if (windowed && isVisible())
+			updateViewport();
+		super.render(renderer);
+	}
+
 	protected void addSlot(MalisisSlot slot, int number)
 	{
 		UISlot uislot = new UISlot(slot);
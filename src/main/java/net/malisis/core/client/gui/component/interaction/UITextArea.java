@@ -174,7 +174,7 @@ public class UITextArea extends UITextField implements IScrollable
 			return;
 		}
 
-		renderer.next();
+		renderer.flush();
 		GL11.glEnable(GL11.GL_COLOR_LOGIC_OP);
 		GL11.glLogicOp(GL11.GL_OR_REVERSE);
 
@@ -200,7 +200,7 @@ public class UITextArea extends UITextField implements IScrollable
 		s = builder.position(padding().left(), last.y()).size(last.x(), last.height).build();
 		s.render(renderer);
 
-		renderer.next();
+		renderer.flush();
 
 		GL11.glDisable(GL11.GL_COLOR_LOGIC_OP);
 		GL11.glEnable(GL11.GL_TEXTURE_2D);
@@ -49,7 +49,7 @@ import net.malisis.core.client.gui.render.GuiRenderer;
 import net.malisis.core.client.gui.render.shape.GuiShape;
 import net.malisis.core.client.gui.text.GuiText;
 import net.malisis.core.renderer.font.FontOptions;
-import net.malisis.core.renderer.font.StringWalker;
+import net.malisis.core.renderer.font.TextLayout;
 import net.malisis.core.util.MouseButton;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.util.ChatAllowedCharacters;
@@ -67,6 +67,8 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 	/** The {@link FontOptions} to use for this {@link UITextField} when disabled. */
 	/** Current text of this {@link UITextField}. */
 	protected StringBuilder text = new StringBuilder();
+	/** Current text of this {@link UITextField} as a String, updated when the text changes. */
+	private String textCache = "";
 	protected Function<String, String> filterFunction;
 
 	/** The padding of this {@link UITextField}. */
@@ -174,9 +176,7 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 
 		if (text == null)
 			text = "";
-		this.text.setLength(0);
-		this.text.append(text);
-		guiText.setText(text);
+		updateText(text);
 
 		selectingText = false;
 		xOffset = 0;
@@ -192,7 +192,20 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 	 */
 	public String getText()
 	{
-		return text.toString();
+		return textCache;
+	}
+
+	/**
+	 * Replaces the whole text of this {@link UITextField}.<br>
+	 * The {@link GuiText} picks up the new text on its next update.
+	 *
+	 * @param text the text
+	 */
+	protected void updateText(String text)
+	{
+		this.text.setLength(0);
+		this.text.append(text);
+		textCache = text;
 	}
 
 	@Override
@@ -379,7 +392,7 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 	public void setFilter(Function<String, String> filterFunction)
 	{
 		this.filterFunction = filterFunction;
-		this.text = new StringBuilder(this.filterFunction.apply(this.text.toString()));
+		updateText(this.filterFunction.apply(getText()));
 	}
 
 	/**
@@ -415,9 +428,12 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 		if (selectingText)
 			deleteSelectedText();
 
-		final StringBuilder oldText = this.text;
-		final String oldValue = this.text.toString();
-		String newValue = oldText.insert(this.cursor.index, str).toString();
+		int index = cursor.index;
+		String oldValue = getText();
+		String newValue = new StringBuilder(oldValue.length() + str.length())	.append(oldValue, 0, index)
+																				.append(str)
+																				.append(oldValue, index, oldValue.length())
+																				.toString();
 
 		if (this.filterFunction != null)
 			newValue = this.filterFunction.apply(newValue);
@@ -425,8 +441,13 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 		if (!fireEvent(new ComponentEvent.ValueChange<>(this, oldValue, newValue)))
 			return;
 
-		this.text = new StringBuilder(newValue);
-		guiText.setText(newValue);
+		if (this.filterFunction != null)
+			updateText(newValue);
+		else
+		{
+			text.insert(index, str);
+			textCache = newValue;
+		}
 
 		cursor.jumpBy(str.length());
 	}
@@ -442,14 +463,14 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 		int start = Math.min(selectionCursor.index, cursor.index);
 		int end = Math.max(selectionCursor.index, cursor.index);
 
-		String oldValue = this.text.toString();
-		String newValue = new StringBuilder(oldValue).delete(start, end).toString();
+		String oldValue = getText();
+		String newValue = oldValue.substring(0, start) + oldValue.substring(end);
 
 		if (!fireEvent(new ComponentEvent.ValueChange<>(this, oldValue, newValue)))
 			return;
 
-		this.text = new StringBuilder(newValue);
-		guiText.setText(newValue);
+		text.delete(start, end);
+		textCache = newValue;
 		selectingText = false;
 		cursor.jumpTo(start);
 	}
@@ -742,7 +763,7 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 		if (!selectingText || selectionCursor.index == cursor.index)
 			return;
 
-		renderer.next();
+		renderer.flush();
 		GL11.glEnable(GL11.GL_COLOR_LOGIC_OP);
 		GL11.glLogicOp(GL11.GL_OR_REVERSE);
 
@@ -757,7 +778,7 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 								.build();
 		s.render(renderer);
 
-		renderer.next();
+		renderer.flush();
 
 		GL11.glDisable(GL11.GL_COLOR_LOGIC_OP);
 		GL11.glEnable(GL11.GL_TEXTURE_2D);
@@ -841,35 +862,26 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 			return height;
 		}
 
-		private StringWalker back(StringWalker walker)
-		{
-			//			if (walker.getChar() == '\n')
-			//			{
-			//				int i = walker.globalIndex();
-			//				walker = guiText.walker();
-			//				walker.walkToIndex(i - 1);
-			//			}
-			return walker;
-		}
-
 		/**
-		 * Sets this {@link Cursor} data based on walker current state.
+		 * Places this {@link Cursor} right after the character before <b>index</b>, based on the {@link TextLayout} of the text.
 		 *
-		 * @param walker the walker
+		 * @param index the index
 		 */
-		private void set(StringWalker walker)
+		private void set(int index)
 		{
-			index = MathHelper.clamp(walker.globalIndex() + 1, 0, text.length()); //== globalIndex
-			charIndex = walker.charIndex();
-			lineIndex = walker.lineIndex();
-			x = (int) walker.lineWidth();
-			y = (int) walker.y(); //== 0
-			height = (int) Math.ceil(walker.lineHeight());
+			this.index = MathHelper.clamp(index, 0, text.length());
+			TextLayout layout = guiText.layout();
+			int prev = this.index - 1;
+			lineIndex = layout != null ? layout.lineOf(prev) : 0;
+			charIndex = layout != null ? prev - layout.lineStart(lineIndex) : -1;
+			x = layout == null ? 0 : (int) (prev < 0 ? layout.lineX(0) : layout.endX(prev));
+			y = layout != null ? (int) layout.lineY(lineIndex) : 0;
+			height = layout != null ? (int) Math.ceil(layout.lineHeight(lineIndex) + guiText.getFontOptions().lineSpacing()) : 9;
 			if (height < 9)
 				height = 9;
 
 			//if cursor after a \n, virtually set its position at the beginning of the next line.
-			if (guiText.isMultiLine() && walker.getChar() == '\n')
+			if (guiText.isMultiLine() && prev >= 0 && getText().charAt(prev) == '\n')
 			{
 				x = 0;
 				y += height;
@@ -893,8 +905,9 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 		 */
 		public void fromMouse()
 		{
-			StringWalker walker = guiText.walker();
-			if (!walker.walkToY(mousePosition().y()))
+			TextLayout layout = guiText.layout();
+			int line = layout != null ? layout.lineAtY(mousePosition().y()) : -1;
+			if (line == -1)
 			{
 				jumpToEnd();
 				lastX = x;
@@ -902,10 +915,10 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 			}
 
 			int x = mousePosition().x();
-			walker.walkToX(x);
-			walker = back(walker);
-			int i = walker.globalIndex();
-			if (x > walker.x() + walker.width() / 2)
+			int g = layout.glyphAtX(line, x);
+			int i = g != -1 ? layout.source(g) : layout.lineStart(line);
+			//stay before the new line character
+			if (g != -1 && layout.glyph(g) != '\n' && x > layout.x(g) + layout.width(g) / 2)
 				i++;
 			jumpTo(i);
 			lastX = x;
@@ -918,12 +931,8 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 		 */
 		public void jumpTo(int index)
 		{
-			index = MathHelper.clamp(index, 0, text.length());
-			StringWalker walker = guiText.walker();
-			walker.walkToIndex(index - 1);
-			set(walker);
+			set(index);
 			lastX = x;
-			onCursorUpdated();
 		}
 
 		/**
@@ -959,11 +968,16 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 
 		public void jumpToLineEnd()
 		{
-			StringWalker walker = guiText.walker();
-			walker.walkToIndex(index);
-			walker.walkToEOL();
-			walker = back(walker);
-			set(walker);
+			TextLayout layout = guiText.layout();
+			if (layout == null)
+				return;
+
+			int line = layout.lineOf(index);
+			int end = layout.lineEnd(line);
+			//stay before the new line character
+			if (end > layout.lineStart(line) && getText().charAt(end - 1) == '\n')
+				end--;
+			set(end);
 		}
 
 		/**
@@ -975,7 +989,7 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 			//if (index == 0)
 			//	return;
 
-			if (FontOptions.isFormatting(text.toString(), index - 2))
+			if (FontOptions.isFormatting(getText(), index - 2))
 				jumpBy(-2);
 			else
 				jumpBy(-1);
@@ -990,7 +1004,7 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 			if (index == text.length())
 				return;
 
-			if (FontOptions.isFormatting(text.toString(), index))
+			if (FontOptions.isFormatting(getText(), index))
 				jumpBy(2);
 			else
 				jumpBy(1);
@@ -1003,12 +1017,17 @@ public class UITextField extends UIComponent implements IContentHolder, IClipabl
 			if (lineIndex == guiText.lineCount() - 1 && !backwards)
 				return;
 
-			StringWalker walker = guiText.walker();
-			walker.walkUntil(w -> w.lineIndex() == lineIndex + (backwards ? -1 : 1));
-			walker.walkToX(lastX);
-			//if (guiText.lines().get(walker.lineIndex()).text().length() == 1)
-			//	walker = back(walker);
-			set(walker);
+			TextLayout layout = guiText.layout();
+			if (layout == null)
+				return;
+
+			int line = lineIndex + (backwards ? -1 : 1);
+			int g = layout.glyphAtX(line, lastX);
+			int i = g != -1 ? layout.source(g) : layout.lineStart(line);
+			//stay before the new line character
+			if (g != -1 && layout.glyph(g) != '\n')
+				i++;
+			set(i);
 		}
 
 		/**
@@ -0,0 +1,198 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.client.gui.render;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Cache for the vertices generated by an {@link IGuiRenderer}.<br>
+ * The vertices are captured by the {@link GuiRenderer} relative to an origin, so the cache can be replayed at another position without
+ * being rebuilt. The cache stays valid as long as the same keys are given each frame, in the same order, between {@link #start()} and
+ * {@link #isValid()}.
+ *
+ * @author Ordinastie
+ */
+public class GeometryCache
+{
+	/** Number of ints for a vertex (position, UV and color). */
+	static final int VERTEX_SIZE = 6;
+
+	/** Int keys of the cached geometry. */
+	private int[] keys = new int[8];
+	/** Object keys of the cached geometry, compared by reference. */
+	private Object[] refs = new Object[4];
+	/** Number of int keys stored. */
+	private int keyCount;
+	/** Number of object keys stored. */
+	private int refCount;
+	/** Index of the next int key to check. */
+	private int keyIndex;
+	/** Index of the next object key to check. */
+	private int refIndex;
+	/** Whether a key differs from the stored one. */
+	private boolean changed;
+	/** Whether the captured vertices can be replayed. */
+	private boolean valid;
+
+	/** Captured vertex data. */
+	int[] data = new int[VERTEX_SIZE * 4];
+	/** Texture of each captured quad. */
+	GuiTexture[] textures = new GuiTexture[1];
+	/** Number of captured vertices. */
+	int vertexCount;
+
+	/**
+	 * Starts checking the keys for this {@link GeometryCache}.
+	 *
+	 * @return this {@link GeometryCache}
+	 */
+	public GeometryCache start()
+	{
+		keyIndex = 0;
+		refIndex = 0;
+		changed = false;
+		return this;
+	}
+
+	/**
+	 * Checks an int key against the one stored at the same index.
+	 *
+	 * @param value the value
+	 * @return this {@link GeometryCache}
+	 */
+	public GeometryCache key(int value)
+	{
+		if (keyIndex == keys.length)
+			keys = Arrays.copyOf(keys, keys.length * 2);
+		if (keyIndex >= keyCount || keys[keyIndex] != value)
+			changed = true;
+		keys[keyIndex++] = value;
+		return this;
+	}
+
+	/**
+	 * Checks an object key against the one stored at the same index.
+	 *
+	 * @param value the value
+	 * @return this {@link GeometryCache}
+	 */
+	public GeometryCache key(Object value)
+	{
+		if (refIndex == refs.length)
+			refs = Arrays.copyOf(refs, refs.length * 2);
+		if (refIndex >= refCount || refs[refIndex] != value)
+			changed = true;
+		refs[refIndex++] = value;
+		return this;
+	}
+
+	/**
+	 * Checks whether the cached vertices can be replayed with the keys given since {@link #start()}.<br>
+	 * The keys are stored for the next check.
+	 *
+	 * @return true, if valid
+	 */
+	public boolean isValid()
+	{
+		changed |= keyIndex != keyCount || refIndex != refCount;
+		keyCount = keyIndex;
+		Arrays.fill(refs, refIndex, refCount, null);
+		refCount = refIndex;
+		return valid && !changed;
+	}
+
+	/**
+	 * Calls the consumer for each texture used by the captured vertices, once per run of quads sharing the same texture.
+	 *
+	 * @param consumer the consumer
+	 */
+	public void forEachTexture(Consumer<GuiTexture> consumer)
+	{
+		GuiTexture last = null;
+		for (int i = 0; i < vertexCount / 4; i++)
+		{
+			if (textures[i] != last)
+				consumer.accept(last = textures[i]);
+		}
+	}
+
+	/**
+	 * Marks this {@link GeometryCache} as needing to be rebuilt.
+	 */
+	public void invalidate()
+	{
+		valid = false;
+	}
+
+	/**
+	 * Clears the vertices before a capture.
+	 */
+	void clear()
+	{
+		Arrays.fill(textures, null);
+		vertexCount = 0;
+		valid = false;
+	}
+
+	/**
+	 * Adds a captured vertex.
+	 *
+	 * @param texture the texture
+	 * @param x the x
+	 * @param y the y
+	 * @param z the z
+	 * @param u the u
+	 * @param v the v
+	 * @param color the color (ABGR)
+	 */
+	void add(GuiTexture texture, float x, float y, float z, float u, float v, int color)
+	{
+		int offset = vertexCount * VERTEX_SIZE;
+		if (offset == data.length)
+		{
+			data = Arrays.copyOf(data, data.length * 2);
+			textures = Arrays.copyOf(textures, textures.length * 2);
+		}
+
+		data[offset] = Float.floatToRawIntBits(x);
+		data[offset + 1] = Float.floatToRawIntBits(y);
+		data[offset + 2] = Float.floatToRawIntBits(z);
+		data[offset + 3] = Float.floatToRawIntBits(u);
+		data[offset + 4] = Float.floatToRawIntBits(v);
+		data[offset + 5] = color;
+		textures[vertexCount / 4] = texture;
+		vertexCount++;
+	}
+
+	/**
+	 * Marks the captured vertices as ready to be replayed.
+	 */
+	void validate()
+	{
+		valid = vertexCount % 4 == 0;
+	}
+}
@@ -0,0 +1,506 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.client.gui.render;
+
+import java.util.Arrays;
+
+import org.lwjgl.opengl.GL11;
+
+import net.malisis.core.client.gui.GuiAtlas;
+import net.malisis.core.client.gui.GuiAtlas.Region;
+import net.malisis.core.client.gui.element.IClipable.ClipArea;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+
+/**
+ * Deferred list of the quads drawn by a {@link GuiRenderer} during a frame.<br>
+ * Each quad is recorded with its {@link GuiTexture}, its {@link ClipArea} and its z-index. Quads outside their clip area are discarded and
+ * axis-aligned quads are clipped directly on their vertices, so clipping does not require a scissor change. Textures packed in the
+ * {@link GuiAtlas} are remapped to it.<br>
+ * When flushed, quads are sorted by z-index and grouped into as few draw calls as possible : a quad can join an earlier batch with the
+ * same state as long as it does not overlap any batch drawn in between.
+ *
+ * @author Ordinastie
+ */
+public class GuiBatch
+{
+	/** Number of ints for a vertex (position, UV and color). */
+	private static final int VERTEX_SIZE = 6;
+	/** Number of ints for a quad. */
+	private static final int QUAD_SIZE = 4 * VERTEX_SIZE;
+	/** Maximum number of batches a quad can be moved back across. */
+	private static final int LOOKBACK = 16;
+
+	/** Renderer owning this {@link GuiBatch}. */
+	private final GuiRenderer renderer;
+	/** Atlas used to remap the textures. */
+	private final GuiAtlas atlas;
+
+	/** Vertex data of the quads. */
+	private int[] data = new int[QUAD_SIZE * 256];
+	/** Number of vertices already added for the current quad. */
+	private int vertexCount;
+	/** Number of entries recorded. */
+	private int count;
+	/** Texture of each entry. */
+	private GuiTexture[] textures = new GuiTexture[256];
+	/** Scissor area of each entry, if it could not be clipped on the vertices. */
+	private ClipArea[] scissors = new ClipArea[256];
+	/** Callback of each entry, for entries not drawn as quads. */
+	private Runnable[] callbacks = new Runnable[256];
+	/** Z-index of each entry. */
+	private float[] depths = new float[256];
+	/** Bounds of each entry (x, y, X, Y). */
+	private float[] bounds = new float[256 * 4];
+	/** Next entry in the same batch. */
+	private int[] next = new int[256];
+	/** Entries sorted by z-index. */
+	private long[] order = new long[256];
+
+	/** Number of batches built during the flush. */
+	private int batchCount;
+	/** First entry of each batch. */
+	private int[] batchFirst = new int[64];
+	/** Last entry of each batch. */
+	private int[] batchLast = new int[64];
+	/** Bounds of each batch (x, y, X, Y). */
+	private float[] batchBounds = new float[64 * 4];
+
+	/** Vertex offsets for each corner of the quad being clipped. */
+	private final int[] corners = new int[4];
+	/** Original U of each corner of the quad being clipped. */
+	private final float[] cornerU = new float[4];
+	/** Original V of each corner of the quad being clipped. */
+	private final float[] cornerV = new float[4];
+	/** Original color of each corner of the quad being clipped. */
+	private final int[] cornerColor = new int[4];
+
+	/**
+	 * Instantiates a new {@link GuiBatch}.
+	 *
+	 * @param renderer the renderer
+	 * @param atlas the atlas
+	 */
+	public GuiBatch(GuiRenderer renderer, GuiAtlas atlas)
+	{
+		this.renderer = renderer;
+		this.atlas = atlas;
+	}
+
+	/**
+	 * Checks whether this {@link GuiBatch} has anything to draw.
+	 *
+	 * @return true, if empty
+	 */
+	public boolean isEmpty()
+	{
+		return count == 0;
+	}
+
+	/**
+	 * Adds a vertex to this {@link GuiBatch}. Every fourth vertex completes a quad.
+	 *
+	 * @param texture the texture
+	 * @param clip the clip area
+	 * @param x the x
+	 * @param y the y
+	 * @param z the z
+	 * @param u the u
+	 * @param v the v
+	 * @param color the color (ABGR)
+	 */
+	public void addVertex(GuiTexture texture, ClipArea clip, float x, float y, float z, float u, float v, int color)
+	{
+		ensureCapacity(count + 1);
+		int offset = count * QUAD_SIZE + vertexCount * VERTEX_SIZE;
+		data[offset] = Float.floatToRawIntBits(x);
+		data[offset + 1] = Float.floatToRawIntBits(y);
+		data[offset + 2] = Float.floatToRawIntBits(z);
+		data[offset + 3] = Float.floatToRawIntBits(u);
+		data[offset + 4] = Float.floatToRawIntBits(v);
+		data[offset + 5] = color;
+
+		if (++vertexCount < 4)
+			return;
+
+		vertexCount = 0;
+		addQuad(texture, clip);
+	}
+
+	/**
+	 * Adds an entry drawn by a callback instead of quads, like an itemStack.<br>
+	 * Quads can't join batches across this entry if they overlap its bounds.
+	 *
+	 * @param clip the clip area
+	 * @param x the x
+	 * @param y the y
+	 * @param X the X
+	 * @param Y the Y
+	 * @param z the z
+	 * @param callback the callback
+	 */
+	public void addCallback(ClipArea clip, float x, float y, float X, float Y, float z, Runnable callback)
+	{
+		ClipArea scissor = null;
+		if (clip != null && !clip.noClip())
+		{
+			if (clip.fullClip() || X <= clip.x || x >= clip.X || Y <= clip.y || y >= clip.Y)
+				return;
+			if (x < clip.x || X > clip.X || y < clip.y || Y > clip.Y)
+				scissor = clip;
+		}
+
+		ensureCapacity(count + 1);
+		setEntry(count++, null, scissor, callback, z, x, y, X, Y);
+	}
+
+	/**
+	 * Completes the quad whose vertices were just added.
+	 *
+	 * @param texture the texture
+	 * @param clip the clip area
+	 */
+	private void addQuad(GuiTexture texture, ClipArea clip)
+	{
+		int offset = count * QUAD_SIZE;
+		float x = Float.POSITIVE_INFINITY, y = Float.POSITIVE_INFINITY;
+		float X = Float.NEGATIVE_INFINITY, Y = Float.NEGATIVE_INFINITY;
+		for (int i = offset; i < offset + QUAD_SIZE; i += VERTEX_SIZE)
+		{
+			x = Math.min(x, Float.intBitsToFloat(data[i]));
+			y = Math.min(y, Float.intBitsToFloat(data[i + 1]));
+			X = Math.max(X, Float.intBitsToFloat(data[i]));
+			Y = Math.max(Y, Float.intBitsToFloat(data[i + 1]));
+		}
+
+		ClipArea scissor = null;
+		if (clip != null && !clip.noClip())
+		{
+			if (clip.fullClip() || X <= clip.x || x >= clip.X || Y <= clip.y || y >= clip.Y)
+				return;
+			if (x < clip.x || X > clip.X || y < clip.y || Y > clip.Y)
+			{
+				if (clipVertices(offset, clip, x, y, X, Y))
+				{
+					x = Math.max(x, clip.x);
+					y = Math.max(y, clip.y);
+					X = Math.min(X, clip.X);
+					Y = Math.min(Y, clip.Y);
+				}
+				else
+					scissor = clip;
+			}
+		}
+
+		Region region = atlas.getRegion(texture);
+		if (region != null && remap(offset, region))
+			texture = atlas.getTexture();
+
+		setEntry(count++, texture, scissor, null, Float.intBitsToFloat(data[offset + 2]), x, y, X, Y);
+	}
+
+	private void setEntry(int index, GuiTexture texture, ClipArea scissor, Runnable callback, float z, float x, float y, float X, float Y)
+	{
+		textures[index] = texture;
+		scissors[index] = scissor;
+		callbacks[index] = callback;
+		depths[index] = z;
+		bounds[index * 4] = x;
+		bounds[index * 4 + 1] = y;
+		bounds[index * 4 + 2] = X;
+		bounds[index * 4 + 3] = Y;
+	}
+
+	/**
+	 * Clips an axis-aligned quad to the {@link ClipArea} by moving its vertices and interpolating their UVs and colors.
+	 *
+	 * @param offset the offset of the quad
+	 * @param clip the clip area
+	 * @param x the x of the quad
+	 * @param y the y of the quad
+	 * @param X the X of the quad
+	 * @param Y the Y of the quad
+	 * @return true, if the quad was clipped, false if it's not axis-aligned
+	 */
+	private boolean clipVertices(int offset, ClipArea clip, float x, float y, float X, float Y)
+	{
+		Arrays.fill(corners, -1);
+		for (int i = 0; i < 4; i++)
+		{
+			float vx = Float.intBitsToFloat(data[offset + i * VERTEX_SIZE]);
+			float vy = Float.intBitsToFloat(data[offset + i * VERTEX_SIZE + 1]);
+			int cx = vx == x ? 0 : (vx == X ? 1 : -1);
+			int cy = vy == y ? 0 : (vy == Y ? 2 : -1);
+			if (cx == -1 || cy == -1 || corners[cx + cy] != -1)
+				return false;
+			corners[cx + cy] = offset + i * VERTEX_SIZE;
+		}
+
+		//keep the original corner values before moving the vertices
+		float[] u = cornerU;
+		float[] v = cornerV;
+		int[] color = cornerColor;
+		for (int c = 0; c < 4; c++)
+		{
+			u[c] = Float.intBitsToFloat(data[corners[c] + 3]);
+			v[c] = Float.intBitsToFloat(data[corners[c] + 4]);
+			color[c] = data[corners[c] + 5];
+		}
+
+		for (int c = 0; c < 4; c++)
+		{
+			int i = corners[c];
+			float vx = Math.min(Math.max(Float.intBitsToFloat(data[i]), clip.x), clip.X);
+			float vy = Math.min(Math.max(Float.intBitsToFloat(data[i + 1]), clip.y), clip.Y);
+			float fx = (vx - x) / (X - x);
+			float fy = (vy - y) / (Y - y);
+
+			data[i] = Float.floatToRawIntBits(vx);
+			data[i + 1] = Float.floatToRawIntBits(vy);
+			data[i + 3] = Float.floatToRawIntBits(interpolate(u[0], u[1], u[2], u[3], fx, fy));
+			data[i + 4] = Float.floatToRawIntBits(interpolate(v[0], v[1], v[2], v[3], fx, fy));
+			int newColor = 0;
+			for (int shift = 0; shift < 32; shift += 8)
+			{
+				float channel = interpolate(color[0] >>> shift & 0xFF,
+											color[1] >>> shift & 0xFF,
+											color[2] >>> shift & 0xFF,
+											color[3] >>> shift & 0xFF,
+											fx,
+											fy);
+				newColor |= Math.round(channel) << shift;
+			}
+			data[i + 5] = newColor;
+		}
+		return true;
+	}
+
+	private float interpolate(float a, float b, float c, float d, float fx, float fy)
+	{
+		float top = a + (b - a) * fx;
+		float bottom = c + (d - c) * fx;
+		return top + (bottom - top) * fy;
+	}
+
+	/**
+	 * Remaps the UVs of the quad to the region of the {@link GuiAtlas}.<br>
+	 * Quads with UVs outside of the texture (repeated textures) can't be remapped.
+	 *
+	 * @param offset the offset of the quad
+	 * @param region the region
+	 * @return true, if remapped
+	 */
+	private boolean remap(int offset, Region region)
+	{
+		for (int i = offset; i < offset + QUAD_SIZE; i += VERTEX_SIZE)
+		{
+			float u = Float.intBitsToFloat(data[i + 3]);
+			float v = Float.intBitsToFloat(data[i + 4]);
+			if (u < 0 || u > 1 || v < 0 || v > 1)
+				return false;
+		}
+
+		for (int i = offset; i < offset + QUAD_SIZE; i += VERTEX_SIZE)
+		{
+			data[i + 3] = Float.floatToRawIntBits(region.u(Float.intBitsToFloat(data[i + 3])));
+			data[i + 4] = Float.floatToRawIntBits(region.v(Float.intBitsToFloat(data[i + 4])));
+		}
+		return true;
+	}
+
+	/**
+	 * Draws all the entries recorded and clears this {@link GuiBatch}.
+	 *
+	 * @return the number of draw calls issued
+	 */
+	public int flush()
+	{
+		vertexCount = 0;
+		if (count == 0)
+			return 0;
+
+		//sort by z-index, keeping the submission order for identical z-indexes
+		for (int i = 0; i < count; i++)
+			order[i] = (long) sortableDepth(depths[i]) << 32 | i;
+		Arrays.sort(order, 0, count);
+
+		batchCount = 0;
+		for (int i = 0; i < count; i++)
+		{
+			int entry = (int) order[i];
+			int batch = findBatch(entry);
+			if (batch == -1)
+				newBatch(entry);
+			else
+				addToBatch(batch, entry);
+		}
+
+		GL11.glPushAttrib(GL11.GL_SCISSOR_BIT);
+		for (int b = 0; b < batchCount; b++)
+			drawBatch(batchFirst[b]);
+		GL11.glPopAttrib();
+
+		Arrays.fill(textures, 0, count, null);
+		Arrays.fill(scissors, 0, count, null);
+		Arrays.fill(callbacks, 0, count, null);
+		count = 0;
+		return batchCount;
+	}
+
+	/**
+	 * Finds an existing batch the entry can be added to.
+	 *
+	 * @param entry the entry
+	 * @return the batch index, or -1 if a new batch is needed
+	 */
+	private int findBatch(int entry)
+	{
+		if (callbacks[entry] != null)
+			return -1;
+
+		for (int b = batchCount - 1; b >= Math.max(0, batchCount - LOOKBACK); b--)
+		{
+			if (isSameState(batchFirst[b], entry))
+				return b;
+			//can't be drawn before that batch
+			if (intersects(b, entry))
+				return -1;
+		}
+		return -1;
+	}
+
+	private boolean isSameState(int e1, int e2)
+	{
+		if (callbacks[e1] != null || textures[e1] != textures[e2])
+			return false;
+		ClipArea s1 = scissors[e1], s2 = scissors[e2];
+		if (s1 == s2)
+			return true;
+		return s1 != null && s2 != null && s1.x == s2.x && s1.y == s2.y && s1.X == s2.X && s1.Y == s2.Y;
+	}
+
+	private boolean intersects(int batch, int entry)
+	{
+		int b = batch * 4, e = entry * 4;
+		return batchBounds[b] < bounds[e + 2] && bounds[e] < batchBounds[b + 2] && batchBounds[b + 1] < bounds[e + 3]
+				&& bounds[e + 1] < batchBounds[b + 3];
+	}
+
+	private void newBatch(int entry)
+	{
+		if (batchCount == batchFirst.length)
+		{
+			batchFirst = Arrays.copyOf(batchFirst, batchCount * 2);
+			batchLast = Arrays.copyOf(batchLast, batchCount * 2);
+			batchBounds = Arrays.copyOf(batchBounds, batchCount * 8);
+		}
+
+		batchFirst[batchCount] = entry;
+		batchLast[batchCount] = entry;
+		System.arraycopy(bounds, entry * 4, batchBounds, batchCount * 4, 4);
+		next[entry] = -1;
+		batchCount++;
+	}
+
+	private void addToBatch(int batch, int entry)
+	{
+		next[batchLast[batch]] = entry;
+		next[entry] = -1;
+		batchLast[batch] = entry;
+
+		int b = batch * 4, e = entry * 4;
+		batchBounds[b] = Math.min(batchBounds[b], bounds[e]);
+		batchBounds[b + 1] = Math.min(batchBounds[b + 1], bounds[e + 1]);
+		batchBounds[b + 2] = Math.max(batchBounds[b + 2], bounds[e + 2]);
+		batchBounds[b + 3] = Math.max(batchBounds[b + 3], bounds[e + 3]);
+	}
+
+	/**
+	 * Draws the batch starting with the specified entry.
+	 *
+	 * @param entry the first entry
+	 */
+	private void drawBatch(int entry)
+	{
+		if (scissors[entry] != null)
+		{
+			GL11.glEnable(GL11.GL_SCISSOR_TEST);
+			renderer.scissor(scissors[entry]);
+		}
+		else
+			GL11.glDisable(GL11.GL_SCISSOR_TEST);
+
+		if (callbacks[entry] != null)
+		{
+			callbacks[entry].run();
+			return;
+		}
+
+		Minecraft.getMinecraft().getTextureManager().bindTexture(textures[entry].getResourceLocation());
+		GuiRenderer.BUFFER.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR);
+		for (; entry != -1; entry = next[entry])
+		{
+			for (int i = entry * QUAD_SIZE; i < (entry + 1) * QUAD_SIZE; i += VERTEX_SIZE)
+			{
+				int color = data[i + 5];
+				GuiRenderer.BUFFER	.pos(Float.intBitsToFloat(data[i]), Float.intBitsToFloat(data[i + 1]), Float.intBitsToFloat(data[i + 2]))
+									.tex(Float.intBitsToFloat(data[i + 3]), Float.intBitsToFloat(data[i + 4]))
+									.color(color & 0xFF, color >>> 8 & 0xFF, color >>> 16 & 0xFF, color >>> 24)
+									.endVertex();
+			}
+		}
+		Tessellator.getInstance().draw();
+	}
+
+	/**
+	 * Converts the depth so that the ordering of its bits matches the ordering of the floats.
+	 *
+	 * @param depth the depth
+	 * @return the int
+	 */
+	private static int sortableDepth(float depth)
+	{
+		int bits = Float.floatToIntBits(depth);
+		return bits ^ (bits >> 31 & 0x7FFFFFFF);
+	}
+
+	private void ensureCapacity(int size)
+	{
+		if (size <= textures.length)
+			return;
+
+		int newSize = Math.max(size, textures.length * 2);
+		data = Arrays.copyOf(data, newSize * QUAD_SIZE);
+		textures = Arrays.copyOf(textures, newSize);
+		scissors = Arrays.copyOf(scissors, newSize);
+		callbacks = Arrays.copyOf(callbacks, newSize);
+		depths = Arrays.copyOf(depths, newSize);
+		bounds = Arrays.copyOf(bounds, newSize * 4);
+		next = Arrays.copyOf(next, newSize);
+		order = Arrays.copyOf(order, newSize);
+	}
+}
@@ -24,11 +24,16 @@
 
 package net.malisis.core.client.gui.render;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import org.apache.logging.log4j.util.Strings;
 import org.lwjgl.opengl.GL11;
 
+import net.malisis.core.client.gui.GuiAtlas;
 import net.malisis.core.client.gui.MalisisGui;
 import net.malisis.core.client.gui.component.UIComponent;
+import net.malisis.core.client.gui.element.IClipable;
 import net.malisis.core.client.gui.element.IClipable.ClipArea;
 import net.malisis.core.util.Utils;
 import net.minecraft.client.Minecraft;
@@ -46,7 +51,9 @@ import net.minecraft.util.text.Style;
 import net.minecraft.util.text.TextFormatting;
 
 /**
- * Renderer to use for {@link MalisisGui}.
+ * Renderer to use for {@link MalisisGui}.<br>
+ * By default, the rendering is batched : quads are recorded in a {@link GuiBatch} and drawn at the end of the frame, or when
+ * {@link #flush()} is called. Code changing the GL state directly while drawing should call {@link #flush()} before and after.
  *
  * @author Ordinastie
  *
@@ -55,6 +62,8 @@ public class GuiRenderer
 {
 	/** Currently used buffer. */
 	public static final BufferBuilder BUFFER = Tessellator.getInstance().getBuffer();
+	/** Atlas shared by all the GUIs. */
+	public static final GuiAtlas ATLAS = new GuiAtlas();
 
 	/** RenderItem used to draw itemStacks. */
 	public static RenderItem itemRenderer = Minecraft.getMinecraft().getRenderItem();
@@ -72,6 +81,25 @@ public class GuiRenderer
 	/** Progression of current tick. */
 	private float partialTick = 0;
 
+	/** Whether the rendering is batched. */
+	private boolean batched = true;
+	/** Quads recorded for the current frame. */
+	private final GuiBatch batch = new GuiBatch(this, ATLAS);
+	/** Currently applied clip area. */
+	private ClipArea clipArea = IClipable.NOCLIP;
+	/** Clip areas to restore when clipping ends. */
+	private final Deque<ClipArea> clipAreas = new ArrayDeque<>();
+	/** Draw calls issued during the current frame. */
+	private int drawCalls;
+	/** Draw calls issued during the last frame. */
+	private int lastDrawCalls;
+	/** Cache currently capturing the vertices. */
+	private GeometryCache capture;
+	/** Origin of the vertices captured. */
+	private float captureX, captureY;
+	/** Whether the current capture can be replayed. */
+	private boolean captureCacheable;
+
 	//	private static GuiShape rectangle = new SimpleGuiShape();
 
 	/**
@@ -162,6 +190,9 @@ public class GuiRenderer
 	public void setup(float partialTick)
 	{
 		this.partialTick = partialTick;
+		drawCalls = 0;
+		if (isBatched())
+			ATLAS.update();
 
 		currentTexture = null;
 		bindDefaultTexture();
@@ -188,7 +219,14 @@ public class GuiRenderer
 	 */
 	public void clean()
 	{
-		draw();
+		if (isBatched())
+			flush();
+		else
+			draw();
+		lastDrawCalls = drawCalls;
+		capture = null;
+		clipArea = IClipable.NOCLIP;
+		clipAreas.clear();
 
 		GlStateManager.popMatrix();
 		GlStateManager.enableDepth();
@@ -199,7 +237,28 @@ public class GuiRenderer
 	 */
 	public boolean isBatched()
 	{
-		return false;
+		return batched;
+	}
+
+	/**
+	 * Sets whether the GUI should be drawn in a batch.<br>
+	 * Should not be changed while rendering.
+	 *
+	 * @param batched whether to batch the rendering
+	 */
+	public void setBatched(boolean batched)
+	{
+		this.batched = batched;
+	}
+
+	/**
+	 * Gets the number of draw calls issued during the last frame.
+	 *
+	 * @return the draw calls
+	 */
+	public int getDrawCalls()
+	{
+		return lastDrawCalls;
 	}
 
 	/**
@@ -251,8 +310,132 @@ public class GuiRenderer
 	 */
 	public void draw()
 	{
-		if (!isBatched() && isDrawing())
-			Tessellator.getInstance().draw();
+		if (isBatched() || !isDrawing())
+			return;
+
+		if (BUFFER.getVertexCount() > 0)
+			drawCalls++;
+		Tessellator.getInstance().draw();
+	}
+
+	/**
+	 * Draws everything submitted so far.<br>
+	 * When batched, the pending quads are drawn. Otherwise, behaves like {@link #next()}.
+	 */
+	public void flush()
+	{
+		if (!isBatched())
+		{
+			next();
+			return;
+		}
+
+		drawCalls += batch.flush();
+	}
+
+	/**
+	 * Adds a vertex to draw with the current texture.
+	 *
+	 * @param x the x
+	 * @param y the y
+	 * @param z the z
+	 * @param u the u
+	 * @param v the v
+	 * @param color the color (RGB)
+	 * @param alpha the alpha
+	 */
+	public void addVertex(float x, float y, float z, float u, float v, int color, int alpha)
+	{
+		int r = (color >> 16) & 0xFF;
+		int g = (color >> 8) & 0xFF;
+		int b = color & 0xFF;
+		addPackedVertex(x, y, z, u, v, (alpha << 24) | (b << 16) | (g << 8) | r);
+	}
+
+	/**
+	 * Adds a vertex to draw with the current texture.
+	 *
+	 * @param x the x
+	 * @param y the y
+	 * @param z the z
+	 * @param u the u
+	 * @param v the v
+	 * @param color the color (ABGR)
+	 */
+	private void addPackedVertex(float x, float y, float z, float u, float v, int color)
+	{
+		if (capture != null)
+			capture.add(currentTexture, x - captureX, y - captureY, z, u, v, color);
+
+		if (isBatched())
+			batch.addVertex(currentTexture, clipArea, x, y, z, u, v, color);
+		else
+			BUFFER.pos(x, y, z).tex(u, v).color(color & 0xFF, color >>> 8 & 0xFF, color >>> 16 & 0xFF, color >>> 24).endVertex();
+	}
+
+	/**
+	 * Starts capturing the vertices added into the {@link GeometryCache}, relative to the specified origin.<br>
+	 * Captures can't be nested.
+	 *
+	 * @param cache the cache
+	 * @param x the x origin
+	 * @param y the y origin
+	 * @return true, if the capture started
+	 */
+	public boolean startCapture(GeometryCache cache, float x, float y)
+	{
+		if (capture != null)
+			return false;
+
+		cache.clear();
+		capture = cache;
+		captureX = x;
+		captureY = y;
+		captureCacheable = true;
+		return true;
+	}
+
+	/**
+	 * Prevents the vertices currently captured from being replayed, for geometry that changes every frame.
+	 */
+	public void preventCaching()
+	{
+		captureCacheable = false;
+	}
+
+	/**
+	 * Ends the current capture.
+	 */
+	public void endCapture()
+	{
+		if (capture != null && captureCacheable)
+			capture.validate();
+		capture = null;
+	}
+
+	/**
+	 * Draws the vertices of the {@link GeometryCache} at the specified origin.
+	 *
+	 * @param cache the cache
+	 * @param x the x origin
+	 * @param y the y origin
+	 */
+	public void replay(GeometryCache cache, float x, float y)
+	{
+		int[] data = cache.data;
+		for (int v = 0; v < cache.vertexCount; v++)
+		{
+			if (v % 4 == 0)
+				bindTexture(cache.textures[v / 4]);
+
+			int i = v * GeometryCache.VERTEX_SIZE;
+			addPackedVertex(Float.intBitsToFloat(data[i]) + x,
+							Float.intBitsToFloat(data[i + 1]) + y,
+							Float.intBitsToFloat(data[i + 2]),
+							Float.intBitsToFloat(data[i + 3]),
+							Float.intBitsToFloat(data[i + 4]),
+							data[i + 5]);
+		}
 	}
 
 	/**
@@ -279,7 +462,8 @@ public class GuiRenderer
 			return;
 
 		next();
-		Minecraft.getMinecraft().getTextureManager().bindTexture(texture.getResourceLocation());
+		if (!isBatched())
+			Minecraft.getMinecraft().getTextureManager().bindTexture(texture.getResourceLocation());
 		//System.out.println(currentComponent + " // Bound " + texture.getResourceLocation());
 
 		currentTexture = texture;
@@ -295,6 +479,8 @@ public class GuiRenderer
 
 	public void forceRebind()
 	{
+		if (isBatched() || currentTexture == null)
+			return;
 		Minecraft.getMinecraft().getTextureManager().bindTexture(currentTexture.getResourceLocation());
 	}
 
@@ -437,7 +623,41 @@ public class GuiRenderer
 		if (!Strings.isEmpty(formatStr))
 			label = formatStr + label;
 
-		Tessellator.getInstance().draw();
+		if (isBatched())
+		{
+			//drawn with the quads, after the ones below it
+			int ix = x, iy = y;
+			float iz = itemRenderer.zLevel;
+			String l = label;
+			FontRenderer fr = fontRenderer;
+			batch.addCallback(clipArea, x, y, x + 18, y + 18, iz, () -> renderItemStack(itemStack, ix, iy, iz, l, fr));
+			itemRenderer.zLevel = z;
+			return;
+		}
+
+		draw();
+		renderItemStack(itemStack, x, y, itemRenderer.zLevel, label, fontRenderer);
+
+		itemRenderer.zLevel = z;
+		currentTexture = null;
+		bindDefaultTexture();
+		startDrawing();
+	}
+
+	/**
+	 * Renders the itemStack with the {@link RenderItem}.
+	 *
+	 * @param itemStack the item stack
+	 * @param x the x
+	 * @param y the y
+	 * @param z the z level
+	 * @param label the label
+	 * @param fontRenderer the font renderer
+	 */
+	private void renderItemStack(ItemStack itemStack, int x, int y, float z, String label, FontRenderer fontRenderer)
+	{
+		float zLevel = itemRenderer.zLevel;
+		itemRenderer.zLevel = z;
 
 		//RenderHelper.disableStandardItemLighting();
 		RenderHelper.enableGUIStandardItemLighting();
@@ -449,10 +669,8 @@ public class GuiRenderer
 		RenderHelper.disableStandardItemLighting();
 		//GlStateManager.enableBlend(); //Forge commented blend reenabling
 
-		itemRenderer.zLevel = z;
-		currentTexture = null;
-		bindDefaultTexture();
-		startDrawing();
+		itemRenderer.zLevel = zLevel;
+		drawCalls++;
 	}
 
 	/**
@@ -489,9 +707,26 @@ public class GuiRenderer
 		if (area.noClip())
 			return;
 
+		if (isBatched())
+		{
+			//clipped when recorded by the batch
+			clipAreas.push(clipArea);
+			clipArea = area;
+			return;
+		}
+
 		GL11.glPushAttrib(GL11.GL_SCISSOR_BIT);
 		GL11.glEnable(GL11.GL_SCISSOR_TEST);
+		scissor(area);
+	}
 
+	/**
+	 * Sets the scissor box to the {@link ClipArea}.
+	 *
+	 * @param area the area
+	 */
+	void scissor(ClipArea area)
+	{
 		int f = ignoreScale ? 1 : scaleFactor;
 		int x = area.x * f;
 		int y = Minecraft.getMinecraft().displayHeight - (area.y + area.height()) * f;
@@ -510,6 +745,12 @@ public class GuiRenderer
 		if (area.noClip())
 			return;
 
+		if (isBatched())
+		{
+			clipArea = clipAreas.isEmpty() ? IClipable.NOCLIP : clipAreas.pop();
+			return;
+		}
+
 		next();
 		GL11.glDisable(GL11.GL_SCISSOR_TEST);
 		GL11.glPopAttrib();
@@ -51,6 +51,8 @@ public class GuiTexture implements ISize
 	protected ResourceLocation resourceLocation;
 	protected int width;
 	protected int height;
+	/** Image this {@link GuiTexture} was created from, if any. */
+	protected BufferedImage image;
 
 	/**
 	 * Instantiates a new {@link GuiTexture}.
@@ -88,6 +90,7 @@ public class GuiTexture implements ISize
 	public GuiTexture(BufferedImage image, String name)
 	{
 		DynamicTexture dynTex = new DynamicTexture(image);
+		this.image = image;
 		width = image.getWidth();
 		height = image.getHeight();
 		resourceLocation = Minecraft.getMinecraft().getTextureManager().getDynamicTextureLocation(name, dynTex);
@@ -169,11 +172,22 @@ public class GuiTexture implements ISize
 		return this.resourceLocation;
 	}
 
+	/**
+	 * Gets the image this {@link GuiTexture} was created from.
+	 *
+	 * @return the image, or null if the texture was created from a {@link ResourceLocation}
+	 */
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+
 	/**
 	 * Deletes this texture from the {@link TextureManager}.
 	 */
 	public void delete()
 	{
+		GuiRenderer.ATLAS.remove(this);
 		Minecraft.getMinecraft().getTextureManager().deleteTexture(resourceLocation);
 	}
 
@@ -44,6 +44,7 @@ import net.malisis.core.client.gui.element.size.ISizeBuilder;
 import net.malisis.core.client.gui.element.size.Size;
 import net.malisis.core.client.gui.element.size.Size.ISize;
 import net.malisis.core.client.gui.element.size.Size.ISized;
+import net.malisis.core.client.gui.render.GeometryCache;
 import net.malisis.core.client.gui.render.GuiIcon;
 import net.malisis.core.client.gui.render.GuiRenderer;
 import net.malisis.core.client.gui.render.IGuiRenderer;
@@ -66,6 +67,8 @@ public class GuiShape implements IGuiRenderer, IPositioned, ISized, IChild<UICom
 	private final ToIntBiFunction<FacePosition, VertexPosition> alpha;
 	private final Supplier<GuiIcon> icon;
 	private final int border;
+	/** Vertices generated for the last render. */
+	private final GeometryCache cache = new GeometryCache();
 
 	private GuiShape(UIComponent parent, Function<GuiShape, IPosition> position, IntSupplier zIndex, Function<GuiShape, ISize> size, ToIntBiFunction<FacePosition, VertexPosition> color, ToIntBiFunction<FacePosition, VertexPosition> alpha, Supplier<GuiIcon> icon, int border, boolean fixed)
 	{
@@ -137,19 +140,53 @@ public class GuiShape implements IGuiRenderer, IPositioned, ISized, IChild<UICom
 
 	public void render(GuiRenderer renderer, IPosition position, ISize size)
 	{
-		icon.get().bind(renderer);
+		GuiIcon icon = this.icon.get();
+		int x = position.x();
+		int y = position.y();
+		if (isCached(icon, size))
+		{
+			renderer.replay(cache, x, y);
+			return;
+		}
+
+		icon.bind(renderer);
+		boolean capture = renderer.startCapture(cache, x, y);
+		for (FacePosition fp : FacePosition.VALUES)
+			for (VertexPosition vp : VertexPosition.VALUES)
+				addVertexData(renderer, fp, vp, position, size);
+		if (capture)
+			renderer.endCapture();
+	}
+
+	/**
+	 * Checks whether the vertices generated for the last render can be reused.<br>
+	 * The position is not part of the check, vertices are translated when replayed.
+	 *
+	 * @param icon the icon
+	 * @param size the size
+	 * @return true, if cached
+	 */
+	private boolean isCached(GuiIcon icon, ISize size)
+	{
+		cache.start().key(icon).key(size.width()).key(size.height()).key(getZIndex());
 		for (FacePosition fp : FacePosition.VALUES)
+		{
+			if (border == 0 && fp != FacePosition.CENTER)
+				continue;
 			for (VertexPosition vp : VertexPosition.VALUES)
-				addVertexData(fp, vp, position, size);
+				cache.key(getColor(fp, vp)).key(getAlpha(fp, vp));
+		}
+		return cache.isValid();
 	}
 
 	/**
-	 * Gets the vertex data for this {@link Vertex}.
+	 * Adds the vertex data for this {@link Vertex} to the renderer.
 	 *
+	 * @param renderer the renderer
 	 * @param fp the fp
 	 * @param vp the position
 	 */
-	public void addVertexData(FacePosition fp, VertexPosition vp, IPosition position, ISize size)
+	public void addVertexData(GuiRenderer renderer, FacePosition fp, VertexPosition vp, IPosition position, ISize size)
 	{
 		GuiIcon icon = this.icon.get();
 
@@ -180,18 +217,7 @@ public class GuiShape implements IGuiRenderer, IPositioned, ISized, IChild<UICom
 			v = border > 0 ? interpolatedV(fp, vp, icon) : icon.interpolatedV(y);
 		}
 
-		int color = getColor(fp, vp);
-		int r = (color >> 16) & 0xFF;
-		int g = (color >> 8) & 0xFF;
-		int b = (color) & 0xFF;
-		color = (b << 16) + (g << 8) + r + (getAlpha(fp, vp) << 24);
-
-		GuiRenderer.BUFFER.addVertexData(new int[] {	Float.floatToRawIntBits(position.x() + x),
-														Float.floatToRawIntBits(position.y() + y),
-														Float.floatToRawIntBits(getZIndex()),
-														Float.floatToRawIntBits(u),
-														Float.floatToRawIntBits(v),
-														color });
+		renderer.addVertex(position.x() + x, position.y() + y, getZIndex(), u, v, getColor(fp, vp), getAlpha(fp, vp));
 	}
 
 	private float interpolatedU(FacePosition fp, VertexPosition vp, GuiIcon icon)
@@ -49,17 +49,19 @@ import net.malisis.core.client.gui.element.position.Position;
 import net.malisis.core.client.gui.element.position.Position.IPosition;
 import net.malisis.core.client.gui.element.size.Size;
 import net.malisis.core.client.gui.element.size.Size.ISize;
+import net.malisis.core.client.gui.render.GeometryCache;
 import net.malisis.core.client.gui.render.GuiRenderer;
 import net.malisis.core.client.gui.render.IGuiRenderer;
 import net.malisis.core.renderer.font.FontOptions;
+import net.malisis.core.renderer.font.MalisisFont;
 import net.malisis.core.renderer.font.StringWalker;
+import net.malisis.core.renderer.font.TextLayout;
 import net.malisis.core.util.cacheddata.CachedData;
 import net.malisis.core.util.cacheddata.FixedData;
 import net.malisis.core.util.cacheddata.ICachedData;
 import net.malisis.core.util.cacheddata.IntCachedData;
 import net.malisis.core.util.cacheddata.IntCachedData.IntFixedData;
 import net.minecraft.client.resources.I18n;
-import net.minecraft.util.math.MathHelper;
 
 /**
  * The Class GuiString represents a String to be used and displayed in a GUI.<br>
@@ -107,6 +109,12 @@ public class GuiText implements IGuiRenderer, IContent, IChild<UIComponent>
 
 	private boolean buildLines = true;
 	private boolean buildCache = true;
+	/** Layout of the text, shared with the texts with the same content and options. */
+	private TextLayout layout;
+	/** Incremented each time the lines are rebuilt. */
+	private int linesVersion = 0;
+	/** Vertices generated for the last render. */
+	private final GeometryCache geometry = new GeometryCache();
 
 	private UIComponent parent;
 
@@ -224,6 +232,17 @@ public class GuiText implements IGuiRenderer, IContent, IChild<UIComponent>
 		return lines;
 	}
 
+	/**
+	 * Gets the {@link TextLayout} of this text.
+	 *
+	 * @return the layout, or null if the text is empty
+	 */
+	public TextLayout layout()
+	{
+		update();
+		return StringUtils.isEmpty(cache) ? null : layout;
+	}
+
 	public int length()
 	{
 		update();
@@ -298,7 +317,8 @@ public class GuiText implements IGuiRenderer, IContent, IChild<UIComponent>
 	public void setFontOptions(FontOptions fontOptions)
 	{
 		checkNotNull(fontOptions);
-		buildLines = this.fontOptions.isBold() != fontOptions.isBold() || this.fontOptions.getFontScale() != fontOptions.getFontScale();
+		//styles of the layout depend on the options
+		buildLines |= this.fontOptions != fontOptions;
 		this.fontOptions = fontOptions;
 	}
 
@@ -405,74 +425,24 @@ public class GuiText implements IGuiRenderer, IContent, IChild<UIComponent>
 	}
 
 	/**
-	 * Splits the cache in multiple lines to fit in the {@link #wrapSize}.
-	 *
-	 * @param str the str
+	 * Splits the cache in multiple lines to fit in the {@link #wrapSize}.<br>
+	 * The lines are taken from the {@link TextLayout} of the text, which reuses the paragraphs of the previous layout that did not change.
 	 */
 	private void buildLines()
 	{
 		wrapSize.update();
 		buildLines |= wrapSize.hasChanged();
+		buildLines |= layout == null || !layout.isValid(fontOptions.getFont());
 		if (!buildLines)
 			return;
 
+		layout = TextLayout.of(cache, fontOptions, multiLine ? getWrapSize() : -1, multiLine, literal, layout);
 		lines.clear();
-
-		String str = cache.replace("\r?(?<=\n)", "\n");
-
-		StringBuilder line = new StringBuilder();
-		StringBuilder word = new StringBuilder();
-		//FontRenderOptions fro = new FontRenderOptions();
-
-		int wrapWidth = multiLine ? getWrapSize() : -1;
-		float lineWidth = 0;
-		float wordWidth = 0;
-		float lineHeight = 0;
-
-		StringWalker walker = new StringWalker(str, fontOptions);
-		walker.skipChars(false);
-		walker.applyStyles(true);
-		while (walker.walk())
-		{
-			char c = walker.getChar();
-			lineWidth += walker.width();
-			wordWidth += walker.width();
-			lineHeight = Math.max(lineHeight, walker.height());
-
-			word.append(c);
-
-			//we just ended a new word, add it to the current line
-			if (Character.isWhitespace(c) || c == '-' || c == '.')
-			{
-				line.append(word);
-				word.setLength(0);
-				wordWidth = 0;
-			}
-			if (isMultiLine() && ((wrapWidth > 0 && lineWidth >= wrapWidth) || c == '\n'))
-			{
-				//the first word on the line is too large, split anyway
-				if (line.length() == 0)
-				{
-					line.append(word);
-					word.setLength(0);
-					wordWidth = 0;
-				}
-
-				//remove current word from last line
-				lineWidth -= wordWidth;
-
-				//add the new line
-				lines.add(new LineInfo(line.toString(), MathHelper.ceil(lineWidth), MathHelper.ceil(lineHeight), 0));
-				line.setLength(0);
-
-				lineWidth = wordWidth;
-			}
-		}
-
-		line.append(word);
-		lines.add(new LineInfo(line.toString(), MathHelper.ceil(lineWidth), MathHelper.ceil(lineHeight), 0));
+		for (int i = 0; i < layout.lineCount(); i++)
+			lines.add(new LineInfo(layout.lineText(i), layout.lineWidth(i), layout.lineHeight(i), 0));
 
 		buildLines = false;
+		linesVersion++;
 		updateSize();
 	}
 
@@ -499,6 +469,49 @@ public class GuiText implements IGuiRenderer, IContent, IChild<UIComponent>
 		render(renderer, x, y, z, area);
 	}
 
+	/**
+	 * Gives the keys for the {@link GeometryCache} of this {@link GuiText}.
+	 *
+	 * @param font the font
+	 * @param x the x
+	 * @param y the y
+	 * @param z the z
+	 * @param area the area
+	 * @return the geometry cache
+	 */
+	private GeometryCache keyGeometry(MalisisFont font, int x, int y, int z, ClipArea area)
+	{
+		geometry.start().key(linesVersion).key(z).key(font);
+		//key on the resolved values, predicated options change them without changing the reference
+		geometry.key(fontOptions.getColor()).key(fontOptions.getShadowColor()).key(Float.floatToIntBits(fontOptions.getFontScale()));
+		geometry.key(styleFlags());
+		//the clip area is part of the key, relative to the origin, so culling still applies to captured text
+		if (area == null || area.noClip())
+			geometry.key(Integer.MIN_VALUE).key(0).key(0).key(0);
+		else
+			geometry.key(area.x - x).key(area.y - y).key(area.X - x).key(area.Y - y);
+		font.keyGlyphPages(geometry);
+		return geometry;
+	}
+
+	/**
+	 * Packs the resolved style of the {@link FontOptions} into a single key for the {@link GeometryCache}.
+	 *
+	 * @return the flags
+	 */
+	private int styleFlags()
+	{
+		int flags = 0;
+		flags |= fontOptions.isBold() ? 1 : 0;
+		flags |= fontOptions.isItalic() ? 2 : 0;
+		flags |= fontOptions.isUnderline() ? 4 : 0;
+		flags |= fontOptions.isStrikethrough() ? 8 : 0;
+		flags |= fontOptions.isObfuscated() ? 16 : 0;
+		flags |= fontOptions.hasShadow() ? 32 : 0;
+		flags |= fontOptions.isRightAligned() ? 64 : 0;
+		return flags;
+	}
+
 	/**
 	 * Renders lines between startLine and endLine of this {@link GuiText} at the coordinates.
 	 *
@@ -513,7 +526,21 @@ public class GuiText implements IGuiRenderer, IContent, IChild<UIComponent>
 		if (StringUtils.isEmpty(cache))
 			return;
 
-		fontOptions.getFont().render(renderer, this, x, y, z, fontOptions, area);
+		MalisisFont font = fontOptions.getFont();
+		if (keyGeometry(font, x, y, z, area).isValid())
+		{
+			renderer.replay(geometry, x, y);
+			font.markGlyphPagesUsed(geometry);
+		}
+		else if (renderer.startCapture(geometry, x, y))
+		{
+			font.render(renderer, this, x, y, z, fontOptions, area);
+			renderer.endCapture();
+			//store the keys with the glyph pages of the new capture
+			keyGeometry(font, x, y, z, area).isValid();
+		}
+		else
+			font.render(renderer, this, x, y, z, fontOptions, area);
 		renderer.forceRebind();
 	}
 
@@ -24,6 +24,8 @@
 
 package net.malisis.core.inventory;
 
+import java.util.List;
+
 public abstract class InventoryEvent
 {
 	private MalisisInventory inventory;
@@ -57,6 +59,26 @@ public abstract class InventoryEvent
 		}
 	}
 
+	/**
+	 * Event fired once per {@link MalisisInventory} when an {@link InventoryTransaction} is committed, instead of one
+	 * {@link SlotChanged} per slot.
+	 */
+	public static class SlotsChanged extends InventoryEvent
+	{
+		private List<MalisisSlot> slots;
+
+		public SlotsChanged(MalisisInventory inventory, List<MalisisSlot> slots)
+		{
+			super(inventory);
+			this.slots = slots;
+		}
+
+		public List<MalisisSlot> getSlots()
+		{
+			return this.slots;
+		}
+	}
+
 	/**
 	 * Event fired when a {@link MalisisInventory} is opened.
 	 */
@@ -0,0 +1,422 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.malisis.core.inventory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.malisis.core.util.ItemUtils;
+import net.minecraft.item.ItemStack;
+
+/**
+ * Batch of inserts and extracts across one or more {@link MalisisInventory inventories}, applied atomically.<br>
+ * Every operation is validated against the state the slots would have after the previous operations, without modifying anything. If
+ * one operation cannot be done entirely, the transaction becomes invalid and {@link #commit()} will not apply any of them.<br>
+ * On commit, each {@link MalisisInventory} fires a single {@link InventoryEvent.SlotsChanged} event for all its modified slots.
+ *
+ * @author Ordinastie
+ *
+ */
+public class InventoryTransaction
+{
+	/** Pending state of the slots touched by this transaction. */
+	private final Map<MalisisSlot, PendingSlot> pending = new LinkedHashMap<>();
+	/** Whether all the operations so far are possible. */
+	private boolean valid = true;
+	/** Whether this transaction has already been committed. */
+	private boolean committed = false;
+
+	/**
+	 * Checks whether all the operations of this {@link InventoryTransaction} can be done.
+	 *
+	 * @return true, if valid
+	 */
+	public boolean isValid()
+	{
+		return valid;
+	}
+
+	private PendingSlot pending(MalisisSlot slot)
+	{
+		return pending.computeIfAbsent(slot, PendingSlot::new);
+	}
+
+	private boolean invalidate()
+	{
+		valid = false;
+		return false;
+	}
+
+	/**
+	 * Adds the insertion of the full <b>itemStack</b> into the <b>slot</b>.
+	 *
+	 * @param slot the slot
+	 * @param itemStack the item stack
+	 * @return true, if the itemStack fits
+	 */
+	public boolean insert(MalisisSlot slot, ItemStack itemStack)
+	{
+		return insert(slot, itemStack, itemStack.getCount());
+	}
+
+	/**
+	 * Adds the insertion of <b>amount</b> of <b>itemStack</b> into the <b>slot</b>.<br>
+	 * <b>itemStack</b> is only used as a template and is not modified.
+	 *
+	 * @param slot the slot
+	 * @param itemStack the item stack
+	 * @param amount the amount
+	 * @return true, if the amount fits
+	 */
+	public boolean insert(MalisisSlot slot, ItemStack itemStack, int amount)
+	{
+		if (!valid || itemStack.isEmpty() || amount <= 0)
+			return invalidate();
+
+		PendingSlot ps = pending(slot);
+		if (ps.getInsertableAmount(itemStack, amount) < amount)
+			return invalidate();
+
+		ps.add(itemStack, amount);
+		return true;
+	}
+
+	/**
+	 * Adds the insertion of the full <b>itemStack</b> into the <b>inventory</b>, filling the matching stacks first, then the empty slots.
+	 *
+	 * @param inventory the inventory
+	 * @param itemStack the item stack
+	 * @return true, if the itemStack fits
+	 */
+	public boolean insert(MalisisInventory inventory, ItemStack itemStack)
+	{
+		return insert(inventory, itemStack, itemStack.getCount());
+	}
+
+	/**
+	 * Adds the insertion of <b>amount</b> of <b>itemStack</b> into the <b>inventory</b>, filling the matching stacks first, then the empty
+	 * slots.<br>
+	 * <b>itemStack</b> is only used as a template and is not modified.
+	 *
+	 * @param inventory the inventory
+	 * @param itemStack the item stack
+	 * @param amount the amount
+	 * @return true, if the amount fits
+	 */
+	public boolean insert(MalisisInventory inventory, ItemStack itemStack, int amount)
+	{
+		return insert(inventory, itemStack, amount, null);
+	}
+
+	private boolean insert(MalisisInventory inventory, ItemStack itemStack, int amount, MalisisSlot exclude)
+	{
+		if (!valid || itemStack.isEmpty() || amount <= 0)
+			return invalidate();
+
+		List<PendingSlot> slots = new ArrayList<>();
+		List<Integer> amounts = new ArrayList<>();
+		int remaining = amount;
+
+		//slots already touched by this transaction, holding the same item
+		for (PendingSlot ps : pending.values())
+		{
+			if (remaining == 0)
+				break;
+			if (ps.slot.getInventory() != inventory || ps.slot == exclude || ps.count == 0 || ps.slot.isOutputSlot())
+				continue;
+			int n = ps.getInsertableAmount(itemStack, remaining);
+			if (n > 0)
+			{
+				slots.add(ps);
+				amounts.add(n);
+				remaining -= n;
+			}
+		}
+
+		//untouched slots holding the same item, then untouched empty slots
+		SlotIndex index = inventory.getSlotIndex();
+		remaining = plan(inventory, index.getSlots(itemStack), itemStack, remaining, slots, amounts);
+		remaining = plan(inventory, index.getFreeSlots(), itemStack, remaining, slots, amounts);
+
+		//empty slots emptied by this transaction
+		for (PendingSlot ps : pending.values())
+		{
+			if (remaining == 0)
+				break;
+			if (ps.slot.getInventory() != inventory || ps.slot == exclude || ps.count != 0 || ps.slot.isOutputSlot() || slots.contains(ps))
+				continue;
+			int n = ps.getInsertableAmount(itemStack, remaining);
+			if (n > 0)
+			{
+				slots.add(ps);
+				amounts.add(n);
+				remaining -= n;
+			}
+		}
+
+		if (remaining > 0)
+			return invalidate();
+
+		for (int i = 0; i < slots.size(); i++)
+			slots.get(i).add(itemStack, amounts.get(i));
+		return true;
+	}
+
+	private int plan(MalisisInventory inventory, BitSet set, ItemStack itemStack, int remaining, List<PendingSlot> slots, List<Integer> amounts)
+	{
+		//copy the set, as the index changes when queried again
+		set = (BitSet) set.clone();
+		for (int i = set.nextSetBit(0); i >= 0 && remaining > 0; i = set.nextSetBit(i + 1))
+		{
+			MalisisSlot slot = inventory.getSlot(i);
+			if (pending.containsKey(slot) || slot.isOutputSlot())
+				continue;
+			int n = slot.getInsertableAmount(itemStack, remaining);
+			if (n > 0)
+			{
+				slots.add(pending(slot));
+				amounts.add(n);
+				remaining -= n;
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Adds the extraction of <b>amount</b> items from the <b>slot</b>.
+	 *
+	 * @param slot the slot
+	 * @param amount the amount, or {@link ItemUtils#FULL_STACK}
+	 * @return true, if the slot holds enough items
+	 */
+	public boolean extract(MalisisSlot slot, int amount)
+	{
+		if (!valid)
+			return false;
+
+		PendingSlot ps = pending(slot);
+		if (amount == ItemUtils.FULL_STACK)
+			amount = ps.count;
+		if (amount <= 0 || ps.count < amount)
+			return invalidate();
+
+		ps.remove(amount);
+		return true;
+	}
+
+	/**
+	 * Adds the extraction of <b>amount</b> items matching <b>itemStack</b> from the <b>inventory</b>.
+	 *
+	 * @param inventory the inventory
+	 * @param itemStack the item stack to match
+	 * @param amount the amount
+	 * @return true, if the inventory holds enough matching items
+	 */
+	public boolean extract(MalisisInventory inventory, ItemStack itemStack, int amount)
+	{
+		if (!valid || itemStack.isEmpty() || amount <= 0)
+			return invalidate();
+
+		List<PendingSlot> slots = new ArrayList<>();
+		List<Integer> amounts = new ArrayList<>();
+		int remaining = amount;
+
+		for (PendingSlot ps : pending.values())
+		{
+			if (remaining == 0)
+				break;
+			if (ps.slot.getInventory() != inventory || ps.count == 0 || !ItemUtils.areItemStacksStackable(ps.content, itemStack))
+				continue;
+			int n = Math.min(ps.count, remaining);
+			slots.add(ps);
+			amounts.add(n);
+			remaining -= n;
+		}
+
+		//copy the set, as the index changes when queried again
+		BitSet set = (BitSet) inventory.getSlotIndex().getSlots(itemStack).clone();
+		for (int i = set.nextSetBit(0); i >= 0 && remaining > 0; i = set.nextSetBit(i + 1))
+		{
+			MalisisSlot slot = inventory.getSlot(i);
+			if (pending.containsKey(slot) || !ItemUtils.areItemStacksStackable(slot.getItemStack(), itemStack))
+				continue;
+			int n = Math.min(slot.getItemStack().getCount(), remaining);
+			slots.add(pending(slot));
+			amounts.add(n);
+			remaining -= n;
+		}
+
+		if (remaining > 0)
+			return invalidate();
+
+		for (int i = 0; i < slots.size(); i++)
+			slots.get(i).remove(amounts.get(i));
+		return true;
+	}
+
+	/**
+	 * Adds the move of <b>amount</b> items from one slot to another.
+	 *
+	 * @param from the source slot
+	 * @param to the destination slot
+	 * @param amount the amount, or {@link ItemUtils#FULL_STACK}
+	 * @return true, if the move is possible
+	 */
+	public boolean move(MalisisSlot from, MalisisSlot to, int amount)
+	{
+		if (!valid)
+			return false;
+
+		PendingSlot source = pending(from);
+		if (amount == ItemUtils.FULL_STACK)
+			amount = source.count;
+		if (amount <= 0 || source.count < amount)
+			return invalidate();
+
+		ItemStack content = source.content;
+		return insert(to, content, amount) && extract(from, amount);
+	}
+
+	/**
+	 * Adds the move of <b>amount</b> items from a slot to an inventory.
+	 *
+	 * @param from the source slot
+	 * @param to the destination inventory
+	 * @param amount the amount, or {@link ItemUtils#FULL_STACK}
+	 * @return true, if the move is possible
+	 */
+	public boolean move(MalisisSlot from, MalisisInventory to, int amount)
+	{
+		if (!valid)
+			return false;
+
+		PendingSlot source = pending(from);
+		if (amount == ItemUtils.FULL_STACK)
+			amount = source.count;
+		if (amount <= 0 || source.count < amount)
+			return invalidate();
+
+		ItemStack content = source.content;
+		return insert(to, content, amount, from) && extract(from, amount);
+	}
+
+	/**
+	 * Applies all the operations of this {@link InventoryTransaction}.<br>
+	 * Nothing is applied if the transaction is invalid, or if any of the slots involved was modified since it was first used in this
+	 * transaction.
+	 *
+	 * @return true, if the transaction was applied
+	 */
+	public boolean commit()
+	{
+		if (!valid || committed)
+			return false;
+
+		for (PendingSlot ps : pending.values())
+			if (ps.slot.getVersion() != ps.version)
+				return invalidate();
+
+		Map<MalisisInventory, List<MalisisSlot>> changed = new LinkedHashMap<>();
+		for (PendingSlot ps : pending.values())
+		{
+			if (!ps.hasChanged())
+				continue;
+			ps.apply();
+			if (ps.slot.getInventory() != null)
+				changed.computeIfAbsent(ps.slot.getInventory(), i -> new ArrayList<>()).add(ps.slot);
+		}
+
+		committed = true;
+		changed.forEach(MalisisInventory::onSlotsChanged);
+		return true;
+	}
+
+	/**
+	 * State a {@link MalisisSlot} will have once the transaction is committed.<br>
+	 * Only the item and the count are kept, the actual {@link ItemStack} is only created on commit.
+	 */
+	private static class PendingSlot
+	{
+		private final MalisisSlot slot;
+		/** Version of the slot when first used in the transaction. */
+		private final int version;
+		/** ItemStack used as template for the content of the slot. */
+		private ItemStack content;
+		/** Amount of items in the slot. */
+		private int count;
+
+		public PendingSlot(MalisisSlot slot)
+		{
+			this.slot = slot;
+			version = slot.getVersion();
+			content = slot.getItemStack();
+			count = content.getCount();
+		}
+
+		public int getInsertableAmount(ItemStack itemStack, int amount)
+		{
+			return slot.getInsertableAmount(content, count, itemStack, amount);
+		}
+
+		public void add(ItemStack itemStack, int amount)
+		{
+			if (count == 0)
+				content = itemStack;
+			count += amount;
+		}
+
+		public void remove(int amount)
+		{
+			count -= amount;
+		}
+
+		public boolean hasChanged()
+		{
+			ItemStack current = slot.getItemStack();
+			return count != current.getCount() || (count != 0 && content != current);
+		}
+
+		public void apply()
+		{
+			ItemStack current = slot.getItemStack();
+			if (count == 0)
+				slot.setItemStack(ItemStack.EMPTY);
+			else if (content == current)
+			{
+				current.setCount(count);
+				slot.setItemStack(current);
+			}
+			else
+			{
+				ItemStack itemStack = content.copy();
+				itemStack.setCount(count);
+				slot.setItemStack(itemStack);
+			}
+		}
+	}
+}
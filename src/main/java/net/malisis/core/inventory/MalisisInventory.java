@@ -24,7 +24,9 @@
 
 package net.malisis.core.inventory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -37,16 +39,15 @@ import java.util.stream.Collectors;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import com.google.common.eventbus.EventBus;
-
-import net.malisis.core.ExceptionHandler;
 import net.malisis.core.MalisisCore;
 import net.malisis.core.client.gui.MalisisGui;
 import net.malisis.core.inventory.IInventoryProvider.IDeferredInventoryProvider;
 import net.malisis.core.inventory.IInventoryProvider.IDirectInventoryProvider;
+import net.malisis.core.inventory.cache.InventoryJournal;
 import net.malisis.core.inventory.message.OpenInventoryMessage;
 import net.malisis.core.inventory.player.PlayerInventory;
 import net.malisis.core.util.EntityUtils;
+import net.malisis.core.util.event.EventDispatcher;
 import net.minecraft.client.entity.EntityPlayerSP;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
@@ -83,9 +84,15 @@ public class MalisisInventory
 	/** Maximum stack size for the slots. */
 	protected int slotMaxStackSize = 64;
 	/** Event bus on which inventory events will be fired. */
-	private EventBus bus = new EventBus(ExceptionHandler.instance);
+	private EventDispatcher bus = new EventDispatcher();
 	/** Current inventory state. */
 	public InventoryState state = new InventoryState();
+	/** Index of the slots by their content. */
+	protected SlotIndex slotIndex;
+	/** Number of occupied slots sent by the server when the client only receives part of the slots. */
+	protected int remoteOccupiedSlots = -1;
+	/** Journal of the slot changes, shared by the containers viewing this {@link MalisisInventory}. */
+	protected InventoryJournal journal;
 
 	/**
 	 * Instantiates a new {@link MalisisInventory} with <code>size</size> amount of slots from supplied by the <code>supplier</code>.
@@ -158,6 +165,8 @@ public class MalisisInventory
 		slots.get(slotIndex).setup(null, -1);
 		slots.add(slotIndex, slot);
 		slot.setup(this, slotIndex);
+		journal = null;
+		this.slotIndex = null;
 	}
 
 	/**
@@ -262,7 +271,76 @@ public class MalisisInventory
 	 */
 	public List<MalisisSlot> getNonEmptySlots()
 	{
-		return getSlots().stream().filter(MalisisSlot::isNotEmpty).collect(Collectors.toList());
+		return getSlots(getSlotIndex().getOccupiedSlots());
+	}
+
+	/**
+	 * Gets the slots holding an {@link ItemStack} that may stack with <code>itemStack</code>.
+	 *
+	 * @param itemStack the item stack
+	 * @return the matching slots
+	 */
+	public List<MalisisSlot> getMatchingSlots(ItemStack itemStack)
+	{
+		return getSlots(getSlotIndex().getSlots(itemStack));
+	}
+
+	/**
+	 * Gets the slots at the indexes set in <code>set</code>.
+	 *
+	 * @param set the set
+	 * @return the slots
+	 */
+	private List<MalisisSlot> getSlots(BitSet set)
+	{
+		List<MalisisSlot> list = new ArrayList<>(set.cardinality());
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1))
+			list.add(slots.get(i));
+		return list;
+	}
+
+	/**
+	 * Gets the number of non empty slots in this {@link MalisisInventory}.<br>
+	 * On the client, if the server only sends the slots currently displayed, the count sent by the server is used instead.
+	 *
+	 * @return the occupied slot count
+	 */
+	public int getOccupiedSlotCount()
+	{
+		return remoteOccupiedSlots >= 0 ? remoteOccupiedSlots : getSlotIndex().getOccupiedSlots().cardinality();
+	}
+
+	/**
+	 * Sets the number of non empty slots, as sent by the server.
+	 *
+	 * @param count the count
+	 */
+	public void setOccupiedSlotCount(int count)
+	{
+		remoteOccupiedSlots = count;
+	}
+
+	/**
+	 * Gets the {@link SlotIndex} of this {@link MalisisInventory}, creating it if needed.
+	 *
+	 * @return the slot index
+	 */
+	public SlotIndex getSlotIndex()
+	{
+		if (slotIndex == null)
+			slotIndex = new SlotIndex(this);
+		return slotIndex;
+	}
+
+	/**
+	 * Marks the slot to be reindexed in the {@link SlotIndex}.
+	 *
+	 * @param slot the slot
+	 */
+	void invalidateSlot(MalisisSlot slot)
+	{
+		if (slotIndex != null)
+			slotIndex.invalidate(slot.getSlotIndex());
 	}
 
 	/**
@@ -415,10 +493,24 @@ public class MalisisInventory
 	public void removeOpenedContainer(MalisisInventoryContainer container)
 	{
 		containers.remove(container);
+		if (containers.size() == 0)
+			journal = null;
 		if (containers.size() == 0 && itemStackProvider != null && itemStackProvider.getTagCompound() != null)
 			itemStackProvider.getTagCompound().removeTag("inventoryId");
 	}
 
+	/**
+	 * Gets the {@link InventoryJournal} of this {@link MalisisInventory}, creating it if needed.
+	 *
+	 * @return the journal
+	 */
+	public InventoryJournal getJournal()
+	{
+		if (journal == null)
+			journal = new InventoryJournal(this);
+		return journal;
+	}
+
 	/**
 	 * Gets the opened containers.
 	 *
@@ -436,7 +528,7 @@ public class MalisisInventory
 	 */
 	public boolean isEmpty()
 	{
-		return getItemStackList().size() == 0;
+		return getSlotIndex().getOccupiedSlots().isEmpty();
 	}
 
 	/**
@@ -446,7 +538,8 @@ public class MalisisInventory
 	 */
 	public boolean isFull()
 	{
-		return !getSlots().stream().anyMatch(MalisisSlot::isNotFull);
+		SlotIndex index = getSlotIndex();
+		return index.getFreeSlots().isEmpty() && index.getFullSlots().cardinality() == getSize();
 	}
 
 	// #end getters/setters
@@ -464,6 +557,20 @@ public class MalisisInventory
 		bus.post(new InventoryEvent.SlotChanged(this, slot));
 	}
 
+	/**
+	 * Called when several slots were changed at once by an {@link InventoryTransaction}.<br>
+	 * Fires a single {@link InventoryEvent.SlotsChanged} event.
+	 *
+	 * @param changedSlots the slots changed
+	 */
+	public void onSlotsChanged(List<MalisisSlot> changedSlots)
+	{
+		if (inventoryProvider instanceof Item && itemStackProvider != null)
+			this.writeToNBT(itemStackProvider.getTagCompound());
+
+		bus.post(new InventoryEvent.SlotsChanged(this, changedSlots));
+	}
+
 	/**
 	 * Gets the first {@link MalisisSlot} containing an {@link ItemStack}.
 	 *
@@ -471,7 +578,7 @@ public class MalisisInventory
 	 */
 	public Optional<MalisisSlot> getFirstOccupiedSlot()
 	{
-		return getSlots().stream().filter(MalisisSlot::isNotEmpty).findFirst();
+		return Optional.ofNullable(getSlot(getSlotIndex().getOccupiedSlots().nextSetBit(0)));
 	}
 
 	/**
@@ -492,8 +599,11 @@ public class MalisisInventory
 	 */
 	public boolean pullItemStacks(ItemStack itemStack, boolean ignoreFullStacks)
 	{
-		for (MalisisSlot s : getNonEmptySlots())
+		//copy the set, extracting changes the slots and their index
+		BitSet set = (BitSet) getSlotIndex().getSlots(itemStack).clone();
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1))
 		{
+			MalisisSlot s = getSlot(i);
 			ItemStack is = s.getItemStack();
 			if ((!ignoreFullStacks || is.getCount() < is.getMaxStackSize()) && s.extractInto(itemStack))
 				return true;
@@ -537,13 +647,28 @@ public class MalisisInventory
 	 * @return the itemStack that could not fit inside this inventory
 	 */
 	public ItemStack transferInto(ItemStack itemStack, boolean reversed)
+	{
+		return transferInto(itemStack, reversed, false);
+	}
+
+	/**
+	 * Transfers itemStack inside this {@link MalisisInventory}.<br>
+	 * If <b>simulate</b> is <code>true</code>, neither the slots nor <b>itemStack</b> are modified, and a copy of what would be left is
+	 * returned.
+	 *
+	 * @param itemStack the item stack
+	 * @param reversed if true, start filling slots from the last slot
+	 * @param simulate whether to only simulate the transfer
+	 * @return the itemStack that could not fit inside this inventory
+	 */
+	public ItemStack transferInto(ItemStack itemStack, boolean reversed, boolean simulate)
 	{
 		int start = reversed ? getSlots().size() - 1 : 0;
 		int end = reversed ? 0 : getSlots().size() - 1;
 
-		itemStack = transferInto(itemStack, false, start, end);
+		itemStack = transferInto(itemStack, false, start, end, simulate);
 		if (itemStack != null)
-			itemStack = transferInto(itemStack, true, start, end);
+			itemStack = transferInto(itemStack, true, start, end, simulate);
 
 		return itemStack;
 	}
@@ -560,24 +685,60 @@ public class MalisisInventory
 	 */
 	protected ItemStack transferInto(ItemStack itemStack, boolean emptySlot, int start, int end)
 	{
-		MalisisSlot slot;
-		int current = start, step = 1;
-		if (start > end)
+		return transferInto(itemStack, emptySlot, start, end, false);
+	}
+
+	/**
+	 * Transfers itemStack inside this {@link MalisisInventory} into slots at position from start to end. If <b>start</b> &gt; <b>end</b>,
+	 * the slots will be filled backwards.<br>
+	 * If <b>simulate</b> is <code>true</code>, only the amounts are computed and a copy of what would be left is returned.
+	 *
+	 * @param itemStack the item stack
+	 * @param emptySlot whether to fill empty slots only
+	 * @param start the start
+	 * @param end the end
+	 * @param simulate whether to only simulate the transfer
+	 * @return the itemStack that could not fit inside this inventory
+	 */
+	protected ItemStack transferInto(ItemStack itemStack, boolean emptySlot, int start, int end, boolean simulate)
+	{
+		boolean reversed = start > end;
+		if (reversed)
 		{
-			step = -1;
+			int tmp = start;
 			start = end;
-			end = current;
+			end = tmp;
 		}
 
-		while (!itemStack.isEmpty() && current >= start && current <= end)
+		//only slots holding the same item can accept a partial merge, and only empty slots are left to fill after that
+		//copy the set, inserting changes the slots and their index
+		BitSet candidates = (BitSet) (emptySlot ? getSlotIndex().getFreeSlots() : getSlotIndex().getSlots(itemStack)).clone();
+		int current = reversed ? candidates.previousSetBit(end) : candidates.nextSetBit(start);
+		int remaining = itemStack.getCount();
+		while (remaining > 0 && current >= start && current <= end)
 		{
-			slot = getSlot(current);
-			if (slot.isItemValid(itemStack) && !slot.isOutputSlot() && (emptySlot || !slot.getItemStack().isEmpty()))
-				itemStack = slot.insert(itemStack);
-			current += step;
+			MalisisSlot slot = getSlot(current);
+			if (slot.isItemValid(itemStack) && !slot.isOutputSlot())
+			{
+				if (simulate)
+					remaining -= slot.getInsertableAmount(itemStack, remaining);
+				else
+				{
+					itemStack = slot.insert(itemStack);
+					remaining = itemStack.getCount();
+				}
+			}
+			current = reversed ? candidates.previousSetBit(current - 1) : candidates.nextSetBit(current + 1);
 		}
 
-		return itemStack;
+		if (!simulate)
+			return itemStack;
+		//never hand the caller's own stack back when simulating
+		if (remaining <= 0)
+			return ItemStack.EMPTY;
+		ItemStack left = itemStack.copy();
+		left.setCount(remaining);
+		return left;
 	}
 
 	/**
@@ -626,7 +787,8 @@ public class MalisisInventory
 		for (int i = 0; i < nbttaglist.tagCount(); ++i)
 		{
 			NBTTagCompound stackTag = nbttaglist.getCompoundTagAt(i);
-			int slotNumber = stackTag.getByte("Slot") & 255;
+			//slots above 255 are stored as int, lower ones are kept as byte for compatibility
+			int slotNumber = stackTag.getTagId("Slot") == NBT.TAG_BYTE ? stackTag.getByte("Slot") & 255 : stackTag.getInteger("Slot");
 			MalisisSlot slot = getSlot(slotNumber);
 			if (slot != null)
 				slot.setItemStack(new ItemStack(stackTag));
@@ -646,7 +808,10 @@ public class MalisisInventory
 		NBTTagList itemList = new NBTTagList();
 		getNonEmptySlots().forEach(slot -> {
 			NBTTagCompound tag = new NBTTagCompound();
-			tag.setByte("Slot", (byte) slot.getSlotIndex());
+			if (slot.getSlotIndex() < 256)
+				tag.setByte("Slot", (byte) slot.getSlotIndex());
+			else
+				tag.setInteger("Slot", slot.getSlotIndex());
 			slot.getItemStack().writeToNBT(tag);
 			itemList.appendTag(tag);
 
@@ -205,6 +205,39 @@ public class MalisisInventoryContainer extends Container
 		return playerInventory;
 	}
 
+	/**
+	 * Sets the range of slots displayed by the client for the {@link MalisisInventory} with the specified id.
+	 *
+	 * @param inventoryId the inventory id
+	 * @param first the first slot index
+	 * @param last the last slot index
+	 */
+	public void setViewport(int inventoryId, int first, int last)
+	{
+		if (!isServer())
+			return;
+
+		InventoryCache cache = inventoryId == -1 ? playerInventoryCache : inventoryCaches.get(getInventory(inventoryId));
+		if (cache != null)
+			cache.setViewport(first, last);
+	}
+
+	/**
+	 * Sends all the slots of the {@link MalisisInventory} with the specified id again to the client.<br>
+	 * Requested by the client when it could not apply an update.
+	 *
+	 * @param inventoryId the inventory id
+	 */
+	public void resync(int inventoryId)
+	{
+		if (!isServer())
+			return;
+
+		InventoryCache cache = inventoryId == -1 ? playerInventoryCache : inventoryCaches.get(getInventory(inventoryId));
+		if (cache != null)
+			cache.sendAll();
+	}
+
 	/**
 	 * Gets the {@link MalisisInventory inventories} for this {@link MalisisInventoryContainer}.
 	 *
@@ -369,6 +402,13 @@ public class MalisisInventoryContainer extends Container
 		if (slot.isState(FROZEN))
 			return pickedItemStack;
 
+		//the client applied the action on its side, its stacks may differ from ours until the changes are sent
+		if (isServer())
+		{
+			playerInventoryCache.markDiverged();
+			inventoryCaches.values().forEach(InventoryCache::markDiverged);
+		}
+
 		//first check if current slot is current providing inventory (for Items providing inventory)
 		//TODO : freeze the slot at inventory creation
 		if (slot.getItemStack().getItem() instanceof IInventoryProvider && slot.getItemStack().getTagCompound() != null)
@@ -631,7 +671,7 @@ public class MalisisInventoryContainer extends Container
 
 			}
 
-			for (MalisisSlot s : inventory.getNonEmptySlots())
+			for (MalisisSlot s : inventory.getMatchingSlots(lastShiftClicked))
 			{
 				ItemStack itemStack = s.getItemStack();
 				if (s.isState(PLAYER_EXTRACT) && ItemUtils.areItemStacksStackable(itemStack, lastShiftClicked))
@@ -51,6 +51,15 @@ public class MalisisSlot
 	protected int index;
 	/** {@link InventoryState} of this slot. */
 	protected InventoryState state = new InventoryState();
+	/** Incremented each time the {@link ItemStack} of this {@link MalisisSlot} is set or changed. */
+	protected int version;
+	/** Incremented each time the dragged {@link ItemStack} of this {@link MalisisSlot} is set. */
+	protected int draggedVersion;
+	/**
+	 * Whether the {@link ItemStack} of this {@link MalisisSlot} may be modified in place without notifying the slot.<br>
+	 * Only slots handing out stacks that are also modified outside of the slot need it.
+	 */
+	protected boolean mutableInPlace = false;
 
 	/**
 	 * Instantiates a new {@link MalisisSlot}.
@@ -131,6 +140,7 @@ public class MalisisSlot
 	public void setItemStack(ItemStack itemStack)
 	{
 		this.itemStack = checkNotNull(itemStack);
+		markChanged();
 	}
 
 	/**
@@ -151,6 +161,7 @@ public class MalisisSlot
 	public void setDraggedItemStack(ItemStack itemStack)
 	{
 		this.draggedItemStack = checkNotNull(itemStack);
+		draggedVersion++;
 	}
 
 	/**
@@ -163,6 +174,61 @@ public class MalisisSlot
 		return draggedItemStack;
 	}
 
+	/**
+	 * Gets the version of the {@link ItemStack} of this {@link MalisisSlot}.<br>
+	 * The version changes every time the stack is set through {@link #setItemStack(ItemStack)} or when {@link #onSlotChanged()} is
+	 * called.
+	 *
+	 * @return the version
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Gets the version of the dragged {@link ItemStack} of this {@link MalisisSlot}.
+	 *
+	 * @return the dragged version
+	 */
+	public int getDraggedVersion()
+	{
+		return draggedVersion;
+	}
+
+	/**
+	 * Sets whether the {@link ItemStack} of this {@link MalisisSlot} can be modified in place, without going through
+	 * {@link #setItemStack(ItemStack)} or {@link #onSlotChanged()}.<br>
+	 * Caches then fall back to copying and comparing the stack to detect changes.
+	 *
+	 * @param mutableInPlace whether the stack can be modified in place
+	 */
+	public void setMutableInPlace(boolean mutableInPlace)
+	{
+		this.mutableInPlace = mutableInPlace;
+		markChanged();
+	}
+
+	/**
+	 * Increments the version of this {@link MalisisSlot} and invalidates it in the {@link SlotIndex} of its {@link MalisisInventory}.
+	 */
+	protected void markChanged()
+	{
+		version++;
+		if (inventory != null)
+			inventory.invalidateSlot(this);
+	}
+
+	/**
+	 * Checks whether the {@link ItemStack} of this {@link MalisisSlot} can be modified in place.
+	 *
+	 * @return true, if the stack can be modified in place
+	 */
+	public boolean isMutableInPlace()
+	{
+		return mutableInPlace;
+	}
+
 	/**
 	 * Sets this {@link MalisisSlot} as an output slot. Sets the slot {@link InventoryState state} to deny inserts.
 	 */
@@ -251,6 +317,7 @@ public class MalisisSlot
 	 */
 	public void onSlotChanged()
 	{
+		markChanged();
 		this.inventory.onSlotChanged(this);
 	}
 
@@ -278,6 +345,8 @@ public class MalisisSlot
 
 		int start = itemStack.getCount();
 		itemStack.setCount(Math.min(stackSize, Math.min(itemStack.getMaxStackSize(), getSlotStackLimit())));
+		if (itemStack.getCount() != start)
+			markChanged();
 		return itemStack.getCount() - start;
 	}
 
@@ -310,6 +379,44 @@ public class MalisisSlot
 		return is;
 	}
 
+	/**
+	 * Extract a specified <b>amount</b> from this {@link MalisisSlot}.<br>
+	 * If <b>simulate</b> is <code>true</code>, the slot is left untouched and a copy of what would be extracted is returned.
+	 *
+	 * @param amount the amount
+	 * @param simulate whether to only simulate the extraction
+	 * @return the {@link ItemStack} extracted
+	 */
+	public ItemStack extract(int amount, boolean simulate)
+	{
+		if (!simulate)
+			return extract(amount);
+
+		int count = getExtractableAmount(amount);
+		if (count == 0)
+			return ItemStack.EMPTY;
+		ItemStack is = itemStack.copy();
+		is.setCount(count);
+		return is;
+	}
+
+	/**
+	 * Gets the amount of items that would be extracted from this {@link MalisisSlot} for the specified <b>amount</b>.
+	 *
+	 * @param amount the amount, or {@link ItemUtils#FULL_STACK}/{@link ItemUtils#HALF_STACK}
+	 * @return the amount extractable
+	 */
+	public int getExtractableAmount(int amount)
+	{
+		if (itemStack.isEmpty())
+			return 0;
+		if (amount == ItemUtils.FULL_STACK)
+			return itemStack.getCount();
+		if (amount == ItemUtils.HALF_STACK)
+			return (int) Math.ceil((float) itemStack.getCount() / 2);
+		return Math.max(0, Math.min(amount, itemStack.getCount()));
+	}
+
 	/**
 	 * Extract a specified <b>amount</b> from this {@link MalisisSlot}.
 	 *
@@ -368,6 +475,68 @@ public class MalisisSlot
 		return insert(insert, amount, false);
 	}
 
+	/**
+	 * Inserts a specified <b>amount</b> of {@link ItemStack} into this {@link MalisisSlot}.<br>
+	 * If <b>simulate</b> is <code>true</code>, neither the slot nor <b>insert</b> are modified, and a copy of what would be left is
+	 * returned.
+	 *
+	 * @param insert the itemStack to insert
+	 * @param amount the amount to insert
+	 * @param force whether the itemStack should be forced in the slot
+	 * @param simulate whether to only simulate the insertion
+	 * @return the itemStack that couldn't fit into the slot
+	 */
+	public ItemStack insert(ItemStack insert, int amount, boolean force, boolean simulate)
+	{
+		if (!simulate)
+			return insert(insert, amount, force);
+		if (insert.isEmpty())
+			return ItemStack.EMPTY;
+
+		int count = getInsertableAmount(insert, amount);
+		if (count == 0)
+			return force && !itemStack.isEmpty() && isItemValid(insert) ? itemStack.copy() : insert;
+
+		ItemStack left = insert.copy();
+		left.shrink(count);
+		return left.isEmpty() ? ItemStack.EMPTY : left;
+	}
+
+	/**
+	 * Gets the amount of <b>insert</b> that would fit into this {@link MalisisSlot}, without modifying anything.
+	 *
+	 * @param insert the itemStack to insert
+	 * @param amount the amount to insert, or {@link ItemUtils#FULL_STACK}
+	 * @return the amount insertable
+	 */
+	public int getInsertableAmount(ItemStack insert, int amount)
+	{
+		if (amount == ItemUtils.FULL_STACK)
+			amount = insert.getCount();
+		return getInsertableAmount(itemStack, itemStack.getCount(), insert, Math.min(amount, insert.getCount()));
+	}
+
+	/**
+	 * Gets the amount of <b>insert</b> that would fit into this {@link MalisisSlot} if it contained <b>count</b> items of
+	 * <b>content</b>.
+	 *
+	 * @param content the content of the slot
+	 * @param count the amount of content
+	 * @param insert the itemStack to insert
+	 * @param amount the amount to insert
+	 * @return the amount insertable
+	 */
+	protected int getInsertableAmount(ItemStack content, int count, ItemStack insert, int amount)
+	{
+		if (insert.isEmpty() || amount <= 0 || !isItemValid(insert))
+			return 0;
+		if (content.isEmpty() || count <= 0)
+			return Math.min(amount, Math.min(insert.getMaxStackSize(), getSlotStackLimit()));
+		if (!ItemUtils.areItemStacksStackable(insert, content))
+			return 0;
+		return Math.max(0, Math.min(amount, Math.min(getSlotStackLimit(), content.getMaxStackSize()) - count));
+	}
+
 	/**
 	 * Inserts a specified <b>amount</b> of {@link ItemStack} into this {@link MalisisSlot}.<br>
 	 * If <b>force</b> is <code>true</code>, the current <code>ItemStack</code> in the slot will be replaced if it cannot be merged.
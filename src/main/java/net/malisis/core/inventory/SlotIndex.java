@@ -0,0 +1,258 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.malisis.core.inventory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+/**
+ * Index of the {@link MalisisSlot slots} of a {@link MalisisInventory} by the {@link ItemStack} they hold.<br>
+ * Slots are reindexed lazily: {@link MalisisSlot} invalidates its index whenever its content changes, and only the invalidated slots
+ * whose version changed since they were last indexed are processed on the next query. Slots {@link MalisisSlot#isMutableInPlace()
+ * mutable in place} are checked against their indexed state on every query, and only reindexed if their stack changed.<br>
+ * The {@link BitSet sets} returned are owned by the index and must not be modified.
+ *
+ * @author Ordinastie
+ *
+ */
+public class SlotIndex
+{
+	/** Empty set returned when no slot matches. */
+	private static final BitSet EMPTY = new BitSet();
+
+	/** Inventory indexed. */
+	private final MalisisInventory inventory;
+	/** Key currently indexed for each slot. */
+	private final Key[] keys;
+	/** Version of each slot when it was last indexed. */
+	private final int[] versions;
+	/** Slots holding each item. */
+	private final Map<Key, BitSet> stacks = new HashMap<>();
+	/** Empty slots. */
+	private final BitSet free = new BitSet();
+	/** Non empty slots. */
+	private final BitSet occupied = new BitSet();
+	/** Slots that can't accept more items. */
+	private final BitSet full = new BitSet();
+	/** Slots that need to be reindexed. */
+	private final BitSet dirty = new BitSet();
+	/** Slots mutable in place. */
+	private final BitSet inPlace = new BitSet();
+
+	/**
+	 * Instantiates a new {@link SlotIndex}.
+	 *
+	 * @param inventory the inventory
+	 */
+	public SlotIndex(MalisisInventory inventory)
+	{
+		this.inventory = inventory;
+		keys = new Key[inventory.getSize()];
+		versions = new int[keys.length];
+		Arrays.fill(versions, -1);
+		dirty.set(0, keys.length);
+	}
+
+	/**
+	 * Marks the slot at the specified index to be reindexed.
+	 *
+	 * @param index the index
+	 */
+	public void invalidate(int index)
+	{
+		if (index >= 0 && index < keys.length)
+			dirty.set(index);
+	}
+
+	/**
+	 * Reindexes the invalidated slots.
+	 */
+	public void refresh()
+	{
+		for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1))
+		{
+			MalisisSlot slot = inventory.getSlot(i);
+			if (slot.getVersion() != versions[i])
+				reindex(i, slot);
+		}
+		dirty.clear();
+
+		for (int i = inPlace.nextSetBit(0); i >= 0; i = inPlace.nextSetBit(i + 1))
+		{
+			MalisisSlot slot = inventory.getSlot(i);
+			if (!isIndexed(i, slot))
+				reindex(i, slot);
+		}
+	}
+
+	/**
+	 * Checks whether the slot at the specified index is still indexed with the state of its current {@link ItemStack}.
+	 *
+	 * @param index the index
+	 * @param slot the slot
+	 * @return true, if the slot doesn't need to be reindexed
+	 */
+	private boolean isIndexed(int index, MalisisSlot slot)
+	{
+		ItemStack itemStack = slot.getItemStack();
+		if (itemStack.isEmpty())
+			return free.get(index);
+		return keys[index] != null && keys[index].matches(itemStack) && full.get(index) == slot.isFull();
+	}
+
+	/**
+	 * Reindexes a single slot.
+	 *
+	 * @param index the index
+	 * @param slot the slot
+	 */
+	private void reindex(int index, MalisisSlot slot)
+	{
+		ItemStack itemStack = slot.getItemStack();
+		versions[index] = slot.getVersion();
+		inPlace.set(index, slot.isMutableInPlace());
+		free.set(index, itemStack.isEmpty());
+		occupied.set(index, !itemStack.isEmpty());
+		full.set(index, slot.isFull());
+
+		Key key = keys[index];
+		if (key != null && !itemStack.isEmpty() && key.matches(itemStack))
+			return;
+
+		if (key != null)
+		{
+			BitSet set = stacks.get(key);
+			set.clear(index);
+			if (set.isEmpty())
+				stacks.remove(key);
+			keys[index] = null;
+		}
+
+		if (itemStack.isEmpty())
+			return;
+
+		keys[index] = new Key(itemStack);
+		stacks.computeIfAbsent(keys[index], k -> new BitSet()).set(index);
+	}
+
+	/**
+	 * Gets the empty slots.
+	 *
+	 * @return the free slots
+	 */
+	public BitSet getFreeSlots()
+	{
+		refresh();
+		return free;
+	}
+
+	/**
+	 * Gets the non empty slots.
+	 *
+	 * @return the occupied slots
+	 */
+	public BitSet getOccupiedSlots()
+	{
+		refresh();
+		return occupied;
+	}
+
+	/**
+	 * Gets the slots that can't accept more items.
+	 *
+	 * @return the full slots
+	 */
+	public BitSet getFullSlots()
+	{
+		refresh();
+		return full;
+	}
+
+	/**
+	 * Gets the slots holding an {@link ItemStack} that may stack with <code>itemStack</code>.<br>
+	 * Candidates share the same item, metadata and NBT hash, so callers still need to check that the stacks actually merge.
+	 *
+	 * @param itemStack the item stack
+	 * @return the matching slots
+	 */
+	public BitSet getSlots(ItemStack itemStack)
+	{
+		refresh();
+		if (itemStack.isEmpty())
+			return EMPTY;
+		BitSet set = stacks.get(new Key(itemStack));
+		return set != null ? set : EMPTY;
+	}
+
+	/**
+	 * Identity of an {@link ItemStack} for stacking purposes.
+	 */
+	private static class Key
+	{
+		private final Item item;
+		private final int metadata;
+		private final int nbtHash;
+
+		public Key(ItemStack itemStack)
+		{
+			item = itemStack.getItem();
+			metadata = itemStack.getHasSubtypes() ? itemStack.getMetadata() : 0;
+			nbtHash = Objects.hashCode(itemStack.getTagCompound());
+		}
+
+		/**
+		 * Checks whether <code>itemStack</code> still has the identity of this {@link Key}.
+		 *
+		 * @param itemStack the item stack
+		 * @return true, if the stack matches
+		 */
+		public boolean matches(ItemStack itemStack)
+		{
+			return item == itemStack.getItem() && metadata == (itemStack.getHasSubtypes() ? itemStack.getMetadata() : 0)
+					&& nbtHash == Objects.hashCode(itemStack.getTagCompound());
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (System.identityHashCode(item) * 31 + metadata) * 31 + nbtHash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+				return false;
+			Key key = (Key) obj;
+			return item == key.item && metadata == key.metadata && nbtHash == key.nbtHash;
+		}
+	}
+}
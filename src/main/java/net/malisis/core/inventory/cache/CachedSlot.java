@@ -25,23 +25,38 @@
 package net.malisis.core.inventory.cache;
 
 import net.malisis.core.inventory.MalisisSlot;
+import net.malisis.core.util.ItemUtils;
 import net.malisis.core.util.cacheddata.ICachedData;
+import net.minecraft.item.ItemStack;
 
 /**
+ * Keeps track of the state of a {@link MalisisSlot} last sent to a viewer.<br>
+ * Changes are detected through the slot versions. Slots flagged as {@link MalisisSlot#isMutableInPlace() mutable in place} also keep a
+ * copy of the last sent {@link ItemStack} to compare against.
+ *
  * @author Ordinastie
  *
  */
 public class CachedSlot implements ICachedData<MalisisSlot>
 {
 	private MalisisSlot slot;
-	private CachedItemStack cachedItemStack;
-	private CachedItemStack cachedDraggedItemStack;
+	/** Version of the slot last sent. */
+	private int sentVersion;
+	/** Dragged version of the slot last sent. */
+	private int sentDraggedVersion;
+	/** ItemStack instance held by the slot when last sent. */
+	private ItemStack sentItemStack;
+	/** Size of the ItemStack when last sent. */
+	private int sentCount;
+	/** Copy of the ItemStack last sent, only kept for slots mutable in place. */
+	private ItemStack sentCopy;
+	/** Whether the slot changed since the previous update. */
+	private boolean changed;
 
 	public CachedSlot(MalisisSlot slot)
 	{
 		this.slot = slot;
-		cachedItemStack = new CachedItemStack(() -> slot.getItemStack().copy());
-		cachedDraggedItemStack = new CachedItemStack(slot::getItemStack);
+		store();
 	}
 
 	@Override
@@ -53,13 +68,31 @@ public class CachedSlot implements ICachedData<MalisisSlot>
 	@Override
 	public boolean hasChanged()
 	{
-		return cachedItemStack.hasChanged() || cachedDraggedItemStack.hasChanged();
+		return changed;
 	}
 
 	@Override
 	public void update()
 	{
-		cachedItemStack.update();
-		cachedDraggedItemStack.update();
+		ItemStack itemStack = slot.getItemStack();
+		changed = slot.getVersion() != sentVersion || slot.getDraggedVersion() != sentDraggedVersion || itemStack != sentItemStack
+				|| itemStack.getCount() != sentCount;
+		if (!changed && slot.isMutableInPlace())
+			changed = sentCopy == null || !ItemStack.areItemStacksEqual(itemStack, sentCopy);
+
+		if (changed)
+			store();
+	}
+
+	/**
+	 * Stores the current state of the slot as the last sent one.
+	 */
+	private void store()
+	{
+		sentVersion = slot.getVersion();
+		sentDraggedVersion = slot.getDraggedVersion();
+		sentItemStack = slot.getItemStack();
+		sentCount = sentItemStack.getCount();
+		sentCopy = slot.isMutableInPlace() ? ItemUtils.copy(sentItemStack) : null;
 	}
 }
@@ -24,62 +24,146 @@
 
 package net.malisis.core.inventory.cache;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
+import io.netty.buffer.ByteBuf;
 import net.malisis.core.inventory.MalisisInventory;
-import net.malisis.core.inventory.MalisisSlot;
 import net.malisis.core.inventory.message.UpdateInventorySlotsMessage;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.ServerPlayerEntity;
 
 /**
+ * Keeps track of the changes of a {@link MalisisInventory} sent to a player.<br>
+ * The changes themselves are read from the {@link InventoryJournal} of the inventory, shared by all its viewers. When the player only
+ * displays a range of slots, only that range is sent.
+ *
  * @author Ordinastie
  *
  */
 public class InventoryCache
 {
 	private ServerPlayerEntity player;
+	private MalisisInventory inventory;
 	private int inventoryId;
 	private int windowId;
-	private List<CachedSlot> slotCache;
+	/** Journal of the inventory. */
+	private InventoryJournal journal;
+	/** Last journal sequence sent to the player. */
+	private int sequence;
+	/** First slot index of the viewport displayed by the player. */
+	private int viewportFirst = 0;
+	/** Last slot index of the viewport displayed by the player. */
+	private int viewportLast = Integer.MAX_VALUE;
+	/** Whether the viewport changed and its slots need to be sent. */
+	private boolean viewportChanged;
+	/** Number of occupied slots last sent to the player, only used when a viewport is set. */
+	private int occupied = -1;
+	/** Whether the player acted on the inventory and may hold stacks that differ from the server. */
+	private boolean diverged;
 
 	public InventoryCache(PlayerEntity player, MalisisInventory inventory, int windowId)
 	{
 		this.player = (ServerPlayerEntity) player;
+		this.inventory = inventory;
 		inventoryId = inventory.getInventoryId();
 		this.windowId = windowId;
-		slotCache = inventory.getSlots().stream().map(CachedSlot::new).collect(Collectors.toList());
+		journal = inventory.getJournal();
+		journal.update();
+		sequence = journal.getSequence();
 	}
 
-	public void update()
+	/**
+	 * Checks whether the player only displays part of the inventory.
+	 *
+	 * @return true, if a viewport is set
+	 */
+	public boolean hasViewport()
 	{
-		slotCache.forEach(CachedSlot::update);
+		return viewportFirst != 0 || viewportLast != Integer.MAX_VALUE;
 	}
 
-	public List<MalisisSlot> getSlots(boolean sendAll)
+	/**
+	 * Sets the range of slots displayed by the player. Only the slots inside that range will be sent, along with the number of occupied
+	 * slots of the whole inventory.<br>
+	 * If <code>last</code> is lower than <code>first</code>, no slot is displayed and nothing is sent until the range changes.
+	 *
+	 * @param first the first slot index
+	 * @param last the last slot index
+	 */
+	public void setViewport(int first, int last)
 	{
-		return slotCache.stream()
-						.peek(CachedSlot::update)
-						.filter(cs -> sendAll || cs.hasChanged())
-						.map(CachedSlot::get)
-						.collect(Collectors.toList());
+		if (first == viewportFirst && last == viewportLast)
+			return;
+
+		viewportFirst = Math.max(first, 0);
+		viewportLast = Math.max(last, viewportFirst - 1);
+		viewportChanged = true;
 	}
 
-	private void sendSlots(boolean sendAll)
+	/**
+	 * Marks the player as possibly holding stacks that differ from the server, as the client applies its actions before the server
+	 * does.<br>
+	 * The next changes are sent with full stacks instead of sizes only.
+	 */
+	public void markDiverged()
 	{
-		List<MalisisSlot> changedSlots = getSlots(sendAll);
-		if (changedSlots.size() > 0)
-			UpdateInventorySlotsMessage.updateSlots(inventoryId, changedSlots, player, windowId);
+		diverged = true;
+	}
+
+	private void sendSlots(ByteBuf slots)
+	{
+		int count = -1;
+		if (hasViewport())
+		{
+			count = inventory.getOccupiedSlotCount();
+			if (slots == null && count != occupied)
+				slots = UpdateInventorySlotsMessage.NO_SLOTS;
+			occupied = count;
+		}
+
+		if (slots != null)
+			UpdateInventorySlotsMessage.updateSlots(inventoryId, slots, count, player, windowId);
+	}
+
+	/**
+	 * Checks whether the viewport set by the player doesn't display any slot.
+	 *
+	 * @return true, if the viewport is empty
+	 */
+	public boolean isViewportEmpty()
+	{
+		return viewportLast < viewportFirst;
 	}
 
 	public void sendAll()
 	{
-		sendSlots(true);
+		journal = inventory.getJournal();
+		if (isViewportEmpty())
+		{
+			sequence = journal.getSequence();
+			viewportChanged = false;
+			return;
+		}
+
+		ByteBuf slots = journal.getAll(viewportFirst, viewportLast);
+		sequence = journal.getSequence();
+		viewportChanged = false;
+		diverged = false;
+		sendSlots(slots);
 	}
 
 	public void sendChanges()
 	{
-		sendSlots(false);
+		if (journal != inventory.getJournal() || viewportChanged)
+		{
+			sendAll();
+			return;
+		}
+
+		if (isViewportEmpty())
+			return;
+
+		ByteBuf slots = journal.getChanges(sequence, viewportFirst, viewportLast, !diverged);
+		sequence = journal.getSequence();
+		diverged = false;
+		sendSlots(slots);
 	}
 }
@@ -0,0 +1,258 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.malisis.core.inventory.cache;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.malisis.core.inventory.MalisisInventory;
+import net.malisis.core.inventory.MalisisSlot;
+import net.malisis.core.inventory.message.SlotsCodec;
+import net.malisis.core.util.ItemUtils;
+import net.minecraft.item.ItemStack;
+
+/**
+ * Journal of the changes happening in the slots of a {@link MalisisInventory}, shared by all the {@link InventoryCache} viewing that
+ * inventory.<br>
+ * Changes are detected once per update, and the changed slots are encoded once into a read-only buffer that is sent as is to every
+ * viewer that is up to date with the journal. Viewers that fell behind get a buffer built for the slots changed since their last
+ * sequence.
+ *
+ * @author Ordinastie
+ *
+ */
+public class InventoryJournal
+{
+	/** Slots being watched. */
+	private final CachedSlot[] slots;
+	/** Sequence at which each slot last changed. */
+	private final int[] changes;
+	/** Current sequence of this {@link InventoryJournal}. */
+	private int sequence;
+	/** Encoded slots changed during the current sequence. */
+	private ByteBuf latest;
+	/** Lowest slot index changed during the current sequence. */
+	private int latestFirst;
+	/** Highest slot index changed during the current sequence. */
+	private int latestLast;
+	/** Copy of the ItemStack held by each slot at the previous sequence. */
+	private final ItemStack[] previous;
+	/** Whether only the size of the stack changed during the current sequence. */
+	private final boolean[] countOnly;
+
+	/**
+	 * Instantiates a new {@link InventoryJournal}.
+	 *
+	 * @param inventory the inventory
+	 */
+	public InventoryJournal(MalisisInventory inventory)
+	{
+		List<MalisisSlot> list = inventory.getSlots();
+		slots = new CachedSlot[list.size()];
+		for (int i = 0; i < slots.length; i++)
+			slots[i] = new CachedSlot(list.get(i));
+		changes = new int[slots.length];
+		previous = new ItemStack[slots.length];
+		countOnly = new boolean[slots.length];
+		for (int i = 0; i < slots.length; i++)
+			previous[i] = ItemUtils.copy(slots[i].get().getItemStack());
+	}
+
+	/**
+	 * Gets the current sequence of this {@link InventoryJournal}.
+	 *
+	 * @return the sequence
+	 */
+	public int getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Checks whether the slot at the specified index changed after the specified sequence.
+	 *
+	 * @param index the slot index
+	 * @param since the sequence
+	 * @return true, if the slot changed
+	 */
+	boolean hasChanged(int index, int since)
+	{
+		return changes[index] > since;
+	}
+
+	/**
+	 * Checks the slots for changes. If any slot changed, a new sequence is started and the changed slots are encoded.
+	 */
+	public void update()
+	{
+		int count = 0;
+		int first = -1, last = -1;
+		for (int i = 0; i < slots.length; i++)
+		{
+			slots[i].update();
+			if (slots[i].hasChanged())
+			{
+				ItemStack itemStack = slots[i].get().getItemStack();
+				countOnly[i] = isCountOnly(previous[i], itemStack);
+				previous[i] = ItemUtils.copy(itemStack);
+				changes[i] = sequence + 1;
+				count++;
+				if (first == -1)
+					first = i;
+				last = i;
+			}
+		}
+
+		if (count == 0)
+			return;
+
+		sequence++;
+		latest = encode(sequence - 1, 0, slots.length - 1, count, true);
+		latestFirst = first;
+		latestLast = last;
+	}
+
+	/**
+	 * Gets the encoded slots that changed after the specified sequence.<br>
+	 * The returned buffer is read-only and may be shared between viewers.
+	 *
+	 * @param since the last sequence known by the viewer
+	 * @return the encoded slots, or null if nothing changed
+	 */
+	public ByteBuf getChanges(int since)
+	{
+		return getChanges(since, 0, slots.length - 1);
+	}
+
+	/**
+	 * Gets the encoded slots between <code>first</code> and <code>last</code> (inclusive) that changed after the specified sequence.<br>
+	 * The returned buffer is read-only and may be shared between viewers.
+	 *
+	 * @param since the last sequence known by the viewer
+	 * @param first the first slot index
+	 * @param last the last slot index
+	 * @return the encoded slots, or null if nothing changed
+	 */
+	public ByteBuf getChanges(int since, int first, int last)
+	{
+		return getChanges(since, first, last, true);
+	}
+
+	/**
+	 * Gets the encoded slots between <code>first</code> and <code>last</code> (inclusive) that changed after the specified sequence.<br>
+	 * If <code>allowCountOnly</code> is false, the slots are always written fully, for viewers that may not hold the stacks the sizes
+	 * would apply to.
+	 *
+	 * @param since the last sequence known by the viewer
+	 * @param first the first slot index
+	 * @param last the last slot index
+	 * @param allowCountOnly whether slots where only the size changed can be sent as such
+	 * @return the encoded slots, or null if nothing changed
+	 */
+	public ByteBuf getChanges(int since, int first, int last, boolean allowCountOnly)
+	{
+		update();
+		if (since >= sequence)
+			return null;
+		if (allowCountOnly && since == sequence - 1 && first <= latestFirst && last >= latestLast)
+			return latest;
+
+		last = Math.min(last, slots.length - 1);
+		int count = 0;
+		for (int i = Math.max(first, 0); i <= last; i++)
+			if (changes[i] > since)
+				count++;
+		return count != 0 ? encode(since, first, last, count, false) : null;
+	}
+
+	/**
+	 * Gets all the slots of the inventory encoded.
+	 *
+	 * @return the encoded slots
+	 */
+	public ByteBuf getAll()
+	{
+		return getAll(0, slots.length - 1);
+	}
+
+	/**
+	 * Gets all the slots between <code>first</code> and <code>last</code> (inclusive) encoded.
+	 *
+	 * @param first the first slot index
+	 * @param last the last slot index
+	 * @return the encoded slots
+	 */
+	public ByteBuf getAll(int first, int last)
+	{
+		update();
+		first = Math.max(first, 0);
+		last = Math.min(last, slots.length - 1);
+		return encode(-1, first, last, Math.max(last - first + 1, 0), false);
+	}
+
+	/**
+	 * Encodes the slots between <code>first</code> and <code>last</code> changed after the specified sequence.
+	 *
+	 * @param since the sequence
+	 * @param first the first slot index
+	 * @param last the last slot index
+	 * @param count the number of slots to encode
+	 * @param allowCountOnly whether slots where only the size changed can be sent as such
+	 * @return the read-only buffer
+	 */
+	private ByteBuf encode(int since, int first, int last, int count, boolean allowCountOnly)
+	{
+		ByteBuf buf = Unpooled.buffer();
+		SlotsCodec.Writer writer = new SlotsCodec.Writer(buf, count);
+		for (int i = Math.max(first, 0); i <= last; i++)
+		{
+			if (changes[i] <= since)
+				continue;
+
+			MalisisSlot slot = slots[i].get();
+			if (allowCountOnly && countOnly[i])
+				writer.writeCount(slot.getSlotIndex(), slot.getItemStack().getCount());
+			else
+				writer.write(slot.getSlotIndex(), slot.getItemStack());
+		}
+		return buf.asReadOnly();
+	}
+
+	/**
+	 * Checks whether the client holding <b>previous</b> only needs the new size to get <b>itemStack</b>.<br>
+	 * <b>previous</b> is a copy taken when the slot last changed, so stacks modified in place are compared with what the client holds.
+	 *
+	 * @param previous the copy of the previous stack
+	 * @param itemStack the current stack
+	 * @return true, if only the size needs to be sent
+	 */
+	private boolean isCountOnly(ItemStack previous, ItemStack itemStack)
+	{
+		if (previous.isEmpty() || itemStack.isEmpty())
+			return false;
+		return SlotsCodec.isSameItem(previous, itemStack);
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.inventory.cache;
+
+import java.util.Random;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.malisis.core.MalisisCore;
+import net.malisis.core.inventory.MalisisInventory;
+import net.malisis.core.inventory.MalisisSlot;
+import net.malisis.core.inventory.message.SlotsCodec;
+import net.malisis.core.inventory.message.UpdateInventorySlotsMessage;
+import net.minecraft.init.Items;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+
+/**
+ * Measures the bytes per tick sent by {@link UpdateInventorySlotsMessage} for a busy 54-slot machine.<br>
+ * Each scenario runs the slot changes through an {@link InventoryJournal}, as for a viewer that is up to date, and compares the encoded
+ * size with the size of the previous format, which wrote four ints and then an int and the full {@link ItemStack} per changed slot.<br>
+ * Run with <code>/malisis debug slotsync</code>.
+ *
+ * @author Ordinastie
+ *
+ */
+public class JournalBenchmark
+{
+	private static final int SLOTS = 54;
+	private static final int TICKS = 200;
+	private static final Item[] ITEMS = { Items.IRON_INGOT, Items.GOLD_INGOT, Items.REDSTONE, Items.COAL };
+
+	/**
+	 * Runs all the scenarios and logs the results.
+	 */
+	public static void run()
+	{
+		MalisisCore.log.info("[JournalBenchmark] {} slots, average over {} ticks :", SLOTS, TICKS);
+		run("10 counts changing per tick", 10, false);
+		run("all 54 counts changing per tick", SLOTS, false);
+		run("10 slots changing item per tick", 10, true);
+		fullResend();
+	}
+
+	/**
+	 * Runs a scenario where <code>changes</code> slots change each tick.
+	 *
+	 * @param name the name of the scenario
+	 * @param changes the number of slots changed per tick
+	 * @param swapItems whether the changed slots get a different item rather than a different size
+	 */
+	private static void run(String name, int changes, boolean swapItems)
+	{
+		Random rand = new Random(0);
+		MalisisInventory inventory = createInventory(rand);
+		InventoryJournal journal = new InventoryJournal(inventory);
+		long before = 0, after = 0;
+		for (int tick = 0; tick < TICKS; tick++)
+		{
+			int since = journal.getSequence();
+			for (int i = 0, start = rand.nextInt(SLOTS); i < changes; i++)
+			{
+				MalisisSlot slot = inventory.getSlot((start + i) % SLOTS);
+				if (swapItems)
+					slot.setItemStack(new ItemStack(ITEMS[rand.nextInt(ITEMS.length)], 1 + rand.nextInt(64)));
+				else
+				{
+					ItemStack itemStack = slot.getItemStack();
+					itemStack.setCount(itemStack.getCount() % 64 + 1);
+					slot.onSlotChanged();
+				}
+			}
+
+			ByteBuf buf = journal.getChanges(since);
+			after += header() + (buf != null ? buf.readableBytes() : 0);
+			before += previousFormat(inventory, journal, since);
+		}
+		log(name, before / TICKS, after / TICKS);
+	}
+
+	/**
+	 * Measures the full resend done when a player opens the inventory.
+	 */
+	private static void fullResend()
+	{
+		MalisisInventory inventory = createInventory(new Random(0));
+		InventoryJournal journal = new InventoryJournal(inventory);
+		log("full resend", previousFormat(inventory, journal, -1), header() + journal.getAll().readableBytes());
+	}
+
+	private static MalisisInventory createInventory(Random rand)
+	{
+		MalisisInventory inventory = new MalisisInventory(null, SLOTS);
+		for (int i = 0; i < SLOTS; i++)
+			inventory.getSlot(i).setItemStack(new ItemStack(ITEMS[i * ITEMS.length / SLOTS], 1 + rand.nextInt(64)));
+		return inventory;
+	}
+
+	/**
+	 * Gets the size of the header written by {@link UpdateInventorySlotsMessage.Packet}.
+	 *
+	 * @return the size
+	 */
+	private static int header()
+	{
+		ByteBuf buf = Unpooled.buffer();
+		SlotsCodec.writeSignedVarInt(buf, 0);
+		SlotsCodec.writeVarInt(buf, 1);
+		SlotsCodec.writeSignedVarInt(buf, -1);
+		return buf.readableBytes();
+	}
+
+	/**
+	 * Gets the size the slots changed after <code>since</code> would take with the previous format.
+	 *
+	 * @param inventory the inventory
+	 * @param journal the journal
+	 * @param since the sequence
+	 * @return the size
+	 */
+	private static int previousFormat(MalisisInventory inventory, InventoryJournal journal, int since)
+	{
+		ByteBuf buf = Unpooled.buffer();
+		buf.writeInt(0);
+		buf.writeInt(1);
+		buf.writeInt(-1);
+		buf.writeInt(0);
+		for (int i = 0; i < SLOTS; i++)
+		{
+			if (!journal.hasChanged(i, since))
+				continue;
+			buf.writeInt(i);
+			ByteBufUtils.writeItemStack(buf, inventory.getSlot(i).getItemStack());
+		}
+		return buf.readableBytes();
+	}
+
+	private static void log(String name, long before, long after)
+	{
+		MalisisCore.log.info("[JournalBenchmark] {} : {} bytes before, {} bytes after ({}%)", name, before, after, after * 100 / before);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.malisis.core.inventory.message;
+
+import io.netty.buffer.ByteBuf;
+import net.malisis.core.MalisisCore;
+import net.malisis.core.inventory.MalisisInventoryContainer;
+import net.malisis.core.network.IMalisisMessageHandler;
+import net.malisis.core.registry.AutoLoad;
+import net.malisis.core.util.Utils;
+import net.minecraft.inventory.Container;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Message to ask the server to send all the slots of an inventory again, when the client could not apply an update.
+ *
+ * @author Ordinastie
+ *
+ */
+@AutoLoad(true)
+public class InventoryResyncMessage implements IMalisisMessageHandler<InventoryResyncMessage.Packet, IMessage>
+{
+	public InventoryResyncMessage()
+	{
+		MalisisCore.network.registerMessage(this, Packet.class, Side.SERVER);
+	}
+
+	/**
+	 * Handles the {@link Packet} received from the client.<br>
+	 * Sends the slots of the inventory again from the {@link MalisisInventoryContainer}.
+	 *
+	 * @param message the message
+	 * @param ctx the ctx
+	 */
+	@Override
+	public void process(Packet message, MessageContext ctx)
+	{
+		Container c = ctx.getServerHandler().player.openContainer;
+		if (message.windowId != c.windowId || !(c instanceof MalisisInventoryContainer))
+			return;
+
+		((MalisisInventoryContainer) c).resync(message.inventoryId);
+	}
+
+	/**
+	 * Asks the server to send all the slots of the inventory again.
+	 *
+	 * @param inventoryId the inventory id
+	 */
+	@SideOnly(Side.CLIENT)
+	public static void sendResync(int inventoryId)
+	{
+		int windowId = Utils.getClientPlayer().openContainer.windowId;
+		MalisisCore.network.sendToServer(new Packet(inventoryId, windowId));
+	}
+
+	/**
+	 * The packet holding the data
+	 */
+	public static class Packet implements IMessage
+	{
+		private int inventoryId;
+		private int windowId;
+
+		public Packet()
+		{}
+
+		public Packet(int inventoryId, int windowId)
+		{
+			this.inventoryId = inventoryId;
+			this.windowId = windowId;
+		}
+
+		@Override
+		public void fromBytes(ByteBuf buf)
+		{
+			inventoryId = buf.readInt();
+			windowId = buf.readInt();
+		}
+
+		@Override
+		public void toBytes(ByteBuf buf)
+		{
+			buf.writeInt(inventoryId);
+			buf.writeInt(windowId);
+		}
+	}
+}
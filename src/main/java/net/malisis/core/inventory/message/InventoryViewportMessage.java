@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.malisis.core.inventory.message;
+
+import io.netty.buffer.ByteBuf;
+import net.malisis.core.MalisisCore;
+import net.malisis.core.inventory.MalisisInventoryContainer;
+import net.malisis.core.network.IMalisisMessageHandler;
+import net.malisis.core.registry.AutoLoad;
+import net.malisis.core.util.Utils;
+import net.minecraft.inventory.Container;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Message to tell the server which range of slots of an inventory is displayed by the client.
+ *
+ * @author Ordinastie
+ *
+ */
+@AutoLoad(true)
+public class InventoryViewportMessage implements IMalisisMessageHandler<InventoryViewportMessage.Packet, IMessage>
+{
+	public InventoryViewportMessage()
+	{
+		MalisisCore.network.registerMessage(this, Packet.class, Side.SERVER);
+	}
+
+	/**
+	 * Handles the {@link Packet} received from the client.<br>
+	 * Sets the viewport for the inventory in the {@link MalisisInventoryContainer}.
+	 *
+	 * @param message the message
+	 * @param ctx the ctx
+	 */
+	@Override
+	public void process(Packet message, MessageContext ctx)
+	{
+		Container c = ctx.getServerHandler().player.openContainer;
+		if (message.windowId != c.windowId || !(c instanceof MalisisInventoryContainer))
+			return;
+
+		((MalisisInventoryContainer) c).setViewport(message.inventoryId, message.first, message.last);
+	}
+
+	/**
+	 * Sends the range of slots displayed to the server.
+	 *
+	 * @param inventoryId the inventory id
+	 * @param first the first slot index
+	 * @param last the last slot index
+	 */
+	@SideOnly(Side.CLIENT)
+	public static void sendViewport(int inventoryId, int first, int last)
+	{
+		int windowId = Utils.getClientPlayer().openContainer.windowId;
+		MalisisCore.network.sendToServer(new Packet(inventoryId, first, last, windowId));
+	}
+
+	/**
+	 * The packet holding the data
+	 */
+	public static class Packet implements IMessage
+	{
+		private int inventoryId;
+		private int first;
+		private int last;
+		private int windowId;
+
+		public Packet()
+		{}
+
+		public Packet(int inventoryId, int first, int last, int windowId)
+		{
+			this.inventoryId = inventoryId;
+			this.first = first;
+			this.last = last;
+			this.windowId = windowId;
+		}
+
+		@Override
+		public void fromBytes(ByteBuf buf)
+		{
+			inventoryId = buf.readInt();
+			first = buf.readInt();
+			last = buf.readInt();
+			windowId = buf.readInt();
+		}
+
+		@Override
+		public void toBytes(ByteBuf buf)
+		{
+			buf.writeInt(inventoryId);
+			buf.writeInt(first);
+			buf.writeInt(last);
+			buf.writeInt(windowId);
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.malisis.core.inventory.message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+
+/**
+ * Compact encoding for slot updates.<br>
+ * Slots are written in ascending order, each entry starting with a varint holding the gap since the previous slot index and the entry
+ * type:
+ * <ul>
+ * <li>{@link #EMPTY}: the slot is now empty</li>
+ * <li>{@link #COUNT}: only the stack size changed, followed by the new size</li>
+ * <li>{@link #PALETTE}: same item as a previous entry of the packet, followed by the palette index and the size</li>
+ * <li>{@link #NEW}: the full {@link ItemStack}, which is then added to the palette</li>
+ * </ul>
+ *
+ * @author Ordinastie
+ *
+ */
+public class SlotsCodec
+{
+	public static final int EMPTY = 0;
+	public static final int COUNT = 1;
+	public static final int PALETTE = 2;
+	public static final int NEW = 3;
+
+	/**
+	 * Writes slot entries into a {@link ByteBuf}.
+	 */
+	public static class Writer
+	{
+		private final ByteBuf buf;
+		/** Last slot index written. */
+		private int previous = -1;
+		/** Items already written in this packet. */
+		private final List<ItemStack> palette = new ArrayList<>();
+		/** Palette indexes by item hash. */
+		private final Map<Integer, Integer> paletteIndexes = new HashMap<>();
+
+		/**
+		 * Instantiates a new {@link Writer} and writes the number of entries that will follow.
+		 *
+		 * @param buf the buf
+		 * @param count the number of entries
+		 */
+		public Writer(ByteBuf buf, int count)
+		{
+			this.buf = buf;
+			writeVarInt(buf, count);
+		}
+
+		private void writeHeader(int index, int type)
+		{
+			if (index <= previous)
+				throw new IllegalArgumentException("Slots must be written in ascending order (" + index + " after " + previous + ")");
+			writeVarInt(buf, (index - previous - 1) << 2 | type);
+			previous = index;
+		}
+
+		/**
+		 * Writes the full {@link ItemStack} for the slot, or a reference to the palette if the same item was already written.
+		 *
+		 * @param index the slot index
+		 * @param itemStack the item stack
+		 */
+		public void write(int index, ItemStack itemStack)
+		{
+			if (itemStack.isEmpty())
+			{
+				writeHeader(index, EMPTY);
+				return;
+			}
+
+			int hash = hash(itemStack);
+			Integer paletteIndex = paletteIndexes.get(hash);
+			if (paletteIndex != null && isSameItem(palette.get(paletteIndex), itemStack))
+			{
+				writeHeader(index, PALETTE);
+				writeVarInt(buf, paletteIndex);
+				writeVarInt(buf, itemStack.getCount());
+				return;
+			}
+
+			writeHeader(index, NEW);
+			ByteBufUtils.writeItemStack(buf, itemStack);
+			if (paletteIndex == null)
+				paletteIndexes.put(hash, palette.size());
+			palette.add(itemStack);
+		}
+
+		/**
+		 * Writes only the new size for the slot. The client must already hold the same item in that slot.
+		 *
+		 * @param index the slot index
+		 * @param count the count
+		 */
+		public void writeCount(int index, int count)
+		{
+			writeHeader(index, COUNT);
+			writeVarInt(buf, count);
+		}
+	}
+
+	/**
+	 * Reads the slot entries from a {@link ByteBuf}.<br>
+	 * Full stacks are put into <b>slots</b>, count only updates into <b>counts</b>.
+	 *
+	 * @param buf the buf
+	 * @param slots the slots
+	 * @param counts the counts
+	 */
+	public static void read(ByteBuf buf, Map<Integer, ItemStack> slots, Map<Integer, Integer> counts)
+	{
+		List<ItemStack> palette = new ArrayList<>();
+		int size = readVarInt(buf);
+		int index = -1;
+		for (int i = 0; i < size; i++)
+		{
+			int header = readVarInt(buf);
+			index += (header >>> 2) + 1;
+			switch (header & 3)
+			{
+				case EMPTY:
+					slots.put(index, ItemStack.EMPTY);
+					break;
+				case COUNT:
+					counts.put(index, readVarInt(buf));
+					break;
+				case PALETTE:
+					ItemStack itemStack = palette.get(readVarInt(buf)).copy();
+					itemStack.setCount(readVarInt(buf));
+					slots.put(index, itemStack);
+					break;
+				case NEW:
+					itemStack = ByteBufUtils.readItemStack(buf);
+					palette.add(itemStack.copy());
+					slots.put(index, itemStack);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether two {@link ItemStack} hold the same item, regardless of their size.
+	 *
+	 * @param is1 the first item stack
+	 * @param is2 the second item stack
+	 * @return true, if same item
+	 */
+	public static boolean isSameItem(ItemStack is1, ItemStack is2)
+	{
+		return is1.getItem() == is2.getItem() && is1.getItemDamage() == is2.getItemDamage() && ItemStack.areItemStackTagsEqual(is1, is2);
+	}
+
+	private static int hash(ItemStack itemStack)
+	{
+		return (System.identityHashCode(itemStack.getItem()) * 31 + itemStack.getItemDamage()) * 31 + Objects.hashCode(itemStack.getTagCompound());
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 *
+	 * @param buf the buf
+	 * @param value the value
+	 */
+	public static void writeVarInt(ByteBuf buf, int value)
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			buf.writeByte(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		buf.writeByte(value);
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 *
+	 * @param buf the buf
+	 * @return the value
+	 */
+	public static int readVarInt(ByteBuf buf)
+	{
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do
+		{
+			b = buf.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0 && shift < 35);
+		return value;
+	}
+
+	/**
+	 * Writes a signed varint, zigzag encoded.
+	 *
+	 * @param buf the buf
+	 * @param value the value
+	 */
+	public static void writeSignedVarInt(ByteBuf buf, int value)
+	{
+		writeVarInt(buf, value << 1 ^ value >> 31);
+	}
+
+	/**
+	 * Reads a signed varint, zigzag encoded.
+	 *
+	 * @param buf the buf
+	 * @return the value
+	 */
+	public static int readSignedVarInt(ByteBuf buf)
+	{
+		int value = readVarInt(buf);
+		return value >>> 1 ^ -(value & 1);
+	}
+}
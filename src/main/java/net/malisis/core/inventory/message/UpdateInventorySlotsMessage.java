@@ -26,13 +26,18 @@ package net.malisis.core.inventory.message;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.malisis.core.MalisisCommand;
 import net.malisis.core.MalisisCore;
 import net.malisis.core.inventory.MalisisInventory;
 import net.malisis.core.inventory.MalisisInventoryContainer;
 import net.malisis.core.inventory.MalisisSlot;
+import net.malisis.core.inventory.cache.JournalBenchmark;
 import net.malisis.core.network.IMalisisMessageHandler;
 import net.malisis.core.registry.AutoLoad;
 import net.malisis.core.util.Utils;
@@ -40,7 +45,6 @@ import net.minecraft.client.entity.EntityPlayerSP;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.inventory.Container;
 import net.minecraft.item.ItemStack;
-import net.minecraftforge.fml.common.network.ByteBufUtils;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 import net.minecraftforge.fml.relauncher.Side;
@@ -55,10 +59,13 @@ import net.minecraftforge.fml.relauncher.Side;
 public class UpdateInventorySlotsMessage implements IMalisisMessageHandler<UpdateInventorySlotsMessage.Packet, IMessage>
 {
 	public static int PICKEDITEM = -2;
+	/** Encoded empty slot list, used to only send the occupied slot count. */
+	public static final ByteBuf NO_SLOTS = Unpooled.buffer(1).writeByte(0).asReadOnly();
 
 	public UpdateInventorySlotsMessage()
 	{
 		MalisisCore.network.registerMessage(this, Packet.class, Side.CLIENT);
+		MalisisCommand.registerDebug("slotsync", JournalBenchmark::run);
 	}
 
 	/**
@@ -79,7 +86,7 @@ public class UpdateInventorySlotsMessage implements IMalisisMessageHandler<Updat
 		MalisisInventoryContainer container = (MalisisInventoryContainer) c;
 		if (message.inventoryId == PICKEDITEM)
 		{
-			container.setPickedItemStack(message.slots.get(-1));
+			container.setPickedItemStack(message.slots.getOrDefault(0, ItemStack.EMPTY));
 			return;
 		}
 
@@ -87,6 +94,9 @@ public class UpdateInventorySlotsMessage implements IMalisisMessageHandler<Updat
 		if (inventory == null)
 			return;
 
+		if (message.occupied >= 0)
+			inventory.setOccupiedSlotCount(message.occupied);
+
 		for (Entry<Integer, ItemStack> entry : message.slots.entrySet())
 		{
 			Integer slotNumber = entry.getKey();
@@ -94,6 +104,25 @@ public class UpdateInventorySlotsMessage implements IMalisisMessageHandler<Updat
 
 			inventory.setItemStack(slotNumber, itemStack);
 		}
+
+		boolean resync = false;
+		for (Entry<Integer, Integer> entry : message.counts.entrySet())
+		{
+			ItemStack itemStack = inventory.getItemStack(entry.getKey());
+			//the size can't be applied to an empty slot, get the full content from the server
+			if (itemStack.isEmpty())
+			{
+				resync = true;
+				continue;
+			}
+
+			itemStack = itemStack.copy();
+			itemStack.setCount(entry.getValue());
+			inventory.setItemStack(entry.getKey(), itemStack);
+		}
+
+		if (resync)
+			InventoryResyncMessage.sendResync(message.inventoryId);
 	}
 
 	/**
@@ -126,11 +155,32 @@ public class UpdateInventorySlotsMessage implements IMalisisMessageHandler<Updat
 		MalisisCore.network.sendTo(packet, player);
 	}
 
+	/**
+	 * Sends a {@link Packet} to player to update the inventory slots, with the slots already encoded.<br>
+	 * The <code>slots</code> buffer is not modified and can be shared between players.
+	 *
+	 * @param inventoryId the inventory id
+	 * @param slots the encoded slots
+	 * @param occupied the number of occupied slots in the inventory, or -1 if the client has all the slots
+	 * @param player the player
+	 * @param windowId the window id
+	 */
+	public static void updateSlots(int inventoryId, ByteBuf slots, int occupied, ServerPlayerEntity player, int windowId)
+	{
+		Packet packet = new Packet(inventoryId, windowId);
+		packet.encodedSlots = slots;
+		packet.occupied = occupied;
+		MalisisCore.network.sendTo(packet, player);
+	}
+
 	public static class Packet implements IMessage
 	{
 		private int inventoryId;
-		private HashMap<Integer, ItemStack> slots = new HashMap<>();
+		private TreeMap<Integer, ItemStack> slots = new TreeMap<>();
+		private HashMap<Integer, Integer> counts = new HashMap<>();
 		private int windowId;
+		private ByteBuf encodedSlots;
+		private int occupied = -1;
 
 		public Packet()
 		{}
@@ -146,43 +196,41 @@ public class UpdateInventorySlotsMessage implements IMalisisMessageHandler<Updat
 			slots.put(slot.getSlotIndex(), slot.getItemStack());
 		}
 
-		public void setSlots(HashMap<Integer, ItemStack> slots)
+		public void setSlots(Map<Integer, ItemStack> slots)
 		{
 			if (slots != null)
-				this.slots = slots;
+				this.slots = new TreeMap<>(slots);
 		}
 
 		public void draggedItemStack(ItemStack itemStack)
 		{
-			slots.put(-1, itemStack);
+			slots.put(0, itemStack);
 		}
 
 		@Override
 		public void fromBytes(ByteBuf buf)
 		{
-			this.inventoryId = buf.readInt();
-			this.windowId = buf.readInt();
-			int size = buf.readInt();
-
-			for (int i = 0; i < size; i++)
-				slots.put(buf.readInt(), ByteBufUtils.readItemStack(buf));
+			this.inventoryId = SlotsCodec.readSignedVarInt(buf);
+			this.windowId = SlotsCodec.readVarInt(buf);
+			this.occupied = SlotsCodec.readSignedVarInt(buf);
+			SlotsCodec.read(buf, slots, counts);
 		}
 
 		@Override
 		public void toBytes(ByteBuf buf)
 		{
-			buf.writeInt(inventoryId);
-			buf.writeInt(windowId);
-			buf.writeInt(slots.size());
-
-			for (Entry<Integer, ItemStack> entry : slots.entrySet())
+			SlotsCodec.writeSignedVarInt(buf, inventoryId);
+			SlotsCodec.writeVarInt(buf, windowId);
+			SlotsCodec.writeSignedVarInt(buf, occupied);
+			if (encodedSlots != null)
 			{
-				Integer slotNumber = entry.getKey();
-				ItemStack itemStack = entry.getValue();
-
-				buf.writeInt(slotNumber);
-				ByteBufUtils.writeItemStack(buf, itemStack);
+				buf.writeBytes(encodedSlots, encodedSlots.readerIndex(), encodedSlots.readableBytes());
+				return;
 			}
+
+			SlotsCodec.Writer writer = new SlotsCodec.Writer(buf, slots.size());
+			for (Entry<Integer, ItemStack> entry : slots.entrySet())
+				writer.write(entry.getKey(), entry.getValue());
 		}
 	}
 }
@@ -53,34 +53,34 @@ public class PlayerInventory extends MalisisInventory
 	}
 
 	@Override
-	public ItemStack transferInto(ItemStack itemStack, boolean reversed)
+	public ItemStack transferInto(ItemStack itemStack, boolean reversed, boolean simulate)
 	{
 		if (itemStack.isEmpty())
 			return ItemStack.EMPTY;
 		//fill existing stacks in the hotbar first
-		itemStack = transferIntoHotbar(itemStack, false, reversed);
+		itemStack = transferIntoHotbar(itemStack, false, reversed, simulate);
 		if (itemStack.isEmpty())
 			return ItemStack.EMPTY;
 		//fill existing stacks in the inventory
-		itemStack = transferIntoInventory(itemStack, false, reversed);
+		itemStack = transferIntoInventory(itemStack, false, reversed, simulate);
 		if (itemStack.isEmpty())
 			return ItemStack.EMPTY;
 		//fill empty slots in the hotbar
-		itemStack = transferIntoHotbar(itemStack, true, reversed);
+		itemStack = transferIntoHotbar(itemStack, true, reversed, simulate);
 		if (itemStack.isEmpty())
 			return ItemStack.EMPTY;
 		//fill empty slots in the inventory (returns what's left)
-		return transferIntoInventory(itemStack, true, reversed);
+		return transferIntoInventory(itemStack, true, reversed, simulate);
 	}
 
-	private ItemStack transferIntoHotbar(ItemStack itemStack, boolean emptySlot, boolean reversed)
+	private ItemStack transferIntoHotbar(ItemStack itemStack, boolean emptySlot, boolean reversed, boolean simulate)
 	{
-		return transferInto(itemStack, emptySlot, reversed ? 8 : 0, reversed ? 0 : 8);
+		return transferInto(itemStack, emptySlot, reversed ? 8 : 0, reversed ? 0 : 8, simulate);
 	}
 
-	private ItemStack transferIntoInventory(ItemStack itemStack, boolean emptySlot, boolean reversed)
+	private ItemStack transferIntoInventory(ItemStack itemStack, boolean emptySlot, boolean reversed, boolean simulate)
 	{
-		return transferInto(itemStack, emptySlot, reversed ? 35 : 9, reversed ? 9 : 35);
+		return transferInto(itemStack, emptySlot, reversed ? 35 : 9, reversed ? 9 : 35, simulate);
 	}
 
 	@Override
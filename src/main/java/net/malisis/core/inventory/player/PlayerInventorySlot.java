@@ -38,6 +38,8 @@ public class PlayerInventorySlot extends MalisisSlot
 	public PlayerInventorySlot(PlayerEntity p)
 	{
 		player = p;
+		//the stacks are shared with the vanilla inventory, which damages and stacks items directly
+		mutableInPlace = true;
 	}
 
 	@Override
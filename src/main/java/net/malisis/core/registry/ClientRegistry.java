@@ -112,13 +112,14 @@ public class ClientRegistry
 	}
 
 	/**
-	 * Processes all callbacks registered for the event.
+	 * Waits for the preloaded resources and processes all callbacks registered for the event.
 	 *
 	 * @param event the event
 	 */
 	@SubscribeEvent
 	public void onTextureStitchEvent(TextureStitchEvent.Pre event)
 	{
+		preloadRegistry.await();
 		Registries.processTextureStitchEvent(event.getMap());
 	}
 
@@ -27,6 +27,8 @@ package net.malisis.core.registry;
 import static com.google.common.base.Preconditions.*;
 import static net.malisis.core.registry.Registries.*;
 
+import java.io.ByteArrayInputStream;
+
 import com.google.common.collect.ImmutableMap;
 
 import net.malisis.core.MalisisCore;
@@ -43,7 +45,12 @@ import net.malisis.core.registry.TextureStitchedRegistry.ITextureStitchedCallbac
 import net.malisis.core.renderer.IBlockRenderer;
 import net.malisis.core.renderer.IItemRenderer;
 import net.malisis.core.renderer.IRenderWorldLast;
+import net.malisis.core.renderer.font.FontGeneratorOptions;
+import net.malisis.core.renderer.font.MalisisFont;
 import net.malisis.core.renderer.model.EmptyModelLoader;
+import net.malisis.core.renderer.model.MalisisModel;
+import net.malisis.core.renderer.model.loader.AnimationImporter;
+import net.malisis.core.renderer.model.loader.ObjFileImporter;
 import net.malisis.core.util.callback.ICallback.CallbackOption;
 import net.malisis.core.util.clientnotif.ClientNotificationManager;
 import net.minecraft.block.Block;
@@ -250,6 +257,51 @@ public class MalisisRegistry
 		clientRegistry.itemRendererOverrides.add(checkNotNull(override));
 	}
 
+	/**
+	 * Declares a model to load in parallel during the initialization.<br>
+	 * The animations associated with the model are loaded along with it. The model is ready before the textures are stitched, and the
+	 * {@link MalisisModel MalisisModels} created from it only have to build their shapes.
+	 *
+	 * @param rl the resource location of the model
+	 */
+	@SideOnly(Side.CLIENT)
+	public static void preloadModel(ResourceLocation rl)
+	{
+		if (!rl.getResourcePath().endsWith(".obj"))
+			return;
+
+		preloadRegistry.preload("model", rl, ObjFileImporter::preload);
+		preloadRegistry.preload("animation", new ResourceLocation(rl + ".anim"), AnimationImporter::preload);
+	}
+
+	/**
+	 * Declares a model to load in parallel during the initialization, and a callback to run on the client thread once it's loaded, before
+	 * the textures are stitched.
+	 *
+	 * @param rl the resource location of the model
+	 * @param callback the callback
+	 */
+	@SideOnly(Side.CLIENT)
+	public static void preloadModel(ResourceLocation rl, Runnable callback)
+	{
+		preloadModel(rl);
+		preloadRegistry.whenLoaded(callback);
+	}
+
+	/**
+	 * Declares a font to load in parallel during the initialization.<br>
+	 * The font is ready before the textures are stitched, and the {@link MalisisFont MalisisFonts} created from it with the same options
+	 * reuse it.
+	 *
+	 * @param rl the resource location of the font
+	 * @param options the options
+	 */
+	@SideOnly(Side.CLIENT)
+	public static void preloadFont(ResourceLocation rl, FontGeneratorOptions options)
+	{
+		preloadRegistry.preload("font", rl, bytes -> MalisisFont.load(new ByteArrayInputStream(bytes), options));
+	}
+
 	/**
 	 * Registers a new {@link SoundEvent}.
 	 *
@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.registry;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import net.malisis.core.MalisisCore;
+import net.malisis.core.util.Silenced;
+import net.malisis.core.util.Timer;
+import net.malisis.core.util.Utils;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.resources.IResource;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Registry for the resources to load in parallel during the initialization of the mods.<br>
+ * The files are read when the resources are declared, and parsed on a bounded pool while the registration goes on. All the resources are
+ * waited for before the textures are stitched.
+ *
+ * @author Ordinastie
+ *
+ */
+@SideOnly(Side.CLIENT)
+public class PreloadRegistry
+{
+	/** Tasks for the resources declared since the last texture stitching. */
+	private Map<String, ForkJoinTask<?>> tasks = Maps.newLinkedHashMap();
+	/** Callbacks to run once the resources are loaded. */
+	private List<Runnable> callbacks = Lists.newArrayList();
+	/** Time at which the first resource was declared. */
+	private Timer timer;
+
+	/**
+	 * Declares a resource to preload.<br>
+	 * The content of the resource is read on the calling thread and handed to the loader on the pool. Resources already declared, or that
+	 * don't exist, are ignored.
+	 *
+	 * @param type the type of resource, for the logs
+	 * @param rl the resource location
+	 * @param loader the loader
+	 */
+	void preload(String type, ResourceLocation rl, Consumer<byte[]> loader)
+	{
+		String name = type + " " + rl;
+		if (tasks.containsKey(name))
+			return;
+
+		IResource res = Silenced.get(() -> Minecraft.getMinecraft().getResourceManager().getResource(rl));
+		byte[] bytes = null;
+		if (res != null)
+		{
+			try (InputStream is = res.getInputStream())
+			{
+				bytes = IOUtils.toByteArray(is);
+			}
+			catch (Exception e)
+			{
+				MalisisCore.log.error("[PreloadRegistry] Failed to read {}", name, e);
+			}
+		}
+		if (bytes == null)
+			return;
+
+		if (tasks.isEmpty())
+			timer = new Timer();
+		byte[] content = bytes;
+		tasks.put(name, Utils.getPool().submit(() -> load(name, content, loader)));
+	}
+
+	/**
+	 * Loads a resource and reports the time it took.
+	 *
+	 * @param name the name of the resource
+	 * @param bytes the content of the resource
+	 * @param loader the loader
+	 */
+	private void load(String name, byte[] bytes, Consumer<byte[]> loader)
+	{
+		Timer t = new Timer();
+		try
+		{
+			loader.accept(bytes);
+			MalisisCore.log.info("[PreloadRegistry] Loaded {} in {}ms", name, t.elapsedTime());
+		}
+		catch (Exception e)
+		{
+			MalisisCore.log.error("[PreloadRegistry] Failed to load {}", name, e);
+		}
+	}
+
+	/**
+	 * Declares a callback to run on the client thread once the resources declared are loaded.
+	 *
+	 * @param callback the callback
+	 */
+	void whenLoaded(Runnable callback)
+	{
+		callbacks.add(callback);
+	}
+
+	/**
+	 * Waits for all the resources declared to be loaded, then runs the callbacks.<br>
+	 * Called before the textures are stitched.
+	 */
+	void await()
+	{
+		if (!tasks.isEmpty())
+		{
+			tasks.values().forEach(ForkJoinTask::quietlyJoin);
+			MalisisCore.log.info("[PreloadRegistry] Preloaded {} resources in {}ms", tasks.size(), timer.elapsedTime());
+			tasks.clear();
+		}
+
+		for (Runnable callback : callbacks)
+		{
+			try
+			{
+				callback.run();
+			}
+			catch (Exception e)
+			{
+				MalisisCore.log.error("[PreloadRegistry] Failed to run callback", e);
+			}
+		}
+		callbacks.clear();
+	}
+}
@@ -60,6 +60,9 @@ public class Registries
 	@SideOnly(Side.CLIENT)
 	/** {@link ClientRegistry} instance. */
 	static ClientRegistry clientRegistry;
+	@SideOnly(Side.CLIENT)
+	/** {@link PreloadRegistry} instance. */
+	static PreloadRegistry preloadRegistry;
 	/** {@link ModEventRegistry} instance. */
 	static ModEventRegistry modEventRegistry = new ModEventRegistry();
 	/** The {@link RenderBlockRegistry} instance. */
@@ -83,7 +86,10 @@ public class Registries
 																		.map(IRegisterComponent.class::cast)
 																		.forEach(comp -> comp.register(p))));
 		if (MalisisCore.isClient())
+		{
 			clientRegistry = new ClientRegistry();
+			preloadRegistry = new PreloadRegistry();
+		}
 	}
 
 	/**
@@ -24,24 +24,27 @@
 
 package net.malisis.core.renderer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import net.malisis.core.block.IComponent;
 import net.malisis.core.registry.MalisisRegistry;
 import net.malisis.core.renderer.component.AnimatedModelComponent;
-import net.malisis.core.util.BlockPosUtils;
 import net.malisis.core.util.EntityUtils;
 import net.malisis.core.util.Point;
 import net.malisis.core.util.callback.CallbackResult;
 import net.malisis.core.util.callback.ICallback.CallbackOption;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.renderer.culling.Frustum;
-import net.minecraft.client.renderer.culling.ICamera;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraft.world.IBlockReader;
 import net.minecraft.world.chunk.Chunk;
@@ -51,13 +54,22 @@ import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.event.world.WorldEvent;
 
 /**
+ * Renders the {@link IAnimatedRenderable} registered in the world every frame.<br>
+ * The renderables are stored per chunk, so they can be registered from the chunk rendering threads and removed all at once when the chunk
+ * unloads. Only the renderables inside the camera frustum and within {@link #renderDistance} are rendered, farthest first.
+ *
  * @author Ordinastie
  *
  */
 public class AnimatedRenderer extends MalisisRenderer<TileEntity>
 {
-	/** Map of {@link ISortedRenderable} per {@link BlockPos}. */
-	private static Map<BlockPos, IAnimatedRenderable> animatedRenderables = Maps.newHashMap();
+	/** Distance (in blocks) beyond which the {@link IAnimatedRenderable} are not rendered. */
+	public static int renderDistance = 128;
+
+	/** Map of {@link IAnimatedRenderable} per {@link BlockPos}, per chunk. */
+	private static Map<Long, Map<BlockPos, IAnimatedRenderable>> animatedRenderables = new ConcurrentHashMap<>();
+	/** Whether {@link IAnimatedRenderable} were added or removed since the last frame. */
+	private static volatile boolean changed = false;
 	static
 	{
 		//check renderable to be removed when a block changes.
@@ -66,6 +78,8 @@ public class AnimatedRenderer extends MalisisRenderer<TileEntity>
 
 	/** Current {@link IAnimatedRenderable} being rendered. */
 	IAnimatedRenderable renderable;
+	/** {@link IAnimatedRenderable} ordered by distance to the camera during the last frame. */
+	private List<SortedRenderable> sortedRenderables = new ArrayList<>();
 
 	public AnimatedRenderer()
 	{
@@ -93,18 +107,53 @@ public class AnimatedRenderer extends MalisisRenderer<TileEntity>
 	public void render()
 	{
 		Point viewOffset = EntityUtils.getRenderViewOffset(partialTick);
-		ICamera camera = new Frustum();
-		//camera.setPosition(viewOffset.x, viewOffset.y, viewOffset.z);
+		//the frustum is built from the current camera matrices, but the bounding boxes are in world coordinates
+		Frustum camera = new Frustum();
+		camera.setPosition(viewOffset.x, viewOffset.y, viewOffset.z);
+
+		if (changed)
+			updateRenderables();
 
+		//distances barely change between frames, so sorting the list from last frame is close to linear
+		for (SortedRenderable sr : sortedRenderables)
+			sr.distance = sr.renderable.getPos().distanceSq(viewOffset.x, viewOffset.y, viewOffset.z);
+		sortedRenderables.sort((r1, r2) -> Double.compare(r2.distance, r1.distance));
+
+		double maxDistance = (double) renderDistance * renderDistance;
 		renderType = RenderType.ANIMATED;
-		animatedRenderables	.values()
-							.stream()
-							.filter(r -> r.inFrustrum(camera))
-							.sorted((r1, r2) -> -BlockPosUtils.compare(viewOffset, r1.getPos(), r2.getPos()))
-							.forEach(this::renderRenderable);
+		for (SortedRenderable sr : sortedRenderables)
+		{
+			if (sr.distance > maxDistance || !sr.renderable.inFrustrum(camera))
+				continue;
+
+			renderRenderable(sr.renderable);
+		}
 		renderType = RenderType.WORLD_LAST;
 	}
 
+	/**
+	 * Updates the list of {@link IAnimatedRenderable} to render after some were added or removed.<br>
+	 * The renderables still registered keep their order from the last frame.
+	 */
+	private void updateRenderables()
+	{
+		changed = false;
+		Set<IAnimatedRenderable> kept = Sets.newIdentityHashSet();
+		List<SortedRenderable> list = new ArrayList<>();
+		for (SortedRenderable sr : sortedRenderables)
+		{
+			if (getRenderable(sr.renderable.getPos()).orElse(null) == sr.renderable && kept.add(sr.renderable))
+				list.add(sr);
+		}
+		for (Map<BlockPos, IAnimatedRenderable> chunk : animatedRenderables.values())
+		{
+			for (IAnimatedRenderable r : chunk.values())
+				if (!kept.contains(r))
+					list.add(new SortedRenderable(r));
+		}
+		sortedRenderables = list;
+	}
+
 	/**
 	 * Renders an {@link IAnimatedRenderable}.
 	 *
@@ -127,13 +176,27 @@ public class AnimatedRenderer extends MalisisRenderer<TileEntity>
 	@SubscribeEvent
 	public void onChunkUnload(ChunkEvent.Unload event)
 	{
-		animatedRenderables.keySet().removeIf(p -> (p.getX() >> 4) == event.getChunk().x && (p.getZ() >> 4) == event.getChunk().getPos().z);
+		ChunkPos chunkPos = event.getChunk().getPos();
+		if (animatedRenderables.remove(ChunkPos.asLong(chunkPos.x, chunkPos.z)) != null)
+			changed = true;
 	}
 
 	@SubscribeEvent
 	public void onWorldUnload(WorldEvent.Unload event)
 	{
 		animatedRenderables.clear();
+		changed = true;
+	}
+
+	/**
+	 * Gets the key of the chunk containing the {@link BlockPos} in {@link #animatedRenderables}.
+	 *
+	 * @param pos the pos
+	 * @return the key
+	 */
+	private static long chunkKey(BlockPos pos)
+	{
+		return ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
 	}
 
 	/**
@@ -156,7 +219,13 @@ public class AnimatedRenderer extends MalisisRenderer<TileEntity>
 
 		AnimatedModelComponent comp = IComponent.getComponent(AnimatedModelComponent.class, oldState.getBlock());
 		if (comp != null)
-			animatedRenderables.remove(pos);
+		{
+			animatedRenderables.computeIfPresent(chunkKey(pos), (key, map) -> {
+				if (map.remove(pos) != null)
+					changed = true;
+				return map.isEmpty() ? null : map;
+			});
+		}
 
 		return CallbackResult.noResult();
 	}
@@ -169,19 +238,44 @@ public class AnimatedRenderer extends MalisisRenderer<TileEntity>
 	 */
 	public static Optional<IAnimatedRenderable> getRenderable(BlockPos pos)
 	{
-		return Optional.ofNullable(animatedRenderables.get(pos));
+		Map<BlockPos, IAnimatedRenderable> map = animatedRenderables.get(chunkKey(pos));
+		return Optional.ofNullable(map != null ? map.get(pos) : null);
 	}
 
 	/**
-	 * Registers the {@link AnimatedModelComponent} at the specified position if there isn't already one.
+	 * Registers the {@link AnimatedModelComponent} at the specified position if there isn't already one.<br>
+	 * Can be called from the chunk rendering threads.
 	 *
 	 * @param pos the pos
 	 * @param amc the amc
 	 */
 	public static void registerRenderable(IBlockAccess world, BlockPos pos, AnimatedModelComponent amc)
 	{
-		IAnimatedRenderable r = animatedRenderables.get(pos);
-		if (r == null)
-			animatedRenderables.put(pos, amc.createRenderable(world, pos));
+		//the position received while rendering the chunk may be mutable
+		BlockPos immutablePos = pos.toImmutable();
+		animatedRenderables.compute(chunkKey(immutablePos), (key, map) -> {
+			if (map == null)
+				map = new ConcurrentHashMap<>();
+			if (!map.containsKey(immutablePos))
+			{
+				map.put(immutablePos, amc.createRenderable(world, immutablePos));
+				changed = true;
+			}
+			return map;
+		});
+	}
+
+	/**
+	 * {@link IAnimatedRenderable} with its distance to the camera for the current frame.
+	 */
+	private static class SortedRenderable
+	{
+		private final IAnimatedRenderable renderable;
+		private double distance;
+
+		public SortedRenderable(IAnimatedRenderable renderable)
+		{
+			this.renderable = renderable;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -153,6 +153,10 @@ public class MalisisRenderer<T extends TileEntity> extends TileEntitySpecialRend
 	private boolean isBatched = false;
 	/** Vertex positions offset. **/
 	protected Vector3d posOffset = null;
+	/** Matrix applied to the vertex positions as they are drawn. **/
+	protected org.lwjgl.util.vector.Matrix4f vertexMatrix = null;
+	/** Matrix of the {@link Shape} drawn by {@link #drawShapeTransformed(Shape, RenderParameters)}. **/
+	private final org.lwjgl.util.vector.Matrix4f shapeMatrix = new org.lwjgl.util.vector.Matrix4f();
 
 	/** List of classes the Block is allowed to be. */
 	private Set<Class<?>> ensureBlocks = Sets.newHashSet();
@@ -861,6 +865,30 @@ public class MalisisRenderer<T extends TileEntity> extends TileEntitySpecialRend
 			drawFace(f, params);
 	}
 
+	/**
+	 * Draws a {@link Shape} with specified {@link RenderParameters}, applying its transformations to the vertexes as they are drawn.<br>
+	 * Unlike {@link #drawShape(Shape, RenderParameters)}, the vertexes of the shape keep their position, so the shape only needs
+	 * {@link Shape#resetTransforms()} before being transformed and drawn again.
+	 *
+	 * @param s the s
+	 * @param params the params
+	 */
+	public void drawShapeTransformed(Shape s, RenderParameters params)
+	{
+		if (s == null)
+			return;
+		if (s.hasMergedVertexes())
+		{
+			drawShape(s, params);
+			return;
+		}
+
+		vertexMatrix = s.getRenderMatrix(shapeMatrix);
+		for (Face f : s.getFaces())
+			drawFace(f, params);
+		vertexMatrix = null;
+	}
+
 	/**
 	 * Draws a {@link Face} with its own {@link RenderParameters}.
 	 *
@@ -952,7 +980,7 @@ public class MalisisRenderer<T extends TileEntity> extends TileEntitySpecialRend
 		if (params != null && renderType == RenderType.ITEM)
 			vertex.setNormal(params.direction.get());
 
-		buffer.addVertexData(vertex.getVertexData(vertexFormat, posOffset));
+		buffer.addVertexData(vertex.getVertexData(vertexFormat, posOffset, vertexMatrix));
 
 		vertexDrawn = true;
 	}
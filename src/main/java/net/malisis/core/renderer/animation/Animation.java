@@ -149,16 +149,40 @@ public class Animation<S extends ITransformable>
 	 */
 	public S animate(Timer timer)
 	{
-		long elapsed = timer.elapsedTime() - Timer.tickToTime(delay);
+		long elapsed = getElapsedTime(timer);
+		if (!update(elapsed))
+			return null;
+
+		transform.transform(transformable, elapsed);
+		return transformable;
+	}
+
+	/**
+	 * Gets the time elapsed since this {@link Animation} started, in milliseconds.
+	 *
+	 * @param timer the timer
+	 * @return the elapsed time
+	 */
+	long getElapsedTime(Timer timer)
+	{
+		return timer.elapsedTime() - Timer.tickToTime(delay);
+	}
+
+	/**
+	 * Updates the {@link #started} and {@link #finished} status for the elapsed time.
+	 *
+	 * @param elapsed the elapsed time
+	 * @return true, if the {@link ITransformable} should be transformed
+	 */
+	boolean update(long elapsed)
+	{
 		started = elapsed > transform.getDelay();
 		finished = elapsed > transform.totalDuration() && transform.getLoops() != -1;
 
 		if (!started && !renderBefore)
-			return null;
+			return false;
 		if (finished && !renderAfter)
-			return null;
-
-		transform.transform(transformable, elapsed);
-		return transformable;
+			return false;
+		return true;
 	}
 }
@@ -0,0 +1,249 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.renderer.animation;
+
+import java.nio.FloatBuffer;
+
+import org.lwjgl.util.vector.Matrix4f;
+import org.lwjgl.util.vector.Vector3f;
+
+import net.malisis.core.renderer.animation.transformation.ITransformable;
+import net.malisis.core.renderer.animation.transformation.Transformation;
+import net.malisis.core.renderer.element.Shape;
+import net.malisis.core.util.Timer;
+
+/**
+ * The {@link CompiledAnimation} class holds the matrices of an {@link Animation} sampled at a fixed resolution.<br>
+ * Only {@link Animation Animations} with a {@link Transformation#isSpatial() spatial} {@link Transformation} can be compiled. When played,
+ * the matrix is interpolated between the two closest samples and applied to the {@link Shape} at once, instead of evaluating the whole
+ * {@link Transformation} again.<br>
+ * The {@link Transformation} should not be modified once the {@link Animation} is compiled.
+ *
+ * @author Ordinastie
+ */
+public class CompiledAnimation
+{
+	/** Number of samples per tick. */
+	public static final int SAMPLES_PER_TICK = 2;
+	/** Time between two samples, in milliseconds. */
+	private static final long STEP = Timer.tickToTime(1) / SAMPLES_PER_TICK;
+	/** Maximum number of samples for an {@link Animation} to be compiled. */
+	private static final int MAX_SAMPLES = 4096;
+	/** Number of floats per sample. */
+	private static final int MATRIX_SIZE = 16;
+
+	/** {@link Animation} compiled. */
+	private final Animation<Shape> animation;
+	/** Time of the last sample. */
+	private final long end;
+	/** Whether the {@link Transformation} loops. Only the first loop is sampled in that case. */
+	private final boolean looping;
+	/** Time at which the loops start. */
+	private final long loopStart;
+	/** Duration of a loop. */
+	private final long loopDuration;
+	/** Time at which the loops end, -1 for infinite loops. */
+	private final long loopEnd;
+	/** Number of samples, not counting the sample for the end of the loops. */
+	private final int count;
+	/** Matrices sampled, {@value #MATRIX_SIZE} floats each, followed by the matrix for the end of the loops if they are not infinite. */
+	private final float[] samples;
+
+	/** Matrix applied to the {@link Shape}. */
+	private final Matrix4f matrix = new Matrix4f();
+	/** Interpolated matrix. */
+	private final float[] interpolated = new float[MATRIX_SIZE];
+	/** Buffer for {@link #interpolated}. */
+	private final FloatBuffer buffer = FloatBuffer.wrap(interpolated);
+
+	/**
+	 * Instantiates a new {@link CompiledAnimation} and samples the matrices of the {@link Animation}.
+	 *
+	 * @param animation the animation
+	 * @param end the time of the last sample
+	 */
+	private CompiledAnimation(Animation<Shape> animation, long end)
+	{
+		Transformation<?, Shape> transform = animation.getTransformation();
+		this.animation = animation;
+		this.end = end;
+		this.loopStart = transform.getDelay();
+		this.loopDuration = transform.getLoopDuration();
+		this.looping = isLooping(transform);
+		this.loopEnd = looping && transform.getLoops() != -1 ? transform.totalDuration() : -1;
+		this.count = (int) ((end + STEP - 1) / STEP) + 1;
+		this.samples = new float[(count + 1) * MATRIX_SIZE];
+
+		MatrixRecorder recorder = new MatrixRecorder();
+		for (int i = 0; i < count; i++)
+			sample(transform, recorder, Math.min(i * STEP, end), i);
+		if (loopEnd != -1)
+			sample(transform, recorder, loopEnd + 1, count);
+	}
+
+	/**
+	 * Stores the matrix of the {@link Transformation} for the time into the samples.
+	 *
+	 * @param transform the transform
+	 * @param recorder the recorder
+	 * @param time the time
+	 * @param index the index of the sample
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void sample(Transformation transform, MatrixRecorder recorder, long time, int index)
+	{
+		recorder.matrix.setIdentity();
+		transform.transform(recorder, time);
+		recorder.matrix.store(FloatBuffer.wrap(samples, index * MATRIX_SIZE, MATRIX_SIZE));
+	}
+
+	/**
+	 * Gets the {@link Animation} compiled.
+	 *
+	 * @return the animation
+	 */
+	public Animation<Shape> getAnimation()
+	{
+		return animation;
+	}
+
+	/**
+	 * Plays the {@link Animation} for the {@link Timer}.<br>
+	 * Sets the status of the {@link Animation} and applies the matrix to its {@link Shape}.
+	 *
+	 * @param timer the timer
+	 */
+	public void animate(Timer timer)
+	{
+		long elapsed = animation.getElapsedTime(timer);
+		if (animation.update(elapsed))
+			animation.getTransformable().transform(getMatrix(elapsed, matrix));
+	}
+
+	/**
+	 * Gets the matrix of the {@link Animation} for the elapsed time, interpolated between the two closest samples.
+	 *
+	 * @param elapsed the elapsed time
+	 * @param dest the matrix to store the result into
+	 * @return the matrix
+	 */
+	public Matrix4f getMatrix(long elapsed, Matrix4f dest)
+	{
+		long time = Math.max(0, elapsed);
+		int index;
+		if (loopEnd != -1 && time > loopEnd)
+			index = count; //all loops done
+		else
+		{
+			if (looping && time > loopStart)
+				time = loopStart + (time - loopStart) % loopDuration;
+			time = Math.min(time, end);
+			index = (int) (time / STEP);
+		}
+
+		int from = index * MATRIX_SIZE;
+		if (index >= count - 1)
+		{
+			System.arraycopy(samples, from, interpolated, 0, MATRIX_SIZE);
+		}
+		else
+		{
+			long start = index * STEP;
+			float t = (float) (time - start) / (Math.min(start + STEP, end) - start);
+			for (int i = 0; i < MATRIX_SIZE; i++)
+				interpolated[i] = samples[from + i] + (samples[from + MATRIX_SIZE + i] - samples[from + i]) * t;
+		}
+
+		buffer.rewind();
+		dest.load(buffer);
+		return dest;
+	}
+
+	/**
+	 * Compiles the {@link Animation}.
+	 *
+	 * @param animation the animation
+	 * @return the compiled animation, or null if the animation cannot be compiled
+	 */
+	public static CompiledAnimation compile(Animation<Shape> animation)
+	{
+		Transformation<?, Shape> transform = animation.getTransformation();
+		if (!transform.isSpatial() || animation.getTransformable().hasMergedVertexes())
+			return null;
+
+		//only the first loop is sampled, up to right before it starts over
+		long end = isLooping(transform) ? transform.getDelay() + transform.getLoopDuration() - 1 : transform.totalDuration();
+		if (end / STEP + 2 > MAX_SAMPLES)
+			return null;
+
+		return new CompiledAnimation(animation, end);
+	}
+
+	/**
+	 * Checks whether the {@link Transformation} starts over after its first loop.
+	 *
+	 * @param transform the transform
+	 * @return true, if looping
+	 */
+	private static boolean isLooping(Transformation<?, ?> transform)
+	{
+		return transform.getLoops() != 1 && transform.getLoopDuration() > 0;
+	}
+
+	/**
+	 * {@link ITransformable} accumulating the transformations into a matrix, the same way a {@link Shape} does.
+	 */
+	private static class MatrixRecorder implements ITransformable.Translate, ITransformable.Rotate, ITransformable.Scale
+	{
+		private final Matrix4f matrix = new Matrix4f();
+		private final Vector3f vec = new Vector3f();
+
+		@Override
+		public void translate(float x, float y, float z)
+		{
+			vec.set(x, y, z);
+			matrix.translate(vec);
+		}
+
+		@Override
+		public void rotate(float angle, float x, float y, float z, float offsetX, float offsetY, float offsetZ)
+		{
+			translate(offsetX, offsetY, offsetZ);
+			vec.set(x, y, z);
+			matrix.rotate((float) Math.toRadians(angle), vec);
+			translate(-offsetX, -offsetY, -offsetZ);
+		}
+
+		@Override
+		public void scale(float x, float y, float z, float offsetX, float offsetY, float offsetZ)
+		{
+			translate(offsetX, offsetY, offsetZ);
+			vec.set(x, y, z);
+			matrix.scale(vec);
+			translate(-offsetX, -offsetY, -offsetZ);
+		}
+	}
+}
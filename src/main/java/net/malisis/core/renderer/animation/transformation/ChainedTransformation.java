@@ -74,6 +74,20 @@ public class ChainedTransformation extends Transformation<ChainedTransformation,
 		return this;
 	}
 
+	/**
+	 * Checks whether all the {@link Transformation Transformations} of this {@link ChainedTransformation} are spatial.
+	 *
+	 * @return true, if spatial
+	 */
+	@Override
+	public boolean isSpatial()
+	{
+		for (Transformation<?, ?> transformation : listTransformations)
+			if (!transformation.isSpatial())
+				return false;
+		return true;
+	}
+
 	/**
 	 * Calculates the transformation.
 	 *
@@ -73,6 +73,20 @@ public class ParallelTransformation extends Transformation<ParallelTransformatio
 		return this;
 	}
 
+	/**
+	 * Checks whether all the {@link Transformation Transformations} of this {@link ParallelTransformation} are spatial.
+	 *
+	 * @return true, if spatial
+	 */
+	@Override
+	public boolean isSpatial()
+	{
+		for (Transformation<?, ?> transformation : listTransformations)
+			if (!transformation.isSpatial())
+				return false;
+		return true;
+	}
+
 	/**
 	 * Calculates the tranformation.
 	 *
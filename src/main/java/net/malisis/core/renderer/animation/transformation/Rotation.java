@@ -157,6 +157,12 @@ public class Rotation extends Transformation<Rotation, ITransformable.Rotate>
 		return this;
 	}
 
+	@Override
+	public boolean isSpatial()
+	{
+		return true;
+	}
+
 	/**
 	 * Calculates the transformation.
 	 *
@@ -126,6 +126,12 @@ public class Scale extends Transformation<Scale, ITransformable.Scale>
 		return this;
 	}
 
+	@Override
+	public boolean isSpatial()
+	{
+		return true;
+	}
+
 	/**
 	 * Calculate the transformation.
 	 *
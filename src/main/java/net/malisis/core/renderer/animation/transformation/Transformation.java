@@ -193,6 +193,17 @@ public abstract class Transformation<T extends Transformation<T, S>, S extends I
 		return self();
 	}
 
+	/**
+	 * Checks whether this {@link Transformation} only moves the {@link ITransformable}, through translations, rotations and scales.<br>
+	 * The effect of such a {@link Transformation} can be expressed as a single matrix.
+	 *
+	 * @return true, if spatial
+	 */
+	public boolean isSpatial()
+	{
+		return false;
+	}
+
 	/**
 	 * Applies this {@link Transformation} to the {@link ITransformable}.
 	 *
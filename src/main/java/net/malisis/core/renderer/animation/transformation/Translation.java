@@ -102,6 +102,12 @@ public class Translation extends Transformation<Translation, ITransformable.Tran
 		return this;
 	}
 
+	@Override
+	public boolean isSpatial()
+	{
+		return true;
+	}
+
 	/**
 	 * Calculates the transformation.
 	 *
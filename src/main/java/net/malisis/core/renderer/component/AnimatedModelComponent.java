@@ -49,6 +49,7 @@ import net.malisis.core.renderer.RenderType;
 import net.malisis.core.renderer.animation.Animation;
 import net.malisis.core.renderer.element.Shape;
 import net.malisis.core.renderer.model.IAnimationLoader;
+import net.malisis.core.renderer.model.MalisisModel;
 import net.malisis.core.util.Timer;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
@@ -90,7 +91,15 @@ public class AnimatedModelComponent extends ModelComponent
 	{
 		super(modelName);
 		rp.rotateIcon.set(false);
+	}
 
+	/**
+	 * Loads the {@link MalisisModel} and detects its animated groups.
+	 */
+	@Override
+	protected void loadModel()
+	{
+		super.loadModel();
 		autoDetectAnimatedGroups();
 	}
 
@@ -226,7 +235,7 @@ public class AnimatedModelComponent extends ModelComponent
 		if (t == null)
 			return start(pos, start);
 
-		Animation<Shape> anim = Iterables.getFirst(model.getAnimation(stop), null);
+		Animation<Shape> anim = Iterables.getFirst(getModel().getAnimation(stop), null);
 		//no stop anim, start from beginning
 		if (anim == null)
 			return start(pos, start);
@@ -267,6 +276,7 @@ public class AnimatedModelComponent extends ModelComponent
 	@Override
 	public void render(Block block, MalisisRenderer<? extends TileEntity> renderer)
 	{
+		MalisisModel model = getRenderModel();
 		if (renderer.getRenderType() == RenderType.BLOCK && animatedShapes.size() != 0)
 			onRender(renderer.getWorldAccess(), renderer.getPos(), renderer.getBlockState());
 
@@ -371,11 +381,12 @@ public class AnimatedModelComponent extends ModelComponent
 		@Override
 		public void renderAnimated(Block block, AnimatedRenderer renderer)
 		{
+			MalisisModel model = getModel();
 			//no shapes to animated
 			if (animatedShapes.size() == 0)
 				return;
 
-			model.resetState();
+			model.resetTransforms();
 			//only animate for ANIMATED (not ITEM)
 			if (renderer.getRenderType() == RenderType.ANIMATED)
 			{
@@ -27,6 +27,7 @@ package net.malisis.core.renderer.component;
 import net.malisis.core.block.IComponentProvider;
 import net.malisis.core.block.MalisisBlock;
 import net.malisis.core.block.component.DirectionalComponent;
+import net.malisis.core.registry.MalisisRegistry;
 import net.malisis.core.renderer.IRenderComponent;
 import net.malisis.core.renderer.MalisisRenderer;
 import net.malisis.core.renderer.RenderParameters;
@@ -48,6 +49,10 @@ public class ModelComponent implements IRenderComponent
 	protected ResourceLocation resourceLocation;
 	/** {@link MalisisModel} for this {@link ModelComponent}. */
 	protected MalisisModel model;
+	/** Whether the {@link MalisisModel} was loaded. Published after {@link #loadModel()} so other threads see a complete component. */
+	private volatile boolean loaded = false;
+	/** Copy of the {@link MalisisModel} for each rendering thread, as chunks are rendered concurrently and rendering changes its state. */
+	private final ThreadLocal<MalisisModel> renderModels = ThreadLocal.withInitial(() -> new MalisisModel(resourceLocation));
 	/** {@link RenderParameters} used for rendering. */
 	protected RenderParameters renderParameters = new RenderParameters();
 	/** {@link IModelIconProvider} used for rendering. */
@@ -56,7 +61,8 @@ public class ModelComponent implements IRenderComponent
 	protected IVisibilityProvider visibilityProvider;
 
 	/**
-	 * Instantiates a new {@link ModelComponent} with a {@link IVisibilityProvider} and load its {@link MalisisModel}.
+	 * Instantiates a new {@link ModelComponent} with a {@link IVisibilityProvider}.<br>
+	 * Its {@link MalisisModel} is preloaded in parallel with the rest of the initialization, and built before the textures are stitched.
 	 *
 	 * @param modelName the model name
 	 */
@@ -64,11 +70,12 @@ public class ModelComponent implements IRenderComponent
 	{
 		this.resourceLocation = new ResourceLocation(modelName);
 		this.visibilityProvider = visibilityProvider;
-		loadModel();
+		MalisisRegistry.preloadModel(resourceLocation, this::getModel);
 	}
 
 	/**
-	 * Instantiates a new {@link ModelComponent} with a {@link IVisibilityProvider} and load its {@link MalisisModel}.
+	 * Instantiates a new {@link ModelComponent}.<br>
+	 * Its {@link MalisisModel} is preloaded in parallel with the rest of the initialization, and built before the textures are stitched.
 	 *
 	 * @param modelName the model name
 	 */
@@ -105,19 +112,42 @@ public class ModelComponent implements IRenderComponent
 	}
 
 	/**
-	 * Gets the {@link MalisisModel} for this {@link ModelComponent}.
+	 * Gets the {@link MalisisModel} for this {@link ModelComponent}.<br>
+	 * The model is loaded once preloaded, or on first call if this {@link ModelComponent} was created after the textures were stitched.
 	 *
 	 * @return the model
 	 */
 	public MalisisModel getModel()
 	{
+		if (!loaded)
+		{
+			synchronized (this)
+			{
+				if (!loaded)
+				{
+					loadModel();
+					loaded = true;
+				}
+			}
+		}
 		return model;
 	}
 
+	/**
+	 * Gets the copy of the {@link MalisisModel} to render with on the current thread.
+	 *
+	 * @return the model
+	 */
+	protected MalisisModel getRenderModel()
+	{
+		getModel();
+		return renderModels.get();
+	}
+
 	@Override
 	public void render(Block block, MalisisRenderer<? extends TileEntity> renderer)
 	{
-		loadModel();
+		MalisisModel model = getRenderModel();
 		model.resetState();
 		if (renderer.getRenderType() != RenderType.ITEM)
 			model.rotate(DirectionalComponent.getDirection(renderer.getBlockState()));
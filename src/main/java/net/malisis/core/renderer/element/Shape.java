@@ -210,6 +210,16 @@ public class Shape implements ITransformable.Translate, ITransformable.Rotate, I
 			mv.copyMatrix(transformMatrix);
 	}
 
+	/**
+	 * Checks whether the {@link MergedVertex} are enabled for this {@link Shape}.
+	 *
+	 * @return true, if merged vertexes are enabled
+	 */
+	public boolean hasMergedVertexes()
+	{
+		return mergedVertexes != null;
+	}
+
 	/**
 	 * Gets a list of {@link Vertex} with a base name containing <b>name</b>.
 	 *
@@ -369,6 +379,18 @@ public class Shape implements ITransformable.Translate, ITransformable.Rotate, I
 		return this;
 	}
 
+	/**
+	 * Gets the matrix to apply to the {@link Vertex vertexes} of this {@link Shape} to draw them with the current transformations.<br>
+	 * Unlike {@link #applyMatrix()}, neither the vertexes nor the transformations are modified.
+	 *
+	 * @param dest the matrix to store the result into
+	 * @return the matrix
+	 */
+	public Matrix4f getRenderMatrix(Matrix4f dest)
+	{
+		return Matrix4f.translate(new Vector3f(-0.5F, -0.5F, -0.5F), transformMatrix, dest);
+	}
+
 	/**
 	 * Sets the parameters for all the {@link Face faces} making up this {@link Shape}.
 	 *
@@ -629,6 +651,22 @@ public class Shape implements ITransformable.Translate, ITransformable.Rotate, I
 		}
 	}
 
+	/**
+	 * Applies the transformations held by the matrix to this {@link Shape}, after the ones already applied.
+	 *
+	 * @param matrix the matrix
+	 */
+	public void transform(Matrix4f matrix)
+	{
+		if (mergedVertexes != null)
+		{
+			for (MergedVertex mv : mergedVertexes.values())
+				Matrix4f.mul(mv.transformMatrix, matrix, mv.transformMatrix);
+		}
+		else
+			Matrix4f.mul(transformMatrix, matrix, transformMatrix);
+	}
+
 	/**
 	 * Stores the current state of each {@link Vertex} making up this {@link Shape}.
 	 *
@@ -663,6 +701,22 @@ public class Shape implements ITransformable.Translate, ITransformable.Rotate, I
 		return this;
 	}
 
+	/**
+	 * Resets the transformations applied to this {@link Shape}.<br>
+	 * When the shape is only drawn with {@link MalisisRenderer#drawShapeTransformed(Shape, RenderParameters)}, its vertexes are never
+	 * modified, so this is enough to get it back to its stored state without resetting each {@link Vertex}.
+	 *
+	 * @return this {@link Shape}
+	 */
+	public Shape resetTransforms()
+	{
+		if (mergedVertexes != null)
+			return resetState();
+
+		resetMatrix();
+		return this;
+	}
+
 	/**
 	 * Interpolates the UVs of each vertex making up this {@link Shape} based on their position and the {@link Face} orientation.
 	 *
@@ -454,11 +454,34 @@ public class Vertex
 	 * @return the vertex data
 	 */
 	public int[] getVertexData(VertexFormat vertexFormat, Vec3d offset)
+	{
+		return getVertexData(vertexFormat, offset, null);
+	}
+
+	/**
+	 * Gets the vertex data for this {@link Vertex}, with its position transformed by the matrix.<br>
+	 * The position of this {@link Vertex} is not modified.
+	 *
+	 * @param vertexFormat the vertex format
+	 * @param offset the offset
+	 * @param matrix the matrix, or null
+	 * @return the vertex data
+	 */
+	public int[] getVertexData(VertexFormat vertexFormat, Vec3d offset, Matrix4f matrix)
 	{
 		float x = (float) getX();
 		float y = (float) getY();
 		float z = (float) getZ();
 
+		if (matrix != null)
+		{
+			float tx = matrix.m00 * x + matrix.m10 * y + matrix.m20 * z + matrix.m30;
+			float ty = matrix.m01 * x + matrix.m11 * y + matrix.m21 * z + matrix.m31;
+			z = matrix.m02 * x + matrix.m12 * y + matrix.m22 * z + matrix.m32;
+			x = tx;
+			y = ty;
+		}
+
 		if (offset != null)
 		{
 			x += offset.x;
@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.renderer.font;
+
+import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import net.malisis.core.MalisisCore;
+
+/**
+ * Binary file holding the metrics and the UVs of the characters of a {@link MalisisFont}, along with the size of its texture.<br>
+ * The file is keyed by the hash of the font file and the {@link FontGeneratorOptions}, so a font with the same file and options can be
+ * loaded without measuring nor drawing any character.
+ *
+ * @author Ordinastie
+ *
+ */
+public class FontCache
+{
+	/** Identifies the file format. */
+	private static final int MAGIC = 0x4D464E54;
+	/** Version of the file format. Files with another version are generated again. */
+	private static final int VERSION = 1;
+	/** Size of the key. */
+	private static final int KEY_SIZE = 20;
+	/** Size of the header : magic, version, key, texture size and number of characters. */
+	private static final int HEADER_SIZE = 4 + 4 + KEY_SIZE + 4 + 4;
+	/** Size of each character : ascent, width, height and UVs. */
+	private static final int ENTRY_SIZE = 7 * 4;
+
+	/** Hashes of the files the fonts were loaded from. */
+	private static final Map<Font, HashCode> fileHashes = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final File file;
+	private final byte[] key;
+
+	/**
+	 * Instantiates a new {@link FontCache}.
+	 *
+	 * @param file the file
+	 * @param font the font
+	 * @param options the options
+	 */
+	public FontCache(File file, Font font, FontGeneratorOptions options)
+	{
+		this.file = file;
+		this.key = key(font, options);
+	}
+
+	/**
+	 * Reads the {@link CharData} from the file.<br>
+	 * The file is read on the heap rather than mapped, so no mapping keeps it locked when it's written again.
+	 *
+	 * @param charData the char data to fill
+	 * @return the size of the texture, or 0 if the file is missing, outdated or was generated for another font or other options
+	 */
+	public int read(CharData[] charData)
+	{
+		if (!file.exists())
+			return 0;
+
+		try
+		{
+			ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if (buf.remaining() != HEADER_SIZE + charData.length * ENTRY_SIZE)
+				return 0;
+
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+				return 0;
+			byte[] fileKey = new byte[KEY_SIZE];
+			buf.get(fileKey);
+			if (!Arrays.equals(fileKey, key))
+				return 0;
+
+			int size = buf.getInt();
+			if (buf.getInt() != charData.length)
+				return 0;
+
+			for (int c = 0; c < charData.length; c++)
+			{
+				CharData cd = new CharData((char) c, buf.getFloat(), buf.getFloat(), buf.getFloat());
+				cd.setUVs(buf.getFloat(), buf.getFloat(), buf.getFloat(), buf.getFloat());
+				charData[c] = cd;
+			}
+			return size;
+		}
+		catch (IOException e)
+		{
+			MalisisCore.log.error("Failed to read font data from {}.", file.getName(), e);
+			return 0;
+		}
+	}
+
+	/**
+	 * Writes the {@link CharData} to the file.<br>
+	 * The data is written to a temporary file first, then moved over the file, so readers never see a partial file.
+	 *
+	 * @param charData the char data
+	 * @param size the size of the texture
+	 */
+	public void write(CharData[] charData, int size)
+	{
+		ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + charData.length * ENTRY_SIZE);
+		buf.putInt(MAGIC).putInt(VERSION).put(key).putInt(size).putInt(charData.length);
+		for (CharData cd : charData)
+		{
+			buf.putFloat(cd.getAscent()).putFloat(cd.getCharWidth()).putFloat(cd.getCharHeight());
+			buf.putFloat(cd.u()).putFloat(cd.v()).putFloat(cd.U()).putFloat(cd.V());
+		}
+
+		Path tmp = file.toPath().resolveSibling(file.getName() + ".tmp");
+		try
+		{
+			Files.write(tmp, buf.array());
+			try
+			{
+				Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e)
+		{
+			MalisisCore.log.error("Failed to write font data to {}.", file.getName(), e);
+		}
+	}
+
+	/**
+	 * Registers the content of the file a {@link Font} was created from, so that the cache is invalidated when the file changes.
+	 *
+	 * @param font the font
+	 * @param data the content of the file
+	 */
+	public static void register(Font font, byte[] data)
+	{
+		fileHashes.put(font, Hashing.sha1().hashBytes(data));
+	}
+
+	/**
+	 * Computes the key for the font and the options.<br>
+	 * Fonts not created from a registered file are identified by their names and number of glyphs.
+	 *
+	 * @param font the font
+	 * @param options the options
+	 * @return the key
+	 */
+	private static byte[] key(Font font, FontGeneratorOptions options)
+	{
+		Hasher hasher = Hashing.sha1().newHasher();
+		HashCode fileHash = fileHashes.get(font);
+		if (fileHash != null)
+			hasher.putBytes(fileHash.asBytes());
+		else
+			hasher.putUnencodedChars(font.getFontName()).putUnencodedChars(font.getFamily()).putInt(font.getNumGlyphs());
+
+		hasher.putInt(font.getStyle()).putFloat(font.getSize2D());
+		hasher.putInt(options.fontType).putFloat(options.fontSize).putBoolean(options.antialias);
+		hasher.putFloat(options.mx).putFloat(options.px).putFloat(options.my).putFloat(options.py).putBoolean(options.debug);
+		return hasher.hash().asBytes();
+	}
+}
@@ -28,16 +28,21 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
 
 import javax.imageio.ImageIO;
 
-import org.apache.commons.io.FileUtils;
-
 import net.malisis.core.MalisisCore;
+import net.malisis.core.util.Utils;
 
 /**
  * @author Ordinastie
@@ -63,18 +68,50 @@ public class FontGenerator
 		this.options = options;
 	}
 
-	public BufferedImage generate(int size, File textureFile, File uvFile)
+	/**
+	 * Measures all the characters of {@link #charData} in parallel.
+	 *
+	 * @param frc the font render context
+	 */
+	public void measure(FontRenderContext frc)
 	{
-		BufferedImage img = generateTexture(size, textureFile);
-		generateUVs(size, uvFile);
-		return img;
+		Utils.getPool().submit(() -> IntStream.range(0, charData.length).parallel().forEach(c -> charData[c] = measure(font, frc, (char) c, options)))
+				.join();
 	}
 
-	private BufferedImage generateTexture(int size, File textureFile)
+	/**
+	 * Measures a character.
+	 *
+	 * @param font the font
+	 * @param frc the font render context
+	 * @param c the character
+	 * @param options the options
+	 * @return the char data
+	 */
+	static CharData measure(Font font, FontRenderContext frc, char c, FontGeneratorOptions options)
 	{
-		BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g = initGraphics(img);
+		String s = String.valueOf(c);
+		LineMetrics lm = font.getLineMetrics(s, frc);
+		Rectangle2D bounds = font.getStringBounds(s, frc);
+		return new CharData(c, lm.getAscent(), (float) bounds.getWidth(), options.fontSize);
+	}
 
+	/**
+	 * Generates the texture for the characters and writes it to the file.<br>
+	 * Each row of characters is drawn in its own tile on the {@link Utils#getPool() shared pool}, and the tiles are merged into the texture. The UVs of the
+	 * characters are set for the generated texture.
+	 *
+	 * @param size the size
+	 * @param textureFile the texture file
+	 * @return the image
+	 */
+	public BufferedImage generate(int size, File textureFile)
+	{
+		//place the characters on rows
+		int rowHeight = (int) Math.ceil(options.fontSize + options.my + options.py + 15);
+		int[] positions = new int[charData.length];
+		List<int[]> rows = new ArrayList<>();
+		int rowStart = 35;
 		int x = 10;
 		int y = 10;
 		for (char c = 35; c < 256; c++)
@@ -82,27 +119,28 @@ public class FontGenerator
 			CharData cd = charData[c];
 			if (x + cd.getFullWidth(options) > size)
 			{
+				rows.add(new int[] { rowStart, c, y });
+				rowStart = c;
 				x = (int) options.mx;
 				y += options.fontSize + options.my + options.py + 15;
 			}
-			g.drawString("" + cd.getChar(), x, y + cd.getAscent());
-
 			cd.setUVs(x, y, size, options);
-
-			if (options.debug)
-			{
-				//baseLine
-				g.setColor(Color.RED);
-				g.drawLine(x, (int) (y + cd.getAscent()), (int) (x + cd.getFullWidth(options)), (int) (y + cd.getAscent()));
-
-				g.setColor(Color.MAGENTA);
-				g.drawRect(x, y, (int) (cd.getCharWidth()), (int) (cd.getCharHeight()));
-
-				g.setColor(Color.BLACK);
-			}
+			positions[c] = x;
 
 			x += cd.getFullWidth(options) + 15;
 		}
+		rows.add(new int[] { rowStart, 256, y });
+
+		//draw each row in its own tile
+		List<ForkJoinTask<BufferedImage>> tiles = new ArrayList<>();
+		for (int[] row : rows)
+			tiles.add(Utils.getPool().submit(() -> drawRow(row[0], row[1], positions, size, rowHeight)));
+
+		BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = initGraphics(img);
+		for (int i = 0; i < rows.size(); i++)
+			g.drawImage(tiles.get(i).join(), 0, rows.get(i)[2], null);
+		g.dispose();
 
 		try
 		{
@@ -117,34 +155,41 @@ public class FontGenerator
 		return img;
 	}
 
-	private void generateUVs(int size, File uvFile)
+	/**
+	 * Draws a row of characters in a tile.
+	 *
+	 * @param from the first character
+	 * @param to the character after the last one
+	 * @param positions the x position of each character
+	 * @param size the width of the tile
+	 * @param height the height of the tile
+	 * @return the tile
+	 */
+	private BufferedImage drawRow(int from, int to, int[] positions, int size, int height)
 	{
-		try
+		BufferedImage tile = new BufferedImage(size, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = tile.createGraphics();
+		configure(g, font, options);
+		for (int c = from; c < to; c++)
 		{
-			StringBuilder sb = new StringBuilder();
-			for (CharData cd : charData)
+			CharData cd = charData[c];
+			int x = positions[c];
+			g.drawString(String.valueOf(cd.getChar()), x, cd.getAscent());
+
+			if (options.debug)
 			{
-				if (cd.getChar() < 35 || cd.getChar() == ';')
-					sb.append((int) cd.getChar());
-				else
-					sb.append(cd.getChar());
-				sb.append(";");
-				sb.append(cd.u());
-				sb.append(";");
-				sb.append(cd.v());
-				sb.append(";");
-				sb.append(cd.U());
-				sb.append(";");
-				sb.append(cd.V());
-				sb.append(";\n");
-			}
+				//baseLine
+				g.setColor(Color.RED);
+				g.drawLine(x, (int) cd.getAscent(), (int) (x + cd.getFullWidth(options)), (int) cd.getAscent());
 
-			FileUtils.write(uvFile, sb, StandardCharsets.UTF_8);
-		}
-		catch (IOException e)
-		{
-			MalisisCore.log.error("Failed to create UV file for {}.", font.getName(), e);
+				g.setColor(Color.MAGENTA);
+				g.drawRect(x, 0, (int) (cd.getCharWidth()), (int) (cd.getCharHeight()));
+
+				g.setColor(Color.BLACK);
+			}
 		}
+		g.dispose();
+		return tile;
 	}
 
 	/**
@@ -157,12 +202,7 @@ public class FontGenerator
 	private Graphics2D initGraphics(BufferedImage img)
 	{
 		Graphics2D g = img.createGraphics();
-		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-		g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-		if (options.antialias)
-			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-		g.setFont(font);
+		configure(g, font, options);
 
 		if (options.debug)
 		{
@@ -185,4 +225,22 @@ public class FontGenerator
 
 		return g;
 	}
+
+	/**
+	 * Sets the rendering hints, the font and the color used to draw the characters.
+	 *
+	 * @param g the graphics
+	 * @param font the font
+	 * @param options the options
+	 */
+	static void configure(Graphics2D g, Font font, FontGeneratorOptions options)
+	{
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		if (options.antialias)
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+		g.setFont(font);
+		g.setColor(options.debug ? Color.BLACK : Color.WHITE);
+	}
 }
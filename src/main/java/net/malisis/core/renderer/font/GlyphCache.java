@@ -0,0 +1,334 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.renderer.font;
+
+import java.awt.AlphaComposite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.malisis.core.client.gui.MalisisGui;
+import net.malisis.core.client.gui.render.GuiRenderer;
+import net.malisis.core.client.gui.render.GuiTexture;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.ITextureObject;
+import net.minecraft.client.renderer.texture.TextureUtil;
+
+/**
+ * Cache for the characters of a {@link MalisisFont} outside of the 256 first ones.<br>
+ * Glyphs are measured and rasterized the first time they are used, into cells of fixed size on pages of fixed size. When all the pages
+ * are full, the least recently used page is emptied and reused, so the memory stays bounded whatever the number of characters drawn.
+ *
+ * @author Ordinastie
+ *
+ */
+public class GlyphCache
+{
+	/** Maximum size of a page. Pages fit inside the {@link net.malisis.core.client.gui.GuiAtlas GuiAtlas}. */
+	private static final int MAX_PAGE_SIZE = 1024;
+	/** Memory allowed for the pages, in bytes. Each page is held as an image and as a texture. */
+	private static final int MAX_MEMORY = 64 * 1024 * 1024;
+	/** Transparent space between cells. */
+	private static final int PADDING = 1;
+
+	private final Font font;
+	private final FontRenderContext frc;
+	private final FontGeneratorOptions options;
+
+	/** Width of a cell. */
+	private final int cellWidth;
+	/** Height of a cell. */
+	private final int cellHeight;
+	/** Size of a page (width and height). */
+	private final int pageSize;
+	/** Number of cells per row of a page. */
+	private final int columns;
+	/** Number of cells in a page. */
+	private final int cellsPerPage;
+	/** Maximum number of pages. */
+	private final int maxPages;
+
+	/** Data of the characters, by block of 256 characters. */
+	private final CharData[][] data = new CharData[256][];
+	/** Slot of the characters, by block of 256 characters. Slot is <code>page * cellsPerPage + cell + 1</code>, 0 if not rasterized. */
+	private final int[][] slots = new int[256][];
+	/** Pages currently allocated. */
+	private final List<Page> pages = new ArrayList<>();
+	/** Next version given to a page, when it is created or reused. */
+	private int nextVersion = 1;
+
+	/**
+	 * Instantiates a new {@link GlyphCache}.
+	 *
+	 * @param font the AWT font
+	 * @param frc the font render context
+	 * @param options the options
+	 */
+	public GlyphCache(Font font, FontRenderContext frc, FontGeneratorOptions options)
+	{
+		this.font = font;
+		this.frc = frc;
+		this.options = options;
+
+		//leave room for glyphs wider than the font size
+		cellWidth = (int) Math.ceil(options.fontSize * 1.25F + options.mx + options.px) + PADDING;
+		cellHeight = (int) Math.ceil(options.fontSize + options.my + options.py) + PADDING;
+		pageSize = Math.min(Integer.highestOneBit(Math.max(cellWidth, cellHeight) * 8 - 1) << 1, MAX_PAGE_SIZE);
+		columns = pageSize / cellWidth;
+		cellsPerPage = columns * (pageSize / cellHeight);
+		maxPages = Math.max(2, Math.min(16, MAX_MEMORY / (pageSize * pageSize * 8)));
+	}
+
+	/**
+	 * Gets the version of the page backing the texture.<br>
+	 * The version changes when the glyphs drawn on the page are removed, so geometry captured with the texture is no longer valid.
+	 *
+	 * @param texture the texture
+	 * @return the version, or 0 if the texture is not a page of this {@link GlyphCache}
+	 */
+	public int getVersion(GuiTexture texture)
+	{
+		Page page = getPage(texture);
+		return page != null ? page.version : 0;
+	}
+
+	/**
+	 * Marks the page backing the texture as used during the current frame, so it is not reused while geometry captured with it is
+	 * replayed.
+	 *
+	 * @param texture the texture
+	 */
+	public void markUsed(GuiTexture texture)
+	{
+		Page page = getPage(texture);
+		if (page != null)
+			page.lastUsed = MalisisGui.counter;
+	}
+
+	/**
+	 * Gets the page backing the texture.
+	 *
+	 * @param texture the texture
+	 * @return the page, or null if the texture is not a page of this {@link GlyphCache}
+	 */
+	private Page getPage(GuiTexture texture)
+	{
+		for (Page page : pages)
+		{
+			if (page.texture == texture)
+				return page;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the {@link CharData} for the character.<br>
+	 * The character is measured the first time, but not rasterized.
+	 *
+	 * @param c the c
+	 * @return the char data
+	 */
+	public CharData getCharData(char c)
+	{
+		CharData[] block = data[c >>> 8];
+		if (block == null)
+			block = data[c >>> 8] = new CharData[256];
+
+		CharData cd = block[c & 0xFF];
+		if (cd == null)
+			cd = block[c & 0xFF] = FontGenerator.measure(font, frc, c, options);
+		return cd;
+	}
+
+	/**
+	 * Gets the page texture holding the glyph for the {@link CharData}, rasterizing it if needed.<br>
+	 * The UVs of the {@code CharData} are set for that page.
+	 *
+	 * @param cd the char data
+	 * @param renderer the renderer
+	 * @return the texture, or null if the glyph could not be placed in the cache
+	 */
+	public GuiTexture getTexture(CharData cd, GuiRenderer renderer)
+	{
+		char c = cd.getChar();
+		int[] block = slots[c >>> 8];
+		if (block == null)
+			block = slots[c >>> 8] = new int[256];
+
+		int slot = block[c & 0xFF] - 1;
+		if (slot < 0)
+		{
+			if (cellsPerPage == 0 || cd.getFullWidth(options) > cellWidth - PADDING)
+				return null;
+			slot = allocate();
+			if (slot < 0)
+				return null;
+			rasterize(cd, slot);
+			block[c & 0xFF] = slot + 1;
+			//uploading binds the page texture
+			renderer.forceRebind();
+		}
+
+		Page page = pages.get(slot / cellsPerPage);
+		page.lastUsed = MalisisGui.counter;
+		return page.texture;
+	}
+
+	/**
+	 * Finds a free cell, in a new page or in the least recently used page if all the pages are full.<br>
+	 * Pages used during the current frame are never reused as their glyphs may not be drawn yet.
+	 *
+	 * @return the slot, or -1 if no cell is available
+	 */
+	private int allocate()
+	{
+		for (int i = 0; i < pages.size(); i++)
+		{
+			Page page = pages.get(i);
+			if (page.used < cellsPerPage)
+				return i * cellsPerPage + page.used++;
+		}
+
+		if (pages.size() < maxPages)
+		{
+			pages.add(new Page(pages.size()));
+			return (pages.size() - 1) * cellsPerPage + pages.get(pages.size() - 1).used++;
+		}
+
+		int lru = -1;
+		for (int i = 0; i < pages.size(); i++)
+		{
+			Page page = pages.get(i);
+			if (page.lastUsed != MalisisGui.counter && (lru == -1 || page.lastUsed - pages.get(lru).lastUsed < 0))
+				lru = i;
+		}
+		if (lru == -1)
+			return -1;
+
+		Page page = pages.get(lru);
+		for (int i = 0; i < page.used; i++)
+			slots[page.chars[i] >>> 8][page.chars[i] & 0xFF] = 0;
+		page.used = 0;
+		page.version = nextVersion++;
+		return lru * cellsPerPage + page.used++;
+	}
+
+	/**
+	 * Draws the glyph in its cell and uploads the cell.
+	 *
+	 * @param cd the char data
+	 * @param slot the slot
+	 */
+	private void rasterize(CharData cd, int slot)
+	{
+		Page page = pages.get(slot / cellsPerPage);
+		int cell = slot % cellsPerPage;
+		int cx = cell % columns * cellWidth;
+		int cy = cell / columns * cellHeight;
+		int x = (int) (cx + options.mx);
+		int y = (int) (cy + options.my);
+
+		Graphics2D g = page.graphics;
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(cx, cy, cellWidth, cellHeight);
+		g.setComposite(AlphaComposite.SrcOver);
+		g.setClip(cx, cy, cellWidth - PADDING, cellHeight - PADDING);
+		g.drawString(String.valueOf(cd.getChar()), x, y + cd.getAscent());
+		g.setClip(null);
+
+		page.chars[cell] = cd.getChar();
+		cd.setUVs(x, y, pageSize, options);
+		page.upload(cx, cy, cellWidth, cellHeight);
+	}
+
+	/**
+	 * Deletes all the pages of this {@link GlyphCache}.
+	 */
+	public void delete()
+	{
+		for (Page page : pages)
+		{
+			page.graphics.dispose();
+			page.texture.delete();
+		}
+		pages.clear();
+		for (int[] block : slots)
+		{
+			if (block != null)
+				Arrays.fill(block, 0);
+		}
+	}
+
+	/**
+	 * Page of glyphs, backed by an image and a texture.
+	 */
+	private class Page
+	{
+		private final BufferedImage image;
+		private final Graphics2D graphics;
+		private final GuiTexture texture;
+		/** Character in each cell. */
+		private final char[] chars = new char[cellsPerPage];
+		/** Number of cells used. */
+		private int used = 0;
+		/** Frame during which the page was last used. */
+		private int lastUsed;
+		/** Version of the glyphs drawn on the page. */
+		private int version = nextVersion++;
+
+		private Page(int index)
+		{
+			image = new BufferedImage(pageSize, pageSize, BufferedImage.TYPE_INT_ARGB);
+			graphics = image.createGraphics();
+			FontGenerator.configure(graphics, font, options);
+			texture = new GuiTexture(image, font.getName() + "_glyphs_" + index);
+		}
+
+		/**
+		 * Uploads a part of the image to the texture, and to the {@link net.malisis.core.client.gui.GuiAtlas GuiAtlas} if the texture is
+		 * packed there.
+		 *
+		 * @param x the x
+		 * @param y the y
+		 * @param width the width
+		 * @param height the height
+		 */
+		private void upload(int x, int y, int width, int height)
+		{
+			width = Math.min(width, pageSize - x);
+			height = Math.min(height, pageSize - y);
+			BufferedImage sub = image.getSubimage(x, y, width, height);
+			ITextureObject tex = Minecraft.getMinecraft().getTextureManager().getTexture(texture.getResourceLocation());
+			if (tex != null)
+				TextureUtil.uploadTextureImageSub(tex.getGlTextureId(), sub, x, y, false, false);
+			GuiRenderer.ATLAS.refresh(texture, x, y, width, height);
+		}
+	}
+}
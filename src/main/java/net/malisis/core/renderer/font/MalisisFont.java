@@ -27,38 +27,38 @@ package net.malisis.core.renderer.font;
 import java.awt.Font;
 import java.awt.FontFormatException;
 import java.awt.font.FontRenderContext;
-import java.awt.font.LineMetrics;
-import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.imageio.ImageIO;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.lwjgl.opengl.GL11;
 
-import com.google.common.io.Files;
+import com.google.common.hash.Hashing;
 
 import net.malisis.core.MalisisCore;
 import net.malisis.core.client.gui.element.IClipable.ClipArea;
+import net.malisis.core.client.gui.render.GeometryCache;
 import net.malisis.core.client.gui.render.GuiRenderer;
+import net.malisis.core.client.gui.render.GuiTexture;
 import net.malisis.core.client.gui.text.GuiText;
 import net.malisis.core.renderer.element.Face;
 import net.malisis.core.renderer.element.Shape;
 import net.malisis.core.renderer.element.face.SouthFace;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.BufferBuilder;
-import net.minecraft.client.renderer.Tessellator;
-import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.util.ResourceLocation;
 
@@ -71,6 +71,8 @@ public class MalisisFont
 	public static String CHARLIST = "\u00c0\u00c1\u00c2\u00c8\u00ca\u00cb\u00cd\u00d3\u00d4\u00d5\u00da\u00df\u00e3\u00f5\u011f\u0130\u0131\u0152\u0153\u015e\u015f\u0174\u0175\u017e\u0207\u0000\u0000\u0000\u0000\u0000\u0000\u0000 !\"#$%&\'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~\u0000\u00c7\u00fc\u00e9\u00e2\u00e4\u00e0\u00e5\u00e7\u00ea\u00eb\u00e8\u00ef\u00ee\u00ec\u00c4\u00c5\u00c9\u00e6\u00c6\u00f4\u00f6\u00f2\u00fb\u00f9\u00ff\u00d6\u00dc\u00f8\u00a3\u00d8\u00d7\u0192\u00e1\u00ed\u00f3\u00fa\u00f1\u00d1\u00aa\u00ba\u00bf\u00ae\u00ac\u00bd\u00bc\u00a1\u00ab\u00bb\u2591\u2592\u2593\u2502\u2524\u2561\u2562\u2556\u2555\u2563\u2551\u2557\u255d\u255c\u255b\u2510\u2514\u2534\u252c\u251c\u2500\u253c\u255e\u255f\u255a\u2554\u2569\u2566\u2560\u2550\u256c\u2567\u2568\u2564\u2565\u2559\u2558\u2552\u2553\u256b\u256a\u2518\u250c\u2588\u2584\u258c\u2590\u2580\u03b1\u03b2\u0393\u03c0\u03a3\u03c3\u03bc\u03c4\u03a6\u0398\u03a9\u03b4\u221e\u2205\u2208\u2229\u2261\u00b1\u2265\u2264\u2320\u2321\u00f7\u2248\u00b0\u2219\u00b7\u221a\u207f\u00b2\u25a0\u0000";
 	private static Pattern pattern = Pattern.compile("\\{(.*?)}");
 	public static MalisisFont minecraftFont = new MinecraftFont();
+	/** AWT fonts already created, by content of the font file, type and size **/
+	private static final Map<String, Font> loadedFonts = new ConcurrentHashMap<>();
 
 	/** AWT font used **/
 	protected Font font;
@@ -80,13 +82,23 @@ public class MalisisFont
 	protected FontGeneratorOptions fontGeneratorOptions = FontGeneratorOptions.DEFAULT;
 	/** Data for each character **/
 	protected CharData[] charData = new CharData[256];
+	/** Glyphs for the characters outside of {@link #charData} **/
+	protected GlyphCache glyphs;
 	/** ResourceLocation for the texture **/
 	protected ResourceLocation textureRl;
+	/** Texture of the font **/
+	protected GuiTexture texture;
 	/** Size of the texture (width and height) **/
 	protected int size;
+	/** Incremented each time the character data is loaded **/
+	protected int metricsVersion = 0;
 	/** Whether the currently drawn text is the shadow part **/
 	protected boolean drawingShadow = false;
 	protected float zIndex = 0f;
+	/** Position of the currently drawn text **/
+	protected float renderX, renderY;
+	/** Renderer used for the currently drawn text **/
+	protected GuiRenderer renderer;
 
 	private boolean loaded = false;
 
@@ -124,7 +136,7 @@ public class MalisisFont
 		if (options != null)
 			this.fontGeneratorOptions = options;
 
-		loadCharacterData();
+		frc = new FontRenderContext(null, true, true);
 		loaded = loadTexture(false);
 	}
 
@@ -141,15 +153,65 @@ public class MalisisFont
 	public void generateTexture(boolean debug)
 	{
 		this.fontGeneratorOptions.debug = debug;
-		loadCharacterData();
 		loadTexture(true);
 	}
 
 	public CharData getCharData(char c)
 	{
-		if (c < 0 || c > charData.length)
-			c = '?';
-		return charData[c];
+		if (c < charData.length)
+			return charData[c];
+		if (font == null || !font.canDisplay(c))
+			return charData['?'];
+		return getGlyphCache().getCharData(c);
+	}
+
+	/**
+	 * Gets the {@link GlyphCache} for the characters outside of the font texture.<br>
+	 * The cache is created the first time such a character is used.
+	 *
+	 * @return the glyph cache
+	 */
+	protected GlyphCache getGlyphCache()
+	{
+		if (glyphs == null)
+			glyphs = new GlyphCache(font, frc, fontGeneratorOptions);
+		return glyphs;
+	}
+
+	/**
+	 * Gets the version of the character metrics of this {@link MalisisFont}.<br>
+	 * The version changes when the widths of the characters may have changed, so {@link TextLayout TextLayouts} built with the previous
+	 * metrics are no longer valid.
+	 *
+	 * @return the metrics version
+	 */
+	public int getMetricsVersion()
+	{
+		return metricsVersion;
+	}
+
+	/**
+	 * Adds the versions of the glyph pages used by the {@link GeometryCache} to its keys.<br>
+	 * A version changes when the glyphs drawn on the page are removed, so the geometry captured with them is no longer valid.
+	 *
+	 * @param cache the cache
+	 */
+	public void keyGlyphPages(GeometryCache cache)
+	{
+		if (glyphs != null)
+			cache.forEachTexture(texture -> cache.key(glyphs.getVersion(texture)));
+	}
+
+	/**
+	 * Marks the glyph pages used by the {@link GeometryCache} as used for the current frame, so they are not reused while it is
+	 * replayed.
+	 *
+	 * @param cache the cache
+	 */
+	public void markGlyphPagesUsed(GeometryCache cache)
+	{
+		if (glyphs != null)
+			cache.forEachTexture(glyphs::markUsed);
 	}
 
 	public Shape getShape(String text, float fontSize)
@@ -181,24 +243,23 @@ public class MalisisFont
 	protected void prepare(GuiRenderer renderer, float x, float y, float z, FontOptions options)
 	{
 		renderer.next(GL11.GL_QUADS);
+		renderer.bindTexture(texture);
 
-		Minecraft.getMinecraft().getTextureManager().bindTexture(textureRl);
-		GL11.glPushMatrix();
-		GL11.glTranslatef(x, y, 0);
-
+		this.renderer = renderer;
+		renderX = x;
+		renderY = y;
 		zIndex = z;
 	}
 
 	protected void clean(GuiRenderer renderer, boolean isDrawing)
 	{
-		if (isDrawing)
-			renderer.next();
-		else
+		renderer.bindDefaultTexture();
+		if (!isDrawing)
 			renderer.draw();
-		if (renderer instanceof GuiRenderer)
-			Minecraft.getMinecraft().getTextureManager().bindTexture(renderer.getDefaultTexture().getResourceLocation());
-		GL11.glPopMatrix();
 
+		this.renderer = null;
+		renderX = 0;
+		renderY = 0;
 		zIndex = 0;
 	}
 
@@ -223,57 +284,47 @@ public class MalisisFont
 	}
 	//#end Prepare/Clean
 
-	private boolean isCharVisible(int x, int y, StringWalker walker, ClipArea area)
+	private boolean isCharVisible(int x, int y, float width, float height, ClipArea area)
 	{
 		if (area == null || area.noClip())
 			return true;
 		if (area.fullClip())
 			return false;
 
-		return area.isInside(x, y) || area.isInside(x + (int) Math.ceil(walker.width()), y + (int) Math.ceil(walker.height()));
+		return area.isInside(x, y) || area.isInside(x + (int) Math.ceil(width), y + (int) Math.ceil(height));
 	}
 
+	/**
+	 * Renders the {@link GuiText} at the coordinates.<br>
+	 * The glyphs are drawn at the positions and with the styles of the {@link TextLayout} of the text.
+	 *
+	 * @param renderer the renderer
+	 * @param text the text
+	 * @param x the x
+	 * @param y the y
+	 * @param z the z
+	 * @param options the options
+	 * @param clipArea the clip area
+	 */
 	public void render(GuiRenderer renderer, GuiText text, int x, int y, int z, FontOptions options, ClipArea clipArea)
 	{
-		if (text.length() <= 0)
+		TextLayout layout = text.layout();
+		if (layout == null || layout.size() <= 0)
 			return;
 
 		boolean isDrawing = renderer.isDrawing();
 		prepare(renderer, x, y, z, options);
 
-		try
+		int span = 0;
+		for (int i = 0; i < layout.size(); i++)
 		{
-			StringWalker walker = new StringWalker(text, options);
-			walker.applyStyles(true);
+			while (i >= layout.spanEnd(span))
+				span++;
 
-			float rx = 0;
-			float ry = 0;
-
-			while (walker.walk())
-			{
-				rx = walker.x();
-				ry = walker.y();
-				if (isCharVisible((int) (x + rx), (int) (y + ry), walker, clipArea))
-				{
-					options = walker.currentStyle();
-					renderCharacter(walker.getChar(), rx, ry, options);
-				}
-				//rx += walker.width();
-
-				//if justified
-				//LineInfo info = text.lines().get(walker.lineIndex);
-				//rx += info.spaceWidth() / info.text().length();
-
-				//				if (walker.isEOL())
-				//				{
-				//					ry += walker.lineHeight();
-				//					rx = 0;
-				//				}
-			}
-		}
-		catch (Exception e)
-		{
-			e.printStackTrace();
+			float rx = layout.x(i);
+			float ry = layout.y(i);
+			if (isCharVisible((int) (x + rx), (int) (y + ry), layout.width(i), layout.height(i), clipArea))
+				renderCharacter(layout.glyph(i), rx, ry, layout.spanStyle(span));
 		}
 
 		clean(renderer, isDrawing);
@@ -283,7 +334,10 @@ public class MalisisFont
 	{
 		CharData cd = getCharData(c);
 		if (options.isObfuscated())
+		{
 			cd = getRandomChar(cd);
+			renderer.preventCaching();
+		}
 		float fs = options.getFontScale();
 
 		//draw shadow first
@@ -308,64 +362,63 @@ public class MalisisFont
 		if (Character.isWhitespace(cd.getChar()))
 			return;
 
-		BufferBuilder buffer = Tessellator.getInstance().getBuffer();
+		cd = bindCharTexture(cd);
 		float factor = options.getFontScale() / fontGeneratorOptions.fontSize * 9;
 		float w = cd.getFullWidth(fontGeneratorOptions) * factor;
 		float h = cd.getFullHeight(fontGeneratorOptions) * factor;
 		float i = options.isItalic() ? options.getFontScale() : 0;
+		float x = renderX + offsetX;
+		float y = renderY + offsetY;
 
-		buffer.pos(offsetX + i, offsetY, zIndex);
-		buffer.tex(cd.u(), cd.v());
-		buffer.color((color >> 16) & 255, (color >> 8) & 255, color & 255, 255);
-		buffer.endVertex();
-
-		buffer.pos(offsetX - i, offsetY + h, zIndex);
-		buffer.tex(cd.u(), cd.V());
-		buffer.color((color >> 16) & 255, (color >> 8) & 255, color & 255, 255);
-		buffer.endVertex();
-
-		buffer.pos(offsetX + w - i, offsetY + h, zIndex);
-		buffer.tex(cd.U(), cd.V());
-		buffer.color((color >> 16) & 255, (color >> 8) & 255, color & 255, 255);
-		buffer.endVertex();
-
-		buffer.pos(offsetX + w + i, offsetY, zIndex);
-		buffer.tex(cd.U(), cd.v());
-		buffer.color((color >> 16) & 255, (color >> 8) & 255, color & 255, 255);
-		buffer.endVertex();
+		renderer.addVertex(x + i, y, zIndex, cd.u(), cd.v(), color, 255);
+		renderer.addVertex(x - i, y + h, zIndex, cd.u(), cd.V(), color, 255);
+		renderer.addVertex(x + w - i, y + h, zIndex, cd.U(), cd.V(), color, 255);
+		renderer.addVertex(x + w + i, y, zIndex, cd.U(), cd.v(), color, 255);
 	}
 
 	protected void drawLine(CharData cd, float offsetX, float offsetY, FontOptions options, int color)
 	{
-		BufferBuilder buffer = Tessellator.getInstance().getBuffer();
 		float factor = options.getFontScale() / fontGeneratorOptions.fontSize * 9;
 		float w = cd.getFullWidth(fontGeneratorOptions) * factor + options.getFontScale();
 		if (options.isBold())
 			w += options.getFontScale();
 		float h = cd.getFullHeight(fontGeneratorOptions) * factor;
+		float x = renderX + offsetX;
+		float y = renderY + offsetY;
 
 		//use underscore char data for UVs
-		cd = getCharData('_');
+		cd = bindCharTexture(getCharData('_'));
 
-		buffer.pos(offsetX, offsetY, zIndex);
-		buffer.tex(cd.u(), cd.v());
-		buffer.color((color >> 16) & 255, (color >> 8) & 255, color & 255, 255);
-		buffer.endVertex();
+		renderer.addVertex(x, y, zIndex, cd.u(), cd.v(), color, 255);
+		renderer.addVertex(x, y + h, zIndex, cd.u(), cd.V(), color, 255);
+		renderer.addVertex(x + w, y + h, zIndex, cd.U(), cd.V(), color, 255);
+		renderer.addVertex(x + w, y, zIndex, cd.U(), cd.v(), color, 255);
+	}
 
-		buffer.pos(offsetX, offsetY + h, zIndex);
-		buffer.tex(cd.u(), cd.V());
-		buffer.color((color >> 16) & 255, (color >> 8) & 255, color & 255, 255);
-		buffer.endVertex();
+	/**
+	 * Binds the texture holding the glyph for the {@link CharData}.<br>
+	 * If the glyph cannot be placed in the {@link GlyphCache}, '?' is drawn instead, and the geometry is not cached.
+	 *
+	 * @param cd the char data
+	 * @return the char data to draw
+	 */
+	protected CharData bindCharTexture(CharData cd)
+	{
+		if (cd.getChar() >= charData.length)
+		{
+			GuiTexture page = getGlyphCache().getTexture(cd, renderer);
+			if (page != null)
+			{
+				renderer.bindTexture(page);
+				return cd;
+			}
 
-		buffer.pos(offsetX + w, offsetY + h, zIndex);
-		buffer.tex(cd.U(), cd.V());
-		buffer.color((color >> 16) & 255, (color >> 8) & 255, color & 255, 255);
-		buffer.endVertex();
+			cd = charData['?'];
+			renderer.preventCaching();
+		}
 
-		buffer.pos(offsetX + w, offsetY, zIndex);
-		buffer.tex(cd.U(), cd.v());
-		buffer.color((color >> 16) & 255, (color >> 8) & 255, color & 255, 255);
-		buffer.endVertex();
+		renderer.bindTexture(texture);
+		return cd;
 	}
 
 	public CharData getRandomChar(CharData cd)
@@ -567,20 +620,16 @@ public class MalisisFont
 	//#end String processing
 
 	//#region Load font
+	/**
+	 * Measures the characters in parallel and computes the size of the texture.
+	 */
 	protected void loadCharacterData()
 	{
-		frc = new FontRenderContext(null, true, true);
+		new FontGenerator(font, charData, fontGeneratorOptions).measure(frc);
 
 		float totalWidth = 0;
-		for (char c = 0; c < 256; c++)
-		{
-			String s = "" + c;
-			LineMetrics lm = font.getLineMetrics(s, frc);
-			Rectangle2D bounds = font.getStringBounds(s, frc);
-			CharData cd = new CharData(c, lm.getAscent(), (float) bounds.getWidth(), fontGeneratorOptions.fontSize);
-			charData[c] = cd;
+		for (CharData cd : charData)
 			totalWidth += cd.getFullWidth(fontGeneratorOptions);
-		}
 
 		int split = 1;
 		while (totalWidth / split > fontGeneratorOptions.fontSize * split)
@@ -601,31 +650,44 @@ public class MalisisFont
 		return r + 1;
 	}
 
+	/**
+	 * Loads the texture and the character data from the files generated previously for this font, or generates them.<br>
+	 * The character data is read from a {@link FontCache}, so a font already generated with the same options is loaded without measuring
+	 * or drawing any character.
+	 *
+	 * @param forceGenerate whether to generate the files even if they exist
+	 * @return true, if successful
+	 */
 	protected boolean loadTexture(boolean forceGenerate)
 	{
 		File textureFile = new File("fonts/" + font.getName() + ".png");
-		File uvFile = new File("fonts/" + font.getName() + ".bin");
-		BufferedImage img;
-		if (!textureFile.exists() || !uvFile.exists() || forceGenerate)
-		{
-			MalisisCore.log.info("Generating files for " + font.getName());
-			img = new FontGenerator(font, charData, fontGeneratorOptions).generate(size, textureFile, uvFile);
-		}
-		else
+		FontCache cache = new FontCache(new File("fonts/" + font.getName() + ".bin"), font, fontGeneratorOptions);
+		BufferedImage img = null;
+		if (!forceGenerate && textureFile.exists() && (size = cache.read(charData)) != 0)
 		{
 			MalisisCore.log.info("Loading texture and data for " + font.getName());
 			img = readTextureFile(textureFile);
-			readUVFile(uvFile);
 		}
 
 		if (img == null)
-			return false;
+		{
+			MalisisCore.log.info("Generating files for " + font.getName());
+			loadCharacterData();
+			img = new FontGenerator(font, charData, fontGeneratorOptions).generate(size, textureFile);
+			cache.write(charData, size);
+		}
 
-		if (textureRl != null)
-			Minecraft.getMinecraft().getTextureManager().deleteTexture(textureRl);
+		if (texture != null)
+			texture.delete();
+		if (glyphs != null)
+		{
+			glyphs.delete();
+			glyphs = null;
+		}
 
-		DynamicTexture dynTex = new DynamicTexture(img);
-		textureRl = Minecraft.getMinecraft().getTextureManager().getDynamicTextureLocation(font.getName(), dynTex);
+		metricsVersion++;
+		texture = new GuiTexture(img, font.getName());
+		textureRl = texture.getResourceLocation();
 		return true;
 	}
 
@@ -650,25 +712,6 @@ public class MalisisFont
 		return null;
 	}
 
-	protected void readUVFile(File uvFile)
-	{
-		int i = 0;
-		try
-		{
-			for (String str : Files.readLines(uvFile, StandardCharsets.UTF_8))
-			{
-				String[] split = str.split(";");
-				CharData cd = charData[i++];
-				cd.setUVs(Float.parseFloat(split[1]), Float.parseFloat(split[2]), Float.parseFloat(split[3]), Float.parseFloat(split[4]));
-			}
-		}
-		catch (IOException | NumberFormatException e)
-		{
-			MalisisCore.log.error("Failed to read font data. (Line " + i + " (" + (char) i + ")", e);
-		}
-
-	}
-
 	//#end Load font
 
 	//#region Font load
@@ -698,12 +741,37 @@ public class MalisisFont
 		}
 	}
 
+	/**
+	 * Loads the {@link Font} from the {@link InputStream}.<br>
+	 * Fonts created from the same file with the same type and size are only created once, so this can be called ahead of time from any
+	 * thread to preload the font.
+	 *
+	 * @param is the input stream
+	 * @param options the options
+	 * @return the font
+	 */
 	public static Font load(InputStream is, FontGeneratorOptions options)
 	{
 		try
 		{
-			Font font = Font.createFont(options.fontType, is);
-			return font.deriveFont(options.fontSize);
+			byte[] data = IOUtils.toByteArray(is);
+			String key = Hashing.sha1().hashBytes(data) + ":" + options.fontType + ":" + options.fontSize;
+			return loadedFonts.computeIfAbsent(key, k -> create(data, options));
+		}
+		catch (IOException e)
+		{
+			MalisisCore.log.error("[MalisiFont] Couldn't load font from InputStream.", e);
+			return null;
+		}
+	}
+
+	private static Font create(byte[] data, FontGeneratorOptions options)
+	{
+		try
+		{
+			Font font = Font.createFont(options.fontType, new ByteArrayInputStream(data)).deriveFont(options.fontSize);
+			FontCache.register(font, data);
+			return font;
 		}
 		catch (IOException | FontFormatException e)
 		{
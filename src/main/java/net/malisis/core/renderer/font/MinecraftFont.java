@@ -32,9 +32,12 @@ import com.google.common.collect.Maps;
 
 import net.malisis.core.MalisisCore;
 import net.malisis.core.asm.AsmUtils;
-import net.malisis.core.client.gui.render.GuiRenderer;
+import net.malisis.core.client.gui.render.GuiTexture;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.FontRenderer;
+import net.minecraft.client.resources.IReloadableResourceManager;
+import net.minecraft.client.resources.IResourceManager;
+import net.minecraft.client.resources.IResourceManagerReloadListener;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.fml.client.FMLClientHandler;
 
@@ -42,19 +45,18 @@ import net.minecraftforge.fml.client.FMLClientHandler;
  * @author Ordinastie
  *
  */
-public class MinecraftFont extends MalisisFont
+public class MinecraftFont extends MalisisFont implements IResourceManagerReloadListener
 {
 	private int[] mcCharWidth;
 	//private float[] optifineCharWidth;
 	private byte[] glyphWidth;
 	private ResourceLocation[] unicodePages;
-	private ResourceLocation lastFontTexture;
+	private GuiTexture[] unicodeTextures = new GuiTexture[256];
 	private FontRenderer fontRenderer;
 	/** CharData for Unicode characters */
 	protected Map<Character, CharData> unicodeCharData = Maps.newHashMap();
 	/** Whether the character should drawn with unicode font even if unicode is disabled in MC options. */
 	protected boolean forceUnicode = false;
-	private GuiRenderer renderer;
 
 	public MinecraftFont()
 	{
@@ -63,11 +65,29 @@ public class MinecraftFont extends MalisisFont
 		this.fontGeneratorOptions = new FontGeneratorOptions();
 		this.fontGeneratorOptions.fontSize = 9F;
 		this.textureRl = new ResourceLocation("textures/font/ascii.png");
+		this.texture = new GuiTexture(textureRl, 128, 128);
 		this.size = 256;
 
 		fontRenderer = Minecraft.getMinecraft().fontRenderer;
 		setFields();
 		fillCharData();
+
+		//registered after the FontRenderer, so its widths are already reloaded when called
+		if (Minecraft.getMinecraft().getResourceManager() instanceof IReloadableResourceManager)
+			((IReloadableResourceManager) Minecraft.getMinecraft().getResourceManager()).registerReloadListener(this);
+	}
+
+	/**
+	 * Called when the resources are reloaded.<br>
+	 * The widths of the characters are read again by the {@link FontRenderer} from the resource packs, so the layouts computed with the
+	 * previous ones are no longer valid.
+	 *
+	 * @param resourceManager the resource manager
+	 */
+	@Override
+	public void onResourceManagerReload(IResourceManager resourceManager)
+	{
+		metricsVersion++;
 	}
 
 	private void setFields()
@@ -114,36 +134,21 @@ public class MinecraftFont extends MalisisFont
 
 	}
 
-	private void bindFontTexture(CharData data)
+	@Override
+	protected CharData bindCharTexture(CharData data)
 	{
-		ResourceLocation rl = textureRl;
+		GuiTexture texture = this.texture;
 		if (data instanceof UnicodeCharData)
 		{
 			int i = data.c / 256;
 			if (unicodePages[i] == null)
 				unicodePages[i] = new ResourceLocation(String.format("textures/font/unicode_page_%02x.png", i));
-			rl = unicodePages[i];
-		}
-		if (rl != lastFontTexture)
-		{
-			renderer.next();
-			Minecraft.getMinecraft().getTextureManager().bindTexture(rl);
-			lastFontTexture = rl;
+			if (unicodeTextures[i] == null)
+				unicodeTextures[i] = new GuiTexture(unicodePages[i], 256, 256);
+			texture = unicodeTextures[i];
 		}
-	}
-
-	@Override
-	protected void prepare(GuiRenderer renderer, float x, float y, float z, FontOptions options)
-	{
-		super.prepare(renderer, x, y, z, options);
-		this.renderer = renderer;
-	}
-
-	@Override
-	protected void clean(GuiRenderer renderer, boolean isDrawing)
-	{
-		super.clean(renderer, isDrawing);
-		lastFontTexture = null;
+		renderer.bindTexture(texture);
+		return data;
 	}
 
 	@Override
@@ -159,10 +164,16 @@ public class MinecraftFont extends MalisisFont
 		return super.getCharData(c);
 	}
 
+	@Override
+	public int getMetricsVersion()
+	{
+		//widths change with each reload, and differ between the ascii and the unicode textures
+		return metricsVersion * 2 + (fontRenderer.getUnicodeFlag() || forceUnicode ? 1 : 0);
+	}
+
 	@Override
 	protected void drawChar(CharData cd, float offsetX, float offsetY, FontOptions options, int color)
 	{
-		bindFontTexture(cd);
 		if (drawingShadow && cd instanceof UnicodeCharData)
 		{
 			offsetX -= options.getFontScale() / 2;
@@ -0,0 +1,826 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.renderer.font;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * Immutable result of the layout of a text : the glyphs to draw with their positions and styles, and the lines the text is split into.<br>
+ * Layouts are shared between all the texts with the same content, {@link FontOptions} and wrap size, and kept in a bounded cache so
+ * the text is only walked through once.<br>
+ * Multiline texts are laid out paragraph by paragraph, so that when a text is edited, only the paragraphs that changed are laid out
+ * again.
+ *
+ * @author Ordinastie
+ *
+ */
+public class TextLayout
+{
+	/** Maximum number of layouts kept in the cache. */
+	private static final int CACHE_SIZE = 512;
+	/** Maximum length of the texts kept in the cache. Longer texts only reuse the paragraphs of their previous layout. */
+	private static final int MAX_CACHED_LENGTH = 2048;
+	/** Layouts recently built, least recently used first. */
+	private static final Map<Key, TextLayout> cache = new LinkedHashMap<Key, TextLayout>(CACHE_SIZE, 0.75F, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, TextLayout> eldest)
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/** Text laid out. */
+	private final String text;
+	/** Options the text was laid out with. */
+	private final FontOptions options;
+	/** Style at the start of the text. Differs from {@link #options} for paragraphs following formatted text. */
+	private final FontOptions startStyle;
+	/** Style at the end of the text. */
+	private final FontOptions endStyle;
+	/** Wrap width the text was laid out with. */
+	private final int wrapWidth;
+	/** Whether the text was laid out as multiple lines. */
+	private final boolean multiLine;
+	/** Whether formatting codes were laid out as regular characters. */
+	private final boolean literal;
+	/** Version of the font metrics used for the layout. */
+	private final int metricsVersion;
+	/** Layouts of the paragraphs of the text, if it was split. */
+	private final TextLayout[] paragraphs;
+
+	/** Character of each glyph. Formatting codes are not glyphs. */
+	private final char[] glyphs;
+	/** Index in the text of each glyph. */
+	private final int[] sources;
+	/** Position of each glyph. */
+	private final float[] x;
+	/** Position of each glyph. */
+	private final float[] y;
+	/** Width of each glyph. */
+	private final float[] width;
+	/** Height of each glyph. */
+	private final float[] height;
+
+	/** Index of the glyph after the last one of each style span. */
+	private final int[] spanEnds;
+	/** Style of each span. */
+	private final FontOptions[] spanStyles;
+
+	/** Index in the text of the start of each line. */
+	private final int[] lineStarts;
+	/** Index of the first glyph of each line. */
+	private final int[] lineGlyphs;
+	/** Width of each line. */
+	private final int[] lineWidths;
+	/** Height of each line. */
+	private final int[] lineHeights;
+	/** Position of each line. */
+	private final float[] lineX;
+	/** Position of each line. */
+	private final float[] lineY;
+
+	/**
+	 * Lays out a text as a single paragraph.
+	 *
+	 * @param text the text
+	 * @param options the options
+	 * @param startStyle the style at the start of the text
+	 * @param wrapWidth the wrap width
+	 * @param multiLine the multi line
+	 * @param literal the literal
+	 */
+	private TextLayout(String text, FontOptions options, FontOptions startStyle, int wrapWidth, boolean multiLine, boolean literal)
+	{
+		this.text = text;
+		this.options = options;
+		this.startStyle = startStyle;
+		this.wrapWidth = wrapWidth;
+		this.multiLine = multiLine;
+		this.literal = literal;
+		this.metricsVersion = options.getFont().getMetricsVersion();
+		this.paragraphs = null;
+
+		int length = text.length();
+		float[] widths = new float[length];
+		float[] heights = new float[length];
+		boolean[] formats = new boolean[length];
+		FontOptions[] styles = new FontOptions[length];
+
+		//measure each character, formatting codes included
+		StringWalker walker = new StringWalker(text, options);
+		if (startStyle != options)
+			walker.styles.add(startStyle);
+		walker.setLitteral(literal);
+		walker.skipChars(false);
+		walker.applyStyles(!literal);
+		int[] starts = new int[8];
+		int[] widthList = new int[8];
+		int[] heightList = new int[8];
+		int lineCount = 0;
+		int lineStart = 0;
+		int wordStart = 0;
+		float lineWidth = 0;
+		float wordWidth = 0;
+		float lineHeight = 0;
+		while (walker.walk())
+		{
+			int i = walker.globalIndex();
+			char c = walker.getChar();
+			widths[i] = walker.width();
+			heights[i] = walker.height();
+			formats[i] = !literal && walker.isFormatted();
+			styles[i] = walker.currentStyle();
+
+			lineWidth += widths[i];
+			wordWidth += widths[i];
+			lineHeight = Math.max(lineHeight, heights[i]);
+
+			//we just ended a new word, add it to the current line
+			if (Character.isWhitespace(c) || c == '-' || c == '.')
+			{
+				wordStart = i + 1;
+				wordWidth = 0;
+			}
+			if (multiLine && ((wrapWidth > 0 && lineWidth >= wrapWidth) || c == '\n'))
+			{
+				//the first word on the line is too large, split anyway
+				if (wordStart == lineStart)
+				{
+					wordStart = i + 1;
+					wordWidth = 0;
+				}
+
+				//remove current word from last line
+				lineWidth -= wordWidth;
+
+				if (lineCount == starts.length)
+				{
+					starts = Arrays.copyOf(starts, lineCount * 2);
+					widthList = Arrays.copyOf(widthList, lineCount * 2);
+					heightList = Arrays.copyOf(heightList, lineCount * 2);
+				}
+				starts[lineCount] = lineStart;
+				widthList[lineCount] = MathHelper.ceil(lineWidth);
+				heightList[lineCount++] = MathHelper.ceil(lineHeight);
+				lineStart = wordStart;
+
+				lineWidth = wordWidth;
+			}
+		}
+		endStyle = walker.currentStyle();
+
+		lineStarts = Arrays.copyOf(starts, lineCount + 1);
+		lineWidths = Arrays.copyOf(widthList, lineCount + 1);
+		lineHeights = Arrays.copyOf(heightList, lineCount + 1);
+		lineStarts[lineCount] = lineStart;
+		lineWidths[lineCount] = MathHelper.ceil(lineWidth);
+		lineHeights[lineCount] = MathHelper.ceil(lineHeight);
+		lineGlyphs = new int[lineStarts.length];
+		lineX = new float[lineStarts.length];
+		lineY = new float[lineStarts.length];
+
+		//place the glyphs
+		int glyphCount = 0;
+		for (boolean format : formats)
+			if (!format)
+				glyphCount++;
+		glyphs = new char[glyphCount];
+		sources = new int[glyphCount];
+		x = new float[glyphCount];
+		y = new float[glyphCount];
+		width = new float[glyphCount];
+		height = new float[glyphCount];
+
+		int maxWidth = maxWidth(lineWidths);
+		SpanList spans = new SpanList();
+		int g = 0;
+		float ly = 0;
+		for (int line = 0; line < lineStarts.length; line++)
+		{
+			float lx = options.isRightAligned() ? maxWidth - lineWidths[line] : 0;
+			lineGlyphs[line] = g;
+			lineX[line] = lx;
+			lineY[line] = ly;
+			for (int i = lineStarts[line]; i < lineEnd(line); i++)
+			{
+				if (formats[i])
+					continue;
+
+				spans.add(styles[i], g);
+				glyphs[g] = text.charAt(i);
+				sources[g] = i;
+				x[g] = lx;
+				y[g] = ly;
+				width[g] = widths[i];
+				height[g++] = heights[i];
+				lx += widths[i];
+			}
+			ly += lineHeights[line] + options.lineSpacing();
+		}
+		spanEnds = Arrays.copyOf(spans.ends, spans.count);
+		spanStyles = Arrays.copyOf(spans.styles, spans.count);
+	}
+
+	/**
+	 * Merges the layouts of the paragraphs of a text.<br>
+	 * Each paragraph but the last ends with a new line, and its last empty line is dropped.
+	 *
+	 * @param text the text
+	 * @param options the options
+	 * @param wrapWidth the wrap width
+	 * @param literal the literal
+	 * @param paragraphs the paragraphs
+	 */
+	private TextLayout(String text, FontOptions options, int wrapWidth, boolean literal, TextLayout[] paragraphs)
+	{
+		this.text = text;
+		this.options = options;
+		this.startStyle = options;
+		this.endStyle = paragraphs[paragraphs.length - 1].endStyle;
+		this.wrapWidth = wrapWidth;
+		this.multiLine = true;
+		this.literal = literal;
+		this.metricsVersion = options.getFont().getMetricsVersion();
+		this.paragraphs = paragraphs;
+
+		int glyphCount = 0;
+		int lineCount = 0;
+		int maxWidth = 0;
+		for (int p = 0; p < paragraphs.length; p++)
+		{
+			TextLayout paragraph = paragraphs[p];
+			int lines = paragraph.lineCount() - (p < paragraphs.length - 1 ? 1 : 0);
+			glyphCount += paragraph.size();
+			lineCount += lines;
+			for (int line = 0; line < lines; line++)
+				maxWidth = Math.max(maxWidth, paragraph.lineWidths[line]);
+		}
+
+		glyphs = new char[glyphCount];
+		sources = new int[glyphCount];
+		x = new float[glyphCount];
+		y = new float[glyphCount];
+		width = new float[glyphCount];
+		height = new float[glyphCount];
+		lineStarts = new int[lineCount];
+		lineGlyphs = new int[lineCount];
+		lineWidths = new int[lineCount];
+		lineHeights = new int[lineCount];
+		lineX = new float[lineCount];
+		lineY = new float[lineCount];
+
+		SpanList spans = new SpanList();
+		int g = 0;
+		int l = 0;
+		int offset = 0;
+		int lineHeight = 0;
+		float ly = 0;
+		for (int p = 0; p < paragraphs.length; p++)
+		{
+			TextLayout paragraph = paragraphs[p];
+			int lines = paragraph.lineCount() - (p < paragraphs.length - 1 ? 1 : 0);
+			int span = 0;
+			for (int line = 0; line < lines; line++, l++)
+			{
+				//line heights keep growing with the tallest character of the text
+				lineHeight = Math.max(lineHeight, paragraph.lineHeights[line]);
+				lineStarts[l] = paragraph.lineStarts[line] + offset;
+				lineGlyphs[l] = g;
+				lineWidths[l] = paragraph.lineWidths[line];
+				lineHeights[l] = lineHeight;
+				lineX[l] = options.isRightAligned() ? maxWidth - lineWidths[l] : 0;
+				lineY[l] = ly;
+
+				float shift = lineX[l] - paragraph.lineX[line];
+				int end = line + 1 < paragraph.lineCount() ? paragraph.lineGlyphs[line + 1] : paragraph.size();
+				for (int i = paragraph.lineGlyphs[line]; i < end; i++, g++)
+				{
+					while (i >= paragraph.spanEnds[span])
+						span++;
+					spans.add(paragraph.spanStyles[span], g);
+					glyphs[g] = paragraph.glyphs[i];
+					sources[g] = paragraph.sources[i] + offset;
+					x[g] = paragraph.x[i] + shift;
+					y[g] = ly;
+					width[g] = paragraph.width[i];
+					height[g] = paragraph.height[i];
+				}
+				ly += lineHeight + options.lineSpacing();
+			}
+			offset += paragraph.text.length();
+		}
+		spanEnds = Arrays.copyOf(spans.ends, spans.count);
+		spanStyles = Arrays.copyOf(spans.styles, spans.count);
+	}
+
+	private static int maxWidth(int[] lineWidths)
+	{
+		int maxWidth = 0;
+		for (int w : lineWidths)
+			maxWidth = Math.max(maxWidth, w);
+		return maxWidth;
+	}
+
+	//#region Glyphs
+	/**
+	 * Gets the number of glyphs.
+	 *
+	 * @return the number of glyphs
+	 */
+	public int size()
+	{
+		return glyphs.length;
+	}
+
+	/**
+	 * Gets the character of a glyph.
+	 *
+	 * @param index the index of the glyph
+	 * @return the character
+	 */
+	public char glyph(int index)
+	{
+		return glyphs[index];
+	}
+
+	/**
+	 * Gets the index in the text of a glyph.
+	 *
+	 * @param index the index of the glyph
+	 * @return the index in the text
+	 */
+	public int source(int index)
+	{
+		return sources[index];
+	}
+
+	/**
+	 * Gets the x position of a glyph, relative to the text.
+	 *
+	 * @param index the index of the glyph
+	 * @return the x
+	 */
+	public float x(int index)
+	{
+		return x[index];
+	}
+
+	/**
+	 * Gets the y position of a glyph, relative to the text.
+	 *
+	 * @param index the index of the glyph
+	 * @return the y
+	 */
+	public float y(int index)
+	{
+		return y[index];
+	}
+
+	/**
+	 * Gets the width of a glyph.
+	 *
+	 * @param index the index of the glyph
+	 * @return the width
+	 */
+	public float width(int index)
+	{
+		return width[index];
+	}
+
+	/**
+	 * Gets the height of a glyph.
+	 *
+	 * @param index the index of the glyph
+	 * @return the height
+	 */
+	public float height(int index)
+	{
+		return height[index];
+	}
+
+	/**
+	 * Gets the number of style spans.
+	 *
+	 * @return the span count
+	 */
+	public int spanCount()
+	{
+		return spanEnds.length;
+	}
+
+	/**
+	 * Gets the index of the glyph after the last one of a span.
+	 *
+	 * @param span the span
+	 * @return the index
+	 */
+	public int spanEnd(int span)
+	{
+		return spanEnds[span];
+	}
+
+	/**
+	 * Gets the style of the glyphs of a span.
+	 *
+	 * @param span the span
+	 * @return the style
+	 */
+	public FontOptions spanStyle(int span)
+	{
+		return spanStyles[span];
+	}
+
+	//#end Glyphs
+
+	//#region Lines
+	/**
+	 * Gets the number of lines.
+	 *
+	 * @return the line count
+	 */
+	public int lineCount()
+	{
+		return lineStarts.length;
+	}
+
+	/**
+	 * Gets the text of a line, formatting codes included.
+	 *
+	 * @param line the line
+	 * @return the text
+	 */
+	public String lineText(int line)
+	{
+		return text.substring(lineStarts[line], lineEnd(line));
+	}
+
+	/**
+	 * Gets the index in the text of the first character of a line.
+	 *
+	 * @param line the line
+	 * @return the index
+	 */
+	public int lineStart(int line)
+	{
+		return lineStarts[line];
+	}
+
+	/**
+	 * Gets the index in the text after the last character of a line.
+	 *
+	 * @param line the line
+	 * @return the index
+	 */
+	public int lineEnd(int line)
+	{
+		return line + 1 < lineStarts.length ? lineStarts[line + 1] : text.length();
+	}
+
+	/**
+	 * Gets the width of a line.
+	 *
+	 * @param line the line
+	 * @return the width
+	 */
+	public int lineWidth(int line)
+	{
+		return lineWidths[line];
+	}
+
+	/**
+	 * Gets the height of a line.
+	 *
+	 * @param line the line
+	 * @return the height
+	 */
+	public int lineHeight(int line)
+	{
+		return lineHeights[line];
+	}
+
+	/**
+	 * Gets the x position of the start of a line, relative to the text.
+	 *
+	 * @param line the line
+	 * @return the x
+	 */
+	public float lineX(int line)
+	{
+		return lineX[line];
+	}
+
+	/**
+	 * Gets the y position of a line, relative to the text.
+	 *
+	 * @param line the line
+	 * @return the y
+	 */
+	public float lineY(int line)
+	{
+		return lineY[line];
+	}
+
+	/**
+	 * Gets the line holding the character at the index in the text.
+	 *
+	 * @param index the index
+	 * @return the line
+	 */
+	public int lineOf(int index)
+	{
+		int line = Arrays.binarySearch(lineStarts, index);
+		if (line < 0)
+			line = -line - 2;
+		return MathHelper.clamp(line, 0, lineStarts.length - 1);
+	}
+
+	/**
+	 * Gets the line at the y position.
+	 *
+	 * @param y the y
+	 * @return the line, or -1 if the position is below the text
+	 */
+	public int lineAtY(float y)
+	{
+		for (int line = 0; line < lineStarts.length; line++)
+			if (lineY[line] + lineHeights[line] > y)
+				return line;
+		return -1;
+	}
+
+	/**
+	 * Gets the first glyph of a line ending after the x position, or the last glyph of the line if none does.
+	 *
+	 * @param line the line
+	 * @param x the x
+	 * @return the glyph, or -1 if the line has no glyph
+	 */
+	public int glyphAtX(int line, float x)
+	{
+		int start = lineGlyphs[line];
+		int end = line + 1 < lineGlyphs.length ? lineGlyphs[line + 1] : glyphs.length;
+		if (start == end)
+			return -1;
+
+		for (int g = start; g < end; g++)
+			if (this.x[g] + width[g] >= x)
+				return g;
+		return end - 1;
+	}
+
+	/**
+	 * Gets the x position right after the character at the index in the text, on the line of that character.
+	 *
+	 * @param index the index
+	 * @return the x
+	 */
+	public float endX(int index)
+	{
+		int line = lineOf(index);
+		int start = lineGlyphs[line];
+		int end = line + 1 < lineGlyphs.length ? lineGlyphs[line + 1] : glyphs.length;
+		int g = Arrays.binarySearch(sources, start, end, index);
+		if (g < 0)
+			g = -g - 2;
+		return g >= start ? x[g] + width[g] : lineX[line];
+	}
+
+	//#end Lines
+
+	/**
+	 * Checks whether this {@link TextLayout} was built with the current metrics of the font.
+	 *
+	 * @param font the font
+	 * @return true, if the layout is still valid
+	 */
+	public boolean isValid(MalisisFont font)
+	{
+		return metricsVersion == font.getMetricsVersion();
+	}
+
+	/**
+	 * Checks whether this {@link TextLayout} can be used for the specified parameters.
+	 *
+	 * @param text the text
+	 * @param startStyle the start style
+	 * @param wrapWidth the wrap width
+	 * @param multiLine the multi line
+	 * @param literal the literal
+	 * @return true, if successful
+	 */
+	private boolean matches(String text, FontOptions startStyle, int wrapWidth, boolean multiLine, boolean literal)
+	{
+		return this.startStyle == startStyle && this.wrapWidth == wrapWidth && this.multiLine == multiLine && this.literal == literal
+				&& isValid(startStyle.getFont()) && this.text.equals(text);
+	}
+
+	/**
+	 * Gets the {@link TextLayout} for the text.<br>
+	 * The layout is taken from the cache if the same text was laid out with the same {@link FontOptions} instance and wrap size.
+	 *
+	 * @param text the text
+	 * @param options the options
+	 * @param wrapWidth the wrap width, 0 or less to not wrap
+	 * @param multiLine whether the text can be split in multiple lines
+	 * @param literal whether formatting codes are drawn as regular characters
+	 * @return the layout
+	 */
+	public static TextLayout of(String text, FontOptions options, int wrapWidth, boolean multiLine, boolean literal)
+	{
+		return of(text, options, wrapWidth, multiLine, literal, null);
+	}
+
+	/**
+	 * Gets the {@link TextLayout} for the text.<br>
+	 * The paragraphs of the <b>previous</b> layout that did not change are reused, so editing a long text only lays out the edited
+	 * paragraphs again.
+	 *
+	 * @param text the text
+	 * @param options the options
+	 * @param wrapWidth the wrap width, 0 or less to not wrap
+	 * @param multiLine whether the text can be split in multiple lines
+	 * @param literal whether formatting codes are drawn as regular characters
+	 * @param previous the previous layout of the text, can be null
+	 * @return the layout
+	 */
+	public static TextLayout of(String text, FontOptions options, int wrapWidth, boolean multiLine, boolean literal, TextLayout previous)
+	{
+		if (!multiLine)
+			wrapWidth = 0;
+		boolean cached = text.length() <= MAX_CACHED_LENGTH;
+		Key key = cached ? new Key(text, options, wrapWidth, multiLine, literal) : null;
+		TextLayout layout = cached ? cache.get(key) : null;
+		if (layout != null && layout.isValid(options.getFont()))
+			return layout;
+
+		if (multiLine && text.indexOf('\n') != -1)
+			layout = paragraphs(text, options, wrapWidth, literal, previous);
+		else
+			layout = new TextLayout(text, options, options, wrapWidth, multiLine, literal);
+
+		if (cached)
+			cache.put(key, layout);
+		return layout;
+	}
+
+	/**
+	 * Lays out each paragraph of the text and merges them.<br>
+	 * Paragraphs at the start and at the end of the text that are the same as in the previous layout are reused.
+	 *
+	 * @param text the text
+	 * @param options the options
+	 * @param wrapWidth the wrap width
+	 * @param literal the literal
+	 * @param previous the previous layout
+	 * @return the layout
+	 */
+	private static TextLayout paragraphs(String text, FontOptions options, int wrapWidth, boolean literal, TextLayout previous)
+	{
+		List<String> texts = new ArrayList<>();
+		int start = 0;
+		for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', start))
+		{
+			texts.add(text.substring(start, i + 1));
+			start = i + 1;
+		}
+		texts.add(text.substring(start));
+
+		TextLayout[] old = previous != null && previous.paragraphs != null && previous.options == options ? previous.paragraphs
+				: new TextLayout[0];
+		int prefix = 0;
+		while (prefix < old.length && prefix < texts.size() && old[prefix].text.equals(texts.get(prefix)))
+			prefix++;
+		int suffix = 0;
+		while (suffix < old.length - prefix && suffix < texts.size() - prefix
+				&& old[old.length - 1 - suffix].text.equals(texts.get(texts.size() - 1 - suffix)))
+			suffix++;
+
+		TextLayout[] paragraphs = new TextLayout[texts.size()];
+		FontOptions style = options;
+		for (int p = 0; p < paragraphs.length; p++)
+		{
+			String str = texts.get(p);
+			TextLayout paragraph = null;
+			if (p < prefix)
+				paragraph = old[p];
+			else if (p >= paragraphs.length - suffix)
+				paragraph = old[p - paragraphs.length + old.length];
+
+			//reused paragraphs must start with the same style
+			if (paragraph == null || !paragraph.matches(str, style, wrapWidth, true, literal))
+				paragraph = new TextLayout(str, options, style, wrapWidth, true, literal);
+			paragraphs[p] = paragraph;
+			style = paragraph.endStyle;
+		}
+
+		return new TextLayout(text, options, wrapWidth, literal, paragraphs);
+	}
+
+	/**
+	 * Clears the layouts cache.
+	 */
+	public static void clearCache()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * Style spans being built.
+	 */
+	private static class SpanList
+	{
+		private int[] ends = new int[4];
+		private FontOptions[] styles = new FontOptions[4];
+		private int count = 0;
+
+		/**
+		 * Adds the glyph to the current span, or starts a new span if the style is different.
+		 *
+		 * @param style the style
+		 * @param glyph the glyph
+		 */
+		private void add(FontOptions style, int glyph)
+		{
+			if (count == 0 || styles[count - 1] != style)
+			{
+				if (count == styles.length)
+				{
+					ends = Arrays.copyOf(ends, count * 2);
+					styles = Arrays.copyOf(styles, count * 2);
+				}
+				styles[count++] = style;
+			}
+			ends[count - 1] = glyph + 1;
+		}
+	}
+
+	/**
+	 * Key for the layouts cache. {@link FontOptions} are compared by reference.
+	 */
+	private static class Key
+	{
+		private final String text;
+		private final FontOptions options;
+		private final int wrapWidth;
+		private final boolean multiLine;
+		private final boolean literal;
+		private final int hashCode;
+
+		private Key(String text, FontOptions options, int wrapWidth, boolean multiLine, boolean literal)
+		{
+			this.text = text;
+			this.options = options;
+			this.wrapWidth = wrapWidth;
+			this.multiLine = multiLine;
+			this.literal = literal;
+			this.hashCode = Objects.hash(text, System.identityHashCode(options), wrapWidth, multiLine, literal);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+				return false;
+			Key key = (Key) obj;
+			return options == key.options && wrapWidth == key.wrapWidth && multiLine == key.multiLine && literal == key.literal
+					&& text.equals(key.text);
+		}
+	}
+}
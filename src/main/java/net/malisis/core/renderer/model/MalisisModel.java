@@ -41,6 +41,7 @@ import net.malisis.core.MalisisCore;
 import net.malisis.core.renderer.MalisisRenderer;
 import net.malisis.core.renderer.RenderParameters;
 import net.malisis.core.renderer.animation.Animation;
+import net.malisis.core.renderer.animation.CompiledAnimation;
 import net.malisis.core.renderer.animation.transformation.ITransformable;
 import net.malisis.core.renderer.element.Shape;
 import net.malisis.core.renderer.model.loader.AnimationImporter;
@@ -62,6 +63,8 @@ public class MalisisModel implements ITransformable.Translate, ITransformable.Ro
 	protected Map<String, Shape> shapes = Maps.newHashMap();
 	/** Animations for the Shapes in this {@link MalisisModel} */
 	protected Multimap<String, Animation<Shape>> animations = ArrayListMultimap.create();
+	/** Compiled form of the animations, null for the animations that cannot be compiled. */
+	protected Map<Animation<Shape>, CompiledAnimation> compiledAnimations = Maps.newHashMap();
 
 	/**
 	 * Instantiates a new empty {@link MalisisModel}.<br>
@@ -325,7 +328,7 @@ public class MalisisModel implements ITransformable.Translate, ITransformable.Ro
 	{
 		Shape shape = getShape(name);
 		if (shape != null)
-			renderer.drawShape(shape, rp);
+			renderer.drawShapeTransformed(shape, rp);
 	}
 
 	/**
@@ -344,7 +347,8 @@ public class MalisisModel implements ITransformable.Translate, ITransformable.Ro
 	}
 
 	/**
-	 * Animates the specific {@link Animation} based on the specified {@link Timer}
+	 * Animates the specific {@link Animation} based on the specified {@link Timer}.<br>
+	 * The matrices of the animation are precomputed the first time it's played, if possible.
 	 *
 	 * @param animation the animation
 	 * @param timer the timer
@@ -352,10 +356,27 @@ public class MalisisModel implements ITransformable.Translate, ITransformable.Ro
 	 */
 	public boolean animate(Animation<Shape> animation, Timer timer)
 	{
-		animation.animate(timer);
+		CompiledAnimation compiled = getCompiledAnimation(animation);
+		if (compiled != null)
+			compiled.animate(timer);
+		else
+			animation.animate(timer);
 		return animation.isFinished();
 	}
 
+	/**
+	 * Gets the {@link CompiledAnimation} for the {@link Animation}, compiling it on first call.
+	 *
+	 * @param animation the animation
+	 * @return the compiled animation, or null if the animation cannot be compiled
+	 */
+	protected CompiledAnimation getCompiledAnimation(Animation<Shape> animation)
+	{
+		if (!compiledAnimations.containsKey(animation))
+			compiledAnimations.put(animation, CompiledAnimation.compile(animation));
+		return compiledAnimations.get(animation);
+	}
+
 	/**
 	 * Stores the state of this {@link MalisisModel}. Stores the state of all the {@link Shape shapes} contained by this model.
 	 */
@@ -374,6 +395,16 @@ public class MalisisModel implements ITransformable.Translate, ITransformable.Ro
 			s.resetState();
 	}
 
+	/**
+	 * Resets the transformations of this {@link MalisisModel}. Resets the transformations of all the {@link Shape shapes} contained by
+	 * this model, without resetting their vertexes, which the model leaves untouched when rendering.
+	 */
+	public void resetTransforms()
+	{
+		for (Shape s : this)
+			s.resetTransforms();
+	}
+
 	@Override
 	public void translate(float x, float y, float z)
 	{
@@ -24,23 +24,28 @@
 
 package net.malisis.core.renderer.model.loader;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.InstanceCreator;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
@@ -77,6 +82,14 @@ import net.minecraft.util.math.MathHelper;
  */
 public class AnimationImporter implements IAnimationLoader
 {
+	/** Gson instance used to read the JSON files. */
+	private static final Gson gson = new GsonBuilder()
+			//no builtin way to dezerialize multimaps
+			.registerTypeAdapter(Multimap.class, (JsonDeserializer<Multimap<String, Anim>>) AnimationImporter::deserializeAnim)
+			.create();
+	/** Definitions already read, by hash of their file. */
+	private static final Map<HashCode, Definitions> loaded = new ConcurrentHashMap<>();
+
 	/** List of {@link Transform} defined in the JSON. */
 	private Map<String, Transform> transforms = Maps.newHashMap();
 	/** List of {@link Anim} defined in the JSON. */
@@ -127,7 +140,8 @@ public class AnimationImporter implements IAnimationLoader
 	}
 
 	/**
-	 * Loads and reads the JSON.
+	 * Loads and reads the JSON.<br>
+	 * The definitions of a file already read are reused.
 	 *
 	 * @param resourceLocation the resource location
 	 */
@@ -137,18 +151,12 @@ public class AnimationImporter implements IAnimationLoader
 		if (res == null)
 			return;
 
-		GsonBuilder gsonBuilder = new GsonBuilder();
-		//we don't want GSON to create a new AnimationImporte but use this current one
-		gsonBuilder.registerTypeAdapter(AnimationImporter.class, (InstanceCreator<AnimationImporter>) type -> this);
-		//no builtin way to dezerialize multimaps
-		gsonBuilder.registerTypeAdapter(Multimap.class, (JsonDeserializer<Multimap<String, Anim>>) this::deserializeAnim);
-		Gson gson = gsonBuilder.create();
-
-		try (Reader reader = new InputStreamReader(res.getInputStream(), "UTF-8"))
+		try (InputStream is = res.getInputStream())
 		{
-			JsonReader jsonReader = new JsonReader(reader);
-			jsonReader.setLenient(true);
-			gson.fromJson(jsonReader, AnimationImporter.class);
+			byte[] bytes = IOUtils.toByteArray(is);
+			Definitions definitions = loaded.computeIfAbsent(Hashing.sha1().hashBytes(bytes), h -> read(bytes));
+			transforms = definitions.transforms;
+			anims = definitions.anims;
 		}
 		catch (Exception e)
 		{
@@ -156,6 +164,32 @@ public class AnimationImporter implements IAnimationLoader
 		}
 	}
 
+	/**
+	 * Reads the content of a JSON file ahead of time, so that the {@link AnimationImporter AnimationImporters} later created for the same
+	 * file reuse its definitions.<br>
+	 * Can be called from any thread.
+	 *
+	 * @param bytes the content of the file
+	 */
+	public static void preload(byte[] bytes)
+	{
+		loaded.computeIfAbsent(Hashing.sha1().hashBytes(bytes), h -> read(bytes));
+	}
+
+	/**
+	 * Reads the {@link Definitions} from the content of the JSON file.
+	 *
+	 * @param bytes the content of the file
+	 * @return the definitions
+	 */
+	private static Definitions read(byte[] bytes)
+	{
+		JsonReader jsonReader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+		jsonReader.setLenient(true);
+		Definitions definitions = gson.fromJson(jsonReader, Definitions.class);
+		return definitions != null ? definitions : new Definitions();
+	}
+
 	/**
 	 * Gets the {@link Transformation} from its name.
 	 *
@@ -179,7 +213,8 @@ public class AnimationImporter implements IAnimationLoader
 	 * @return the multimap
 	 * @throws JsonParseException the json parse exception
 	 */
-	public Multimap<String, Anim> deserializeAnim(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException
+	public static Multimap<String, Anim> deserializeAnim(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+			throws JsonParseException
 	{
 		Multimap<String, Anim> anims = ArrayListMultimap.create();
 		JsonObject obj = json.getAsJsonObject();
@@ -509,6 +544,16 @@ public class AnimationImporter implements IAnimationLoader
 		}
 	}
 
+	/**
+	 * Holder for the {@link Transform transforms} and {@link Anim anims} defined in a JSON file.<br>
+	 * Shared between all the importers reading the same file.
+	 */
+	private static class Definitions
+	{
+		private Map<String, Transform> transforms = Maps.newHashMap();
+		private Multimap<String, Anim> anims = ArrayListMultimap.create();
+	}
+
 	private static class Anim
 	{
 		/** Group/shape name the {@link Transformation} is applied to. */
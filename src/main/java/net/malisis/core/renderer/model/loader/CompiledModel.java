@@ -0,0 +1,261 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.renderer.model.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import net.malisis.core.MalisisCore;
+import net.malisis.core.renderer.RenderParameters;
+import net.malisis.core.renderer.element.Face;
+import net.malisis.core.renderer.element.Shape;
+import net.malisis.core.renderer.element.Vertex;
+import net.malisis.core.util.Vector;
+import net.minecraft.util.EnumFacing;
+
+/**
+ * Model data compiled from a model file, stored as flat arrays of coordinates and indexes.<br>
+ * A {@link CompiledModel} is immutable and can be shared between models : each call to {@link #buildShapes()} creates new {@link Shape
+ * shapes}. It can be written to a binary file, which is read back into a heap buffer.
+ *
+ * @author Ordinastie
+ */
+public class CompiledModel
+{
+	/** Identifies the file format. */
+	private static final int MAGIC = 0x4D4F424A;
+	/** Version of the file format. Files with another version are compiled again. */
+	private static final int VERSION = 1;
+	/** Size of the key. */
+	private static final int KEY_SIZE = 20;
+	/** Size of the header : magic, version, key and the length of each array. */
+	private static final int HEADER_SIZE = 4 + 4 + KEY_SIZE + 6 * 4;
+
+	/** Names of the shapes. */
+	private final String[] shapeNames;
+	/** Number of faces of each shape. */
+	private final int[] shapeFaces;
+	/** Number of vertexes of each face. */
+	private final int[] faceSizes;
+	/** X, Y and Z coordinates of the vertexes. */
+	private final float[] positions;
+	/** U and V coordinates. */
+	private final float[] uvs;
+	/** X, Y and Z coordinates of the normals. */
+	private final float[] normals;
+	/** Position, UV and normal indexes for each vertex of each face, -1 if the face vertex has no UV or normal. */
+	private final int[] indexes;
+
+	/**
+	 * Instantiates a new {@link CompiledModel}.
+	 *
+	 * @param shapeNames the shape names
+	 * @param shapeFaces the number of faces of each shape
+	 * @param faceSizes the number of vertexes of each face
+	 * @param positions the vertex coordinates
+	 * @param uvs the UV coordinates
+	 * @param normals the normal coordinates
+	 * @param indexes the indexes for each face vertex
+	 */
+	public CompiledModel(String[] shapeNames, int[] shapeFaces, int[] faceSizes, float[] positions, float[] uvs, float[] normals,
+			int[] indexes)
+	{
+		this.shapeNames = shapeNames;
+		this.shapeFaces = shapeFaces;
+		this.faceSizes = faceSizes;
+		this.positions = positions;
+		this.uvs = uvs;
+		this.normals = normals;
+		this.indexes = indexes;
+	}
+
+	/**
+	 * Builds new {@link Shape shapes} from this {@link CompiledModel}.
+	 *
+	 * @return the shapes, by name
+	 */
+	public Map<String, Shape> buildShapes()
+	{
+		Map<String, Shape> shapes = Maps.newHashMap();
+		int face = 0;
+		int index = 0;
+		for (int s = 0; s < shapeNames.length; s++)
+		{
+			Face[] faces = new Face[shapeFaces[s]];
+			for (int f = 0; f < faces.length; f++, face++)
+			{
+				Vertex[] vertexes = new Vertex[faceSizes[face]];
+				Vector[] faceNormals = new Vector[vertexes.length];
+				int normalCount = 0;
+				for (int v = 0; v < vertexes.length; v++, index += 3)
+				{
+					int p = indexes[index] * 3;
+					int t = indexes[index + 1] * 2;
+					int n = indexes[index + 2] * 3;
+					vertexes[v] = new Vertex(positions[p], positions[p + 1], positions[p + 2]);
+					if (t >= 0)
+						vertexes[v].setUV(uvs[t], uvs[t + 1]);
+					if (n >= 0)
+						faceNormals[normalCount++] = new Vector(normals[n], normals[n + 1], normals[n + 2]);
+				}
+				faces[f] = createFace(vertexes, Arrays.copyOf(faceNormals, normalCount));
+			}
+			shapes.put(shapeNames[s], new Shape(faces));
+		}
+		return shapes;
+	}
+
+	/**
+	 * Creates a {@link Face}.<br>
+	 * Tries to deduct parameters from the normals provided and disable brightness/AO calculations.
+	 *
+	 * @param vertexes the vertexes
+	 * @param normals the normals
+	 * @return the face
+	 */
+	private Face createFace(Vertex[] vertexes, Vector[] normals)
+	{
+		Face f = new Face(vertexes);
+		f.deductParameters(normals);
+		RenderParameters params = f.getParameters();
+		if (params.direction.get() == EnumFacing.NORTH || params.direction.get() == EnumFacing.EAST)
+			params.flipU.set(true);
+		params.renderAllFaces.set(true);
+		params.interpolateUV.set(false);
+		params.calculateAOColor.set(false);
+		//params.useEnvironmentBrightness.set(false);
+		return f;
+	}
+
+	/**
+	 * Writes this {@link CompiledModel} to a file.
+	 *
+	 * @param file the file
+	 * @param key the key identifying the source of the model
+	 */
+	public void write(File file, byte[] key)
+	{
+		byte[][] names = new byte[shapeNames.length][];
+		int size = HEADER_SIZE;
+		for (int i = 0; i < names.length; i++)
+		{
+			names[i] = shapeNames[i].getBytes(StandardCharsets.UTF_8);
+			size += 4 + names[i].length;
+		}
+		size += (shapeFaces.length + faceSizes.length + indexes.length) * 4;
+		size += (positions.length + uvs.length + normals.length) * 4;
+
+		ByteBuffer buf = ByteBuffer.allocate(size);
+		buf.putInt(MAGIC).putInt(VERSION).put(key);
+		buf.putInt(shapeNames.length).putInt(faceSizes.length).putInt(positions.length).putInt(uvs.length).putInt(normals.length);
+		buf.putInt(indexes.length);
+		for (byte[] name : names)
+			buf.putInt(name.length).put(name);
+		buf.asIntBuffer().put(shapeFaces).put(faceSizes).put(indexes);
+		buf.position(buf.position() + (shapeFaces.length + faceSizes.length + indexes.length) * 4);
+		buf.asFloatBuffer().put(positions).put(uvs).put(normals);
+
+		//write to a temporary file first, so readers never see a partial file
+		Path tmp = file.toPath().resolveSibling(file.getName() + ".tmp");
+		try
+		{
+			Files.createDirectories(file.toPath().getParent());
+			Files.write(tmp, buf.array());
+			try
+			{
+				Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e)
+		{
+			MalisisCore.log.error("Failed to write model data to {}.", file.getName(), e);
+		}
+	}
+
+	/**
+	 * Reads a {@link CompiledModel} from a file.<br>
+	 * The file is read on the heap rather than mapped, so no mapping keeps it locked when it's written again.
+	 *
+	 * @param file the file
+	 * @param key the key identifying the source of the model
+	 * @return the model, or null if the file is missing, outdated or was written for another source
+	 */
+	public static CompiledModel read(File file, byte[] key)
+	{
+		if (!file.exists())
+			return null;
+
+		try
+		{
+			ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION)
+				return null;
+			byte[] fileKey = new byte[KEY_SIZE];
+			buf.get(fileKey);
+			if (!Arrays.equals(fileKey, key))
+				return null;
+
+			String[] shapeNames = new String[buf.getInt()];
+			int[] shapeFaces = new int[shapeNames.length];
+			int[] faceSizes = new int[buf.getInt()];
+			float[] positions = new float[buf.getInt()];
+			float[] uvs = new float[buf.getInt()];
+			float[] normals = new float[buf.getInt()];
+			int[] indexes = new int[buf.getInt()];
+
+			for (int i = 0; i < shapeNames.length; i++)
+			{
+				byte[] name = new byte[buf.getInt()];
+				buf.get(name);
+				shapeNames[i] = new String(name, StandardCharsets.UTF_8);
+			}
+			buf.asIntBuffer().get(shapeFaces).get(faceSizes).get(indexes);
+			buf.position(buf.position() + (shapeFaces.length + faceSizes.length + indexes.length) * 4);
+			buf.asFloatBuffer().get(positions).get(uvs).get(normals);
+
+			return new CompiledModel(shapeNames, shapeFaces, faceSizes, positions, uvs, normals, indexes);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			MalisisCore.log.error("Failed to read model data from {}.", file.getName(), e);
+			return null;
+		}
+	}
+}
@@ -24,49 +24,58 @@
 
 package net.malisis.core.renderer.model.loader;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
 
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 
 import net.malisis.core.MalisisCore;
-import net.malisis.core.renderer.RenderParameters;
-import net.malisis.core.renderer.element.Face;
 import net.malisis.core.renderer.element.Shape;
-import net.malisis.core.renderer.element.Vertex;
 import net.malisis.core.renderer.model.IModelLoader;
 import net.malisis.core.renderer.model.MalisisModel;
-import net.malisis.core.util.Vector;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.resources.IResource;
-import net.minecraft.util.EnumFacing;
 import net.minecraft.util.ResourceLocation;
 
 /**
- * Model loader for OBJ files (Wavefront).
+ * Model loader for OBJ files (Wavefront).<br>
+ * Files are compiled into a {@link CompiledModel}, which is kept in memory and written to disk, keyed by the hash of the file. Loading the
+ * same file again only builds new {@link Shape shapes} from the compiled data.
  *
  * @author Ordinastie
  */
 public class ObjFileImporter implements IModelLoader
 {
-	/** Pattern for lines. */
-	protected static Pattern linePattern = Pattern.compile("^(?<type>.*?) (?<data>.*)$");
+	/** Directory where the compiled models are written. */
+	protected static final File CACHE_DIR = new File("cache/models/");
+	/** Powers of ten that can be represented exactly as doubles. */
+	private static final double[] POW10 = new double[23];
+	static
+	{
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i - 1] * 10;
+	}
 
-	/** Pattern for face data. */
-	protected static Pattern facePattern = Pattern.compile("(?<v>\\d+)(/(?<t>\\d+)?(/(?<n>\\d+))?)?");
+	/** Models already compiled, by hash of their file. */
+	private static final Map<HashCode, CompiledModel> compiledModels = new ConcurrentHashMap<>();
 
-	/** Matcher object. */
-	protected Matcher matcher;
+	/** Content of the file being parsed. */
+	protected byte[] data;
 
-	/** Current line being parsed. */
-	protected String currentLine;
+	/** Current position in {@link #data}. */
+	protected int pos;
 
 	/** Current line number. */
 	protected int lineNumber;
@@ -74,21 +83,41 @@ public class ObjFileImporter implements IModelLoader
 	/** Current shape name. */
 	protected String currentShape = "Default";
 
-	/** List of {@link Vertex vertexes} used for the {@link MalisisModel}. */
-	protected List<Vertex> vertexes = new ArrayList<>();
+	/** Vertex coordinates used for the {@link MalisisModel}. */
+	private float[] positions = new float[192];
+	private int positionCount;
+
+	/** UV coordinates used for the {@link MalisisModel}. */
+	private float[] uvs = new float[128];
+	private int uvCount;
 
-	/** List of UV used for the {@link MalisisModel}. */
-	protected List<UV> uvs = new ArrayList<>();
+	/** Normal coordinates used for the {@link MalisisModel}. */
+	private float[] normals = new float[192];
+	private int normalCount;
 
-	/** List of vertex normals used for the {@link MalisisModel}. */
-	protected List<Vector> normals = new ArrayList<>();
+	/** Position, UV and normal indexes for each vertex of each face. */
+	private int[] indexes = new int[384];
+	private int indexCount;
 
-	/** List of {@link Face faces} used for the {@link MalisisModel}. */
-	protected List<Face> faces = new ArrayList<>();
+	/** Number of vertexes of each face. */
+	private int[] faceSizes = new int[64];
+	private int faceCount;
+
+	/** Number of faces of the current shape. */
+	private int shapeFaceCount;
+
+	/** Names of the shapes. */
+	private List<String> shapeNames = new ArrayList<>();
+
+	/** Number of faces of each shape. */
+	private List<Integer> shapeFaces = new ArrayList<>();
 
 	/** Map of the {@link Shape shapes} used for the {@link MalisisModel}. */
 	protected Map<String, Shape> shapes = Maps.newHashMap();
 
+	private ObjFileImporter()
+	{}
+
 	/**
 	 * Instantiates a new {@link ObjFileImporter} from a {@link ResourceLocation}.
 	 *
@@ -140,57 +169,19 @@ public class ObjFileImporter implements IModelLoader
 	}
 
 	/**
-	 * Loads the shapes from {@link InputStream}.
+	 * Loads the shapes from {@link InputStream}.<br>
+	 * The file is compiled only if it was not already, either in memory or on disk.
 	 *
 	 * @param inputStream the input stream
 	 */
 	public void load(InputStream inputStream)
 	{
-
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream)))
+		try (InputStream is = inputStream)
 		{
-			while ((currentLine = reader.readLine()) != null)
-			{
-				lineNumber++;
-				currentLine = currentLine.replaceAll("\\s+", " ").trim();
-				matcher = linePattern.matcher(currentLine);
-
-				if (matcher.matches())
-				{
-					String type = matcher.group("type");
-					String data = matcher.group("data");
-
-					switch (type)
-					{
-						case "v":
-							addVertex(data);
-							break;
-						case "vn":
-							addNormal(data);
-							break;
-						case "vt":
-							addUV(data);
-							break;
-						case "f":
-							addFace(data);
-							break;
-						case "g":
-						case "o":
-							addShape(data);
-							break;
-
-						default:
-							MalisisCore.log.debug("[ObjFileImporter] Skipped type {} at line {} : {}", type, lineNumber, currentLine);
-							break;
-					}
-				}
-				else
-				{
-					MalisisCore.log.debug("[ObjFileImporter] Skipped non-matching line {} : {}", lineNumber, currentLine);
-				}
-			}
-
-			addShape("");
+			byte[] bytes = IOUtils.toByteArray(is);
+			HashCode hash = Hashing.sha1().hashBytes(bytes);
+			CompiledModel model = compiledModels.computeIfAbsent(hash, h -> compile(h, bytes));
+			shapes = model.buildShapes();
 		}
 		catch (Exception e)
 		{
@@ -199,193 +190,384 @@ public class ObjFileImporter implements IModelLoader
 	}
 
 	/**
-	 * Creates a new {@link Vertex} from data and adds it to {@link #vertexes}.
+	 * Compiles the content of an OBJ file ahead of time, so that the {@link ObjFileImporter ObjFileImporters} later created for the same
+	 * file only have to build the shapes.<br>
+	 * Can be called from any thread.
 	 *
-	 * @param data the data
+	 * @param bytes the content of the file
 	 */
-	private void addVertex(String data)
+	public static void preload(byte[] bytes)
 	{
-		String coords[] = data.split("\\s+");
-		float x = 0;
-		float y = 0;
-		float z = 0;
-		if (coords.length != 3)
-		{
-			MalisisCore.log.error("[ObjFileImporter] Wrong coordinates number {} at line {} : {}", coords.length, lineNumber, currentLine);
-		}
-		else
-		{
-			x = Float.parseFloat(coords[0]);
-			y = Float.parseFloat(coords[1]);
-			z = Float.parseFloat(coords[2]);
-		}
+		compiledModels.computeIfAbsent(Hashing.sha1().hashBytes(bytes), h -> new ObjFileImporter().compile(h, bytes));
+	}
 
-		vertexes.add(new Vertex(x, y, z));
+	/**
+	 * Gets the {@link CompiledModel} for the file, reading it from disk if it was compiled before.
+	 *
+	 * @param hash the hash of the file
+	 * @param bytes the content of the file
+	 * @return the compiled model
+	 */
+	private CompiledModel compile(HashCode hash, byte[] bytes)
+	{
+		File file = new File(CACHE_DIR, hash + ".bin");
+		CompiledModel model = CompiledModel.read(file, hash.asBytes());
+		if (model != null)
+			return model;
+
+		model = parse(bytes);
+		model.write(file, hash.asBytes());
+		return model;
 	}
 
 	/**
-	 * Creates a new {@link UV} from data and adds it to {@link #uvs}.
+	 * Parses the content of an OBJ file.
 	 *
-	 * @param data the data
+	 * @param bytes the content of the file
+	 * @return the compiled model
 	 */
-	private void addUV(String data)
+	protected CompiledModel parse(byte[] bytes)
 	{
-		String coords[] = data.split("\\s+");
-		float u = 0;
-		float v = 0;
-		if (coords.length != 2)
+		data = bytes;
+		pos = 0;
+		lineNumber = 0;
+		positionCount = uvCount = normalCount = indexCount = faceCount = shapeFaceCount = 0;
+		shapeNames.clear();
+		shapeFaces.clear();
+		currentShape = "Default";
+		//skip UTF-8 BOM
+		if (data.length >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF)
+			pos = 3;
+
+		while (pos < data.length)
 		{
-			MalisisCore.log.error(	"[ObjFileImporter] Wrong UV coordinates number {} at line {} : {}",
-									coords.length,
-									lineNumber,
-									currentLine);
+			lineNumber++;
+			skipSpaces();
+			int start = pos;
+			while (pos < data.length && !isSpace(data[pos]) && !isEndOfLine(data[pos]))
+				pos++;
+
+			if (isKeyword(start, "v"))
+				addVertex();
+			else if (isKeyword(start, "vn"))
+				addNormal();
+			else if (isKeyword(start, "vt"))
+				addUV();
+			else if (isKeyword(start, "f"))
+				addFace();
+			else if (isKeyword(start, "g") || isKeyword(start, "o"))
+				addShape(readLine());
+			else if (pos != start && data[start] != '#')
+				MalisisCore.log.debug("[ObjFileImporter] Skipped type {} at line {}", new String(data, start, pos - start), lineNumber);
+
+			nextLine();
 		}
-		else
+
+		addShape("");
+
+		return new CompiledModel(	shapeNames.toArray(new String[0]),
+									shapeFaces.stream().mapToInt(Integer::intValue).toArray(),
+									Arrays.copyOf(faceSizes, faceCount),
+									Arrays.copyOf(positions, positionCount),
+									Arrays.copyOf(uvs, uvCount),
+									Arrays.copyOf(normals, normalCount),
+									Arrays.copyOf(indexes, indexCount));
+	}
+
+	/**
+	 * Reads the coordinates of a vertex and adds them to {@link #positions}.
+	 */
+	private void addVertex()
+	{
+		positions = ensureCapacity(positions, positionCount + 3);
+		int count = readFloats(positions, positionCount, 3);
+		if (count < 3)
 		{
-			u = Float.parseFloat(coords[0]);
-			v = 1 - Float.parseFloat(coords[1]);
+			MalisisCore.log.error("[ObjFileImporter] Wrong coordinates number {} at line {}", count, lineNumber);
+			Arrays.fill(positions, positionCount, positionCount + 3, 0);
 		}
-
-		uvs.add(new UV(u, v));
+		positionCount += 3;
 	}
 
 	/**
-	 * Creates a new normal {@link Vector} from data and adds it to {@link #normals}.
-	 *
-	 * @param data the data
+	 * Reads the coordinates of a UV and adds them to {@link #uvs}.
 	 */
-	private void addNormal(String data)
+	private void addUV()
 	{
-		String coords[] = data.split("\\s+");
-		float x = 0;
-		float y = 0;
-		float z = 0;
-		if (coords.length != 3)
+		uvs = ensureCapacity(uvs, uvCount + 2);
+		int count = readFloats(uvs, uvCount, 2);
+		if (count < 2)
 		{
-			MalisisCore.log.error(	"[ObjFileImporter] Wrong Normal coordinates number {} at line {} : {}",
-									coords.length,
-									lineNumber,
-									currentLine);
+			MalisisCore.log.error("[ObjFileImporter] Wrong UV coordinates number {} at line {}", count, lineNumber);
+			uvs[uvCount] = 0;
+			uvs[uvCount + 1] = 0;
 		}
 		else
+			uvs[uvCount + 1] = 1 - uvs[uvCount + 1];
+		uvCount += 2;
+	}
+
+	/**
+	 * Reads the coordinates of a normal and adds them to {@link #normals}.
+	 */
+	private void addNormal()
+	{
+		normals = ensureCapacity(normals, normalCount + 3);
+		int count = readFloats(normals, normalCount, 3);
+		if (count < 3)
 		{
-			x = Float.parseFloat(coords[0]);
-			y = Float.parseFloat(coords[1]);
-			z = Float.parseFloat(coords[2]);
+			MalisisCore.log.error("[ObjFileImporter] Wrong Normal coordinates number {} at line {}", count, lineNumber);
+			Arrays.fill(normals, normalCount, normalCount + 3, 0);
 		}
-
-		normals.add(new Vector(x, y, z));
+		normalCount += 3;
 	}
 
 	/**
-	 * Creates a new {@link Face} from data and adds it to {@link #faces}.<br>
-	 * Tries to deduct parameters from the normals provided and disable brightness/AO calculations.
-	 *
-	 * @param data the data
+	 * Reads the vertex, UV and normal references of a face and adds them to {@link #indexes}.<br>
+	 * Negative references are relative to the end of the elements read so far.
 	 */
-	private void addFace(String data)
+	private void addFace()
 	{
-		matcher = facePattern.matcher(data);
-
-		List<Vertex> faceVertex = new ArrayList<>();
-		List<Vector> faceNormals = new ArrayList<>();
-		int v = 0, t = 0, n = 0;
-		String strV, strT, strN;
-		Vertex vertex, vertexCopy;
-		UV uv = null;
-		Vector normal;
-		while (matcher.find())
+		int vertexCount = 0;
+		while (true)
 		{
-			normal = null;
-			uv = null;
-
-			strV = matcher.group("v");
-			strT = matcher.group("t");
-			strN = matcher.group("n");
-
-			v = Integer.parseInt(strV);
-			vertex = vertexes.get(v > 0 ? v - 1 : vertexes.size() - v - 1);
-
-			if (vertex != null)
+			skipSpaces();
+			if (pos >= data.length || isEndOfLine(data[pos]))
+				break;
+
+			int v = resolve(readInt(), positionCount / 3);
+			int t = -1;
+			int n = -1;
+			if (pos < data.length && data[pos] == '/')
 			{
-				vertexCopy = new Vertex(vertex);
-				if (strT != null)
-				{
-					t = Integer.parseInt(strT);
-					uv = uvs.get(t > 0 ? t - 1 : uvs.size() - t - 1);
-					if (uv != null)
-						vertexCopy.setUV(uv.u, uv.v);
-				}
-				faceVertex.add(vertexCopy);
-
-				if (strN != null)
+				pos++;
+				if (pos < data.length && data[pos] != '/' && !isSpace(data[pos]) && !isEndOfLine(data[pos]))
+					t = resolve(readInt(), uvCount / 2);
+				if (pos < data.length && data[pos] == '/')
 				{
-					n = Integer.parseInt(strN);
-					n = n > 0 ? n - 1 : normals.size() - n - 1;
-					if (n >= 0 && n < normals.size())
-						normal = normals.get(n);
-					if (normal != null)
-						faceNormals.add(new Vector(normal.x, normal.y, normal.z));
+					pos++;
+					n = resolve(readInt(), normalCount / 3);
 				}
 			}
-			else
+			//skip what could not be read
+			while (pos < data.length && !isSpace(data[pos]) && !isEndOfLine(data[pos]))
+				pos++;
+
+			if (v == -1)
 			{
-				MalisisCore.log.error("[ObjFileImporter] Wrong vertex reference {} for face at line {} :\n{}", v, lineNumber, currentLine);
+				MalisisCore.log.error("[ObjFileImporter] Wrong vertex reference for face at line {}", lineNumber);
+				continue;
 			}
+
+			indexes = ensureCapacity(indexes, indexCount + 3);
+			indexes[indexCount++] = v;
+			indexes[indexCount++] = t;
+			indexes[indexCount++] = n;
+			vertexCount++;
 		}
 
-		Face f = new Face(faceVertex);
-		f.deductParameters(faceNormals.toArray(new Vector[0]));
-		RenderParameters params = f.getParameters();
-		if (params.direction.get() == EnumFacing.NORTH || params.direction.get() == EnumFacing.EAST)
-			params.flipU.set(true);
-		params.renderAllFaces.set(true);
-		params.interpolateUV.set(false);
-		params.calculateAOColor.set(false);
-		//params.useEnvironmentBrightness.set(false);
-
-		faces.add(f);
+		if (vertexCount == 0)
+			return;
+
+		faceSizes = ensureCapacity(faceSizes, faceCount + 1);
+		faceSizes[faceCount++] = vertexCount;
+		shapeFaceCount++;
 	}
 
 	/**
-	 * Creates a {@link Shape} and adds it to {@link #shapes}.
+	 * Adds the faces read since the previous shape as a new shape.
 	 *
-	 * @param data the data
+	 * @param data the name of the next shape
 	 */
 	private void addShape(String data)
 	{
-		if (faces.size() != 0)
+		if (shapeFaceCount != 0)
 		{
-			Shape s = new Shape(faces);
-			shapes.put(currentShape.toLowerCase(), s);
-			faces.clear();
+			shapeNames.add(currentShape.toLowerCase());
+			shapeFaces.add(shapeFaceCount);
+			shapeFaceCount = 0;
 		}
 
-		if (data != "")
+		if (!data.isEmpty())
 			currentShape = data.indexOf('_') != -1 ? data.substring(0, data.indexOf('_')) : data;
 	}
 
 	/**
-	 * UV holder class
+	 * Resolves a 1-based reference to an element.
+	 *
+	 * @param ref the reference
+	 * @param count the number of elements read so far
+	 * @return the 0-based index, or -1 if the reference is invalid
+	 */
+	private int resolve(int ref, int count)
+	{
+		int index = ref > 0 ? ref - 1 : count + ref;
+		return ref != 0 && index >= 0 && index < count ? index : -1;
+	}
+
+	/**
+	 * Reads up to <b>max</b> floats from the current line.
+	 *
+	 * @param dest the array to fill
+	 * @param offset the offset in the array
+	 * @param max the maximum number of floats
+	 * @return the number of floats read
 	 */
-	private class UV
+	private int readFloats(float[] dest, int offset, int max)
 	{
-		/** U coordinate. */
-		float u;
-		/** V coordinate. */
-		float v;
-
-		/**
-		 * Instantiates a new {@link UV}
-		 *
-		 * @param u the u
-		 * @param v the v
-		 */
-		public UV(float u, float v)
+		int count = 0;
+		while (count < max)
 		{
-			this.u = u;
-			this.v = v;
+			skipSpaces();
+			if (pos >= data.length || isEndOfLine(data[pos]))
+				break;
+			dest[offset + count++] = readFloat();
 		}
+		return count;
 	}
 
+	/**
+	 * Reads a float at the current position.
+	 *
+	 * @return the float
+	 */
+	private float readFloat()
+	{
+		int start = pos;
+		boolean negative = false;
+		if (pos < data.length && (data[pos] == '-' || data[pos] == '+'))
+			negative = data[pos++] == '-';
+
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		while (pos < data.length && isDigit(data[pos]))
+		{
+			if (digits++ < 18)
+				mantissa = mantissa * 10 + data[pos] - '0';
+			else
+				exponent++;
+			pos++;
+		}
+		if (pos < data.length && data[pos] == '.')
+		{
+			pos++;
+			while (pos < data.length && isDigit(data[pos]))
+			{
+				if (digits++ < 18)
+				{
+					mantissa = mantissa * 10 + data[pos] - '0';
+					exponent--;
+				}
+				pos++;
+			}
+		}
+		if (digits != 0 && pos < data.length && (data[pos] == 'e' || data[pos] == 'E'))
+		{
+			pos++;
+			exponent += readInt();
+		}
+
+		if (digits == 0 || (pos < data.length && !isSpace(data[pos]) && !isEndOfLine(data[pos])))
+		{
+			//not a plain decimal number, let Java deal with it
+			while (pos < data.length && !isSpace(data[pos]) && !isEndOfLine(data[pos]))
+				pos++;
+			String str = new String(data, start, pos - start, StandardCharsets.US_ASCII);
+			try
+			{
+				return Float.parseFloat(str);
+			}
+			catch (NumberFormatException e)
+			{
+				MalisisCore.log.error("[ObjFileImporter] Invalid number {} at line {}", str, lineNumber);
+				return 0;
+			}
+		}
+
+		double value = mantissa;
+		if (exponent > 0)
+			value *= exponent < POW10.length ? POW10[exponent] : Math.pow(10, exponent);
+		else if (exponent < 0)
+			value /= -exponent < POW10.length ? POW10[-exponent] : Math.pow(10, -exponent);
+		return (float) (negative ? -value : value);
+	}
+
+	/**
+	 * Reads an integer at the current position.
+	 *
+	 * @return the integer, or 0 if there is none
+	 */
+	private int readInt()
+	{
+		boolean negative = false;
+		if (pos < data.length && (data[pos] == '-' || data[pos] == '+'))
+			negative = data[pos++] == '-';
+		int value = 0;
+		while (pos < data.length && isDigit(data[pos]))
+			value = value * 10 + data[pos++] - '0';
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads the rest of the current line, with its whitespaces collapsed.
+	 *
+	 * @return the string
+	 */
+	private String readLine()
+	{
+		skipSpaces();
+		int start = pos;
+		while (pos < data.length && !isEndOfLine(data[pos]))
+			pos++;
+		return new String(data, start, pos - start, StandardCharsets.UTF_8).trim().replaceAll("\\s+", " ");
+	}
+
+	private boolean isKeyword(int start, String keyword)
+	{
+		if (pos - start != keyword.length())
+			return false;
+		for (int i = 0; i < keyword.length(); i++)
+			if (data[start + i] != keyword.charAt(i))
+				return false;
+		return true;
+	}
+
+	private void skipSpaces()
+	{
+		while (pos < data.length && isSpace(data[pos]))
+			pos++;
+	}
+
+	private void nextLine()
+	{
+		while (pos < data.length && data[pos] != '\n')
+			pos++;
+		pos++;
+	}
+
+	private static boolean isSpace(byte b)
+	{
+		return b == ' ' || b == '\t' || b == '\f' || b == 0x0B;
+	}
+
+	private static boolean isEndOfLine(byte b)
+	{
+		return b == '\n' || b == '\r';
+	}
+
+	private static boolean isDigit(byte b)
+	{
+		return b >= '0' && b <= '9';
+	}
+
+	private static float[] ensureCapacity(float[] array, int size)
+	{
+		return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+	}
+
+	private static int[] ensureCapacity(int[] array, int size)
+	{
+		return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+	}
 }
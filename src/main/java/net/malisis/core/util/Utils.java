@@ -26,6 +26,7 @@ package net.malisis.core.util;
 
 import java.lang.reflect.Field;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 import net.malisis.core.MalisisCore;
 import net.malisis.core.asm.AsmUtils;
@@ -47,6 +48,22 @@ import net.minecraftforge.registries.IForgeRegistryEntry;
  */
 public class Utils
 {
+	/** Pool shared by the parallel tasks of MalisisCore. */
+	private static ForkJoinPool pool;
+
+	/**
+	 * Gets the {@link ForkJoinPool} shared by the parallel tasks of MalisisCore.<br>
+	 * The pool is created on first use and leaves one core for the main thread. Its threads are daemons, so it is never shut down.
+	 *
+	 * @return the pool
+	 */
+	public static synchronized ForkJoinPool getPool()
+	{
+		if (pool == null)
+			pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+		return pool;
+	}
+
 	/**
 	 * Checks if is the {@link Chunk} is loaded for the specified {@link BlockPos}.
 	 *
@@ -26,6 +26,10 @@ package net.malisis.core.util.bbcode;
 
 import static net.malisis.core.util.parser.token.Token.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.mutable.Mutable;
 import org.apache.commons.lang3.mutable.MutableObject;
@@ -38,6 +42,10 @@ import net.malisis.core.util.bbcode.node.BBTextNode;
 import net.malisis.core.util.parser.Parser;
 
 /**
+ * Parses the text of a {@link BBString} into its node tree.<br>
+ * Parsing can start from a {@link Boundary} of a previous parse, and stop at a boundary from which the rest of the tree is known, so
+ * that only the edited part of a text is parsed again.
+ *
  * @author Ordinastie
  *
  */
@@ -49,13 +57,57 @@ public class BBCodeParser extends Parser<BBNode>
 	private BBTextNode textNode = new BBTextNode("");
 	private int charIndex;
 
+	private Predicate<Boundary> stopAt = b -> false;
+	private List<Boundary> boundaries = new ArrayList<>();
+	private Boundary stoppedAt;
+
 	public BBCodeParser(BBString bbText)
+	{
+		this(bbText, Boundary.START);
+	}
+
+	public BBCodeParser(BBString bbText, Boundary from)
 	{
 		super(bbText.getText());
 		withTokens(OpenCar, CloseCar, HexNumber, Identifier, Equal, Div);
 
 		this.bbText = bbText;
 		currentNode = bbText.getRoot();
+		index = from.index;
+		charIndex = from.charIndex;
+		textNode.setIndex(charIndex);
+	}
+
+	/**
+	 * Sets the condition for this {@link BBCodeParser} to stop parsing once it reaches a {@link Boundary}.
+	 *
+	 * @param stopAt the condition
+	 * @return this {@link BBCodeParser}
+	 */
+	public BBCodeParser stopAt(Predicate<Boundary> stopAt)
+	{
+		this.stopAt = stopAt;
+		return this;
+	}
+
+	/**
+	 * Gets the {@link Boundary boundaries} reached during the parse.
+	 *
+	 * @return the boundaries
+	 */
+	public List<Boundary> getBoundaries()
+	{
+		return boundaries;
+	}
+
+	/**
+	 * Gets the {@link Boundary} where the parse was stopped.
+	 *
+	 * @return the boundary, or null if the whole text was parsed
+	 */
+	public Boundary getStoppedAt()
+	{
+		return stoppedAt;
 	}
 
 	@Override
@@ -67,7 +119,8 @@ public class BBCodeParser extends Parser<BBNode>
 
 		while (!isEnd())
 		{
-			matched = "";
+			matched.setLength(0);
+			node = null;
 			if (match(OpenCar))
 			{
 				close = match(Div);
@@ -93,10 +146,12 @@ public class BBCodeParser extends Parser<BBNode>
 
 				if (close)
 				{
-					if (node.getClass() == currentNode.getClass() && match(CloseCar))
+					if (node != null && node.getClass() == currentNode.getClass() && match(CloseCar))
 					{
 						addText();
 						currentNode = currentNode.getParent();
+						if (boundary())
+							return bbText.getRoot();
 					}
 					else
 					{
@@ -114,20 +169,22 @@ public class BBCodeParser extends Parser<BBNode>
 				{
 					String name = readUntil(CloseCar);
 					((BBItemNode) node).setName(str.toString());
-					matched += name;
+					matched.append(name);
 				}
 			}
 
-			if (node != null && match(CloseCar, c))
+			if (node != null && !close && match(CloseCar, c))
 			{
 				addText();
 
 				currentNode.insert(node);
 				if (!node.isStandAlone())
 					currentNode = node;
+				else if (boundary())
+					return bbText.getRoot();
 			}
 			else if (!close)
-				textNode.append(matched);
+				textNode.append(matched.toString());
 
 			textNode.append(readUntil(OpenCar));
 
@@ -139,6 +196,26 @@ public class BBCodeParser extends Parser<BBNode>
 		return bbText.getRoot();
 	}
 
+	/**
+	 * Records a {@link Boundary} if the parser is back at the root node.
+	 *
+	 * @return true, if the parse should stop there
+	 */
+	private boolean boundary()
+	{
+		BBNode root = bbText.getRoot();
+		if (currentNode != root)
+			return false;
+
+		Boundary boundary = new Boundary(index, charIndex, root.getChildCount());
+		boundaries.add(boundary);
+		if (!stopAt.test(boundary))
+			return false;
+
+		stoppedAt = boundary;
+		return true;
+	}
+
 	private void addText()
 	{
 		if (StringUtils.isEmpty(textNode.getText()))
@@ -149,4 +226,32 @@ public class BBCodeParser extends Parser<BBNode>
 		textNode.setIndex(charIndex);
 
 	}
+
+	/**
+	 * Position in the text where the parser is back at the root node, with no pending text.<br>
+	 * The nodes parsed from the text after a boundary only depend on that text.
+	 */
+	public static class Boundary
+	{
+		public static final Boundary START = new Boundary(0, 0, 0);
+
+		/** Index in the BBCode text. */
+		public final int index;
+		/** Index in the raw text. */
+		public final int charIndex;
+		/** Number of children of the root node. */
+		public final int children;
+
+		public Boundary(int index, int charIndex, int children)
+		{
+			this.index = index;
+			this.charIndex = charIndex;
+			this.children = children;
+		}
+
+		public Boundary shift(int index, int charIndex, int children)
+		{
+			return new Boundary(this.index + index, this.charIndex + charIndex, this.children + children);
+		}
+	}
 }
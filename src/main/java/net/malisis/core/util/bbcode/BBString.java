@@ -24,13 +24,14 @@
 
 package net.malisis.core.util.bbcode;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 
 import joptsimple.internal.Strings;
 import net.malisis.core.client.gui.render.GuiRenderer;
+import net.malisis.core.util.bbcode.BBCodeParser.Boundary;
 import net.malisis.core.util.bbcode.node.BBNode;
 import net.malisis.core.util.bbcode.node.BBRootNode;
 import net.malisis.core.util.bbcode.node.BBTextNode;
@@ -44,8 +45,13 @@ public class BBString
 {
 	private String text;
 	private BBNode rootNode = new BBRootNode();
-	private List<BBTextNode> textNodes = new LinkedList<>();
-	private BBCodeRenderer renderer;
+	/** Text nodes of the tree, built when needed. */
+	private List<BBTextNode> textNodes;
+	private BBCodeRenderer renderer = new BBCodeRenderer(this);
+	/** Text the node tree was parsed from, or null if the tree was modified since. */
+	private String parsedText;
+	/** Boundaries reached when the node tree was parsed. */
+	private List<Boundary> boundaries = new ArrayList<>();
 
 	public BBString()
 	{
@@ -57,7 +63,6 @@ public class BBString
 	{
 		this();
 		setText(text);
-		renderer = new BBCodeRenderer(this);
 	}
 
 	public void setText(String text)
@@ -85,17 +90,126 @@ public class BBString
 		return getRoot().toBBString();
 	}
 
+	/**
+	 * Parses the text into the node tree.<br>
+	 * If the tree was parsed from a previous text and not modified since, only the part of the text that changed is parsed again and the
+	 * nodes before and after it are kept.
+	 */
 	public void parseText()
 	{
-		new BBCodeParser(this).parse();
-		buildTextNodeList(getRoot());
+		if (parsedText == null)
+		{
+			getRoot().removeFrom(0);
+			BBCodeParser parser = new BBCodeParser(this);
+			parser.parse();
+			boundaries = new ArrayList<>();
+			boundaries.add(Boundary.START);
+			boundaries.addAll(parser.getBoundaries());
+		}
+		else if (!parsedText.equals(text))
+			reparse();
+
+		parsedText = text;
+		textNodes = null;
 	}
 
-	private void buildTextNodeList(BBNode node)
+	/**
+	 * Parses again the part of the text that changed since the last parse.<br>
+	 * Parsing starts at the last {@link Boundary} before the change, and stops at the first boundary after the change that matches a
+	 * boundary of the previous parse. The root children after that boundary are reused as is.
+	 */
+	private void reparse()
+	{
+		String old = parsedText;
+		int max = Math.min(old.length(), text.length());
+		int prefix = 0;
+		while (prefix < max && old.charAt(prefix) == text.charAt(prefix))
+			prefix++;
+		int suffix = 0;
+		while (suffix < max - prefix && old.charAt(old.length() - suffix - 1) == text.charAt(text.length() - suffix - 1))
+			suffix++;
+
+		int delta = text.length() - old.length();
+		int unchanged = old.length() - suffix;
+
+		int first = 0;
+		while (first + 1 < boundaries.size() && boundaries.get(first + 1).index <= prefix)
+			first++;
+		Boundary from = boundaries.get(first);
+		List<BBNode> tail = getRoot().removeFrom(from.children);
+
+		BBCodeParser parser = new BBCodeParser(this, from).stopAt(b -> b.index - delta >= unchanged
+				&& indexOf(b.index - delta) != -1);
+		parser.parse();
+
+		List<Boundary> list = new ArrayList<>(boundaries.subList(0, first + 1));
+		list.addAll(parser.getBoundaries());
+
+		Boundary stop = parser.getStoppedAt();
+		if (stop != null)
+		{
+			int i = indexOf(stop.index - delta);
+			Boundary previous = boundaries.get(i);
+			int charShift = stop.charIndex - previous.charIndex;
+			int childShift = stop.children - previous.children;
+
+			tail = tail.subList(previous.children - from.children, tail.size());
+			if (charShift != 0)
+				for (BBNode node : tail)
+					shiftIndex(node, charShift);
+			getRoot().insertAll(tail);
+			for (Boundary b : boundaries.subList(i + 1, boundaries.size()))
+				list.add(b.shift(delta, charShift, childShift));
+		}
+
+		boundaries = list;
+	}
+
+	/**
+	 * Gets the position of the {@link Boundary} at the specified index in the text of the last parse.
+	 *
+	 * @param index the index
+	 * @return the position in {@link #boundaries}, or -1 if there is no boundary at that index
+	 */
+	private int indexOf(int index)
+	{
+		int low = 0;
+		int high = boundaries.size() - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int i = boundaries.get(mid).index;
+			if (i < index)
+				low = mid + 1;
+			else if (i > index)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	private void shiftIndex(BBNode node, int amount)
 	{
-		if (node == getRoot())
-			textNodes.clear();
+		if (node instanceof BBTextNode)
+			((BBTextNode) node).shiftIndex(amount);
+		else
+			for (BBNode n : node)
+				shiftIndex(n, amount);
+	}
 
+	private List<BBTextNode> getTextNodes()
+	{
+		if (textNodes == null)
+		{
+			textNodes = new ArrayList<>();
+			buildTextNodeList(getRoot());
+		}
+		return textNodes;
+	}
+
+	private void buildTextNodeList(BBNode node)
+	{
 		for (BBNode n : node)
 			if (n instanceof BBTextNode)
 				textNodes.add((BBTextNode) n);
@@ -105,7 +219,8 @@ public class BBString
 
 	public void insertNode(BBNode node, int start, int end)
 	{
-		for (BBTextNode tn : textNodes)
+		parsedText = null;
+		for (BBTextNode tn : getTextNodes())
 		{
 			if (tn.isInRange(start, end))
 			{
@@ -137,15 +252,16 @@ public class BBString
 
 	public void addText(String txt, int position)
 	{
-		if (textNodes.size() == 0)
+		parsedText = null;
+		if (getTextNodes().size() == 0)
 		{
 			getRoot().insert(new BBTextNode(txt));;
-			buildTextNodeList(getRoot());
+			textNodes = null;
 			return;
 		}
 
 		int shift = 0;
-		for (BBTextNode tn : textNodes)
+		for (BBTextNode tn : getTextNodes())
 		{
 			tn.shiftIndex(shift);
 			shift += tn.insert(position, txt);
@@ -155,8 +271,9 @@ public class BBString
 
 	public void deleteText(int start, int end)
 	{
+		parsedText = null;
 		int shift = 0;
-		for (BBTextNode tn : textNodes)
+		for (BBTextNode tn : getTextNodes())
 		{
 			tn.shiftIndex(shift);
 			int amount = -tn.delete(start, end).length();
@@ -168,8 +285,9 @@ public class BBString
 
 	public void clean()
 	{
+		parsedText = null;
 		getRoot().clean();
-		buildTextNodeList(getRoot());
+		textNodes = null;
 	}
 
 	public void buildRenderLines(List<String> lines)
@@ -193,7 +311,7 @@ public class BBString
 
 	public String printTextNodes()
 	{
-		return textNodes.toString();
+		return getTextNodes().toString();
 	}
 
 	@Override
@@ -81,7 +81,10 @@ public class BBTextField extends UITextArea
 	{
 		this.isWysiwyg = isWysiwyg;
 		if (isWysiwyg)
-			setText(new BBString(text.toString()));
+		{
+			bbText.setText(getText());
+			setText(bbText);
+		}
 		else
 			setText(bbText.getBBString());
 		getCursorPosition().jumpToEnd();
@@ -93,6 +96,7 @@ public class BBTextField extends UITextArea
 		if (!isWysiwyg())
 		{
 			super.addText(str);
+			updateBBText();
 			return;
 		}
 
@@ -108,8 +112,7 @@ public class BBTextField extends UITextArea
 		//non cancellable
 		fireEvent(new ComponentEvent.ValueChange<>(this, oldValue, newValue));
 
-		text.setLength(0);
-		text.append(bbText.getRawText());
+		updateText(bbText.getRawText());
 
 		getCursorPosition().jumpBy(str.length());
 
@@ -121,6 +124,7 @@ public class BBTextField extends UITextArea
 		if (!isWysiwyg())
 		{
 			super.deleteSelectedText();
+			updateBBText();
 			return;
 		}
 
@@ -138,13 +142,24 @@ public class BBTextField extends UITextArea
 
 		fireEvent(new ComponentEvent.ValueChange<>(this, oldValue, newValue));
 
-		text.setLength(0);
-		text.append(bbText.getRawText());
+		updateText(bbText.getRawText());
 
 		selectingText = false;
 		getCursorPosition().jumpTo(start);
 	}
 
+	/**
+	 * Parses the BBCode being edited into the {@link BBString}.<br>
+	 * Only the part of the text that changed is parsed again.
+	 */
+	protected void updateBBText()
+	{
+		if (bbText.getText().equals(getText()))
+			return;
+		bbText.setText(getText());
+		bbText.parseText();
+	}
+
 	public void addTag(BBCodeEditor.Tag tag)
 	{
 		int p = getCursorPosition().index();
@@ -74,5 +74,6 @@ public class BBColorNode extends BBNode
 	{
 		this.color = color;
 		this.attribute = "#" + Integer.toHexString(color);
+		changed();
 	}
 }
@@ -54,6 +54,8 @@ public class BBItemNode extends BBNode
 	{
 		this.name = name;
 		this.attribute = name;
+		this.itemStack = null;
+		changed();
 	}
 
 	@Override
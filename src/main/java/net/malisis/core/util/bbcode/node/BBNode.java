@@ -24,8 +24,9 @@
 
 package net.malisis.core.util.bbcode.node;
 
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
 
 import net.malisis.core.util.bbcode.render.BBRenderElement;
 
@@ -37,10 +38,12 @@ public abstract class BBNode implements Iterable<BBNode>
 {
 	protected String tag;
 	protected BBNode parent;
-	protected LinkedList<BBNode> children = new LinkedList<>();
+	protected List<BBNode> children = new ArrayList<>();
 	protected String attribute;
 	protected boolean standAlone = false;
 	protected int charIndex;
+	/** Incremented whenever this {@link BBNode} or one of its descendants changes. */
+	protected int version;
 
 	public BBNode(String tag, String attribute)
 	{
@@ -68,6 +71,31 @@ public abstract class BBNode implements Iterable<BBNode>
 		return parent;
 	}
 
+	/**
+	 * Gets the version of this {@link BBNode}.<br>
+	 * The version changes whenever this node or one of its descendants is modified.
+	 *
+	 * @return the version
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Marks this {@link BBNode} and all its ancestors as changed.
+	 */
+	protected void changed()
+	{
+		for (BBNode node = this; node != null; node = node.parent)
+			node.version++;
+	}
+
+	public int getChildCount()
+	{
+		return children.size();
+	}
+
 	@Override
 	public Iterator<BBNode> iterator()
 	{
@@ -96,6 +124,23 @@ public abstract class BBNode implements Iterable<BBNode>
 
 		children.add(position, node);
 		node.parent = this;
+		changed();
+	}
+
+	/**
+	 * Inserts the nodes after the children of this {@link BBNode}.
+	 *
+	 * @param nodes the nodes
+	 */
+	public void insertAll(List<BBNode> nodes)
+	{
+		if (isStandAlone())
+			throw new IllegalArgumentException("Can't add nodes to " + getClass().getSimpleName());
+
+		children.addAll(nodes);
+		for (BBNode node : nodes)
+			node.parent = this;
+		changed();
 	}
 
 	public void remove(BBNode node)
@@ -103,10 +148,31 @@ public abstract class BBNode implements Iterable<BBNode>
 		if (isStandAlone())
 			throw new IllegalArgumentException("Can't remove nodes from " + getClass().getSimpleName());
 
-		children.remove(node);
+		if (children.remove(node))
+			changed();
 		node.parent = null;
 	}
 
+	/**
+	 * Removes the children of this {@link BBNode} starting at the specified position.
+	 *
+	 * @param position the position of the first child to remove
+	 * @return the removed children
+	 */
+	public List<BBNode> removeFrom(int position)
+	{
+		List<BBNode> tail = children.subList(position, children.size());
+		List<BBNode> removed = new ArrayList<>(tail);
+		if (removed.isEmpty())
+			return removed;
+
+		tail.clear();
+		for (BBNode node : removed)
+			node.parent = null;
+		changed();
+		return removed;
+	}
+
 	public String getAttribute()
 	{
 		if (attribute != "")
@@ -157,6 +223,8 @@ public abstract class BBNode implements Iterable<BBNode>
 			{
 				((BBTextNode) lastNode).append(((BBTextNode) node).getText());
 				it.remove();
+				node.parent = null;
+				changed();
 			}
 			else
 				lastNode = node;
@@ -65,7 +65,10 @@ public class BBTextNode extends BBNode
 
 	public void append(String txt)
 	{
+		if (txt.isEmpty())
+			return;
 		text.append(txt);
+		changed();
 	}
 
 	public boolean isInRange(int position)
@@ -85,6 +88,7 @@ public class BBTextNode extends BBNode
 
 		int p = position - index;
 		text.insert(p, txt);
+		changed();
 
 		return txt.length();
 	}
@@ -103,6 +107,8 @@ public class BBTextNode extends BBNode
 
 		String ret = text.substring(s, e);
 		text.delete(s, e);
+		if (s != e)
+			changed();
 
 		return ret;
 	}
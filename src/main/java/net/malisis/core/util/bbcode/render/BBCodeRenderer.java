@@ -24,8 +24,12 @@
 
 package net.malisis.core.util.bbcode.render;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import net.malisis.core.client.gui.render.GuiRenderer;
 import net.malisis.core.util.bbcode.BBString;
@@ -40,6 +44,8 @@ public class BBCodeRenderer
 	private BBString bbText;
 
 	private LinkedList<BBRenderElement> renderElements = new LinkedList<>();
+	/** Render elements built for each node, reused as long as the node is not modified. */
+	private Map<BBNode, CachedElements> cache = new WeakHashMap<>();
 
 	public BBCodeRenderer(BBString bbText)
 	{
@@ -49,23 +55,41 @@ public class BBCodeRenderer
 	public List<BBRenderElement> buildLines(List<String> lines)
 	{
 		renderElements.clear();
-		buildRenderElements(bbText.getRoot(), new BBRenderElement(null));
+		BBRenderElement element = new BBRenderElement(null);
+		for (BBNode n : bbText.getRoot())
+			for (BBRenderElement el : getRenderElements(n, element))
+				renderElements.add(el.copy());
 		wrapRenderElements(lines);
 
 		return renderElements;
 	}
 
-	private void buildRenderElements(BBNode node, BBRenderElement element)
+	/**
+	 * Gets the render elements for the specified node and its children.<br>
+	 * The elements are only built again if the node was modified, or if the style inherited from its parent changed. The returned
+	 * elements are shared and must be copied before being modified.
+	 *
+	 * @param node the node
+	 * @param parent the element holding the style of the parent node
+	 * @return the elements
+	 */
+	private List<BBRenderElement> getRenderElements(BBNode node, BBRenderElement parent)
 	{
-		for (BBNode n : node)
-		{
-			BBRenderElement nodeElement = new BBRenderElement(element);
-			n.apply(nodeElement);
-			if (n.isStandAlone())
-				renderElements.add(nodeElement);
-			else
-				buildRenderElements(n, nodeElement);
-		}
+		CachedElements cached = cache.get(node);
+		if (cached != null && cached.version == node.getVersion() && cached.parent.hasSameStyle(parent))
+			return cached.elements;
+
+		List<BBRenderElement> elements = new ArrayList<>();
+		BBRenderElement nodeElement = new BBRenderElement(parent);
+		node.apply(nodeElement);
+		if (node.isStandAlone())
+			elements.add(nodeElement);
+		else
+			for (BBNode n : node)
+				elements.addAll(getRenderElements(n, nodeElement));
+
+		cache.put(node, new CachedElements(node.getVersion(), parent, elements));
+		return elements;
 	}
 
 	private void wrapRenderElements(List<String> lines)
@@ -77,15 +101,19 @@ public class BBCodeRenderer
 		int index = 0;
 		String currentLine;
 
-		for (int i = 0; i < renderElements.size(); i++)
+		ListIterator<BBRenderElement> it = renderElements.listIterator();
+		while (it.hasNext())
 		{
 			currentLine = lines.get(line);
-			BBRenderElement el = renderElements.get(i);
+			BBRenderElement el = it.next();
 			el.line = line;
 			BBRenderElement split = el.split(currentLine.length() - index);
 			index += el.text.length();
 			if (split != null)
-				renderElements.add(i + 1, split);
+			{
+				it.add(split);
+				it.previous();
+			}
 
 			if (index >= currentLine.length())
 			{
@@ -121,4 +149,18 @@ public class BBCodeRenderer
 		//			}
 		//		}
 	}
+
+	private static class CachedElements
+	{
+		private final int version;
+		private final BBRenderElement parent;
+		private final List<BBRenderElement> elements;
+
+		public CachedElements(int version, BBRenderElement parent, List<BBRenderElement> elements)
+		{
+			this.version = version;
+			this.parent = parent;
+			this.elements = elements;
+		}
+	}
 }
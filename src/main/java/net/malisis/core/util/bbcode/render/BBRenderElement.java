@@ -53,9 +53,35 @@ public class BBRenderElement
 		this.color = element.color;
 		this.bgColor = element.bgColor;
 		this.styles.addAll(element.styles);
+		this.shadow = element.shadow;
 		this.line = element.line;
 	}
 
+	/**
+	 * Creates a copy of this {@link BBRenderElement}, with the same style and content.
+	 *
+	 * @return the copy
+	 */
+	public BBRenderElement copy()
+	{
+		BBRenderElement copy = new BBRenderElement(this);
+		copy.text = text;
+		copy.itemStack = itemStack;
+		copy.newLine = newLine;
+		return copy;
+	}
+
+	/**
+	 * Checks whether this {@link BBRenderElement} has the same style as the other one.
+	 *
+	 * @param other the other element
+	 * @return true, if the style is the same
+	 */
+	public boolean hasSameStyle(BBRenderElement other)
+	{
+		return color == other.color && bgColor == other.bgColor && shadow == other.shadow && styles.equals(other.styles);
+	}
+
 	public BBRenderElement split(int position)
 	{
 		if (text == null)
@@ -26,6 +26,7 @@ package net.malisis.core.util.blockdata;
 
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -42,6 +43,7 @@ import net.malisis.core.util.Silenced;
 import net.malisis.core.util.Utils;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.ChunkCache;
 import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
@@ -334,6 +336,47 @@ public class BlockDataHandler
 		}
 	}
 
+	/**
+	 * Sets the custom data to be stored at multiple {@link BlockPos} for the specified identifier.<br>
+	 * Positions are grouped by {@link Chunk} so each chunk is looked up once, and if <b>sendToClients</b> is true, a single message is sent
+	 * per chunk. A <code>null</code> value removes the data for its position.
+	 *
+	 * @param <T> the generic type
+	 * @param identifier the identifier
+	 * @param world the world
+	 * @param data the data
+	 * @param sendToClients the send to clients
+	 */
+	public static <T> void setData(String identifier, IBlockAccess world, Map<BlockPos, T> data, boolean sendToClients)
+	{
+		World w = instance.world(world);
+		if (w == null || data.isEmpty())
+			return;
+
+		Map<Long, Map<BlockPos, T>> byChunk = new LinkedHashMap<>();
+		for (Entry<BlockPos, T> entry : data.entrySet())
+		{
+			BlockPos pos = entry.getKey();
+			long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+			byChunk.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(pos, entry.getValue());
+		}
+
+		for (Map<BlockPos, T> chunkEntries : byChunk.values())
+		{
+			BlockPos first = chunkEntries.keySet().iterator().next();
+			Chunk chunk = w.getChunkFromBlockCoords(first);
+			ChunkData<T> chunkData = instance.<T> chunkData(identifier, w, chunk);
+			if (chunkData == null)
+				chunkData = instance.<T> createChunkData(identifier, w, first);
+
+			for (Entry<BlockPos, T> entry : chunkEntries.entrySet())
+				chunkData.setData(entry.getKey(), entry.getValue());
+
+			if (sendToClients && !w.isRemote)
+				BlockDataMessage.sendBlockData(chunk, identifier, chunkData.toBytes(Unpooled.buffer()));
+		}
+	}
+
 	/**
 	 * Removes the custom data stored at the {@link BlockPos} for the specified identifier.
 	 *
@@ -147,7 +147,10 @@ public class ChunkBlockHandler
 	 */
 	private void addCoord(World world, BlockPos pos, int size)
 	{
-		getAffectedChunks(world, pos.getX(), pos.getZ(), size).forEach(c -> addCoord(c, pos));
+		visitAffectedChunks(world, pos.getX(), pos.getZ(), size, c -> {
+			addCoord(c, pos);
+			return true;
+		});
 	}
 
 	/**
@@ -170,7 +173,10 @@ public class ChunkBlockHandler
 	 */
 	private void removeCoord(World world, BlockPos pos, int size)
 	{
-		getAffectedChunks(world, pos.getX(), pos.getZ(), size).forEach(c -> removeCoord(c, pos));
+		visitAffectedChunks(world, pos.getX(), pos.getZ(), size, c -> {
+			removeCoord(c, pos);
+			return true;
+		});
 	}
 
 	/**
@@ -289,8 +295,9 @@ public class ChunkBlockHandler
 	//TODO: move into Utils
 	public static List<Chunk> getAffectedChunks(World world, int x, int z, int distance)
 	{
-		AxisAlignedBB aabb = new AxisAlignedBB(x - distance, 0, z - distance, x + distance + 1, 1, z + distance + 1);
-		return getAffectedChunks(world, aabb);
+		List<Chunk> chunks = new ArrayList<>();
+		visitAffectedChunks(world, x, z, distance, chunks::add);
+		return chunks;
 	}
 
 	/**
@@ -307,20 +314,117 @@ public class ChunkBlockHandler
 			return ImmutableList.of();
 
 		List<Chunk> chunks = new ArrayList<>();
-		for (AxisAlignedBB aabb : aabbs)
+		visitAffectedChunks(world, chunks::add, aabbs);
+		return chunks;
+	}
+
+	/**
+	 * Visits the loaded chunks inside distance from coordinates.
+	 *
+	 * @param world the world
+	 * @param x the x
+	 * @param z the z
+	 * @param distance the distance
+	 * @param visitor the visitor
+	 * @return false if the visitor stopped the iteration
+	 */
+	public static boolean visitAffectedChunks(World world, int x, int z, int distance, IChunkVisitor visitor)
+	{
+		return visitChunks(world, (x - distance) >> 4, (x + distance + 1) >> 4, (z - distance) >> 4, (z + distance + 1) >> 4, visitor);
+	}
+
+	/**
+	 * Visits the loaded chunks colliding with the specified {@link AxisAlignedBB}.<br>
+	 * Nothing is allocated, and chunks are looked up through the {@link LoadedChunkCache}.
+	 *
+	 * @param world the world
+	 * @param aabb the aabb
+	 * @param visitor the visitor
+	 * @return false if the visitor stopped the iteration
+	 */
+	public static boolean visitAffectedChunks(World world, AxisAlignedBB aabb, IChunkVisitor visitor)
+	{
+		if (aabb == null)
+			return true;
+		return visitChunks(	world,
+							(int) Math.floor(aabb.minX) >> 4,
+							(int) Math.ceil(aabb.maxX) >> 4,
+							(int) Math.floor(aabb.minZ) >> 4,
+							(int) Math.ceil(aabb.maxZ) >> 4,
+							visitor);
+	}
+
+	/**
+	 * Visits the loaded chunks colliding with the specified {@link AxisAlignedBB AxisAlignedBBs}.<br>
+	 * Each chunk is visited only once, even if it collides with several bounding boxes.
+	 *
+	 * @param world the world
+	 * @param visitor the visitor
+	 * @param aabbs the aabbs
+	 * @return false if the visitor stopped the iteration
+	 */
+	public static boolean visitAffectedChunks(World world, IChunkVisitor visitor, AxisAlignedBB... aabbs)
+	{
+		if (aabbs == null)
+			return true;
+
+		for (int i = 0; i < aabbs.length; i++)
 		{
+			AxisAlignedBB aabb = aabbs[i];
 			if (aabb == null)
 				continue;
-			for (int cx = (int) Math.floor(aabb.minX) >> 4; cx <= (int) Math.ceil(aabb.maxX) >> 4; cx++)
+			int minX = (int) Math.floor(aabb.minX) >> 4;
+			int maxX = (int) Math.ceil(aabb.maxX) >> 4;
+			int minZ = (int) Math.floor(aabb.minZ) >> 4;
+			int maxZ = (int) Math.ceil(aabb.maxZ) >> 4;
+			for (int cx = minX; cx <= maxX; cx++)
 			{
-				for (int cz = (int) Math.floor(aabb.minZ) >> 4; cz <= (int) Math.ceil(aabb.maxZ) >> 4; cz++)
+				for (int cz = minZ; cz <= maxZ; cz++)
 				{
-					if (world.getChunkProvider() != null && world.getChunkProvider().getLoadedChunk(cx, cz) != null)
-						chunks.add(world.getChunkFromChunkCoords(cx, cz));
+					if (isVisited(aabbs, i, cx, cz))
+						continue;
+					Chunk chunk = LoadedChunkCache.getLoadedChunk(world, cx, cz);
+					if (chunk != null && !visitor.visit(chunk))
+						return false;
 				}
 			}
 		}
-		return chunks;
+		return true;
+	}
+
+	private static boolean visitChunks(World world, int minX, int maxX, int minZ, int maxZ, IChunkVisitor visitor)
+	{
+		for (int cx = minX; cx <= maxX; cx++)
+		{
+			for (int cz = minZ; cz <= maxZ; cz++)
+			{
+				Chunk chunk = LoadedChunkCache.getLoadedChunk(world, cx, cz);
+				if (chunk != null && !visitor.visit(chunk))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the chunk was already covered by one of the bounding boxes before <b>index</b>.
+	 *
+	 * @param aabbs the aabbs
+	 * @param index the index
+	 * @param cx the chunk X
+	 * @param cz the chunk Z
+	 * @return true, if visited
+	 */
+	private static boolean isVisited(AxisAlignedBB[] aabbs, int index, int cx, int cz)
+	{
+		for (int i = 0; i < index; i++)
+		{
+			AxisAlignedBB aabb = aabbs[i];
+			if (aabb != null && cx >= (int) Math.floor(aabb.minX) >> 4 && cx <= (int) Math.ceil(aabb.maxX) >> 4
+					&& cz >= (int) Math.floor(aabb.minZ) >> 4 && cz <= (int) Math.ceil(aabb.maxZ) >> 4)
+				return true;
+		}
+		return false;
 	}
 
 	/**
@@ -333,6 +437,20 @@ public class ChunkBlockHandler
 		return instance;
 	}
 
+	/**
+	 * Visitor for the chunks streamed by {@link ChunkBlockHandler#visitAffectedChunks(World, AxisAlignedBB, IChunkVisitor)}.
+	 */
+	public interface IChunkVisitor
+	{
+		/**
+		 * Visits the {@link Chunk}.
+		 *
+		 * @param chunk the chunk
+		 * @return true to continue the iteration, false to stop it
+		 */
+		public boolean visit(Chunk chunk);
+	}
+
 	/**
 	 * This class is the base for a process that is to be called for every coordinate stored inside a {@link Chunk}.
 	 */
@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.util.chunkblock;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.malisis.core.registry.AutoLoad;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+/**
+ * {@link LoadedChunkCache} remembers the last {@link Chunk Chunks} looked up for each {@link World}.<br>
+ * Collisions, ray traces and block listeners query the same few chunks over and over, so a small cache keyed by packed chunk coordinates
+ * saves most of the chunk provider lookups.
+ *
+ * @author Ordinastie
+ */
+@AutoLoad
+public class LoadedChunkCache
+{
+	private static LoadedChunkCache instance = new LoadedChunkCache();
+
+	/** Number of chunks remembered per world. */
+	private static final int SIZE = 8;
+
+	private final Map<World, Entries> caches = new WeakHashMap<>();
+
+	private LoadedChunkCache()
+	{
+		MinecraftForge.EVENT_BUS.register(this);
+	}
+
+	/**
+	 * Gets the loaded {@link Chunk} at the specified chunk coordinates.
+	 *
+	 * @param world the world
+	 * @param chunkX the chunk X
+	 * @param chunkZ the chunk Z
+	 * @return the chunk, or null if not loaded
+	 */
+	public static Chunk getLoadedChunk(World world, int chunkX, int chunkZ)
+	{
+		if (world.getChunkProvider() == null)
+			return null;
+
+		Entries entries;
+		synchronized (instance.caches)
+		{
+			entries = instance.caches.computeIfAbsent(world, w -> new Entries());
+		}
+		return entries.get(world, chunkX, chunkZ);
+	}
+
+	//#region Events
+	/**
+	 * Removes the unloaded {@link Chunk} from the cache.
+	 *
+	 * @param event the event
+	 */
+	@SubscribeEvent
+	public void onChunkUnload(ChunkEvent.Unload event)
+	{
+		Entries entries;
+		synchronized (caches)
+		{
+			entries = caches.get(event.getWorld());
+		}
+		if (entries != null)
+			entries.remove(event.getChunk());
+	}
+
+	/**
+	 * Discards the cache for the unloaded {@link World}.
+	 *
+	 * @param event the event
+	 */
+	@SubscribeEvent
+	public void onWorldUnload(WorldEvent.Unload event)
+	{
+		synchronized (caches)
+		{
+			caches.remove(event.getWorld());
+		}
+	}
+
+	//#end Events
+
+	/**
+	 * Last chunks looked up for a world, replaced in round robin.
+	 */
+	private static class Entries
+	{
+		private final long[] keys = new long[SIZE];
+		private final Chunk[] chunks = new Chunk[SIZE];
+		private int next = 0;
+
+		public synchronized Chunk get(World world, int chunkX, int chunkZ)
+		{
+			long key = ChunkPos.asLong(chunkX, chunkZ);
+			for (int i = 0; i < SIZE; i++)
+			{
+				Chunk chunk = chunks[i];
+				if (chunk != null && keys[i] == key && chunk.isLoaded())
+					return chunk;
+			}
+
+			Chunk chunk = world.getChunkProvider().getLoadedChunk(chunkX, chunkZ);
+			if (chunk != null)
+			{
+				keys[next] = key;
+				chunks[next] = chunk;
+				next = (next + 1) % SIZE;
+			}
+			return chunk;
+		}
+
+		public synchronized void remove(Chunk chunk)
+		{
+			for (int i = 0; i < SIZE; i++)
+				if (chunks[i] == chunk)
+					chunks[i] = null;
+		}
+	}
+}
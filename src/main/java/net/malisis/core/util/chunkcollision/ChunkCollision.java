@@ -110,8 +110,10 @@ public class ChunkCollision
 		if (event.getAabb() == null)
 			return;
 
-		for (Chunk chunk : ChunkBlockHandler.getAffectedChunks(event.getWorld(), event.getAabb()))
+		ChunkBlockHandler.visitAffectedChunks(event.getWorld(), event.getAabb(), chunk -> {
 			collisionRegistry.processCallbacks(chunk, event.getAabb(), event.getCollisionBoxesList());
+			return true;
+		});
 	}
 
 	private CallbackResult<Void> collisionBoxesCallback(Chunk chunk, BlockPos listener, Object... params)
@@ -238,13 +240,10 @@ public class ChunkCollision
 			}
 		}
 
-		for (Chunk chunk : ChunkBlockHandler.getAffectedChunks(world, aabbs))
-		{
+		return ChunkBlockHandler.visitAffectedChunks(world, chunk -> {
 			CallbackResult<Boolean> result = placeAtRegistry.processCallbacks(chunk, (Object[]) aabbs);
-			if (result.getValue() != null && !result.getValue())
-				return false;
-		}
-		return true;
+			return result.getValue() == null || result.getValue();
+		}, aabbs);
 	}
 
 	private CallbackResult<Boolean> placeAtCallback(Chunk chunk, BlockPos listener, Object... params)
@@ -0,0 +1,347 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.malisis.core.util.event;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+
+import net.malisis.core.ExceptionHandler;
+import net.malisis.core.MalisisCore;
+
+/**
+ * Lightweight replacement for Guava's EventBus, compatible with {@link Subscribe} handlers.<br>
+ * The subscriber methods of a class are resolved once and turned into generated invokers. Each {@link EventDispatcher} keeps an array of
+ * listeners per event type, so posting an event only walks the types of that event, and costs nothing when no object is registered.<br>
+ * Like the EventBus, events posted from within a handler are queued and dispatched once the current event reached all its listeners.
+ *
+ * @author Ordinastie
+ *
+ */
+public class EventDispatcher
+{
+	/** Subscriber methods for each listener class. */
+	private static final Map<Class<?>, Subscriber[]> subscribers = new ConcurrentHashMap<>();
+	/** Types an event of a given class is dispatched as (the class, its superclasses and interfaces). */
+	private static final Map<Class<?>, Class<?>[]> eventTypes = new ConcurrentHashMap<>();
+
+	/** Listeners for each event type. Replaced on registration so posting never needs to lock. */
+	private volatile Map<Class<?>, Listener[]> listeners;
+	/** Events being dispatched on each thread. */
+	private final ThreadLocal<Dispatch> dispatch = ThreadLocal.withInitial(Dispatch::new);
+
+	/**
+	 * Checks whether at least one listener is registered.
+	 *
+	 * @return true, if there are listeners
+	 */
+	public boolean hasListeners()
+	{
+		return listeners != null;
+	}
+
+	/**
+	 * Registers all the {@link Subscribe} methods of the <code>object</code>.<br>
+	 * Registering the same object twice has no effect.
+	 *
+	 * @param object the object
+	 */
+	public synchronized void register(Object object)
+	{
+		Subscriber[] subs = getSubscribers(object.getClass());
+		if (subs.length == 0)
+			return;
+
+		Map<Class<?>, Listener[]> map = listeners != null ? new HashMap<>(listeners) : new HashMap<>();
+		for (Subscriber sub : subs)
+		{
+			Listener[] array = map.get(sub.eventType);
+			if (array == null)
+				array = new Listener[0];
+			else if (contains(array, object, sub))
+				continue;
+
+			array = Arrays.copyOf(array, array.length + 1);
+			array[array.length - 1] = new Listener(object, sub);
+			map.put(sub.eventType, array);
+		}
+		listeners = map;
+	}
+
+	/**
+	 * Unregisters all the {@link Subscribe} methods of the <code>object</code>.
+	 *
+	 * @param object the object
+	 */
+	public synchronized void unregister(Object object)
+	{
+		if (listeners == null)
+			return;
+
+		Map<Class<?>, Listener[]> map = new HashMap<>();
+		for (Entry<Class<?>, Listener[]> entry : listeners.entrySet())
+		{
+			Listener[] array = Arrays.stream(entry.getValue()).filter(l -> l.target != object).toArray(Listener[]::new);
+			if (array.length != 0)
+				map.put(entry.getKey(), array);
+		}
+		listeners = map.isEmpty() ? null : map;
+	}
+
+	/**
+	 * Posts the <code>event</code> to all the listeners registered for its class, superclasses or interfaces.<br>
+	 * If called from within a handler, the event is dispatched after the current one, in the order posted.
+	 *
+	 * @param event the event
+	 */
+	public void post(Object event)
+	{
+		if (listeners == null)
+			return;
+
+		Dispatch d = dispatch.get();
+		d.queue.add(event);
+		if (d.dispatching)
+			return;
+
+		d.dispatching = true;
+		try
+		{
+			Object e;
+			while ((e = d.queue.poll()) != null)
+				dispatch(e);
+		}
+		finally
+		{
+			d.dispatching = false;
+			d.queue.clear();
+		}
+	}
+
+	/**
+	 * Dispatches the <code>event</code> to the listeners currently registered.
+	 *
+	 * @param event the event
+	 */
+	private void dispatch(Object event)
+	{
+		Map<Class<?>, Listener[]> map = listeners;
+		if (map == null)
+			return;
+
+		for (Class<?> type : getEventTypes(event.getClass()))
+		{
+			Listener[] array = map.get(type);
+			if (array == null)
+				continue;
+			for (Listener listener : array)
+				listener.invoke(event);
+		}
+	}
+
+	private static boolean contains(Listener[] array, Object target, Subscriber sub)
+	{
+		for (Listener listener : array)
+			if (listener.target == target && listener.subscriber == sub)
+				return true;
+		return false;
+	}
+
+	private static Class<?>[] getEventTypes(Class<?> clazz)
+	{
+		return eventTypes.computeIfAbsent(clazz, c -> TypeToken.of(c).getTypes().rawTypes().toArray(new Class<?>[0]));
+	}
+
+	/**
+	 * Gets the {@link Subscriber subscribers} for the class, resolving them the first time.
+	 *
+	 * @param clazz the clazz
+	 * @return the subscribers
+	 */
+	private static Subscriber[] getSubscribers(Class<?> clazz)
+	{
+		return subscribers.computeIfAbsent(clazz, EventDispatcher::resolveSubscribers);
+	}
+
+	private static Subscriber[] resolveSubscribers(Class<?> clazz)
+	{
+		List<Subscriber> list = new ArrayList<>();
+		List<String> signatures = new ArrayList<>();
+		for (Class<?> type : TypeToken.of(clazz).getTypes().rawTypes())
+		{
+			for (Method method : type.getDeclaredMethods())
+			{
+				if (!method.isAnnotationPresent(Subscribe.class) || method.isSynthetic() || method.getParameterCount() != 1)
+					continue;
+
+				//overridden methods are only registered once, the invoker dispatches virtually anyway
+				String signature = method.getName() + Arrays.toString(method.getParameterTypes());
+				if (signatures.contains(signature))
+					continue;
+				signatures.add(signature);
+				list.add(new Subscriber(method));
+			}
+		}
+		return list.toArray(new Subscriber[0]);
+	}
+
+	/**
+	 * Invoker generated for a subscriber method.
+	 */
+	@FunctionalInterface
+	public static interface Invoker
+	{
+		public void invoke(Object target, Object event) throws Throwable;
+	}
+
+	/**
+	 * A {@link Subscribe} method of a class, with its generated {@link Invoker}.
+	 */
+	private static class Subscriber
+	{
+		private final Class<?> eventType;
+		private final Invoker invoker;
+
+		public Subscriber(Method method)
+		{
+			eventType = method.getParameterTypes()[0];
+			invoker = createInvoker(method);
+		}
+
+		/**
+		 * Creates the {@link Invoker} for the method. Accessible instance methods get a generated class calling the method directly, others
+		 * fall back to a {@link MethodHandle}. Static methods ignore the target.
+		 *
+		 * @param method the method
+		 * @return the invoker
+		 */
+		private static Invoker createInvoker(Method method)
+		{
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			boolean isStatic = Modifier.isStatic(method.getModifiers());
+			if (!isStatic && isAccessible(method))
+			{
+				try
+				{
+					MethodHandle handle = lookup.unreflect(method);
+					CallSite site = LambdaMetafactory.metafactory(lookup,
+							"invoke",
+							MethodType.methodType(Invoker.class),
+							MethodType.methodType(void.class, Object.class, Object.class),
+							handle,
+							MethodType.methodType(void.class, method.getDeclaringClass(), eventType(method)));
+					return (Invoker) site.getTarget().invokeExact();
+				}
+				catch (Throwable e)
+				{
+					MalisisCore.LOGGER.debug("Could not generate invoker for {}, falling back to method handle.", method, e);
+				}
+			}
+
+			try
+			{
+				method.setAccessible(true);
+				MethodHandle handle = lookup.unreflect(method);
+				if (isStatic)
+					handle = MethodHandles.dropArguments(handle, 0, Object.class);
+				MethodHandle h = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+				//statement lambda, so invokeExact is resolved with a void return
+				return (target, event) -> {
+					h.invokeExact(target, event);
+				};
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new IllegalArgumentException("Could not access subscriber method " + method, e);
+			}
+		}
+
+		private static Class<?> eventType(Method method)
+		{
+			return method.getParameterTypes()[0];
+		}
+
+		private static boolean isAccessible(Method method)
+		{
+			if (!Modifier.isPublic(method.getModifiers()))
+				return false;
+			for (Class<?> c = method.getDeclaringClass(); c != null; c = c.getEnclosingClass())
+				if (!Modifier.isPublic(c.getModifiers()))
+					return false;
+			return true;
+		}
+	}
+
+	/**
+	 * Events waiting to be dispatched on a thread.
+	 */
+	private static class Dispatch
+	{
+		private final ArrayDeque<Object> queue = new ArrayDeque<>();
+		private boolean dispatching;
+	}
+
+	/**
+	 * A {@link Subscriber} bound to a registered object.
+	 */
+	private static class Listener
+	{
+		private final Object target;
+		private final Subscriber subscriber;
+
+		public Listener(Object target, Subscriber subscriber)
+		{
+			this.target = target;
+			this.subscriber = subscriber;
+		}
+
+		public void invoke(Object event)
+		{
+			try
+			{
+				subscriber.invoker.invoke(target, event);
+			}
+			catch (Throwable e)
+			{
+				ExceptionHandler.instance.handleException(e, event);
+			}
+		}
+	}
+}
@@ -26,10 +26,7 @@ package net.malisis.core.util.finiteliquid;
 
 import static net.minecraft.util.Direction.*;
 
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Random;
-import java.util.Set;
 
 import net.malisis.core.block.BoundingBoxType;
 import net.malisis.core.block.MalisisBlock;
@@ -49,6 +46,9 @@ import net.minecraft.world.IBlockReader;
 import net.minecraft.world.World;
 
 /**
+ * Base class for liquids holding a finite amount of liquid per block.<br>
+ * Spreading is handled by the {@link FiniteLiquidSimulation} : block updates only mark the positions as dirty.
+ *
  * @author Ordinastie
  *
  */
@@ -58,8 +58,8 @@ public abstract class FiniteLiquid extends MalisisBlock
 	protected String name;
 
 	public static final IntegerProperty AMOUNT = IntegerProperty.create("amount", 0, 15);
-	private static Direction[] dirs = new Direction[] { NORTH, SOUTH, EAST, WEST };
 	private int delay = 5;
+	private int passes = 4;
 
 	public FiniteLiquid(Material material)
 	{
@@ -72,6 +72,27 @@ public abstract class FiniteLiquid extends MalisisBlock
 		this.delay = delay;
 	}
 
+	public int getDelay()
+	{
+		return delay;
+	}
+
+	/**
+	 * Sets the number of balancing passes done each time a region of this {@link FiniteLiquid} is simulated.<br>
+	 * Liquid moves at most one block horizontally per pass.
+	 *
+	 * @param passes the passes
+	 */
+	public void setPasses(int passes)
+	{
+		this.passes = passes;
+	}
+
+	public int getPasses()
+	{
+		return passes;
+	}
+
 	@Override
 	public void register()
 	{
@@ -87,8 +108,7 @@ public abstract class FiniteLiquid extends MalisisBlock
 	@Override
 	public void onBlockAdded(World world, BlockPos pos, BlockState state)
 	{
-		if (!world.isRemote)
-			world.scheduleBlockUpdate(pos, this, delay, 0);
+		FiniteLiquidSimulation.get().markDirty(world, pos, this);
 	}
 
 	@Override
@@ -100,15 +120,14 @@ public abstract class FiniteLiquid extends MalisisBlock
 	@Override
 	public void neighborChanged(BlockState state, World world, BlockPos pos, Block neighborBlock, BlockPos neighborPos)
 	{
-		if (!world.isRemote)
-			world.scheduleBlockUpdate(pos, this, delay, 0);
+		FiniteLiquidSimulation.get().markDirty(world, pos, this);
 	}
 
 	@Override
 	public void updateTick(World world, BlockPos pos, BlockState state, Random rand)
 	{
-		if (!world.isRemote)
-			spreadLiquid(world, pos);
+		//updates scheduled before the simulation was used
+		FiniteLiquidSimulation.get().markDirty(world, pos, this);
 	}
 
 	public int getAmount(MBlockState state)
@@ -129,7 +148,7 @@ public abstract class FiniteLiquid extends MalisisBlock
 			if (getAmount(state) == amount)
 				return;
 			world.setBlockState(state.getPos(), getDefaultState().withProperty(AMOUNT, amount));
-			world.scheduleBlockUpdate(state.getPos(), this, delay, 0);
+			FiniteLiquidSimulation.get().markDirty(world, state.getPos(), this);
 		}
 	}
 
@@ -144,17 +163,6 @@ public abstract class FiniteLiquid extends MalisisBlock
 		return amount - newAmount;
 	}
 
-	private void spreadLiquid(World world, BlockPos pos)
-	{
-		MBlockState state = new MBlockState(world, pos);
-		//		if (getAmount(state) <= 1)
-		//			return;
-
-		FloodFill ff = new FloodFill(this, world, state);
-		ff.parse();
-
-	}
-
 	@Override
 	public AxisAlignedBB[] getBoundingBoxes(IBlockReader world, BlockPos pos, BlockState state, BoundingBoxType type)
 	{
@@ -192,86 +200,4 @@ public abstract class FiniteLiquid extends MalisisBlock
 	{
 		return layer == BlockRenderLayer.TRANSLUCENT;
 	}
-
-	public static class FloodFill
-	{
-		FiniteLiquid fl;
-		Set<BlockPos> parsed = new HashSet<>();
-		LinkedList<BlockPos> toParse = new LinkedList<>();
-		World world;
-		BlockPos origin;
-		int amount = 0;
-
-		public FloodFill(FiniteLiquid fl, World world, MBlockState state)
-		{
-			this.fl = fl;
-			this.world = world;
-			this.origin = state.getPos();
-			this.amount = fl.getAmount(state);
-			toParse.add(state.getPos());
-		}
-
-		public boolean shouldParse(BlockPos pos)
-		{
-			if (origin.distanceSq(pos) > 16 * 16)
-				return false;
-
-			if (toParse.contains(pos))
-				return false;
-
-			MBlockState state = new MBlockState(world, pos);
-			return state.getBlock() == fl || state.getBlock() == Blocks.AIR;
-		}
-
-		public void parse()
-		{
-			while (toParse.size() > 0)
-			{
-				MBlockState state = new MBlockState(world, toParse.removeFirst());
-				if (!process(state))
-					break;
-				parse(state);
-			}
-
-			fl.setAmount(world, new MBlockState(world, origin), amount);
-		}
-
-		public boolean process(MBlockState state)
-		{
-			MBlockState down = new MBlockState(world, state.getPos().down());
-			int da = fl.getAmount(down);
-			if (da != -1 && da != 15)
-			{
-				int transfered = Math.min(amount, 4);
-				transfered = Math.min(transfered, 15 - da);
-				fl.setAmount(world, down, da + transfered);
-				amount -= transfered;
-				return amount > 0;
-			}
-
-			if (state.getPos().equals(origin))
-				return true;
-
-			int a = fl.getAmount(state);
-			if (a < amount - 1)
-			{
-				fl.setAmount(world, state, a + 1);
-				amount--;
-			}
-			return amount > 1;
-		}
-
-		public void parse(MBlockState state)
-		{
-			BlockPos pos = state.getPos();
-			if (state.getBlock() == fl)
-				for (Direction dir : dirs)
-				{
-					BlockPos newPos = pos.offset(dir);
-					if (!parsed.contains(newPos) && shouldParse(newPos))
-						toParse.add(newPos);
-				}
-			parsed.add(state.getPos());
-		}
-	}
 }
@@ -0,0 +1,495 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.util.finiteliquid;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import net.malisis.core.MalisisCore;
+import net.malisis.core.registry.AutoLoad;
+import net.malisis.core.util.Utils;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/**
+ * {@link FiniteLiquidSimulation} runs the {@link FiniteLiquid} simulation for all server worlds.
+ *
+ * <p>
+ * Instead of spreading on each block update, liquid cells are marked dirty with {@link #markDirty(World, BlockPos, FiniteLiquid)}. Dirty
+ * cells are gathered per 16x16x16 region, and at the end of each world tick, active regions are loaded into a {@link LiquidRegion},
+ * balanced, and only net changes are written back to the world.<br>
+ * Regions whose balancing doesn't change anything go to sleep and cost nothing until one of their cells is marked dirty again.
+ *
+ * <p>
+ * Processing is limited per tick by a cell count and a time budget. Regions that don't fit in the budget are processed on the following
+ * ticks in order.
+ *
+ * <p>
+ * When running in parallel (the default), regions are snapshotted on the main thread, balanced on a {@link ForkJoinPool} while the server
+ * keeps ticking, and committed on the main thread at the end of the next world tick. Regions processed together are chosen with a
+ * checkerboard partition so that their boxes never overlap, and commits are applied in a fixed order : the result is the same regardless
+ * of the number of threads.
+ *
+ * @author Ordinastie
+ */
+@AutoLoad
+public class FiniteLiquidSimulation
+{
+	private static FiniteLiquidSimulation instance = new FiniteLiquidSimulation();
+
+	/** Number of bits for the region coordinates. */
+	private static final int REGION_SHIFT = 4;
+	/** Size of a region. */
+	private static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+	/** Maximum number of cells to process per world tick. */
+	private int cellBudget = 32768;
+	/** Maximum time spent processing per world tick, in nanoseconds. */
+	private long timeBudget = 2_000_000;
+	/** Whether regions are balanced on the {@link Utils#getPool() shared pool}. */
+	private boolean parallel = true;
+
+	/** Simulations per world. Entries are removed when the world unloads, as each simulation references its world. */
+	private Map<World, WorldSimulation> simulations = new HashMap<>();
+
+	private FiniteLiquidSimulation()
+	{
+		MinecraftForge.EVENT_BUS.register(this);
+	}
+
+	/**
+	 * Sets the maximum number of cells and the maximum time (in nanoseconds) to spend for the simulation on each world tick.
+	 *
+	 * @param cells the cells
+	 * @param nanos the nanos
+	 */
+	public void setTickBudget(int cells, long nanos)
+	{
+		this.cellBudget = cells;
+		this.timeBudget = nanos;
+	}
+
+	/**
+	 * Sets whether the regions should be balanced off the main thread.<br>
+	 * When disabled, regions are balanced and committed during the same tick.
+	 *
+	 * @param parallel the parallel
+	 */
+	public void setParallel(boolean parallel)
+	{
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Marks the {@link BlockPos} as dirty for the specified {@link FiniteLiquid}.<br>
+	 * The region containing the position will be processed once the liquid delay is elapsed.
+	 *
+	 * @param world the world
+	 * @param pos the pos
+	 * @param liquid the liquid
+	 */
+	public void markDirty(World world, BlockPos pos, FiniteLiquid liquid)
+	{
+		if (world.isRemote)
+			return;
+
+		simulations.computeIfAbsent(world, WorldSimulation::new).markDirty(pos, liquid);
+	}
+
+	/**
+	 * Checks whether the {@link FiniteLiquid} has active regions in the {@link World}.
+	 *
+	 * @param world the world
+	 * @param liquid the liquid
+	 * @return true, if is active
+	 */
+	public boolean isActive(World world, FiniteLiquid liquid)
+	{
+		WorldSimulation simulation = simulations.get(world);
+		return simulation != null && simulation.regions.containsKey(liquid);
+	}
+
+	//#region Events
+	/**
+	 * Processes the active regions at the end of the world tick.
+	 *
+	 * @param event the event
+	 */
+	@SubscribeEvent
+	public void onWorldTick(TickEvent.WorldTickEvent event)
+	{
+		if (event.phase != TickEvent.Phase.END || event.world.isRemote)
+			return;
+
+		WorldSimulation simulation = simulations.get(event.world);
+		if (simulation != null)
+			simulation.tick(cellBudget, System.nanoTime() + timeBudget, parallel ? Utils.getPool() : null);
+	}
+
+	/**
+	 * Discards the simulation for the unloaded {@link World}.
+	 *
+	 * @param event the event
+	 */
+	@SubscribeEvent
+	public void onWorldUnload(WorldEvent.Unload event)
+	{
+		WorldSimulation simulation = simulations.remove(event.getWorld());
+		if (simulation != null)
+			simulation.discard();
+	}
+
+	//#end Events
+
+	/**
+	 * Gets the key of the region containing the coordinates.
+	 *
+	 * @param x the x
+	 * @param y the y
+	 * @param z the z
+	 * @return the long
+	 */
+	static long regionKey(int x, int y, int z)
+	{
+		return new BlockPos(x >> REGION_SHIFT, y >> REGION_SHIFT, z >> REGION_SHIFT).toLong();
+	}
+
+	/**
+	 * Gets the checkerboard color of the region.<br>
+	 * Two different regions of the same color are never adjacent, so their {@link LiquidRegion} boxes never overlap.
+	 *
+	 * @param region the region
+	 * @return the color, between 0 and 7
+	 */
+	static int color(ActiveRegion region)
+	{
+		return (region.rx & 1) | (region.ry & 1) << 1 | (region.rz & 1) << 2;
+	}
+
+	/**
+	 * Gets the {@link FiniteLiquidSimulation} instance.
+	 *
+	 * @return the finite liquid simulation
+	 */
+	public static FiniteLiquidSimulation get()
+	{
+		return instance;
+	}
+
+	/**
+	 * Simulation state for a single {@link World}.
+	 */
+	private static class WorldSimulation
+	{
+		private final World world;
+		/** Active regions per liquid. */
+		private final Map<FiniteLiquid, Map<Long, ActiveRegion>> regions = new HashMap<>();
+		/** Regions waiting to be processed, in activation order. */
+		private final ArrayDeque<ActiveRegion> queue = new ArrayDeque<>();
+		/** Regions being balanced, in commit order. */
+		private final List<Solve> pending = new ArrayList<>();
+		/** Color processed first on the next tick. */
+		private int firstColor = 0;
+
+		public WorldSimulation(World world)
+		{
+			this.world = world;
+		}
+
+		public void markDirty(BlockPos pos, FiniteLiquid liquid)
+		{
+			long key = regionKey(pos.getX(), pos.getY(), pos.getZ());
+			Map<Long, ActiveRegion> map = regions.computeIfAbsent(liquid, l -> new HashMap<>());
+			ActiveRegion region = map.computeIfAbsent(key, k -> new ActiveRegion(liquid, pos));
+			region.mark(pos);
+			if (!region.queued)
+			{
+				region.queued = true;
+				region.wakeTime = world.getTotalWorldTime() + liquid.getDelay();
+				queue.add(region);
+			}
+		}
+
+		/**
+		 * Commits the regions balanced since last tick, then starts balancing the next batch of regions.<br>
+		 * If <b>pool</b> is null, the batch is balanced and committed immediately.
+		 *
+		 * @param cellBudget the cell budget
+		 * @param deadline the deadline
+		 * @param pool the pool
+		 */
+		public void tick(int cellBudget, long deadline, ForkJoinPool pool)
+		{
+			commit();
+
+			for (ActiveRegion region : select(cellBudget))
+			{
+				if (System.nanoTime() > deadline)
+				{
+					queue.add(region);
+					continue;
+				}
+
+				FiniteLiquid liquid = region.liquid;
+				LiquidRegion lr = region.toLiquidRegion(world).snapshot(world);
+				Solve solve = new Solve(region, lr);
+				region.clear();
+				if (pool != null)
+					solve.task = pool.submit(() -> lr.solve(liquid.getPasses()));
+				pending.add(solve);
+			}
+
+			if (pool == null)
+				commit();
+		}
+
+		/**
+		 * Selects the regions to process this tick.<br>
+		 * Due regions are sorted by checkerboard color (starting with a different color each tick) and position, and a region is only
+		 * selected if none of its neighbors already is.
+		 *
+		 * @param cellBudget the cell budget
+		 * @return the list
+		 */
+		private List<ActiveRegion> select(int cellBudget)
+		{
+			long now = world.getTotalWorldTime();
+			List<ActiveRegion> due = new ArrayList<>();
+			int count = queue.size();
+			while (count-- > 0)
+			{
+				ActiveRegion region = queue.poll();
+				if (region.wakeTime <= now)
+					due.add(region);
+				else
+					queue.add(region);
+			}
+
+			int first = firstColor;
+			firstColor = (firstColor + 1) & 7;
+			due.sort(Comparator.<ActiveRegion> comparingInt(r -> (color(r) - first) & 7).thenComparingLong(r -> r.key));
+
+			List<ActiveRegion> selected = new ArrayList<>();
+			Set<Long> used = new HashSet<>();
+			for (ActiveRegion region : due)
+			{
+				if (cellBudget > 0 && !isNeighborUsed(used, region))
+				{
+					used.add(region.key);
+					selected.add(region);
+					cellBudget -= region.size();
+				}
+				else
+					queue.add(region);
+			}
+			return selected;
+		}
+
+		private boolean isNeighborUsed(Set<Long> used, ActiveRegion region)
+		{
+			for (int x = -1; x <= 1; x++)
+				for (int y = -1; y <= 1; y++)
+					for (int z = -1; z <= 1; z++)
+						if (used.contains(new BlockPos(region.rx + x, region.ry + y, region.rz + z).toLong()))
+							return true;
+			return false;
+		}
+
+		/**
+		 * Commits the pending regions in order, waiting for their balancing to finish if needed.<br>
+		 * Changed cells are marked dirty again, so a region that didn't change anything goes to sleep. Regions modified in the world while
+		 * being balanced are discarded and their dirty bounds are marked again to be processed on a later tick.
+		 */
+		private void commit()
+		{
+			for (Solve solve : pending)
+			{
+				ActiveRegion region = solve.region;
+				FiniteLiquid liquid = region.liquid;
+				LiquidRegion lr = solve.region();
+				if (lr == null || !lr.canCommit(world))
+				{
+					markDirty(solve.dirtyFrom, liquid);
+					markDirty(solve.dirtyTo, liquid);
+				}
+				else if (lr.hasChanges())
+					lr.commit(world, pos -> markDirty(pos, liquid));
+
+				if (!region.queued)
+				{
+					Map<Long, ActiveRegion> map = regions.get(liquid);
+					map.remove(region.key);
+					if (map.isEmpty())
+						regions.remove(liquid);
+				}
+			}
+			pending.clear();
+		}
+
+		/**
+		 * Cancels the regions being balanced.
+		 */
+		public void discard()
+		{
+			for (Solve solve : pending)
+				if (solve.task != null)
+					solve.task.cancel(false);
+			pending.clear();
+		}
+	}
+
+	/**
+	 * A {@link LiquidRegion} being balanced.
+	 */
+	private static class Solve
+	{
+		private final ActiveRegion region;
+		private final LiquidRegion liquidRegion;
+		/** Corners of the dirty bounds of the region when it was snapshotted. */
+		private final BlockPos dirtyFrom, dirtyTo;
+		private ForkJoinTask<Integer> task;
+
+		public Solve(ActiveRegion region, LiquidRegion liquidRegion)
+		{
+			this.region = region;
+			this.liquidRegion = liquidRegion;
+			this.dirtyFrom = new BlockPos(region.minX, region.minY, region.minZ);
+			this.dirtyTo = new BlockPos(region.maxX, region.maxY, region.maxZ);
+		}
+
+		/**
+		 * Gets the balanced {@link LiquidRegion}, balancing it on the current thread if it was not submitted to a pool.
+		 *
+		 * @return the liquid region, or null if the balancing failed
+		 */
+		public LiquidRegion region()
+		{
+			try
+			{
+				if (task == null)
+					liquidRegion.solve(region.liquid.getPasses());
+				else
+					task.join();
+				return liquidRegion;
+			}
+			catch (RuntimeException e)
+			{
+				MalisisCore.log.error("Failed to balance finite liquid region at {}", region.pos, e);
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Bounds of the dirty cells of a region for a {@link FiniteLiquid}.
+	 */
+	private static class ActiveRegion
+	{
+		private final FiniteLiquid liquid;
+		/** A position inside the region. */
+		private final BlockPos pos;
+		private final long key;
+		private final int rx, ry, rz;
+		private boolean queued;
+		private long wakeTime;
+		private int minX, minY, minZ, maxX, maxY, maxZ;
+
+		public ActiveRegion(FiniteLiquid liquid, BlockPos pos)
+		{
+			this.liquid = liquid;
+			this.pos = pos.toImmutable();
+			this.rx = pos.getX() >> REGION_SHIFT;
+			this.ry = pos.getY() >> REGION_SHIFT;
+			this.rz = pos.getZ() >> REGION_SHIFT;
+			this.key = new BlockPos(rx, ry, rz).toLong();
+			clear();
+		}
+
+		public void mark(BlockPos pos)
+		{
+			minX = Math.min(minX, pos.getX());
+			minY = Math.min(minY, pos.getY());
+			minZ = Math.min(minZ, pos.getZ());
+			maxX = Math.max(maxX, pos.getX());
+			maxY = Math.max(maxY, pos.getY());
+			maxZ = Math.max(maxZ, pos.getZ());
+		}
+
+		/**
+		 * Gets the estimated number of cells to process for this region.
+		 *
+		 * @return the size
+		 */
+		public int size()
+		{
+			int passes = 2 * liquid.getPasses() + 1;
+			return Math.min(maxX - minX + passes, REGION_SIZE + 2) * Math.min(maxY - minY + passes, REGION_SIZE + 2)
+					* Math.min(maxZ - minZ + passes, REGION_SIZE + 2);
+		}
+
+		public void clear()
+		{
+			queued = false;
+			minX = minY = minZ = Integer.MAX_VALUE;
+			maxX = maxY = maxZ = Integer.MIN_VALUE;
+		}
+
+		/**
+		 * Creates the {@link LiquidRegion} covering the dirty cells expanded by the number of passes of the liquid.<br>
+		 * The box is limited to the region and its direct border so liquid can flow into neighboring regions.
+		 *
+		 * @param world the world
+		 * @return the liquid region
+		 */
+		public LiquidRegion toLiquidRegion(World world)
+		{
+			int passes = liquid.getPasses();
+			int rx = this.rx << REGION_SHIFT;
+			int ry = this.ry << REGION_SHIFT;
+			int rz = this.rz << REGION_SHIFT;
+
+			BlockPos from = new BlockPos(	Math.max(minX - passes, rx - 1),
+											Math.max(Math.max(minY - passes, ry - 1), 0),
+											Math.max(minZ - passes, rz - 1));
+			BlockPos to = new BlockPos(	Math.min(maxX + passes, rx + REGION_SIZE),
+										Math.min(Math.min(maxY + passes, ry + REGION_SIZE), world.getHeight() - 1),
+										Math.min(maxZ + passes, rz + REGION_SIZE));
+			return new LiquidRegion(liquid, from, to);
+		}
+	}
+}
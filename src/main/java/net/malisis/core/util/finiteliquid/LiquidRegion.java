@@ -0,0 +1,325 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.util.finiteliquid;
+
+import java.util.function.Consumer;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * {@link LiquidRegion} holds the liquid amounts of a box of the world inside a primitive array.<br>
+ * Amounts are read once from the world with {@link #snapshot(World)}, balanced with {@link #solve(int)} without touching the world, and
+ * only the cells whose amount actually changed are written back with {@link #commit(World, Consumer)}.
+ *
+ * <p>
+ * Cells outside the box are considered blocked, so no liquid is ever lost or created during a solve.<br>
+ * {@link #solve(int)} only works on the arrays of the region and can safely be called from another thread, the result only depends on the
+ * snapshot.
+ *
+ * @author Ordinastie
+ */
+public class LiquidRegion
+{
+	/** Value stored for cells that can't hold liquid. */
+	public static final byte BLOCKED = -1;
+	/** Maximum amount of liquid a cell can hold. */
+	public static final byte FULL = 15;
+
+	/** The {@link FiniteLiquid} simulated. */
+	protected final FiniteLiquid liquid;
+	/** Minimum X coordinate of the box. */
+	protected final int x;
+	/** Minimum Y coordinate of the box. */
+	protected final int y;
+	/** Minimum Z coordinate of the box. */
+	protected final int z;
+	/** Size of the box along X. */
+	protected final int sizeX;
+	/** Size of the box along Y. */
+	protected final int sizeY;
+	/** Size of the box along Z. */
+	protected final int sizeZ;
+	/** Amounts read from the world. */
+	protected final byte[] original;
+	/** Amounts being balanced. */
+	protected final byte[] amounts;
+	/** Amounts at the start of the current lateral step. */
+	private final byte[] work;
+
+	/**
+	 * Instantiates a new {@link LiquidRegion} for the box between <b>from</b> and <b>to</b> (inclusive).
+	 *
+	 * @param liquid the liquid
+	 * @param from the from
+	 * @param to the to
+	 */
+	public LiquidRegion(FiniteLiquid liquid, BlockPos from, BlockPos to)
+	{
+		this.liquid = liquid;
+		this.x = from.getX();
+		this.y = from.getY();
+		this.z = from.getZ();
+		this.sizeX = to.getX() - x + 1;
+		this.sizeY = to.getY() - y + 1;
+		this.sizeZ = to.getZ() - z + 1;
+		this.original = new byte[sizeX * sizeY * sizeZ];
+		this.amounts = new byte[original.length];
+		this.work = new byte[original.length];
+	}
+
+	/**
+	 * Gets the number of cells in this {@link LiquidRegion}.
+	 *
+	 * @return the size
+	 */
+	public int size()
+	{
+		return original.length;
+	}
+
+	private int index(int x, int y, int z)
+	{
+		return (y * sizeZ + z) * sizeX + x;
+	}
+
+	/**
+	 * Reads the amounts of liquid from the {@link World}.<br>
+	 * Cells in unloaded chunks are considered blocked.
+	 *
+	 * @param world the world
+	 * @return this {@link LiquidRegion}
+	 */
+	public LiquidRegion snapshot(World world)
+	{
+		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+		boolean loaded = world.isAreaLoaded(new BlockPos(x, y, z), new BlockPos(x + sizeX - 1, y + sizeY - 1, z + sizeZ - 1));
+		int i = 0;
+		for (int iy = 0; iy < sizeY; iy++)
+			for (int iz = 0; iz < sizeZ; iz++)
+				for (int ix = 0; ix < sizeX; ix++)
+				{
+					pos.setPos(x + ix, y + iy, z + iz);
+					if (!loaded && !world.isBlockLoaded(pos))
+						original[i++] = BLOCKED;
+					else
+						original[i++] = amountOf(world.getBlockState(pos));
+				}
+
+		System.arraycopy(original, 0, amounts, 0, original.length);
+		return this;
+	}
+
+	/**
+	 * Gets the amount for the {@link BlockState}, or {@link #BLOCKED} if it can't hold {@link #liquid}.
+	 *
+	 * @param state the state
+	 * @return the amount
+	 */
+	private byte amountOf(BlockState state)
+	{
+		Block block = state.getBlock();
+		if (block == Blocks.AIR)
+			return 0;
+		if (block != liquid)
+			return BLOCKED;
+		return (byte) (int) state.getValue(FiniteLiquid.AMOUNT);
+	}
+
+	/**
+	 * Balances the amounts of liquid for a maximum of <b>passes</b> passes.<br>
+	 * Each pass first lets liquid fall, then spreads it one cell horizontally towards lower neighbors. Stops early if a pass didn't move
+	 * anything.
+	 *
+	 * @param passes the passes
+	 * @return the number of passes that moved liquid
+	 */
+	public int solve(int passes)
+	{
+		int done = 0;
+		while (done < passes)
+		{
+			boolean moved = fall();
+			moved |= spread();
+			if (!moved)
+				break;
+			done++;
+		}
+		return done;
+	}
+
+	/**
+	 * Moves liquid down as much as possible, processing the box from bottom to top.
+	 *
+	 * @return true, if liquid was moved
+	 */
+	private boolean fall()
+	{
+		boolean moved = false;
+		int strideY = sizeX * sizeZ;
+		for (int i = strideY; i < amounts.length; i++)
+		{
+			int a = amounts[i];
+			if (a <= 0)
+				continue;
+			int below = amounts[i - strideY];
+			if (below == BLOCKED || below == FULL)
+				continue;
+
+			int transfer = Math.min(a, FULL - below);
+			amounts[i - strideY] = (byte) (below + transfer);
+			amounts[i] = (byte) (a - transfer);
+			moved = true;
+		}
+		return moved;
+	}
+
+	/**
+	 * Spreads liquid horizontally.<br>
+	 * Decisions are made on the amounts at the start of the step, in a fixed index order, so the result only depends on the content of
+	 * the box.
+	 *
+	 * @return true, if liquid was moved
+	 */
+	private boolean spread()
+	{
+		System.arraycopy(amounts, 0, work, 0, amounts.length);
+		boolean moved = false;
+		int i = 0;
+		for (int iy = 0; iy < sizeY; iy++)
+			for (int iz = 0; iz < sizeZ; iz++)
+				for (int ix = 0; ix < sizeX; ix++, i++)
+				{
+					int a = work[i];
+					if (a < 2)
+						continue;
+
+					if (iz > 0)
+						moved |= flow(a, i, i - sizeX);
+					if (iz < sizeZ - 1)
+						moved |= flow(a, i, i + sizeX);
+					if (ix < sizeX - 1)
+						moved |= flow(a, i, i + 1);
+					if (ix > 0)
+						moved |= flow(a, i, i - 1);
+				}
+		return moved;
+	}
+
+	/**
+	 * Moves one unit of liquid from <b>from</b> to <b>to</b> if the difference of amounts allows it.
+	 *
+	 * @param a the amount of <b>from</b> at the start of the step
+	 * @param from the from index
+	 * @param to the to index
+	 * @return true, if liquid was moved
+	 */
+	private boolean flow(int a, int from, int to)
+	{
+		int w = work[to];
+		if (w == BLOCKED || a - w < 2 || amounts[from] <= 1 || amounts[to] >= FULL)
+			return false;
+
+		amounts[to]++;
+		amounts[from]--;
+		return true;
+	}
+
+	/**
+	 * Checks whether any amount changed since the {@link #snapshot(World)}.
+	 *
+	 * @return true, if changed
+	 */
+	public boolean hasChanges()
+	{
+		for (int i = 0; i < amounts.length; i++)
+			if (amounts[i] != original[i])
+				return true;
+		return false;
+	}
+
+	/**
+	 * Checks whether the cells changed by the solve still hold the amounts read during the {@link #snapshot(World)}.<br>
+	 * If not, the world was modified while solving and the result must be discarded.
+	 *
+	 * @param world the world
+	 * @return true, if the changes can be committed
+	 */
+	public boolean canCommit(World world)
+	{
+		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+		int i = 0;
+		for (int iy = 0; iy < sizeY; iy++)
+			for (int iz = 0; iz < sizeZ; iz++)
+				for (int ix = 0; ix < sizeX; ix++, i++)
+				{
+					if (amounts[i] == original[i])
+						continue;
+					pos.setPos(x + ix, y + iy, z + iz);
+					if (!world.isBlockLoaded(pos) || amountOf(world.getBlockState(pos)) != original[i])
+						return false;
+				}
+		return true;
+	}
+
+	/**
+	 * Writes the cells whose amount changed into the {@link World} in a single pass.<br>
+	 * States are set without neighbor notification, neighbors are only notified when a cell gets filled or emptied.
+	 *
+	 * @param world the world
+	 * @param onChange called for each changed position
+	 * @return the number of changed cells
+	 */
+	public int commit(World world, Consumer<BlockPos> onChange)
+	{
+		int count = 0;
+		int i = 0;
+		for (int iy = 0; iy < sizeY; iy++)
+			for (int iz = 0; iz < sizeZ; iz++)
+				for (int ix = 0; ix < sizeX; ix++, i++)
+				{
+					int a = amounts[i];
+					int o = original[i];
+					if (a == o || o == BLOCKED)
+						continue;
+
+					BlockPos pos = new BlockPos(x + ix, y + iy, z + iz);
+					if (a <= 0)
+						world.setBlockState(pos, Blocks.AIR.getDefaultState(), 2);
+					else
+						world.setBlockState(pos, liquid.getDefaultState().withProperty(FiniteLiquid.AMOUNT, a), 2);
+					if (a <= 0 || o <= 0)
+						world.notifyNeighborsOfStateChange(pos, a <= 0 ? Blocks.AIR : liquid, false);
+
+					onChange.accept(pos);
+					count++;
+				}
+		return count;
+	}
+}
@@ -75,6 +75,7 @@ public class AABBMultiBlock extends MultiBlock
 	protected void buildStates()
 	{
 		states.clear();
+		clearIndexes();
 		for (BlockPos pos : BlockPosUtils.getAllInBox(aabb))
 		{
 			if (offset != null)
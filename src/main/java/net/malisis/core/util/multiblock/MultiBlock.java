@@ -24,6 +24,7 @@
 
 package net.malisis.core.util.multiblock;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -64,10 +65,13 @@ public abstract class MultiBlock implements Iterable<MBlockState>
 	protected PropertyDirection property = DirectionalComponent.HORIZONTAL;
 	private boolean bulkPlace;
 	private boolean bulkBreak;
+	/** Compiled indexes for each rotation. */
+	private final MultiBlockIndex[] indexes = new MultiBlockIndex[4];
 
 	public void setOffset(BlockPos offset)
 	{
 		this.offset = offset;
+		clearIndexes();
 	}
 
 	public void setPropertyDirection(PropertyDirection property)
@@ -100,24 +104,55 @@ public abstract class MultiBlock implements Iterable<MBlockState>
 		return bulkBreak;
 	}
 
+	/**
+	 * Gets the {@link MultiBlockIndex} for the specified rotation, compiling it if needed.
+	 *
+	 * @param rotation the rotation
+	 * @return the index
+	 */
+	public MultiBlockIndex getIndex(int rotation)
+	{
+		rotation &= 3;
+		MultiBlockIndex index = indexes[rotation];
+		if (index == null)
+			indexes[rotation] = index = new MultiBlockIndex(this, rotation);
+		return index;
+	}
+
+	/**
+	 * Gets the {@link MultiBlockIndex} for the rotation of the origin {@link IBlockState}.
+	 *
+	 * @param originState the origin state
+	 * @return the index
+	 */
+	public MultiBlockIndex getIndex(IBlockState originState)
+	{
+		return getIndex(getRotation(originState));
+	}
+
+	/**
+	 * Discards the compiled {@link MultiBlockIndex indexes}.<br>
+	 * Must be called whenever the {@link #states} are modified.
+	 */
+	protected void clearIndexes()
+	{
+		Arrays.fill(indexes, null);
+	}
+
 	public boolean isFromMultiblock(World world, BlockPos pos)
 	{
 		BlockPos origin = getOrigin(world, pos);
 		if (origin == null)
 			return false;
 
-		for (MBlockState mstate : worldStates(world, origin))
-		{
-			if (mstate.getPos().equals(pos))
-				return true;
-		}
-		return false;
+		return getIndex(world.getBlockState(origin)).contains(origin, pos);
 	}
 
 	public MBlockState getState(BlockPos pos, IBlockState originState)
 	{
-		pos = BlockPosUtils.rotate(pos, 4 - getRotation(originState));
-		return states.get(pos);
+		MultiBlockIndex index = getIndex(originState);
+		int i = index.indexOf(pos.getX(), pos.getY(), pos.getZ());
+		return i != -1 ? index.getMember(i) : null;
 	}
 
 	public boolean canPlaceBlockAt(World world, BlockPos origin, IBlockState originState, boolean placeOrigin)
@@ -131,42 +166,58 @@ public abstract class MultiBlock implements Iterable<MBlockState>
 		return true;
 	}
 
-	public void placeBlocks(World world, BlockPos origin, IBlockState originState, boolean placeOrigin)
+	/**
+	 * Places the blocks of this {@link MultiBlock} around the origin in a single {@link MultiBlockTransaction}.
+	 *
+	 * @param world the world
+	 * @param origin the origin
+	 * @param originState the origin state
+	 * @param placeOrigin whether to place the origin block too
+	 * @return true, if the blocks were placed, false if the transaction was rejected or reverted
+	 */
+	public boolean placeBlocks(World world, BlockPos origin, IBlockState originState, boolean placeOrigin)
 	{
+		MultiBlockTransaction transaction = new MultiBlockTransaction(world);
 		for (MBlockState mstate : worldStates(world, origin))
 		{
 			if (!mstate.getPos().equals(origin) || placeOrigin)
-			{
-				BlockDataHandler.setData(ORIGIN_BLOCK_DATA, world, mstate.getPos(), origin);
-				mstate.placeBlock(world, 2);
-			}
+				transaction.place(mstate, origin);
 		}
 
-		BlockDataHandler.setData(ORIGIN_BLOCK_DATA, world, origin, origin);
+		return transaction.setOrigin(origin, origin).commit();
 	}
 
-	public void breakBlocks(World world, BlockPos pos, IBlockState state)
+	/**
+	 * Breaks the blocks of the {@link MultiBlock} the block at the {@link BlockPos} is part of, in a single {@link MultiBlockTransaction}.
+	 *
+	 * @param world the world
+	 * @param pos the pos
+	 * @param state the state
+	 * @return false if the transaction was rejected or reverted
+	 */
+	public boolean breakBlocks(World world, BlockPos pos, IBlockState state)
 	{
 		BlockPos origin = getOrigin(world, pos);
 		if (origin == null) //block was removing as part of bulk
-			return;
+			return true;
 
 		IBlockState originState = world.getBlockState(origin);
-		BlockDataHandler.removeData(ORIGIN_BLOCK_DATA, world, origin);
+		MultiBlockTransaction transaction = new MultiBlockTransaction(world);
 		for (MBlockState mstate : worldStates(origin, originState))
-		{
-			//remove data first so breaking this block doesn't re-trigger this loop
-			BlockDataHandler.removeData(ORIGIN_BLOCK_DATA, world, mstate.getPos());
-			mstate.breakBlock(world, 2);
-		}
+			transaction.breakBlock(mstate.getPos());
+		//data is removed before the blocks are broken so breaking them doesn't re-trigger this
+		return transaction.setOrigin(origin, null).commit();
 	}
 
 	public void setOriginData(World world, BlockPos pos, IBlockState state)
 	{
+		Map<BlockPos, BlockPos> data = new HashMap<>();
 		for (MBlockState mstate : this)
-			BlockDataHandler.setData(ORIGIN_BLOCK_DATA, world, mstate.getPos(), pos);
+			data.put(mstate.getPos(), pos);
+		data.put(pos, pos);
 
-		BlockDataHandler.setData(ORIGIN_BLOCK_DATA, world, pos, pos);
+		BlockDataHandler.setData(ORIGIN_BLOCK_DATA, world, data, false);
+		MultiBlockTracker.invalidate(world, data.keySet());
 	}
 
 	public boolean isComplete(World world, BlockPos pos)
@@ -176,18 +227,25 @@ public abstract class MultiBlock implements Iterable<MBlockState>
 
 	public boolean isComplete(World world, BlockPos pos, MBlockState newState)
 	{
-		MultiBlockAccess mba = new MultiBlockAccess(this, world);
-		for (MBlockState mstate : this)
-		{
-			mstate = new MBlockState(mba, mstate.getPos())/*.rotate(rotation)*/.offset(pos);
-			boolean matches = mstate.matchesWorld(world);
-			if (!matches)
-				mstate.matchesWorld(world);
-			if (!matches && (newState == null || !mstate.equals(newState)))
-				return false;
-		}
+		return isComplete(world, pos, 0, newState);
+	}
 
-		return true;
+	public boolean isComplete(World world, BlockPos pos, int rotation, MBlockState newState)
+	{
+		return getIndex(rotation).isComplete(world, pos, newState);
+	}
+
+	/**
+	 * Creates a {@link MultiBlockIndex.Tracker} to incrementally check the completion of this {@link MultiBlock} placed at <b>pos</b>.
+	 *
+	 * @param world the world
+	 * @param pos the pos
+	 * @param rotation the rotation
+	 * @return the tracker
+	 */
+	public MultiBlockIndex.Tracker trackCompletion(World world, BlockPos pos, int rotation)
+	{
+		return getIndex(rotation).track(world, pos);
 	}
 
 	@Override
@@ -227,6 +285,8 @@ public abstract class MultiBlock implements Iterable<MBlockState>
 		{
 			origin = null;
 			BlockDataHandler.removeData(ORIGIN_BLOCK_DATA, world, pos);
+			if (world instanceof World)
+				MultiBlockTracker.invalidate((World) world, pos);
 		}
 		return world != null && pos != null ? origin : null;
 	}
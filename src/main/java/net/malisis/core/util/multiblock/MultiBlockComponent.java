@@ -28,6 +28,7 @@ import java.util.List;
 
 import com.google.common.collect.Lists;
 
+import net.malisis.core.MalisisCore;
 import net.malisis.core.block.IBlockComponent;
 import net.malisis.core.block.IComponent;
 import net.malisis.core.block.component.DirectionalComponent;
@@ -104,9 +105,7 @@ public class MultiBlockComponent implements IBlockComponent
 		if (multiBlock == null || !multiBlock.isBulkPlace())
 			return;
 
-		if (multiBlock.canPlaceBlockAt(world, pos, state, false))
-			multiBlock.placeBlocks(world, pos, state, false);
-		else
+		if (!multiBlock.canPlaceBlockAt(world, pos, state, false) || !multiBlock.placeBlocks(world, pos, state, false))
 		{
 			world.setBlockToAir(pos);
 			stack.grow(1);
@@ -117,8 +116,8 @@ public class MultiBlockComponent implements IBlockComponent
 	public void breakBlock(Block block, World world, BlockPos pos, BlockState state)
 	{
 		MultiBlock multiBlock = getMultiBlock(world, pos, state, null);
-		if (multiBlock != null && multiBlock.isBulkBreak())
-			multiBlock.breakBlocks(world, pos, state);
+		if (multiBlock != null && multiBlock.isBulkBreak() && !multiBlock.breakBlocks(world, pos, state))
+			MalisisCore.log.warn("Failed to break multiblock blocks for {} at {}", state, pos);
 	}
 
 	@Override
@@ -0,0 +1,364 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.util.multiblock;
+
+import java.util.BitSet;
+
+import net.malisis.core.util.MBlockState;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockAccess;
+
+/**
+ * {@link MultiBlockIndex} is the compiled form of a {@link MultiBlock} for a specific rotation.<br>
+ * Positions of the members, relative to the origin, are packed into longs and stored in an open addressing hash table, alongside the state
+ * ids expected for each member. Membership lookups are O(1) and completion checks only loop over primitive arrays.
+ *
+ * <p>
+ * Indexes are built by {@link MultiBlock#getIndex(int)} and must not be modified.
+ *
+ * @author Ordinastie
+ */
+public class MultiBlockIndex
+{
+	private static final int BITS = 21;
+	private static final long MASK = (1L << BITS) - 1;
+
+	/** Rotation of this {@link MultiBlockIndex}. */
+	private final int rotation;
+	/** Members of the {@link MultiBlock}, unrotated. */
+	private final MBlockState[] members;
+	/** States expected in the world, rotated. */
+	private final IBlockState[] expectedStates;
+	/** State ids expected in the world. */
+	private final int[] expectedIds;
+	/** Packed rotated offsets of the members. */
+	private final long[] offsets;
+	/** Hash table of member index + 1, 0 for empty slots. */
+	private final int[] table;
+	private final int mask;
+
+	/**
+	 * Compiles the {@link MultiBlock} for the specified rotation.
+	 *
+	 * @param multiBlock the multi block
+	 * @param rotation the rotation
+	 */
+	MultiBlockIndex(MultiBlock multiBlock, int rotation)
+	{
+		this.rotation = rotation;
+		int size = multiBlock.states.size();
+		members = new MBlockState[size];
+		expectedStates = new IBlockState[size];
+		expectedIds = new int[size];
+		offsets = new long[size];
+
+		int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+		table = new int[capacity];
+		mask = capacity - 1;
+
+		int i = 0;
+		for (MBlockState mstate : multiBlock)
+		{
+			MBlockState rotated = mstate.rotate(rotation);
+			members[i] = mstate;
+			expectedStates[i] = rotated.getBlockState();
+			expectedIds[i] = Block.getStateId(rotated.getBlockState());
+			offsets[i] = pack(rotated.getX(), rotated.getY(), rotated.getZ());
+
+			int slot = hash(offsets[i]);
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+			table[slot] = ++i;
+		}
+	}
+
+	/**
+	 * Gets the rotation of this {@link MultiBlockIndex}.
+	 *
+	 * @return the rotation
+	 */
+	public int getRotation()
+	{
+		return rotation;
+	}
+
+	/**
+	 * Gets the number of members of the {@link MultiBlock}.
+	 *
+	 * @return the int
+	 */
+	public int size()
+	{
+		return members.length;
+	}
+
+	/**
+	 * Gets the distance from the origin to the farthest member, rounded up.
+	 *
+	 * @return the range
+	 */
+	public int getRange()
+	{
+		int max = 0;
+		for (int i = 0; i < offsets.length; i++)
+		{
+			BlockPos pos = getPos(BlockPos.ORIGIN, i);
+			max = Math.max(max, pos.getX() * pos.getX() + pos.getY() * pos.getY() + pos.getZ() * pos.getZ());
+		}
+		return (int) Math.ceil(Math.sqrt(max));
+	}
+
+	private static long pack(int x, int y, int z)
+	{
+		return (x & MASK) << (2 * BITS) | (y & MASK) << BITS | (z & MASK);
+	}
+
+	private int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * Gets the index of the member at the specified offset from the origin.
+	 *
+	 * @param x the x offset
+	 * @param y the y offset
+	 * @param z the z offset
+	 * @return the index, or -1 if no member is at that offset
+	 */
+	public int indexOf(int x, int y, int z)
+	{
+		long key = pack(x, y, z);
+		int slot = hash(key);
+		int index;
+		while ((index = table[slot]) != 0)
+		{
+			if (offsets[index - 1] == key)
+				return index - 1;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the index of the member at the {@link BlockPos} for a {@link MultiBlock} placed at <b>origin</b>.
+	 *
+	 * @param origin the origin
+	 * @param pos the pos
+	 * @return the index, or -1 if the position is not part of the {@link MultiBlock}
+	 */
+	public int indexOf(BlockPos origin, BlockPos pos)
+	{
+		return indexOf(pos.getX() - origin.getX(), pos.getY() - origin.getY(), pos.getZ() - origin.getZ());
+	}
+
+	/**
+	 * Checks whether the {@link BlockPos} is part of the {@link MultiBlock} placed at <b>origin</b>.
+	 *
+	 * @param origin the origin
+	 * @param pos the pos
+	 * @return true, if successful
+	 */
+	public boolean contains(BlockPos origin, BlockPos pos)
+	{
+		return indexOf(origin, pos) != -1;
+	}
+
+	/**
+	 * Gets the unrotated member at the specified index.
+	 *
+	 * @param index the index
+	 * @return the member
+	 */
+	public MBlockState getMember(int index)
+	{
+		return members[index];
+	}
+
+	/**
+	 * Gets the {@link IBlockState} expected in the world for the member at the specified index.
+	 *
+	 * @param index the index
+	 * @return the expected state
+	 */
+	public IBlockState getExpectedState(int index)
+	{
+		return expectedStates[index];
+	}
+
+	/**
+	 * Gets the world position of the member at the specified index for a {@link MultiBlock} placed at <b>origin</b>.
+	 *
+	 * @param origin the origin
+	 * @param index the index
+	 * @return the block pos
+	 */
+	public BlockPos getPos(BlockPos origin, int index)
+	{
+		long key = offsets[index];
+		int x = (int) (key << (64 - 3 * BITS) >> (64 - BITS));
+		int y = (int) (key << (64 - 2 * BITS) >> (64 - BITS));
+		int z = (int) (key << (64 - BITS) >> (64 - BITS));
+		return origin.add(x, y, z);
+	}
+
+	/**
+	 * Checks whether the {@link IBlockState} matches the one expected for the member at the specified index.<br>
+	 * States are compared by block and metadata.
+	 *
+	 * @param index the index
+	 * @param state the state
+	 * @return true, if successful
+	 */
+	public boolean matches(int index, IBlockState state)
+	{
+		return Block.getStateId(state) == expectedIds[index];
+	}
+
+	/**
+	 * Checks whether all the members are present in the world for a {@link MultiBlock} placed at <b>origin</b>.<br>
+	 * If <b>newState</b> is not null, its position is considered to hold its state instead of the world one.
+	 *
+	 * @param world the world
+	 * @param origin the origin
+	 * @param newState the new state
+	 * @return true, if is complete
+	 */
+	public boolean isComplete(IBlockAccess world, BlockPos origin, MBlockState newState)
+	{
+		int skip = newState != null ? indexOf(origin, newState.getPos()) : -1;
+		if (skip != -1 && !matches(skip, newState.getBlockState()))
+			return false;
+
+		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+		for (int i = 0; i < offsets.length; i++)
+		{
+			if (i == skip)
+				continue;
+			long key = offsets[i];
+			pos.setPos(	origin.getX() + (int) (key << (64 - 3 * BITS) >> (64 - BITS)),
+						origin.getY() + (int) (key << (64 - 2 * BITS) >> (64 - BITS)),
+						origin.getZ() + (int) (key << (64 - BITS) >> (64 - BITS)));
+			if (Block.getStateId(world.getBlockState(pos)) != expectedIds[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a {@link Tracker} for the {@link MultiBlock} placed at <b>origin</b>.
+	 *
+	 * @param world the world
+	 * @param origin the origin
+	 * @return the tracker
+	 */
+	public Tracker track(IBlockAccess world, BlockPos origin)
+	{
+		return new Tracker(world, origin);
+	}
+
+	/**
+	 * {@link Tracker} keeps the completion state of a {@link MultiBlock} placed in the world.<br>
+	 * After a full check on creation, only the modified positions are checked again when passed to {@link #update(BlockPos, IBlockState)}.
+	 * {@link MultiBlockTracker} does it for the blocks set around the origin.
+	 */
+	public class Tracker
+	{
+		private final BlockPos origin;
+		/** Members not matching the world. */
+		private final BitSet missing = new BitSet(offsets.length);
+
+		private Tracker(IBlockAccess world, BlockPos origin)
+		{
+			this.origin = origin;
+			refresh(world);
+		}
+
+		/**
+		 * Gets the origin of the tracked {@link MultiBlock}.
+		 *
+		 * @return the origin
+		 */
+		public BlockPos getOrigin()
+		{
+			return origin;
+		}
+
+		/**
+		 * Checks all the members against the world.
+		 *
+		 * @param world the world
+		 */
+		public void refresh(IBlockAccess world)
+		{
+			missing.clear();
+			for (int i = 0; i < offsets.length; i++)
+				if (!matches(i, world.getBlockState(getPos(origin, i))))
+					missing.set(i);
+		}
+
+		/**
+		 * Updates the completion state for a modified position.
+		 *
+		 * @param modified the modified
+		 * @param newState the new state
+		 * @return true, if the completion state changed
+		 */
+		public boolean update(BlockPos modified, IBlockState newState)
+		{
+			int index = indexOf(origin, modified);
+			if (index == -1)
+				return false;
+
+			boolean wasComplete = isComplete();
+			missing.set(index, !matches(index, newState));
+			return wasComplete != isComplete();
+		}
+
+		/**
+		 * Checks whether all the members are present.
+		 *
+		 * @return true, if is complete
+		 */
+		public boolean isComplete()
+		{
+			return missing.isEmpty();
+		}
+
+		/**
+		 * Gets the number of members not matching the world.
+		 *
+		 * @return the missing count
+		 */
+		public int getMissingCount()
+		{
+			return missing.cardinality();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.malisis.core.util.multiblock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.malisis.core.block.IBlockComponent;
+import net.malisis.core.util.chunklistener.ChunkListener;
+import net.malisis.core.util.chunklistener.IBlockListener;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * {@link MultiBlockTracker} keeps the completion state of a {@link MultiBlock} placed in the world, without checking all its members each
+ * time.<br>
+ * Added to the origin block alongside its {@link MultiBlockComponent}, it is stored in the chunks around it as an
+ * {@link IBlockListener.Post}, so the {@link ChunkListener} calls it for every block set in range. Only the modified position is then
+ * checked again by the {@link MultiBlockIndex.Tracker} of the origin.<br>
+ * Trackers are keyed on the origin they were created for, and are discarded whenever the {@link MultiBlock#ORIGIN_BLOCK_DATA} of that
+ * position is written, so they are created again for the new origin on the next block set.
+ *
+ * @author Ordinastie
+ */
+public class MultiBlockTracker implements IBlockComponent, IBlockListener.Post
+{
+	private final MultiBlock multiBlock;
+	private final ICompletionListener listener;
+	/** Trackers for the origins of each world. */
+	private static final Map<World, Map<BlockPos, MultiBlockIndex.Tracker>> trackers = new WeakHashMap<>();
+
+	public MultiBlockTracker(MultiBlock multiBlock, ICompletionListener listener)
+	{
+		this.multiBlock = multiBlock;
+		this.listener = listener;
+	}
+
+	public MultiBlockTracker(MultiBlock multiBlock)
+	{
+		this(multiBlock, null);
+	}
+
+	@Override
+	public int blockRange()
+	{
+		return multiBlock.getIndex(0).getRange();
+	}
+
+	/**
+	 * Checks whether the {@link MultiBlock} placed at <b>origin</b> is complete.
+	 *
+	 * @param world the world
+	 * @param origin the origin
+	 * @return true, if complete
+	 */
+	public boolean isComplete(World world, BlockPos origin)
+	{
+		MultiBlockIndex.Tracker tracker = getTracker(world, origin);
+		return tracker != null && tracker.isComplete();
+	}
+
+	/**
+	 * Gets the {@link MultiBlockIndex.Tracker} for the {@link MultiBlock} placed at <b>origin</b>, creating it if needed.
+	 *
+	 * @param world the world
+	 * @param origin the origin
+	 * @return the tracker, or null if <b>origin</b> is not the origin of a {@link MultiBlock}
+	 */
+	private MultiBlockIndex.Tracker getTracker(World world, BlockPos origin)
+	{
+		Map<BlockPos, MultiBlockIndex.Tracker> map = trackers.computeIfAbsent(world, w -> new HashMap<>());
+		MultiBlockIndex.Tracker tracker = map.get(origin);
+		if (tracker == null && MultiBlock.isOrigin(world, origin))
+		{
+			tracker = multiBlock.getIndex(world.getBlockState(origin)).track(world, origin);
+			map.put(origin.toImmutable(), tracker);
+		}
+		return tracker;
+	}
+
+	@Override
+	public void onBlockSet(World world, BlockPos listener, BlockPos modified, IBlockState oldState, IBlockState newState)
+	{
+		MultiBlockIndex.Tracker tracker = getTracker(world, listener);
+		if (tracker != null && tracker.update(modified, newState) && this.listener != null)
+			this.listener.onCompletionChanged(world, listener, tracker.isComplete());
+	}
+
+	@Override
+	public void breakBlock(Block block, World world, BlockPos pos, BlockState state)
+	{
+		invalidate(world, pos);
+	}
+
+	/**
+	 * Discards the {@link MultiBlockIndex.Tracker} keyed on the {@link BlockPos}.<br>
+	 * Called when the origin data of the position is written, as the tracker may then be for an origin that moved.
+	 *
+	 * @param world the world
+	 * @param pos the pos
+	 */
+	public static void invalidate(World world, BlockPos pos)
+	{
+		Map<BlockPos, MultiBlockIndex.Tracker> map = trackers.get(world);
+		if (map != null)
+			map.remove(pos);
+	}
+
+	/**
+	 * Discards the {@link MultiBlockIndex.Tracker trackers} keyed on the {@link BlockPos positions}.
+	 *
+	 * @param world the world
+	 * @param positions the positions
+	 */
+	public static void invalidate(World world, Iterable<BlockPos> positions)
+	{
+		Map<BlockPos, MultiBlockIndex.Tracker> map = trackers.get(world);
+		if (map != null)
+			positions.forEach(map::remove);
+	}
+
+	/**
+	 * Called when a {@link MultiBlock} tracked by a {@link MultiBlockTracker} becomes complete or incomplete.
+	 */
+	public interface ICompletionListener
+	{
+		public void onCompletionChanged(World world, BlockPos origin, boolean complete);
+	}
+}
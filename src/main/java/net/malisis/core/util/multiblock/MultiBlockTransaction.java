@@ -0,0 +1,239 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 Ordinastie
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package net.malisis.core.util.multiblock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.malisis.core.util.MBlockState;
+import net.malisis.core.util.blockdata.BlockDataHandler;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+/**
+ * {@link MultiBlockTransaction} places or breaks many blocks of a {@link MultiBlock} as a single operation.
+ *
+ * <p>
+ * Changes are grouped by {@link Chunk}. On {@link #commit()}, the {@link MultiBlock#ORIGIN_BLOCK_DATA} entries are written first with one
+ * message per chunk, then all the block states are written directly in their chunk. Light checks and client updates are deferred to a
+ * single pass at the end, with the same notifications as {@link World#setBlockState(BlockPos, IBlockState, int)} with flag 2 : observers
+ * are updated but neighbors are not notified. Client updates are then sent by the server as one packet per chunk.<br>
+ * The transaction is rejected without any change if one of its positions is outside of the world. If a block placement is refused, all
+ * the blocks already placed are restored and the data is reverted.
+ *
+ * @author Ordinastie
+ */
+public class MultiBlockTransaction
+{
+	private final World world;
+	/** Changes grouped by chunk. */
+	private final Map<Long, List<Change>> changes = new LinkedHashMap<>();
+	/** Origin data to write, null values remove data. */
+	private final Map<BlockPos, BlockPos> data = new LinkedHashMap<>();
+
+	public MultiBlockTransaction(World world)
+	{
+		this.world = world;
+	}
+
+	/**
+	 * Queues the placement of the {@link MBlockState}, and sets its origin data.
+	 *
+	 * @param state the state
+	 * @param origin the origin
+	 * @return this {@link MultiBlockTransaction}
+	 */
+	public MultiBlockTransaction place(MBlockState state, BlockPos origin)
+	{
+		add(state.getPos(), state.getBlockState());
+		data.put(state.getPos(), origin);
+		return this;
+	}
+
+	/**
+	 * Queues the removal of the block at the {@link BlockPos}, and removes its origin data.
+	 *
+	 * @param pos the pos
+	 * @return this {@link MultiBlockTransaction}
+	 */
+	public MultiBlockTransaction breakBlock(BlockPos pos)
+	{
+		add(pos, Blocks.AIR.getDefaultState());
+		data.put(pos, null);
+		return this;
+	}
+
+	/**
+	 * Sets the origin data for the {@link BlockPos} without changing the block.
+	 *
+	 * @param pos the pos
+	 * @param origin the origin
+	 * @return this {@link MultiBlockTransaction}
+	 */
+	public MultiBlockTransaction setOrigin(BlockPos pos, BlockPos origin)
+	{
+		data.put(pos, origin);
+		return this;
+	}
+
+	private void add(BlockPos pos, IBlockState state)
+	{
+		long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+		changes.computeIfAbsent(key, k -> new ArrayList<>()).add(new Change(pos, state));
+	}
+
+	/**
+	 * Applies all the queued changes.
+	 *
+	 * @return true, if all the changes were applied, false if the transaction was rejected or reverted
+	 */
+	public boolean commit()
+	{
+		if (!isValid())
+			return false;
+
+		Map<BlockPos, BlockPos> previousData = new LinkedHashMap<>();
+		for (BlockPos pos : data.keySet())
+			previousData.put(pos, BlockDataHandler.getData(MultiBlock.ORIGIN_BLOCK_DATA, world, pos));
+		//data first so that breaking the blocks doesn't trigger the multiblock again
+		BlockDataHandler.setData(MultiBlock.ORIGIN_BLOCK_DATA, world, data, true);
+		MultiBlockTracker.invalidate(world, data.keySet());
+
+		List<Change> applied = new ArrayList<>();
+		for (List<Change> chunkChanges : changes.values())
+		{
+			Chunk chunk = world.getChunkFromBlockCoords(chunkChanges.get(0).pos);
+			for (Change change : chunkChanges)
+			{
+				change.oldState = chunk.getBlockState(change.pos);
+				if (change.oldState == change.newState)
+					continue;
+
+				if (chunk.setBlockState(change.pos, change.newState) == null)
+				{
+					revert(applied, previousData);
+					return false;
+				}
+				change.chunk = chunk;
+				applied.add(change);
+			}
+		}
+
+		notify(applied);
+		return true;
+	}
+
+	/**
+	 * Checks whether all the positions of this {@link MultiBlockTransaction} are inside the world.<br>
+	 * Blocks are written directly in their chunk, bypassing the checks of {@link World#setBlockState(BlockPos, IBlockState, int)}.
+	 *
+	 * @return true, if all the positions are valid
+	 */
+	private boolean isValid()
+	{
+		for (List<Change> chunkChanges : changes.values())
+			for (Change change : chunkChanges)
+				if (!isValid(change.pos))
+					return false;
+
+		for (BlockPos pos : data.keySet())
+			if (!isValid(pos))
+				return false;
+
+		return true;
+	}
+
+	private boolean isValid(BlockPos pos)
+	{
+		return world.isValid(pos) && !world.isOutsideBuildHeight(pos);
+	}
+
+	/**
+	 * Restores the blocks already placed and the previous origin data.
+	 *
+	 * @param applied the applied
+	 * @param previousData the previous data
+	 */
+	private void revert(List<Change> applied, Map<BlockPos, BlockPos> previousData)
+	{
+		for (int i = applied.size() - 1; i >= 0; i--)
+		{
+			Change change = applied.get(i);
+			change.chunk.setBlockState(change.pos, change.oldState);
+		}
+		BlockDataHandler.setData(MultiBlock.ORIGIN_BLOCK_DATA, world, previousData, true);
+		MultiBlockTracker.invalidate(world, previousData.keySet());
+		notify(applied);
+	}
+
+	/**
+	 * Checks the light, sends the changes to the clients and updates the observers for all the changed blocks, as
+	 * {@link World#setBlockState(BlockPos, IBlockState, int)} does with flag 2.
+	 *
+	 * @param applied the applied
+	 */
+	private void notify(List<Change> applied)
+	{
+		for (Change change : applied)
+		{
+			IBlockState state = change.chunk.getBlockState(change.pos);
+			if (state.getLightOpacity(world, change.pos) != change.oldState.getLightOpacity(world, change.pos)
+					|| state.getLightValue(world, change.pos) != change.oldState.getLightValue(world, change.pos))
+				world.checkLight(change.pos);
+		}
+
+		for (Change change : applied)
+		{
+			IBlockState state = change.chunk.getBlockState(change.pos);
+			world.notifyBlockUpdate(change.pos, change.oldState, state, 2);
+			if (!world.isRemote)
+				world.updateObservingBlocksAt(change.pos, state.getBlock());
+		}
+	}
+
+	/**
+	 * A single block change.
+	 */
+	private static class Change
+	{
+		private final BlockPos pos;
+		private final IBlockState newState;
+		private IBlockState oldState;
+		private Chunk chunk;
+
+		public Change(BlockPos pos, IBlockState newState)
+		{
+			this.pos = pos;
+			this.newState = newState;
+		}
+	}
+}
@@ -84,6 +84,7 @@ public class PatternMultiBlock extends MultiBlock
 	public void buildStates()
 	{
 		states.clear();
+		clearIndexes();
 		BlockPos pos;
 		MBlockState state;
 
@@ -26,32 +26,46 @@ package net.malisis.core.util.parser;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.mutable.Mutable;
 
 import net.malisis.core.util.parser.token.Token;
 
 /**
+ * Base class for the parsers.<br>
+ * All the state of a parse is held by the parser itself, the {@link Token tokens} being stateless and shared. Tokens to try at a given
+ * position are looked up from a dispatch table indexed by the character at that position.
+ *
  * @author Ordinastie
  *
  */
 public abstract class Parser<T>
 {
+	private static final Token<?>[] NO_TOKENS = new Token<?>[0];
+
 	protected String text;
 	protected Token<?> token = Token.None;
 	protected boolean cached = false;
 	protected int index = 0;
-	protected String matched = "";
+	/** Index where the current {@link #token} starts. */
+	protected int tokenIndex = 0;
+	/** Number of characters matched by the current {@link #token}. */
+	protected int tokenSize = 0;
+	protected StringBuilder matched = new StringBuilder();
 
 	protected Set<Token<?>> listTokens = new LinkedHashSet<>();
 	protected Set<Token<?>> ignoreTokens = new HashSet<>();
 
-	//	protected Token currentToken;
-	//	protected int currentSize;
-	//	protected Token lastToken;
-	//	protected int lastSize;
+	/** Tokens that can start with each ASCII character, built lazily. */
+	private Token<?>[][] dispatch = new Token<?>[128][];
+	/** Matchers reused for the {@link Pattern patterns} of the tokens. */
+	private Map<Pattern, Matcher> matchers = new IdentityHashMap<>();
 
 	public Parser(String s)
 	{
@@ -61,6 +75,7 @@ public abstract class Parser<T>
 	protected void withTokens(Token<?>... tokens)
 	{
 		listTokens.addAll(Arrays.asList(tokens));
+		dispatch = new Token<?>[128][];
 	}
 
 	protected void ignoreTokens(Token<?>... tokens)
@@ -69,27 +84,83 @@ public abstract class Parser<T>
 		ignoreTokens.addAll(Arrays.asList(tokens));
 	}
 
+	/**
+	 * Gets a {@link Matcher} for the {@link Pattern} over the text of this {@link Parser}.<br>
+	 * The matcher is reused for every match of the pattern during the parse.
+	 *
+	 * @param pattern the pattern
+	 * @return the matcher
+	 */
+	public Matcher matcher(Pattern pattern)
+	{
+		return matchers.computeIfAbsent(pattern, p -> p.matcher(text));
+	}
+
+	/**
+	 * Gets the tokens that can match text starting with the specified character, in the order they were added to this {@link Parser}.
+	 *
+	 * @param c the character
+	 * @return the tokens
+	 */
+	private Token<?>[] tokensFor(char c)
+	{
+		if (c >= dispatch.length)
+			return null;
+
+		Token<?>[] tokens = dispatch[c];
+		if (tokens == null)
+		{
+			tokens = listTokens.stream().filter(t -> t.startsWith(c)).toArray(Token<?>[]::new);
+			dispatch[c] = tokens.length != 0 ? tokens : NO_TOKENS;
+		}
+		return tokens;
+	}
+
 	private Token<?> getToken()
 	{
 		cached = true;
-		if (isEnd())
-			return token = Token.EndOfInput;
-
-		for (Token<?> t : listTokens)
+		while (!isEnd())
 		{
-			if (t.matches(text, index))
+			char c = text.charAt(index);
+			Token<?>[] tokens = tokensFor(c);
+			Token<?> found = null;
+			int size = -1;
+			if (tokens != null)
+			{
+				for (Token<?> t : tokens)
+					if ((size = t.match(text, index, this)) > 0)
+					{
+						found = t;
+						break;
+					}
+			}
+			else
+			{
+				for (Token<?> t : listTokens)
+					if (t.startsWith(c) && (size = t.match(text, index, this)) > 0)
+					{
+						found = t;
+						break;
+					}
+			}
+
+			tokenIndex = index;
+			if (found == null)
 			{
-				if (ignoreTokens.contains(t))
-				{
-					index += t.size();
-					return token = getToken();
-				}
-				else
-					return token = t;
+				tokenSize = 1;
+				return token = Token.None;
 			}
+			if (!ignoreTokens.contains(found))
+			{
+				tokenSize = size;
+				return token = found;
+			}
+			index += size;
 		}
 
-		return token = Token.None;
+		tokenIndex = index;
+		tokenSize = 1;
+		return token = Token.EndOfInput;
 	}
 
 	public Token<?> peekToken()
@@ -111,7 +182,7 @@ public abstract class Parser<T>
 		if (!cached)
 			peekToken();
 		cached = false;
-		index += token.size();
+		index += tokenSize;
 	}
 
 	public boolean isEnd()
@@ -121,6 +192,7 @@ public abstract class Parser<T>
 
 	public char read()
 	{
+		cached = false;
 		return text.charAt(index++);
 	}
 
@@ -147,9 +219,9 @@ public abstract class Parser<T>
 			return false;
 
 		if (obj != null)
-			obj.setValue(t.getValue());
+			obj.setValue(t.getValue(text, tokenIndex, tokenSize));
 
-		matched += token.getValue();
+		matched.append(text, tokenIndex, tokenIndex + tokenSize);
 		forward();
 		return true;
 	}
@@ -173,7 +245,10 @@ public abstract class Parser<T>
 
 	public void error(Token<?> expected)
 	{
-		throw new ParserException("Expecting '" + expected + "' at " + index + " but found " + token);
+		String found = token.toString();
+		if (tokenSize > 0 && tokenIndex + tokenSize <= text.length())
+			found += " " + text.substring(tokenIndex, tokenIndex + tokenSize);
+		throw new ParserException("Expecting '" + expected + "' at " + index + " but found " + found);
 	}
 
 	public static class ParserException extends RuntimeException
@@ -24,26 +24,36 @@
 
 package net.malisis.core.util.parser.token;
 
+import net.malisis.core.util.parser.Parser;
+
 /**
  * @author Ordinastie
  *
  */
 public class CharToken extends Token<Character>
 {
+	private final char c;
+
 	public CharToken(char c)
 	{
-		this.value = c;
+		this.c = c;
+	}
+
+	@Override
+	public boolean startsWith(char c)
+	{
+		return c == this.c;
 	}
 
 	@Override
-	public boolean matches(String s, int index)
+	public int match(String s, int index, Parser<?> parser)
 	{
-		return index < s.length() && s.charAt(index) == value;
+		return index < s.length() && s.charAt(index) == c ? 1 : -1;
 	}
 
 	@Override
-	public int size()
+	public Character getValue(String s, int index, int size)
 	{
-		return 1;
+		return c;
 	}
 }
@@ -24,28 +24,29 @@
 
 package net.malisis.core.util.parser.token;
 
+import net.malisis.core.util.parser.Parser;
+
 /**
  * @author Ordinastie
  *
  */
 public class DigitToken extends Token<Character>
 {
-
 	@Override
-	public boolean matches(String s, int index)
+	public boolean startsWith(char c)
 	{
-		value = null;
-		if (index >= s.length() || Character.isDigit(s.charAt(index)))
-			return false;
-
-		value = s.charAt(index);
-		return true;
+		return Character.isDigit(c);
 	}
 
 	@Override
-	public int size()
+	public int match(String s, int index, Parser<?> parser)
 	{
-		return 1;
+		return index < s.length() && Character.isDigit(s.charAt(index)) ? 1 : -1;
 	}
 
+	@Override
+	public Character getValue(String s, int index, int size)
+	{
+		return s.charAt(index);
+	}
 }
@@ -24,6 +24,8 @@
 
 package net.malisis.core.util.parser.token;
 
+import net.malisis.core.util.parser.Parser;
+
 /**
  * @author Ordinastie
  *
@@ -31,14 +33,20 @@ package net.malisis.core.util.parser.token;
 public class EmptyToken extends Token<Void>
 {
 	@Override
-	public boolean matches(String s, int index)
+	public boolean startsWith(char c)
 	{
 		return false;
 	}
 
 	@Override
-	public int size()
+	public int match(String s, int index, Parser<?> parser)
+	{
+		return -1;
+	}
+
+	@Override
+	public Void getValue(String s, int index, int size)
 	{
-		return 1;
+		return null;
 	}
-}
\ No newline at end of file
+}
@@ -27,35 +27,55 @@ package net.malisis.core.util.parser.token;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import net.malisis.core.util.parser.Parser;
+
 /**
  * @author Ordinastie
  *
  */
 public class ExpressionToken extends Token<String>
 {
-	private Pattern pattern;
+	private final Pattern pattern;
+	/** ASCII characters a match can start with, as a bit mask. */
+	private final long[] firstChars = new long[2];
 
 	public ExpressionToken(String regex)
 	{
 		this.pattern = Pattern.compile(regex);
+
+		//a character can start a match if the pattern matches it, or if it could with more input
+		for (char c = 0; c < 128; c++)
+		{
+			Matcher m = pattern.matcher(String.valueOf(c));
+			if (m.lookingAt() || m.hitEnd())
+				firstChars[c >> 6] |= 1L << (c & 63);
+		}
 	}
 
-	@Override
-	public boolean matches(String s, int index)
+	public Pattern getPattern()
 	{
-		value = null;
-		Matcher m = pattern.matcher(s.substring(index));
-		if (!m.find())
-			return false;
+		return pattern;
+	}
 
-		value = m.group(0);
-		return true;
+	@Override
+	public boolean startsWith(char c)
+	{
+		return c >= 128 || (firstChars[c >> 6] & (1L << (c & 63))) != 0;
 	}
 
 	@Override
-	public int size()
+	public int match(String s, int index, Parser<?> parser)
 	{
-		return value != null ? value.length() : 0;
+		Matcher m = parser.matcher(pattern);
+		m.region(index, s.length());
+		if (!m.lookingAt() || m.end() == index)
+			return -1;
+		return m.end() - index;
 	}
 
+	@Override
+	public String getValue(String s, int index, int size)
+	{
+		return s.substring(index, index + size);
+	}
 }
@@ -24,34 +24,38 @@
 
 package net.malisis.core.util.parser.token;
 
+import net.malisis.core.util.parser.Parser;
+
 /**
  * @author Ordinastie
  *
  */
 public class KeywordToken extends Token<String>
 {
+	private final String keyword;
+
 	public KeywordToken(String keyword)
 	{
-		value = keyword;
+		this.keyword = keyword;
 	}
 
 	@Override
-	public boolean matches(String s, int index)
+	public boolean startsWith(char c)
 	{
-		if (value == null)
-			return false;
-		int e = index + value.length();
-		if (e > s.length())
-			return false;
-		if (s.substring(index, index + value.length()).toLowerCase().equals(value.toLowerCase()))
-			return true;
-		return false;
+		return keyword != null && !keyword.isEmpty() && Character.toLowerCase(c) == Character.toLowerCase(keyword.charAt(0));
 	}
 
 	@Override
-	public int size()
+	public int match(String s, int index, Parser<?> parser)
 	{
-		return value.length();
+		if (keyword == null)
+			return -1;
+		return s.regionMatches(true, index, keyword, 0, keyword.length()) ? keyword.length() : -1;
 	}
 
+	@Override
+	public String getValue(String s, int index, int size)
+	{
+		return keyword;
+	}
 }
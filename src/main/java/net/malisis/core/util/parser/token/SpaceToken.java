@@ -24,6 +24,8 @@
 
 package net.malisis.core.util.parser.token;
 
+import net.malisis.core.util.parser.Parser;
+
 /**
  * @author Ordinastie
  *
@@ -31,23 +33,20 @@ package net.malisis.core.util.parser.token;
 public class SpaceToken extends Token<Character>
 {
 	@Override
-	public boolean matches(String s, int index)
+	public boolean startsWith(char c)
+	{
+		return Character.isWhitespace(c);
+	}
+
+	@Override
+	public int match(String s, int index, Parser<?> parser)
 	{
-		if (Character.isWhitespace(s.charAt(index)))
-		{
-			value = s.charAt(index);
-			return true;
-		}
-		else
-		{
-			value = null;
-			return false;
-		}
+		return index < s.length() && Character.isWhitespace(s.charAt(index)) ? 1 : -1;
 	}
 
 	@Override
-	public int size()
+	public Character getValue(String s, int index, int size)
 	{
-		return 1;
+		return s.charAt(index);
 	}
 }
@@ -24,6 +24,8 @@
 
 package net.malisis.core.util.parser.token;
 
+import net.malisis.core.util.parser.Parser;
+
 /**
  * @author Ordinastie
  *
@@ -31,27 +33,23 @@ package net.malisis.core.util.parser.token;
 public class StringToken extends Token<String>
 {
 	@Override
-	public boolean matches(String s, int index)
+	public boolean startsWith(char c)
 	{
-		value = null;
-		if (s.charAt(index) != '"')
-			return false;
-		int e = index;
-		while (++e < s.length())
-		{
-			if (s.charAt(e) == '"')
-			{
-				value = s.substring(index + 1, e);
-				return true;
-			}
-		}
+		return c == '"';
+	}
 
-		return false;
+	@Override
+	public int match(String s, int index, Parser<?> parser)
+	{
+		if (index >= s.length() || s.charAt(index) != '"')
+			return -1;
+		int e = s.indexOf('"', index + 1);
+		return e != -1 ? e - index + 1 : -1;
 	}
 
 	@Override
-	public int size()
+	public String getValue(String s, int index, int size)
 	{
-		return value != null ? value.length() + 2 : 1;
+		return s.substring(index + 1, index + size - 1);
 	}
 }
@@ -26,6 +26,8 @@ package net.malisis.core.util.parser.token;
 
 import org.apache.commons.lang3.ArrayUtils;
 
+import net.malisis.core.util.parser.Parser;
+
 /**
  * @author Ordinastie
  *
@@ -89,7 +91,6 @@ public abstract class Token<T>
 	//IsNotInclude,
 
 	protected String name = "";
-	protected T value = null;
 
 	public Token<T> name(String name)
 	{
@@ -97,23 +98,48 @@ public abstract class Token<T>
 		return this;
 	}
 
-	public T getValue()
-	{
-		return value;
-	}
-
 	public boolean isOneOf(Token<?>... tokens)
 	{
 		return ArrayUtils.contains(tokens, this);
 	}
 
-	public abstract boolean matches(String s, int index);
+	/**
+	 * Checks whether this {@link Token} can match text starting with the specified character.<br>
+	 * Used by the {@link Parser} to only try plausible tokens at a given position. Must not return false for a character that
+	 * {@link #match(String, int, Parser)} could accept.
+	 *
+	 * @param c the character
+	 * @return true, if a match can start with the character
+	 */
+	public boolean startsWith(char c)
+	{
+		return true;
+	}
 
-	public abstract int size();
+	/**
+	 * Tries to match this {@link Token} at the specified index.<br>
+	 * Tokens are shared between parsers and must not keep any state from a match.
+	 *
+	 * @param s the text
+	 * @param index the index
+	 * @param parser the parser doing the matching, holding the reusable matchers
+	 * @return the number of characters matched, or -1 if the token doesn't match
+	 */
+	public abstract int match(String s, int index, Parser<?> parser);
+
+	/**
+	 * Gets the value of this {@link Token} for the text it matched.
+	 *
+	 * @param s the text
+	 * @param index the index where the match starts
+	 * @param size the number of characters matched
+	 * @return the value
+	 */
+	public abstract T getValue(String s, int index, int size);
 
 	@Override
 	public String toString()
 	{
-		return name + (value != null ? " " + value : "");
+		return name;
 	}
-}
\ No newline at end of file
+}
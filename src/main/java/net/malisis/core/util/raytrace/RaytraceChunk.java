@@ -24,14 +24,12 @@
 
 package net.malisis.core.util.raytrace;
 
-import java.util.Optional;
-
 import net.malisis.core.MalisisCore;
 import net.malisis.core.MalisisCoreSettings;
 import net.malisis.core.util.Point;
 import net.malisis.core.util.Ray;
-import net.malisis.core.util.Utils;
 import net.malisis.core.util.Vector;
+import net.malisis.core.util.chunkblock.LoadedChunkCache;
 import net.malisis.core.util.chunkcollision.ChunkCollision;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.RayTraceResult;
@@ -125,9 +123,9 @@ public class RaytraceChunk extends Raytrace
 			if (dest != null && exit != null && Point.distanceSquared(src, dest) < Point.distanceSquared(src, exit))
 				ret = true;
 
-			Optional<Chunk> chunk = Utils.getLoadedChunk(world, new BlockPos(currentX, 0, currentZ));
-			if (chunk.isPresent())
-				mop = ChunkCollision.get().processCallbacks(chunk.get(), src, dest);
+			Chunk chunk = LoadedChunkCache.getLoadedChunk(world, currentX >> 4, currentZ >> 4);
+			if (chunk != null)
+				mop = ChunkCollision.get().processCallbacks(chunk, src, dest);
 			else
 				ret = true;
 